@@ -1,7 +1,6 @@
 package com.example.exchange.bean;
 
 import com.example.exchange.util.JsonUtil;
-import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -9,7 +8,9 @@ import java.util.List;
 public class OrderBookBean {
     public static final String EMPTY = JsonUtil.writeJson(new OrderBookBean(0, BigDecimal.ZERO, List.of(), List.of()));
 
-    @JsonIgnore
+    /**
+     * 快照对应的sequenceId，客户端据此判断之后的增量(See OrderBookDeltaBean)是否连续
+     */
     public long sequenceId;
 
     public BigDecimal price;
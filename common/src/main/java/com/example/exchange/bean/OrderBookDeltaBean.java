@@ -0,0 +1,36 @@
+package com.example.exchange.bean;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 订单簿增量：从previousId到sequenceId之间前N档发生变化的档位及其最新合计数量，
+ * 数量为0表示该档位已删除或已不在前N档。
+ * <p>
+ * 客户端的订单簿位于sequenceId为S时，只有previousId == S的增量可直接应用；sequenceId <= S的增量已包含在订单簿中，
+ * 可以忽略；其他情况(丢失了增量，或引擎重启后增量不再接续)需要重新加载快照。
+ * <p>
+ * previousId < S < sequenceId的增量不能应用：它只包含previousId与sequenceId两个时刻之间有差异的档位，
+ * 在S时进入前N档、在sequenceId前又离开的档位不会出现在增量中。
+ */
+public class OrderBookDeltaBean {
+
+    public long sequenceId;
+
+    public long previousId;
+
+    public BigDecimal price;
+
+    public List<OrderBookItemBean> buy;
+
+    public List<OrderBookItemBean> sell;
+
+    public OrderBookDeltaBean(long sequenceId, long previousId, BigDecimal price, List<OrderBookItemBean> buy,
+            List<OrderBookItemBean> sell) {
+        this.sequenceId = sequenceId;
+        this.previousId = previousId;
+        this.price = price;
+        this.buy = buy;
+        this.sell = sell;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.exchange.bean;
+
+import com.example.exchange.util.JsonUtil;
+
+import java.math.BigDecimal;
+
+/**
+ * 最近24小时的行情统计
+ */
+public class TickerBean {
+
+    public static final String EMPTY = JsonUtil.writeJson(new TickerBean());
+
+    /**
+     * 统计窗口的开始时间(毫秒)，即窗口内第一分钟的开始时间
+     */
+    public long startTime;
+
+    /**
+     * 最后一笔成交的时间(毫秒)
+     */
+    public long endTime;
+
+    public BigDecimal open = BigDecimal.ZERO;
+
+    public BigDecimal high = BigDecimal.ZERO;
+
+    public BigDecimal low = BigDecimal.ZERO;
+
+    /**
+     * 最新成交价
+     */
+    public BigDecimal close = BigDecimal.ZERO;
+
+    /**
+     * 成交量
+     */
+    public BigDecimal volume = BigDecimal.ZERO;
+
+    /**
+     * 涨跌额: close - open
+     */
+    public BigDecimal change = BigDecimal.ZERO;
+}
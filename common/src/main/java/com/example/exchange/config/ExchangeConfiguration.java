@@ -11,6 +11,8 @@ import java.time.ZoneId;
 @ConfigurationProperties(prefix = "exchange.config")
 public class ExchangeConfiguration {
     private int orderBookDepth = 50;
+    // 交易引擎撮合的交易对，作为TICK消息的key:
+    private String symbol = "BTC_USD";
     private boolean debugMode = false;
     private String timeZone = ZoneId.systemDefault().getId();
     private String hmacKey;
@@ -30,6 +32,14 @@ public class ExchangeConfiguration {
         this.orderBookDepth = orderBookDepth;
     }
 
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public void setSymbol(String symbol) {
+        this.symbol = symbol;
+    }
+
     public boolean isDebugMode() {
         return debugMode;
     }
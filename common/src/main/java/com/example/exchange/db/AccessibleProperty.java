@@ -5,9 +5,18 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -29,8 +38,19 @@ public class AccessibleProperty {
     // table column definition:
     final String columnDefinition;
 
+    // 启动时为字段生成的访问器类，读写可被JIT内联，避免每次通过Field反射读写:
+    private final FieldAccessor accessor;
+
+    /**
+     * 按属性类型从ResultSet读取列值，返回值可直接写入字段
+     */
+    @FunctionalInterface
+    interface ColumnReader {
+        Object read(ResultSet rs, int column) throws SQLException;
+    }
+
     public Object get(Object bean) throws ReflectiveOperationException {
-        Object obj = this.field.get(bean);
+        Object obj = this.accessor.get(bean);
         if (this.javaToSqlMapper != null) {
             obj = this.javaToSqlMapper.apply(obj);
         }
@@ -41,7 +61,59 @@ public class AccessibleProperty {
         if (this.sqlToJavaMapper != null) {
             value = this.sqlToJavaMapper.apply(value);
         }
-        this.field.set(bean, value);
+        invokeSetter(bean, coerce(value));
+    }
+
+    /**
+     * 从ResultSet的第column列读取并写入bean，column由调用方按列名预先绑定
+     */
+    void read(Object bean, ResultSet rs, int column) throws SQLException, ReflectiveOperationException {
+        this.accessor.read(bean, rs, column);
+    }
+
+    private void invokeSetter(Object bean, Object value) throws ReflectiveOperationException {
+        this.accessor.set(bean, checkNull(value));
+    }
+
+    private Object checkNull(Object value) {
+        if (value == null && this.propertyType.isPrimitive()) {
+            throw new IllegalArgumentException("Cannot set null to primitive property: " + this.propertyName);
+        }
+        return value;
+    }
+
+    /**
+     * 将数值转换为属性的类型，例如自增ID返回的BigInteger、Integer写入long属性
+     */
+    private Object coerce(Object value) {
+        if (value instanceof Number n && !(this.propertyType.isInstance(value))) {
+            Class<?> t = this.propertyType;
+            if (t == long.class || t == Long.class) {
+                return n.longValue();
+            }
+            if (t == int.class || t == Integer.class) {
+                return n.intValue();
+            }
+            if (t == short.class || t == Short.class) {
+                return n.shortValue();
+            }
+            if (t == byte.class || t == Byte.class) {
+                return n.byteValue();
+            }
+            if (t == double.class || t == Double.class) {
+                return n.doubleValue();
+            }
+            if (t == float.class || t == Float.class) {
+                return n.floatValue();
+            }
+            if (t == boolean.class || t == Boolean.class) {
+                return n.intValue() != 0;
+            }
+            if (t == BigDecimal.class) {
+                return new BigDecimal(n.toString());
+            }
+        }
+        return value;
     }
 
     boolean isId() {
@@ -78,7 +150,7 @@ public class AccessibleProperty {
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
-    public AccessibleProperty(Field f) {
+    public AccessibleProperty(Field f) throws ReflectiveOperationException {
         this.field = f;
         this.propertyType = f.getType();
         this.propertyName = f.getName();
@@ -87,6 +159,80 @@ public class AccessibleProperty {
         this.javaToSqlMapper = isEnum ? (obj) -> ((Enum<?>) obj).name() : null;
         this.sqlToJavaMapper = isEnum ? (obj) -> Enum.valueOf((Class<? extends Enum>) this.propertyType, (String) obj)
                 : null;
+        this.accessor = createAccessor(f, createColumnReader());
+    }
+
+    // FieldAccessorTemplate的字节码:
+    private static final byte[] ACCESSOR_TEMPLATE = loadAccessorTemplate();
+
+    private static byte[] loadAccessorTemplate() {
+        try (InputStream input = AccessibleProperty.class
+                .getResourceAsStream(FieldAccessorTemplate.class.getSimpleName() + ".class")) {
+            return input.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 以字段的getter、setter和columnReader作为class data定义一个FieldAccessorTemplate的隐藏类
+     */
+    private static FieldAccessor createAccessor(Field f, ColumnReader columnReader)
+            throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle getter = lookup.unreflectGetter(f).asType(MethodType.methodType(Object.class, Object.class));
+        MethodHandle setter = lookup.unreflectSetter(f)
+                .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        Class<?> accessorClass = lookup
+                .defineHiddenClassWithClassData(ACCESSOR_TEMPLATE, List.of(getter, setter, columnReader), true)
+                .lookupClass();
+        return (FieldAccessor) accessorClass.getDeclaredConstructor().newInstance();
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private ColumnReader createColumnReader() {
+        Class<?> t = this.propertyType;
+        if (t.isEnum()) {
+            return (rs, column) -> {
+                String name = rs.getString(column);
+                return name == null ? null : Enum.valueOf((Class<? extends Enum>) t, name);
+            };
+        }
+        if (t == String.class) {
+            return ResultSet::getString;
+        }
+        if (t == BigDecimal.class) {
+            return ResultSet::getBigDecimal;
+        }
+        if (t == long.class) {
+            return ResultSet::getLong;
+        }
+        if (t == Long.class) {
+            return (rs, column) -> {
+                long value = rs.getLong(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (t == int.class) {
+            return ResultSet::getInt;
+        }
+        if (t == Integer.class) {
+            return (rs, column) -> {
+                int value = rs.getInt(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (t == boolean.class) {
+            return ResultSet::getBoolean;
+        }
+        if (t == Boolean.class) {
+            return (rs, column) -> {
+                boolean value = rs.getBoolean(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        // 其他类型较少使用，读取Object后转换:
+        return (rs, column) -> checkNull(coerce(rs.getObject(column)));
     }
 
     private String getColumnDefinition(Class<?> type) {
@@ -20,6 +20,7 @@ import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
@@ -37,9 +38,16 @@ public class DbTemplate {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    // 单条SQL的最大参数个数(MySQL预编译语句限制为65535):
+    static final int MAX_PARAMETERS = 65535;
+
     @Getter
     final JdbcTemplate jdbcTemplate;
 
+    // 批量插入时每条SQL的最大行数:
+    @Value("${exchange.db.batch-size:500}")
+    int batchSize = 500;
+
     // class -> Mapper:
     private Map<Class<?>, Mapper<?>> classMapping;
 
@@ -169,16 +177,18 @@ public class DbTemplate {
         }
     }
 
+    /**
+     * 批量插入，beans必须是同一个Entity类型。按batchSize分组，每组只执行一条多行INSERT。
+     */
     public <T> void insert(List<T> beans) {
-        for (T bean : beans) {
-            doInsert(bean, false);
-        }
+        doInsertBatch(beans, false);
     }
 
+    /**
+     * 批量插入并忽略已存在的记录，beans必须是同一个Entity类型。
+     */
     public <T> void insertIgnore(List<T> beans) {
-        for (T bean : beans) {
-            doInsert(bean, true);
-        }
+        doInsertBatch(beans, true);
     }
 
     public <T> void insert(Stream<T> beans) {
@@ -243,6 +253,69 @@ public class DbTemplate {
         }
     }
 
+    <T> void doInsertBatch(List<T> beans, boolean isIgnore) {
+        if (beans.isEmpty()) {
+            return;
+        }
+        final Mapper<?> mapper = getMapper(beans.get(0).getClass());
+        if (beans.size() == 1) {
+            doInsert(beans.get(0), isIgnore);
+            return;
+        }
+        final int cols = mapper.insertableProperties.size();
+        // 每条SQL的参数个数不能超过MAX_PARAMETERS:
+        final int chunkSize = Math.max(1, Math.min(this.batchSize, MAX_PARAMETERS / cols));
+        try {
+            for (int from = 0; from < beans.size(); from += chunkSize) {
+                List<T> chunk = beans.subList(from, Math.min(from + chunkSize, beans.size()));
+                String sql = mapper.insertBatchSQL(chunk.size(), isIgnore);
+                Object[] args = new Object[chunk.size() * cols];
+                int n = 0;
+                for (T bean : chunk) {
+                    for (AccessibleProperty prop : mapper.insertableProperties) {
+                        args[n] = prop.get(bean);
+                        n++;
+                    }
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("SQL: {} rows: {}", isIgnore ? mapper.insertIgnoreSQL : mapper.insertSQL, chunk.size());
+                }
+                if (mapper.id.isIdentityId()) {
+                    // using identityId, 按顺序回填自增ID:
+                    KeyHolder keyHolder = new GeneratedKeyHolder();
+                    jdbcTemplate.update(connection -> {
+                        PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+                        for (int i = 0; i < args.length; i++) {
+                            ps.setObject(i + 1, args[i]);
+                        }
+                        return ps;
+                    }, keyHolder);
+                    List<Map<String, Object>> keys = keyHolder.getKeyList();
+                    if (keys.size() != chunk.size()) {
+                        if (isIgnore) {
+                            // INSERT IGNORE跳过了部分行，自增ID无法与bean一一对应，不回填:
+                            logger.warn("skip assign generated keys: {} of {} rows inserted.", keys.size(), chunk.size());
+                            continue;
+                        }
+                        throw new PersistenceException("Expected " + chunk.size() + " generated keys but " + keys.size());
+                    }
+                    for (int i = 0; i < keys.size(); i++) {
+                        Object key = keys.get(i).values().iterator().next();
+                        if (key instanceof BigInteger) {
+                            key = ((BigInteger) key).longValueExact();
+                        }
+                        mapper.id.set(chunk.get(i), key);
+                    }
+                } else {
+                    // id is specified:
+                    jdbcTemplate.update(sql, args);
+                }
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
     // get mapper by class:
     @SuppressWarnings("unchecked")
     <T> Mapper<T> getMapper(Class<T> clazz) {
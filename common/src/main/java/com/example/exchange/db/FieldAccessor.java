@@ -0,0 +1,21 @@
+package com.example.exchange.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 读写一个public字段，由FieldAccessorTemplate为每个属性生成一个子类。
+ * <p>
+ * 使用抽象类而不是接口，逐列调用时通过vtable分派，比接口的itable分派更快。
+ */
+abstract class FieldAccessor {
+
+    abstract Object get(Object bean);
+
+    abstract void set(Object bean, Object value);
+
+    /**
+     * 从ResultSet的第column列读取并写入字段
+     */
+    abstract void read(Object bean, ResultSet rs, int column) throws SQLException;
+}
@@ -0,0 +1,69 @@
+package com.example.exchange.db;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * FieldAccessor的模板，本类不会被直接加载。
+ * <p>
+ * 每个属性以本类的字节码和该字段的getter、setter、ColumnReader作为class data定义一个隐藏类，这些对象保存在隐藏类的
+ * static final字段中，JIT将其视为常量：invokeExact()内联为直接的字段读写，ColumnReader的调用也可内联，
+ * Mapper逐列读取时每列只有一次虚方法调用。
+ */
+final class FieldAccessorTemplate extends FieldAccessor {
+
+    // 类型为(Object)Object:
+    private static final MethodHandle GETTER;
+
+    // 类型为(Object,Object)void:
+    private static final MethodHandle SETTER;
+
+    private static final AccessibleProperty.ColumnReader READER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            GETTER = MethodHandles.classDataAt(lookup, "_", MethodHandle.class, 0);
+            SETTER = MethodHandles.classDataAt(lookup, "_", MethodHandle.class, 1);
+            READER = MethodHandles.classDataAt(lookup, "_", AccessibleProperty.ColumnReader.class, 2);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    Object get(Object bean) {
+        try {
+            return (Object) GETTER.invokeExact(bean);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    @Override
+    void set(Object bean, Object value) {
+        try {
+            SETTER.invokeExact(bean, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    @Override
+    void read(Object bean, ResultSet rs, int column) throws SQLException {
+        Object value = READER.read(rs, column);
+        try {
+            SETTER.invokeExact(bean, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+}
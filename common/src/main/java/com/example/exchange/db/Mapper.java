@@ -7,6 +7,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.ResultSetExtractor;
 
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
@@ -14,6 +17,7 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 final class Mapper<T> {
@@ -22,6 +26,8 @@ final class Mapper<T> {
 
     final Class<T> entityClass;
     final Constructor<T> constructor;
+    // 由LambdaMetafactory生成的无参构造方法调用，可被JIT内联:
+    final Supplier<T> instantiator;
     final String tableName;
 
     // @Id property:
@@ -44,11 +50,13 @@ final class Mapper<T> {
     final String selectSQL;
     final String insertSQL;
     final String insertIgnoreSQL;
+    // 多行INSERT中每增加一行追加的部分: ", (?, ?, ...)"
+    final String insertValuesSQL;
     final String updateSQL;
     final String deleteSQL;
 
     public T newInstance() throws ReflectiveOperationException {
-        return this.constructor.newInstance();
+        return this.instantiator.get();
     }
 
     public Mapper(Class<T> clazz) throws Exception {
@@ -65,12 +73,14 @@ final class Mapper<T> {
         this.updatablePropertiesMap = buildPropertiesMap(this.updatableProperties);
         this.entityClass = clazz;
         this.constructor = clazz.getConstructor();
+        this.instantiator = createInstantiator(this.constructor);
         this.tableName = getTableName(clazz);
         this.selectSQL = "SELECT * FROM " + this.tableName + " WHERE " + this.id.propertyName + " = ?";
         this.insertSQL = "INSERT INTO " + this.tableName + " ("
                 + String.join(", ", this.insertableProperties.stream().map(p -> p.propertyName).toArray(String[]::new))
                 + ") VALUES (" + numOfQuestions(this.insertableProperties.size()) + ")";
         this.insertIgnoreSQL = this.insertSQL.replace("INSERT INTO", "INSERT IGNORE INTO");
+        this.insertValuesSQL = ", (" + numOfQuestions(this.insertableProperties.size()) + ")";
         this.updateSQL = "UPDATE " + this.tableName + " SET "
                 + String.join(", ",
                 this.updatableProperties.stream().map(p -> p.propertyName + " = ?").toArray(String[]::new))
@@ -82,18 +92,18 @@ final class Mapper<T> {
                 final List<T> results = new ArrayList<>();
                 final ResultSetMetaData m = rs.getMetaData();
                 final int cols = m.getColumnCount();
-                final String[] names = new String[cols];
+                // 每次查询按列名绑定一次属性，逐行只按列序号读取:
+                final AccessibleProperty[] props = new AccessibleProperty[cols];
                 for (int i = 0; i < cols; i++) {
-                    names[i] = m.getColumnLabel(i + 1);
+                    props[i] = allPropertiesMap.get(m.getColumnLabel(i + 1));
                 }
                 try {
                     while (rs.next()) {
                         T bean = newInstance();
                         for (int i = 0; i < cols; i++) {
-                            String name = names[i];
-                            AccessibleProperty p = allPropertiesMap.get(name);
+                            AccessibleProperty p = props[i];
                             if (p != null) {
-                                p.set(bean, rs.getObject(i + 1));
+                                p.read(bean, rs, i + 1);
                             }
                         }
                         results.add(bean);
@@ -106,6 +116,37 @@ final class Mapper<T> {
         };
     }
 
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> createInstantiator(Constructor<T> constructor) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            return (Supplier<T>) LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class), lookup.unreflectConstructor(constructor),
+                    MethodType.methodType(constructor.getDeclaringClass())).getTarget().invokeExact();
+        } catch (RuntimeException | Error | ReflectiveOperationException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new ReflectiveOperationException(t);
+        }
+    }
+
+    /**
+     * 多行INSERT [IGNORE] INTO ... VALUES (...), (...)
+     *
+     * @param rows     行数
+     * @param isIgnore 是否INSERT IGNORE
+     * @return SQL
+     */
+    String insertBatchSQL(int rows, boolean isIgnore) {
+        String sql = isIgnore ? this.insertIgnoreSQL : this.insertSQL;
+        StringBuilder sb = new StringBuilder(sql.length() + this.insertValuesSQL.length() * (rows - 1));
+        sb.append(sql);
+        for (int i = 1; i < rows; i++) {
+            sb.append(this.insertValuesSQL);
+        }
+        return sb.toString();
+    }
+
     Object getIdValue(Object bean) throws ReflectiveOperationException {
         return this.id.get(bean);
     }
@@ -0,0 +1,25 @@
+package com.example.exchange.journal;
+
+import com.example.exchange.segment.SegmentFiles;
+
+/**
+ * 事件日志的文件格式。
+ * <p>
+ * 日志由多个段文件组成(见SegmentFiles)，文件名为journal-{该段第一个sequenceId}.seg。每条记录的内容(大端序):
+ * <pre>
+ * long sequenceId, long previousId, long createdAt, byte[] data(UTF-8)
+ * </pre>
+ */
+final class JournalFiles {
+
+    static final int MAGIC = 0x454A524E; // "EJRN"
+    static final int VERSION = 1;
+
+    // sequenceId, previousId, createdAt:
+    static final int RECORD_FIXED_BYTES = 8 + 8 + 8;
+
+    static final SegmentFiles SEGMENTS = new SegmentFiles("journal-", MAGIC, VERSION, RECORD_FIXED_BYTES);
+
+    private JournalFiles() {
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.exchange.journal;
+
+import com.example.exchange.model.trade.EventEntity;
+import com.example.exchange.segment.SegmentFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 读取事件日志，可与写入方(同一进程或其他进程)并发读取，遇到未写完或校验失败的记录即视为当前末尾。
+ * <p>
+ * 记录上次读取的位置，按顺序分页读取时无需重新定位。非线程安全。
+ */
+public class JournalReader implements AutoCloseable {
+
+    final Path dir;
+
+    private final CRC32 crc = new CRC32();
+
+    // 当前读取的段:
+    private ByteBuffer segment;
+    private long segmentFirstSequenceId;
+    private int position;
+    // position之前最后一条记录的sequenceId:
+    private long lastSequenceId = -1;
+
+    public JournalReader(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * 读取sequenceId > afterSequenceId且 <= toSequenceId的最多limit条事件。
+     *
+     * @return 事件列表，已读到末尾时返回空列表；日志中不包含afterSequenceId之后的事件(日志为空或起始于更大的sequenceId)时返回null
+     */
+    public List<EventEntity> read(long afterSequenceId, long toSequenceId, int limit) throws IOException {
+        if (this.segment == null || afterSequenceId != this.lastSequenceId) {
+            if (!seek(afterSequenceId)) {
+                return null;
+            }
+        }
+        List<EventEntity> events = new ArrayList<>(Math.min(limit, 1024));
+        while (events.size() < limit) {
+            int size = JournalFiles.SEGMENTS.checkRecord(this.segment, this.position, this.crc);
+            if (size == SegmentFiles.END_OF_SEGMENT) {
+                if (!openNextSegment()) {
+                    break;
+                }
+                continue;
+            }
+            if (size == 0) {
+                break;
+            }
+            long sequenceId = this.segment.getLong(this.position + 4);
+            if (sequenceId > toSequenceId) {
+                break;
+            }
+            events.add(decode(this.position));
+            this.position += size;
+            this.lastSequenceId = sequenceId;
+        }
+        return events;
+    }
+
+    @Override
+    public void close() {
+        this.segment = null;
+        this.lastSequenceId = -1;
+    }
+
+    /**
+     * 定位到afterSequenceId之后的第一条记录
+     */
+    private boolean seek(long afterSequenceId) throws IOException {
+        close();
+        List<Path> files = JournalFiles.SEGMENTS.listSegments(this.dir);
+        Path file = null;
+        for (Path f : files) {
+            if (JournalFiles.SEGMENTS.firstOf(f) <= afterSequenceId + 1) {
+                file = f;
+            } else {
+                break;
+            }
+        }
+        if (file == null) {
+            return false;
+        }
+        if (!open(file)) {
+            return false;
+        }
+        for (;;) {
+            int size = JournalFiles.SEGMENTS.checkRecord(this.segment, this.position, this.crc);
+            if (size <= 0 || this.segment.getLong(this.position + 4) > afterSequenceId) {
+                break;
+            }
+            this.position += size;
+        }
+        this.lastSequenceId = afterSequenceId;
+        return true;
+    }
+
+    private boolean openNextSegment() throws IOException {
+        for (Path f : JournalFiles.SEGMENTS.listSegments(this.dir)) {
+            if (JournalFiles.SEGMENTS.firstOf(f) > this.segmentFirstSequenceId) {
+                return open(f);
+            }
+        }
+        return false;
+    }
+
+    private boolean open(Path file) throws IOException {
+        ByteBuffer buffer = JournalFiles.SEGMENTS.open(file, FileChannel.MapMode.READ_ONLY);
+        if (buffer == null) {
+            return false;
+        }
+        this.segment = buffer;
+        this.segmentFirstSequenceId = SegmentFiles.firstOf(buffer);
+        this.position = SegmentFiles.HEADER_BYTES;
+        return true;
+    }
+
+    private EventEntity decode(int position) {
+        ByteBuffer buffer = this.segment;
+        int length = buffer.getInt(position);
+        EventEntity event = new EventEntity();
+        event.sequenceId = buffer.getLong(position + 4);
+        event.previousId = buffer.getLong(position + 12);
+        event.createdAt = buffer.getLong(position + 20);
+        int dataLength = length - JournalFiles.RECORD_FIXED_BYTES;
+        byte[] data = new byte[dataLength];
+        buffer.get(position + 4 + JournalFiles.RECORD_FIXED_BYTES, data);
+        event.data = new String(data, StandardCharsets.UTF_8);
+        return event;
+    }
+}
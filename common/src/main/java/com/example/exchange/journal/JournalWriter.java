@@ -0,0 +1,172 @@
+package com.example.exchange.journal;
+
+import com.example.exchange.model.trade.EventEntity;
+import com.example.exchange.segment.SegmentFiles;
+import com.example.exchange.support.LoggerSupport;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写入事件日志，仅允许单线程写入。
+ * <p>
+ * 打开时扫描最后一个段文件，定位到最后一条校验通过的记录之后，丢弃未写完的记录。
+ * append()写入内存映射，flush()把本批写入的范围刷到磁盘后才对读取方可见(见getFlushedSequenceId())。
+ */
+public class JournalWriter extends LoggerSupport implements AutoCloseable {
+
+    final Path dir;
+    final int segmentSize;
+
+    private final CRC32 crc = new CRC32();
+
+    private MappedByteBuffer segment;
+    private int position;
+    // 上次flush()之后写入的起始位置:
+    private int dirtyFrom;
+
+    private long lastSequenceId = 0;
+    private long lastCreatedAt = 0;
+
+    // 已刷到磁盘的最后一个sequenceId:
+    private volatile long flushedSequenceId = 0;
+
+    public JournalWriter(Path dir, int segmentSize) throws IOException {
+        if (segmentSize < SegmentFiles.HEADER_BYTES + 1024) {
+            throw new IllegalArgumentException("segment size too small: " + segmentSize);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(dir);
+        recover();
+    }
+
+    /**
+     * 最后写入的sequenceId，日志为空时返回0
+     */
+    public long getLastSequenceId() {
+        return this.lastSequenceId;
+    }
+
+    public long getLastCreatedAt() {
+        return this.lastCreatedAt;
+    }
+
+    public long getFlushedSequenceId() {
+        return this.flushedSequenceId;
+    }
+
+    public void append(List<EventEntity> events) throws IOException {
+        for (EventEntity event : events) {
+            append(event);
+        }
+    }
+
+    public void append(EventEntity event) throws IOException {
+        if (event.sequenceId <= this.lastSequenceId) {
+            throw new IllegalArgumentException(
+                    "sequence id " + event.sequenceId + " is not after last sequence id " + this.lastSequenceId);
+        }
+        byte[] data = event.data.getBytes(StandardCharsets.UTF_8);
+        int length = JournalFiles.RECORD_FIXED_BYTES + data.length;
+        int recordSize = SegmentFiles.RECORD_OVERHEAD + length;
+        // 末尾保留4字节写入END_OF_SEGMENT:
+        if (SegmentFiles.HEADER_BYTES + recordSize + 4 > this.segmentSize) {
+            throw new IllegalArgumentException("event " + event.sequenceId + " is too large: " + recordSize + " bytes");
+        }
+        if (this.segment == null || this.position + recordSize + 4 > this.segment.limit()) {
+            roll(event.sequenceId);
+        }
+        MappedByteBuffer buffer = this.segment;
+        int start = this.position;
+        buffer.position(start);
+        buffer.putInt(length);
+        buffer.putLong(event.sequenceId);
+        buffer.putLong(event.previousId);
+        buffer.putLong(event.createdAt);
+        buffer.put(data);
+        this.crc.reset();
+        this.crc.update(buffer.slice(start, 4 + length));
+        buffer.putInt((int) this.crc.getValue());
+        this.position = buffer.position();
+        this.lastSequenceId = event.sequenceId;
+        this.lastCreatedAt = event.createdAt;
+    }
+
+    /**
+     * 把上次flush()之后写入的记录刷到磁盘
+     */
+    public void flush() {
+        if (this.segment != null && this.position > this.dirtyFrom) {
+            this.segment.force(this.dirtyFrom, this.position - this.dirtyFrom);
+            this.dirtyFrom = this.position;
+        }
+        this.flushedSequenceId = this.lastSequenceId;
+    }
+
+    @Override
+    public void close() {
+        flush();
+        this.segment = null;
+    }
+
+    private void roll(long firstSequenceId) throws IOException {
+        if (this.segment != null) {
+            this.segment.putInt(this.position, SegmentFiles.END_OF_SEGMENT);
+            this.segment.force(this.dirtyFrom, this.position + 4 - this.dirtyFrom);
+        }
+        this.segment = JournalFiles.SEGMENTS.create(this.dir, firstSequenceId, this.segmentSize);
+        this.position = SegmentFiles.HEADER_BYTES;
+        this.dirtyFrom = this.position;
+        logger.info("journal rolled to new segment {}.",
+                JournalFiles.SEGMENTS.segmentPath(this.dir, firstSequenceId));
+    }
+
+    private void recover() throws IOException {
+        List<Path> files = JournalFiles.SEGMENTS.listSegments(this.dir);
+        for (int i = files.size() - 1; i >= 0; i--) {
+            Path file = files.get(i);
+            MappedByteBuffer buffer = JournalFiles.SEGMENTS.open(file, FileChannel.MapMode.READ_WRITE);
+            if (buffer == null) {
+                throw new IOException("invalid journal segment: " + file);
+            }
+            int pos = SegmentFiles.HEADER_BYTES;
+            boolean found = false;
+            for (;;) {
+                int size = JournalFiles.SEGMENTS.checkRecord(buffer, pos, this.crc);
+                if (size <= 0) {
+                    break;
+                }
+                this.lastSequenceId = buffer.getLong(pos + 4);
+                this.lastCreatedAt = buffer.getLong(pos + 4 + 16);
+                found = true;
+                pos += size;
+            }
+            if (this.segment == null) {
+                // 最后一个段文件，后续从pos继续写入，清除未写完的记录:
+                if (SegmentFiles.clearTail(buffer, pos)) {
+                    logger.warn("discard incomplete record at position {} in journal segment {}.", pos, file);
+                }
+                this.segment = buffer;
+                this.position = pos;
+                this.dirtyFrom = pos;
+                if (!found) {
+                    // 刚创建的空段，前一个sequenceId即为firstSequenceId - 1:
+                    this.lastSequenceId = SegmentFiles.firstOf(buffer) - 1;
+                }
+            }
+            if (found) {
+                break;
+            }
+        }
+        this.flushedSequenceId = this.lastSequenceId;
+        logger.info("journal opened at {}: {} segments, last sequence id = {}.", this.dir, files.size(),
+                this.lastSequenceId);
+    }
+}
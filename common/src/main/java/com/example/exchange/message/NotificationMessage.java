@@ -5,5 +5,10 @@ public class NotificationMessage extends AbstractMessage {
 
     public Long userId;
 
+    /**
+     * K线周期，仅type为bar时有效
+     */
+    public String resolution;
+
     public Object data;
 }
@@ -0,0 +1,355 @@
+package com.example.exchange.messageing;
+
+import com.example.exchange.enums.AssetEnum;
+import com.example.exchange.enums.Direction;
+import com.example.exchange.message.AbstractMessage;
+import com.example.exchange.message.TickMessage;
+import com.example.exchange.message.event.AbstractEvent;
+import com.example.exchange.message.event.OrderCancelEvent;
+import com.example.exchange.message.event.OrderRequestEvent;
+import com.example.exchange.message.event.TransferEvent;
+import com.example.exchange.model.quotation.TickEntity;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 紧凑的二进制消息编码。
+ * <p>
+ * 每种消息类型分配固定的类型ID(已分配的ID和字段顺序不可修改，新增字段需增加VERSION)，
+ * 整数使用ZigZag变长编码，BigDecimal编码为scale和unscaled value，枚举编码为序号。
+ * 为了继续通过字符串类型的Kafka消息、events.data列和事件日志传输，编码结果以Base64文本表示，
+ * 并以PREFIX开头，与"className#json"格式区分。
+ * <pre>
+ * PREFIX + base64(byte version, varint typeId, fields...)
+ * </pre>
+ */
+final class BinaryMessageCodec {
+
+    static final char PREFIX = '@';
+
+    static final byte VERSION = 1;
+
+    static final int TYPE_ORDER_REQUEST_EVENT = 1;
+    static final int TYPE_ORDER_CANCEL_EVENT = 2;
+    static final int TYPE_TRANSFER_EVENT = 3;
+    static final int TYPE_TICK_MESSAGE = 4;
+
+    // BigDecimal标记:
+    static final int DECIMAL_NULL = 0;
+    static final int DECIMAL_LONG = 1;
+    static final int DECIMAL_BIG = 2;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final AssetEnum[] ASSETS = AssetEnum.values();
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private final ThreadLocal<Output> outputs = ThreadLocal.withInitial(Output::new);
+
+    /**
+     * 是否支持该类型，不支持的类型仍使用文本格式
+     */
+    boolean supports(Class<?> clazz) {
+        return clazz == OrderRequestEvent.class || clazz == OrderCancelEvent.class || clazz == TransferEvent.class
+                || clazz == TickMessage.class;
+    }
+
+    static boolean isBinary(String data) {
+        return !data.isEmpty() && data.charAt(0) == PREFIX;
+    }
+
+    String encode(AbstractMessage message) {
+        Output out = this.outputs.get();
+        out.reset();
+        out.writeByte(VERSION);
+        Class<?> clazz = message.getClass();
+        if (clazz == OrderRequestEvent.class) {
+            OrderRequestEvent e = (OrderRequestEvent) message;
+            out.writeVarLong(TYPE_ORDER_REQUEST_EVENT);
+            writeEvent(out, e);
+            out.writeNullableLong(e.userId);
+            out.writeByte(e.direction == null ? 0 : e.direction.ordinal() + 1);
+            out.writeDecimal(e.price);
+            out.writeDecimal(e.quantity);
+        } else if (clazz == OrderCancelEvent.class) {
+            OrderCancelEvent e = (OrderCancelEvent) message;
+            out.writeVarLong(TYPE_ORDER_CANCEL_EVENT);
+            writeEvent(out, e);
+            out.writeNullableLong(e.userId);
+            out.writeNullableLong(e.refOrderId);
+        } else if (clazz == TransferEvent.class) {
+            TransferEvent e = (TransferEvent) message;
+            out.writeVarLong(TYPE_TRANSFER_EVENT);
+            writeEvent(out, e);
+            out.writeNullableLong(e.fromUserId);
+            out.writeNullableLong(e.toUserId);
+            out.writeByte(e.asset == null ? 0 : e.asset.ordinal() + 1);
+            out.writeDecimal(e.amount);
+            out.writeByte(e.sufficient ? 1 : 0);
+        } else if (clazz == TickMessage.class) {
+            TickMessage m = (TickMessage) message;
+            out.writeVarLong(TYPE_TICK_MESSAGE);
+            writeMessage(out, m);
+            out.writeVarLong(m.sequenceId);
+            if (m.ticks == null) {
+                out.writeVarLong(-1);
+            } else {
+                out.writeVarLong(m.ticks.size());
+                for (TickEntity t : m.ticks) {
+                    out.writeVarLong(t.id);
+                    out.writeVarLong(t.sequenceId);
+                    out.writeNullableLong(t.takerOrderId);
+                    out.writeNullableLong(t.makerOrderId);
+                    out.writeByte(t.takerDirection ? 1 : 0);
+                    out.writeDecimal(t.price);
+                    out.writeDecimal(t.quantity);
+                    // 同一批tick的时间与消息时间接近，只写差值:
+                    out.writeVarLong(t.createdAt - m.createdAt);
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported message type: " + clazz.getName());
+        }
+        return PREFIX + new String(ENCODER.encode(out.toByteArray()), StandardCharsets.ISO_8859_1);
+    }
+
+    AbstractMessage decode(String data) {
+        Input in = new Input(DECODER.decode(data.substring(1)));
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new RuntimeException("Unsupported binary message version: " + version);
+        }
+        int type = (int) in.readVarLong();
+        switch (type) {
+            case TYPE_ORDER_REQUEST_EVENT: {
+                OrderRequestEvent e = new OrderRequestEvent();
+                readEvent(in, e);
+                e.userId = in.readNullableLong();
+                int direction = in.readByte();
+                e.direction = direction == 0 ? null : DIRECTIONS[direction - 1];
+                e.price = in.readDecimal();
+                e.quantity = in.readDecimal();
+                return e;
+            }
+            case TYPE_ORDER_CANCEL_EVENT: {
+                OrderCancelEvent e = new OrderCancelEvent();
+                readEvent(in, e);
+                e.userId = in.readNullableLong();
+                e.refOrderId = in.readNullableLong();
+                return e;
+            }
+            case TYPE_TRANSFER_EVENT: {
+                TransferEvent e = new TransferEvent();
+                readEvent(in, e);
+                e.fromUserId = in.readNullableLong();
+                e.toUserId = in.readNullableLong();
+                int asset = in.readByte();
+                e.asset = asset == 0 ? null : ASSETS[asset - 1];
+                e.amount = in.readDecimal();
+                e.sufficient = in.readByte() != 0;
+                return e;
+            }
+            case TYPE_TICK_MESSAGE: {
+                TickMessage m = new TickMessage();
+                readMessage(in, m);
+                m.sequenceId = in.readVarLong();
+                int size = (int) in.readVarLong();
+                if (size >= 0) {
+                    m.ticks = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        TickEntity t = new TickEntity();
+                        t.id = in.readVarLong();
+                        t.sequenceId = in.readVarLong();
+                        t.takerOrderId = in.readNullableLong();
+                        t.makerOrderId = in.readNullableLong();
+                        t.takerDirection = in.readByte() != 0;
+                        t.price = in.readDecimal();
+                        t.quantity = in.readDecimal();
+                        t.createdAt = m.createdAt + in.readVarLong();
+                        m.ticks.add(t);
+                    }
+                }
+                return m;
+            }
+            default:
+                throw new RuntimeException("Unable to handle binary message with type id: " + type);
+        }
+    }
+
+    private static void writeMessage(Output out, AbstractMessage message) {
+        out.writeString(message.refId);
+        out.writeVarLong(message.createdAt);
+    }
+
+    private static void writeEvent(Output out, AbstractEvent event) {
+        writeMessage(out, event);
+        out.writeVarLong(event.sequenceId);
+        out.writeVarLong(event.previousId);
+        out.writeString(event.uniqueId);
+    }
+
+    private static void readMessage(Input in, AbstractMessage message) {
+        message.refId = in.readString();
+        message.createdAt = in.readVarLong();
+    }
+
+    private static void readEvent(Input in, AbstractEvent event) {
+        readMessage(in, event);
+        event.sequenceId = in.readVarLong();
+        event.previousId = in.readVarLong();
+        event.uniqueId = in.readString();
+    }
+
+    /**
+     * 可复用的输出缓冲区
+     */
+    static final class Output {
+
+        private byte[] buffer = new byte[256];
+        private int position;
+
+        void reset() {
+            this.position = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(this.buffer, this.position);
+        }
+
+        private void ensure(int n) {
+            if (this.position + n > this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + n));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            this.buffer[this.position++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            // ZigZag:
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                this.buffer[this.position++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            this.buffer[this.position++] = (byte) v;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+            this.position += bytes.length;
+        }
+
+        void writeNullableLong(Long value) {
+            if (value == null) {
+                writeByte(0);
+            } else {
+                writeByte(1);
+                writeVarLong(value);
+            }
+        }
+
+        void writeString(String s) {
+            if (s == null) {
+                writeVarLong(-1);
+            } else {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(bytes.length);
+                writeBytes(bytes);
+            }
+        }
+
+        void writeDecimal(BigDecimal d) {
+            if (d == null) {
+                writeByte(DECIMAL_NULL);
+                return;
+            }
+            BigInteger unscaled = d.unscaledValue();
+            if (unscaled.bitLength() < 64) {
+                writeByte(DECIMAL_LONG);
+                writeVarLong(d.scale());
+                writeVarLong(unscaled.longValue());
+            } else {
+                byte[] bytes = unscaled.toByteArray();
+                writeByte(DECIMAL_BIG);
+                writeVarLong(d.scale());
+                writeVarLong(bytes.length);
+                writeBytes(bytes);
+            }
+        }
+    }
+
+    static final class Input {
+
+        private final byte[] buffer;
+        private int position;
+
+        Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readByte() {
+            return this.buffer[this.position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long v = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (shift >= 64) {
+                    throw new RuntimeException("Malformed varint.");
+                }
+                byte b = this.buffer[this.position++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        Long readNullableLong() {
+            return readByte() == 0 ? null : readVarLong();
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            if (length < 0) {
+                return null;
+            }
+            String s = new String(this.buffer, this.position, length, StandardCharsets.UTF_8);
+            this.position += length;
+            return s;
+        }
+
+        BigDecimal readDecimal() {
+            int tag = readByte();
+            switch (tag) {
+                case DECIMAL_NULL:
+                    return null;
+                case DECIMAL_LONG: {
+                    int scale = (int) readVarLong();
+                    return BigDecimal.valueOf(readVarLong(), scale);
+                }
+                case DECIMAL_BIG: {
+                    int scale = (int) readVarLong();
+                    int length = (int) readVarLong();
+                    byte[] bytes = Arrays.copyOfRange(this.buffer, this.position, this.position + length);
+                    this.position += length;
+                    return new BigDecimal(new BigInteger(bytes), scale);
+                }
+                default:
+                    throw new RuntimeException("Malformed decimal tag: " + tag);
+            }
+        }
+    }
+}
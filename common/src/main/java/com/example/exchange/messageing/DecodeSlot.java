@@ -0,0 +1,49 @@
+package com.example.exchange.messageing;
+
+import com.example.exchange.message.AbstractMessage;
+import com.example.exchange.ring.WaitStrategy;
+
+/**
+ * 流水线模式下RingBuffer中预分配的槽位：监听线程写入原始数据，解码线程写入反序列化结果，
+ * 处理线程等待解码完成后读取。
+ */
+final class DecodeSlot {
+
+    String data;
+
+    AbstractMessage message;
+
+    RuntimeException error;
+
+    // 写入message或error后设置，保证处理线程可见:
+    volatile boolean decoded;
+
+    void reset(String data) {
+        this.data = data;
+        this.message = null;
+        this.error = null;
+        this.decoded = false;
+    }
+
+    void decode(MessageTypes messageTypes) {
+        try {
+            this.message = messageTypes.deserialize(this.data);
+        } catch (RuntimeException e) {
+            this.error = e;
+        }
+        this.decoded = true;
+    }
+
+    /**
+     * 按等待策略等待解码完成，解码失败时返回null
+     */
+    AbstractMessage await(WaitStrategy waitStrategy) {
+        for (int n = 0; !this.decoded; n++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IllegalStateException("interrupted while waiting for decoder.");
+            }
+            waitStrategy.idle(n);
+        }
+        return this.message;
+    }
+}
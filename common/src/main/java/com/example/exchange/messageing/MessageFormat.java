@@ -0,0 +1,17 @@
+package com.example.exchange.messageing;
+
+/**
+ * 消息序列化格式，反序列化时自动识别
+ */
+public enum MessageFormat {
+
+    /**
+     * className#json
+     */
+    TEXT,
+
+    /**
+     * See BinaryMessageCodec
+     */
+    BINARY;
+}
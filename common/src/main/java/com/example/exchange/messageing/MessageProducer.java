@@ -3,14 +3,19 @@ package com.example.exchange.messageing;
 import com.example.exchange.message.AbstractMessage;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-@FunctionalInterface
 public interface MessageProducer <T extends AbstractMessage> {
+
     void sendMessage(T message);
 
+    /**
+     * 按顺序发送一批消息，返回整批消息都被broker确认后完成的Future，任意一条发送失败则异常完成。
+     * 返回前已完成序列化，调用方可立即复用messages。
+     */
+    CompletableFuture<Void> sendBatch(List<T> messages);
+
     default void sendMessages(List<T> messages) {
-        for (T message : messages) {
-            sendMessage(message);
-        }
+        sendBatch(messages);
     }
 }
@@ -24,6 +24,8 @@ public class MessageTypes {
 
     private static final char SEP = '#';
 
+    final BinaryMessageCodec binaryCodec = new BinaryMessageCodec();
+
     @PostConstruct
     public void init() {
         log.info("find message classes...");
@@ -62,6 +64,16 @@ public class MessageTypes {
         return type + SEP + json;
     }
 
+    /**
+     * 按指定格式序列化，二进制格式不支持的类型仍使用文本格式
+     */
+    public String serialize(AbstractMessage message, MessageFormat format) {
+        if (format == MessageFormat.BINARY && this.binaryCodec.supports(message.getClass())) {
+            return this.binaryCodec.encode(message);
+        }
+        return serialize(message);
+    }
+
     public List<AbstractMessage> deserialize(List<String> dataList) {
         List<AbstractMessage> list = new ArrayList<>(dataList.size());
         for (String data : dataList) {
@@ -78,7 +90,13 @@ public class MessageTypes {
         return list;
     }
 
+    /**
+     * 反序列化文本或二进制格式的消息
+     */
     public AbstractMessage deserialize(String data) {
+        if (BinaryMessageCodec.isBinary(data)) {
+            return this.binaryCodec.decode(data);
+        }
         int pos = data.indexOf(SEP);
         if (pos == -1) {
             throw new RuntimeException("Unable to handle message with data: " + data);
@@ -5,6 +5,8 @@ public interface Messaging {
     enum Topic{
         /**
          * Topic name: to sequence.
+         * <p>
+         * 消息按用户设置key，同一用户的消息保持顺序。
          */
         SEQUENCE(1),
         /**
@@ -14,13 +16,18 @@ public interface Messaging {
 
         /**
          * Topic name: events to trading-engine.
+         * <p>
+         * 定序后的事件是全序的，只有一个分区。
          */
         TRADE(1),
 
         /**
          * Topic name: tick to quotation for generate bars.
+         * <p>
+         * 消息按交易对设置key，同一交易对的tick进入同一分区并保持顺序，K线和最近Ticks依赖这一顺序。
+         * quotation每个分区一个消费线程，按分区记录已处理的sequenceId。
          */
-        TICK(1);
+        TICK(4);
 
         private final int concurrency;
 
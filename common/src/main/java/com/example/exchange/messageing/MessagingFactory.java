@@ -1,16 +1,24 @@
 package com.example.exchange.messageing;
 
 import com.example.exchange.message.AbstractMessage;
+import com.example.exchange.ring.EventHandler;
+import com.example.exchange.ring.RingBuffer;
+import com.example.exchange.ring.WaitStrategy;
 import com.example.exchange.support.LoggerSupport;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.KafkaListenerEndpoint;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.listener.BatchMessageListener;
 import org.springframework.kafka.listener.CommonErrorHandler;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
@@ -21,19 +29,35 @@ import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 @Component
 public class MessagingFactory extends LoggerSupport {
 
+    // 流水线模式下每次调用BatchMessageHandler的最大消息数:
+    static final int MAX_PIPELINE_BATCH = 1000;
+
     @Autowired
     private MessageTypes messageTypes;
 
     @Autowired
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private ProducerFactory<String, String> producerFactory;
+
+    @Autowired
+    private MessagingProperties messagingProperties;
 
     @Autowired
     private ConcurrentKafkaListenerContainerFactory<String, String> listenerContainerFactory;
@@ -41,8 +65,37 @@ public class MessagingFactory extends LoggerSupport {
     @Autowired
     private KafkaAdmin kafkaAdmin;
 
+    @Value("${spring.kafka.consumer.max-poll-records:500}")
+    private int maxPollRecords;
+
+    // 使用二进制格式发送消息的topic，逗号分隔，消费者自动识别两种格式:
+    @Value("${exchange.messaging.binary-topics:}")
+    private String binaryTopics;
+
+    private final Set<Messaging.Topic> binaryTopicSet = EnumSet.noneOf(Messaging.Topic.class);
+
+    // 每个topic使用独立的producer，以便分别配置linger、batch size和压缩:
+    private final Map<Messaging.Topic, DefaultKafkaProducerFactory<String, String>> topicProducerFactories = new EnumMap<>(
+            Messaging.Topic.class);
+    private final Map<Messaging.Topic, KafkaTemplate<String, String>> topicTemplates = new EnumMap<>(
+            Messaging.Topic.class);
+
+    // transport=QUEUE时使用本机消息队列代替Kafka:
+    private QueueTransport queueTransport;
+
     @PostConstruct
     public void init() throws ExecutionException, InterruptedException {
+        for (String name : this.binaryTopics.split(",")) {
+            if (!name.isBlank()) {
+                this.binaryTopicSet.add(Messaging.Topic.valueOf(name.strip()));
+            }
+        }
+        logger.info("topics using binary message format: {}", this.binaryTopicSet);
+        if (this.messagingProperties.getTransport() == MessagingProperties.Transport.QUEUE) {
+            this.queueTransport = new QueueTransport(this.messagingProperties.getQueue());
+            logger.info("init MessagingFactory ok (queue transport).");
+            return;
+        }
         logger.info("init kafka admin...");
         try (AdminClient client = AdminClient.create(kafkaAdmin.getConfigurationProperties())) {
             // 查询当前所有topic:
@@ -66,17 +119,104 @@ public class MessagingFactory extends LoggerSupport {
         logger.info("init MessagingFactory ok.");
     }
 
+    /**
+     * 发送到topic的消息格式
+     */
+    public MessageFormat getMessageFormat(Messaging.Topic topic) {
+        return this.binaryTopicSet.contains(topic) ? MessageFormat.BINARY : MessageFormat.TEXT;
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        if (this.queueTransport != null) {
+            this.queueTransport.close();
+        }
+        for (DefaultKafkaProducerFactory<String, String> factory : this.topicProducerFactories.values()) {
+            factory.destroy();
+        }
+        this.topicProducerFactories.clear();
+        this.topicTemplates.clear();
+    }
+
     public <T extends AbstractMessage> MessageProducer<T> createMessageProducer(Messaging.Topic topic, Class<T> messageClass) {
+        return createMessageProducer(topic, messageClass, null);
+    }
+
+    /**
+     * 创建topic的producer
+     *
+     * @param keyMapper 消息的key，相同key的消息发送到同一分区并保持顺序，null表示不设置key
+     */
+    public <T extends AbstractMessage> MessageProducer<T> createMessageProducer(Messaging.Topic topic,
+            Class<T> messageClass, Function<? super T, String> keyMapper) {
         logger.info("try create message producer for topic {}...", topic);
         final String name = topic.name();
+        final MessageFormat format = getMessageFormat(topic);
+        if (this.queueTransport != null) {
+            final QueueTransport transport = this.queueTransport;
+            return new MessageProducer<T>() {
+                @Override
+                public void sendMessage(T message) {
+                    transport.append(topic, List.of(messageTypes.serialize(message, format)));
+                }
+
+                @Override
+                public CompletableFuture<Void> sendBatch(List<T> messages) {
+                    List<String> data = new ArrayList<>(messages.size());
+                    for (T message : messages) {
+                        data.add(messageTypes.serialize(message, format));
+                    }
+                    try {
+                        transport.append(topic, data);
+                    } catch (RuntimeException e) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                    return CompletableFuture.completedFuture(null);
+                }
+            };
+        }
+        final KafkaTemplate<String, String> template = getKafkaTemplate(topic);
         return new MessageProducer<T>() {
             @Override
             public void sendMessage(T message) {
-                kafkaTemplate.send(name, messageTypes.serialize(message));
+                template.send(name, keyMapper == null ? null : keyMapper.apply(message),
+                        messageTypes.serialize(message, format));
+            }
+
+            @Override
+            public CompletableFuture<Void> sendBatch(List<T> messages) {
+                if (messages.isEmpty()) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                CompletableFuture<?>[] futures = new CompletableFuture<?>[messages.size()];
+                for (int i = 0; i < futures.length; i++) {
+                    T message = messages.get(i);
+                    futures[i] = template.send(name, keyMapper == null ? null : keyMapper.apply(message),
+                            messageTypes.serialize(message, format));
+                }
+                return CompletableFuture.allOf(futures);
             }
         };
     }
 
+    synchronized KafkaTemplate<String, String> getKafkaTemplate(Messaging.Topic topic) {
+        KafkaTemplate<String, String> template = this.topicTemplates.get(topic);
+        if (template == null) {
+            MessagingProperties.Producer props = this.messagingProperties.getProducer(topic);
+            logger.info("init kafka producer for topic {}: {}", topic, props);
+            Map<String, Object> configs = new HashMap<>(this.producerFactory.getConfigurationProperties());
+            configs.put(ProducerConfig.LINGER_MS_CONFIG, props.getLingerMs());
+            configs.put(ProducerConfig.BATCH_SIZE_CONFIG, props.getBatchSize());
+            configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, props.getCompressionType());
+            configs.put(ProducerConfig.ACKS_CONFIG, props.getAcks());
+            DefaultKafkaProducerFactory<String, String> factory = new DefaultKafkaProducerFactory<>(configs);
+            template = new KafkaTemplate<>(factory);
+            this.topicProducerFactories.put(topic, factory);
+            this.topicTemplates.put(topic, template);
+        }
+        return template;
+    }
+
     public <T extends AbstractMessage> MessageConsumer createBatchMessageListener(Messaging.Topic topic, String groupId,
                                                                                   BatchMessageHandler<T> messageHandler) {
         return createBatchMessageListener(topic, groupId, messageHandler, null);
@@ -85,28 +225,135 @@ public class MessagingFactory extends LoggerSupport {
     public <T extends AbstractMessage> MessageConsumer createBatchMessageListener(Messaging.Topic topic, String groupId,
                                                                                   BatchMessageHandler<T> messageHandler, CommonErrorHandler errorHandler) {
         logger.info("try create batch message listener for topic {}: group id = {}...", topic, groupId);
-        ConcurrentMessageListenerContainer<String, String> listenerContainer = listenerContainerFactory
-                .createListenerContainer(new KafkaListenerEndpointAdapter() {
-                    @Override
-                    public String getGroupId() {
-                        return groupId;
-                    }
+        return subscribe(topic, groupId, data -> {
+            List<T> messages = new ArrayList<>(data.size());
+            for (String value : data) {
+                @SuppressWarnings("unchecked")
+                T message = (T) messageTypes.deserialize(value);
+                messages.add(message);
+            }
+            messageHandler.processMessages(messages);
+        }, errorHandler);
+    }
 
-                    @Override
-                    public Collection<String> getTopics() {
-                        return List.of(topic.name());
-                    }
-                });
+    /**
+     * 按分区的批量消息监听：每个分区一个消费线程(Kafka容器的concurrency等于topic的分区数)，
+     * 一次poll得到的记录按分区分组后依次调用messageHandler，同一分区的消息保持顺序。
+     * messageHandler抛出异常时整批offset不提交，已处理的分区会重复收到这些消息，需按分区去重。
+     * 本机队列只有一个分区，分区号总是0。
+     */
+    public <T extends AbstractMessage> MessageConsumer createPartitionedBatchMessageListener(Messaging.Topic topic,
+            String groupId, PartitionedBatchMessageHandler<T> messageHandler) {
+        logger.info("try create partitioned batch message listener for topic {}: group id = {}, partitions = {}...",
+                topic, groupId, topic.getPartitions());
+        return subscribePartitioned(topic, groupId, (partition, data) -> {
+            List<T> messages = new ArrayList<>(data.size());
+            for (String value : data) {
+                @SuppressWarnings("unchecked")
+                T message = (T) messageTypes.deserialize(value);
+                messages.add(message);
+            }
+            messageHandler.processMessages(partition, messages);
+        });
+    }
+
+    /**
+     * 流水线模式的批量消息监听：监听线程只把原始记录写入RingBuffer，decoderThreads个解码线程并行反序列化，
+     * 单个处理线程按原始顺序读取已解码的消息并批量调用messageHandler，JSON解析不再串行阻塞消息处理。
+     * messageHandler收到的List会被复用，不可保留引用。
+     * <p>
+     * 监听线程写入一批记录后等待处理线程处理完这批记录才返回，offset在此之后提交，进程退出时不会丢失已提交但未处理的消息。
+     * 与createBatchMessageListener()相同，记录无法解码或messageHandler抛出异常时，本批剩余记录不再处理，
+     * 监听线程抛出第一个异常，本批offset不提交。解码线程、处理线程和监听线程的等待均使用waitStrategy。
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends AbstractMessage> MessageConsumer createPipelinedBatchMessageListener(Messaging.Topic topic,
+            String groupId, BatchMessageHandler<T> messageHandler, int decoderThreads, int bufferSize,
+            WaitStrategy waitStrategy) {
+        logger.info("try create pipelined batch message listener for topic {}: group id = {}, decoders = {}...", topic,
+                groupId, decoderThreads);
+        RingBuffer<DecodeSlot> ring = new RingBuffer<>(bufferSize, DecodeSlot::new, waitStrategy);
+        String prefix = "pipeline-" + topic.name().toLowerCase();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < decoderThreads; i++) {
+            final int index = i;
+            // 每个解码线程只处理序号对decoderThreads取模等于index的槽位:
+            EventHandler<DecodeSlot> decoder = (slot, sequence, endOfBatch) -> {
+                if (sequence % decoderThreads == index) {
+                    slot.decode(messageTypes);
+                }
+            };
+            threads.add(new Thread(ring.addConsumer("decoder-" + i, decoder), prefix + "-decoder-" + i));
+        }
+        final List<T> batch = new ArrayList<>(MAX_PIPELINE_BATCH);
+        // 本批记录中第一个解码或处理失败的异常，由监听线程在每批开始时清除:
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        EventHandler<DecodeSlot> handler = (slot, sequence, endOfBatch) -> {
+            if (failure.get() != null) {
+                // 本批已失败，跳过剩余记录:
+                return;
+            }
+            try {
+                AbstractMessage message = slot.await(waitStrategy);
+                if (message == null) {
+                    throw new IllegalStateException("cannot decode message: " + slot.data, slot.error);
+                }
+                batch.add((T) message);
+                if (endOfBatch || batch.size() >= MAX_PIPELINE_BATCH) {
+                    messageHandler.processMessages(batch);
+                    batch.clear();
+                }
+            } catch (RuntimeException e) {
+                batch.clear();
+                failure.set(e);
+            }
+        };
+        RingBuffer.Consumer<DecodeSlot> handlerConsumer = ring.addConsumer("handler", handler);
+        threads.add(new Thread(handlerConsumer, prefix + "-handler"));
+        threads.forEach(Thread::start);
+
+        MessageConsumer consumer = subscribe(topic, groupId, data -> {
+            // 上一批已全部处理(或跳过)，处理线程此时空闲:
+            failure.set(null);
+            for (String value : data) {
+                ring.claim().reset(value);
+                ring.publish();
+            }
+            // 处理线程处理完本批记录后才返回并提交offset:
+            long last = ring.getCursor();
+            for (int n = 0; handlerConsumer.getSequence() < last; n++) {
+                waitStrategy.idle(n);
+            }
+            RuntimeException e = failure.get();
+            if (e != null) {
+                throw e;
+            }
+        }, null);
+        return () -> {
+            consumer.stop();
+            threads.forEach(Thread::interrupt);
+        };
+    }
+
+    /**
+     * 订阅topic，按批次回调原始消息，handler收到的List可能被复用，不可保留引用
+     */
+    private MessageConsumer subscribe(Messaging.Topic topic, String groupId, Consumer<List<String>> handler,
+            CommonErrorHandler errorHandler) {
+        if (this.queueTransport != null) {
+            // 本机队列处理失败时重试，重试仍失败则退出进程，不使用Kafka的errorHandler:
+            return this.queueTransport.subscribe(topic, groupId, this.maxPollRecords, handler);
+        }
+        ConcurrentMessageListenerContainer<String, String> listenerContainer = createListenerContainer(topic, groupId,
+                1);
         listenerContainer.setupMessageListener(new BatchMessageListener<String, String>() {
             @Override
-            @SuppressWarnings("unchecked")
             public void onMessage(List<ConsumerRecord<String, String>> data) {
-                List<T> messages = new ArrayList<>(data.size());
+                List<String> values = new ArrayList<>(data.size());
                 for (ConsumerRecord<String, String> record : data) {
-                    AbstractMessage message = messageTypes.deserialize(record.value());
-                    messages.add((T) message);
+                    values.add(record.value());
                 }
-                messageHandler.processMessages(messages);
+                handler.accept(values);
             }
         });
         if (errorHandler != null) {
@@ -115,6 +362,51 @@ public class MessagingFactory extends LoggerSupport {
         listenerContainer.start();
         return listenerContainer::stop;
     }
+
+    /**
+     * 按分区订阅topic，每个分区的记录单独回调，handler收到的List可能被复用，不可保留引用
+     */
+    private MessageConsumer subscribePartitioned(Messaging.Topic topic, String groupId,
+            BiConsumer<Integer, List<String>> handler) {
+        if (this.queueTransport != null) {
+            // 本机队列只有一个分区:
+            return this.queueTransport.subscribe(topic, groupId, this.maxPollRecords, data -> handler.accept(0, data));
+        }
+        ConcurrentMessageListenerContainer<String, String> listenerContainer = createListenerContainer(topic, groupId,
+                topic.getConcurrency());
+        listenerContainer.setupMessageListener(new BatchMessageListener<String, String>() {
+            @Override
+            public void onMessage(List<ConsumerRecord<String, String>> data) {
+                Map<Integer, List<String>> partitions = new LinkedHashMap<>();
+                for (ConsumerRecord<String, String> record : data) {
+                    partitions.computeIfAbsent(record.partition(), p -> new ArrayList<>()).add(record.value());
+                }
+                partitions.forEach(handler);
+            }
+        });
+        listenerContainer.start();
+        return listenerContainer::stop;
+    }
+
+    private ConcurrentMessageListenerContainer<String, String> createListenerContainer(Messaging.Topic topic,
+            String groupId, int concurrency) {
+        return listenerContainerFactory.createListenerContainer(new KafkaListenerEndpointAdapter() {
+            @Override
+            public String getGroupId() {
+                return groupId;
+            }
+
+            @Override
+            public Integer getConcurrency() {
+                return Integer.valueOf(concurrency);
+            }
+
+            @Override
+            public Collection<String> getTopics() {
+                return List.of(topic.name());
+            }
+        });
+    }
 }
 
 class KafkaListenerEndpointAdapter implements KafkaListenerEndpoint {
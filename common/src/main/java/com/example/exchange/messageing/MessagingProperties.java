@@ -0,0 +1,180 @@
+package com.example.exchange.messageing;
+
+import com.example.exchange.ring.WaitStrategy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 消息传输方式及各topic的producer配置，未配置的topic使用默认值:
+ * <pre>
+ * exchange:
+ *   messaging:
+ *     transport: kafka
+ *     queue:
+ *       dir: /var/exchange/queue
+ *     producers:
+ *       TRADE:
+ *         linger-ms: 1
+ *         batch-size: 65536
+ *         compression-type: lz4
+ *         acks: all
+ * </pre>
+ */
+@Configuration
+@ConfigurationProperties(prefix = "exchange.messaging")
+public class MessagingProperties {
+
+    public enum Transport {
+        KAFKA,
+        /**
+         * 基于内存映射文件的本机消息队列(See QueueTransport)，所有服务必须部署在同一主机并使用相同的queue.dir
+         */
+        QUEUE
+    }
+
+    private Transport transport = Transport.KAFKA;
+
+    private Queue queue = new Queue();
+
+    // key: topic name
+    private Map<String, Producer> producers = new HashMap<>();
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    public Queue getQueue() {
+        return queue;
+    }
+
+    public void setQueue(Queue queue) {
+        this.queue = queue;
+    }
+
+    public Map<String, Producer> getProducers() {
+        return producers;
+    }
+
+    public void setProducers(Map<String, Producer> producers) {
+        this.producers = producers;
+    }
+
+    public Producer getProducer(Messaging.Topic topic) {
+        Producer producer = this.producers.get(topic.name());
+        return producer == null ? new Producer() : producer;
+    }
+
+    public static class Producer {
+        // 等待更多消息组成批次的时间:
+        private int lingerMs = 5;
+        // 每个分区的批次大小(字节):
+        private int batchSize = 65536;
+        // none, gzip, snappy, lz4, zstd:
+        private String compressionType = "lz4";
+        private String acks = "all";
+
+        public int getLingerMs() {
+            return lingerMs;
+        }
+
+        public void setLingerMs(int lingerMs) {
+            this.lingerMs = lingerMs;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public String getCompressionType() {
+            return compressionType;
+        }
+
+        public void setCompressionType(String compressionType) {
+            this.compressionType = compressionType;
+        }
+
+        public String getAcks() {
+            return acks;
+        }
+
+        public void setAcks(String acks) {
+            this.acks = acks;
+        }
+
+        @Override
+        public String toString() {
+            return "Producer [lingerMs=" + lingerMs + ", batchSize=" + batchSize + ", compressionType="
+                    + compressionType + ", acks=" + acks + "]";
+        }
+    }
+
+    public static class Queue {
+        // 队列根目录，每个topic一个子目录:
+        private String dir = "./queue";
+        // 段文件大小(字节):
+        private int segmentSize = 64 * 1024 * 1024;
+        // 每个topic保留的段文件数，<=0表示不删除:
+        private int retainedSegments = 16;
+        // 每批消息写入后是否刷到磁盘，false时仅在进程崩溃时不丢失消息:
+        private boolean force = false;
+        // 消费者没有新消息时的等待策略:
+        private WaitStrategy waitStrategy = WaitStrategy.PARK;
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public int getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public int getRetainedSegments() {
+            return retainedSegments;
+        }
+
+        public void setRetainedSegments(int retainedSegments) {
+            this.retainedSegments = retainedSegments;
+        }
+
+        public boolean isForce() {
+            return force;
+        }
+
+        public void setForce(boolean force) {
+            this.force = force;
+        }
+
+        public WaitStrategy getWaitStrategy() {
+            return waitStrategy;
+        }
+
+        public void setWaitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+        }
+
+        @Override
+        public String toString() {
+            return "Queue [dir=" + dir + ", segmentSize=" + segmentSize + ", retainedSegments=" + retainedSegments
+                    + ", force=" + force + ", waitStrategy=" + waitStrategy + "]";
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.exchange.messageing;
+
+import com.example.exchange.message.AbstractMessage;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface PartitionedBatchMessageHandler <T extends AbstractMessage> {
+
+    /**
+     * 处理同一分区的一批消息，不同分区可能在不同线程中同时调用
+     */
+    void processMessages(int partition, List<T> messages);
+}
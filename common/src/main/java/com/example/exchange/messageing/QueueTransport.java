@@ -0,0 +1,225 @@
+package com.example.exchange.messageing;
+
+import com.example.exchange.queue.QueueAppender;
+import com.example.exchange.queue.QueueOffset;
+import com.example.exchange.queue.QueueTailer;
+import com.example.exchange.support.LoggerSupport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 基于内存映射文件的本机消息传输，用于所有服务部署在同一主机时替代Kafka，也可作为集成测试的本地消息队列。
+ * <p>
+ * 每个topic对应queue.dir下的一个队列目录(See QueueAppender)，消息顺序写入，不区分分区和key。
+ * 每个消费者一个线程轮询队列，处理完一批消息后提交offset到文件，重启后从上次提交的位置继续；
+ * 消费组首次消费时从队列末尾开始，与Kafka的auto-offset-reset=latest一致。
+ * <p>
+ * 读取队列或处理消息失败时等待后重试同一批消息，不提交offset；连续失败MAX_RETRIES次后退出进程，
+ * 重启后从上次提交的位置重新消费，消息不会被跳过。
+ */
+class QueueTransport extends LoggerSupport {
+
+    static final int MAX_RETRIES = 9;
+
+    final Path dir;
+    final MessagingProperties.Queue props;
+
+    private final Map<Messaging.Topic, QueueAppender> appenders = new EnumMap<>(Messaging.Topic.class);
+
+    // 第n次重试前等待n倍的时间:
+    long retryBackoffMillis = 1000;
+
+    // 重试仍失败时调用:
+    Runnable fatalErrorHandler = () -> System.exit(1);
+
+    QueueTransport(MessagingProperties.Queue props) {
+        this.dir = Path.of(props.getDir()).toAbsolutePath();
+        this.props = props;
+        logger.info("init queue transport at {}: {}", this.dir, props);
+    }
+
+    /**
+     * 按顺序写入一批消息，返回时已对所有消费者可见
+     */
+    void append(Messaging.Topic topic, List<String> messages) {
+        try {
+            getAppender(topic).append(messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized QueueAppender getAppender(Messaging.Topic topic) throws IOException {
+        QueueAppender appender = this.appenders.get(topic);
+        if (appender == null) {
+            appender = new QueueAppender(this.dir.resolve(topic.name()), this.props.getSegmentSize(),
+                    this.props.isForce(), this.props.getRetainedSegments());
+            this.appenders.put(topic, appender);
+        }
+        return appender;
+    }
+
+    /**
+     * 订阅topic，handler收到的List会被复用，不可保留引用
+     */
+    MessageConsumer subscribe(Messaging.Topic topic, String groupId, int maxPollRecords,
+            Consumer<List<String>> handler) {
+        final Path queueDir = this.dir.resolve(topic.name());
+        final QueueOffset offset;
+        final QueueTailer tailer;
+        try {
+            offset = new QueueOffset(queueDir, groupId);
+            long index = offset.get();
+            if (index < 0) {
+                index = QueueTailer.endIndex(queueDir);
+                offset.commit(index);
+            }
+            tailer = new QueueTailer(queueDir, index);
+            if (tailer.getIndex() != index) {
+                logger.warn("offset {} of group {} is out of range in queue {}, reset to {}.", index, groupId,
+                        queueDir, tailer.getIndex());
+            }
+            logger.info("subscribe queue {} by group {} from index {}.", queueDir, groupId, tailer.getIndex());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final QueueConsumer consumer = new QueueConsumer(topic, groupId, maxPollRecords, handler, offset, tailer);
+        Thread thread = new Thread(consumer::run, "async-queue-" + topic.name().toLowerCase() + "-" + groupId);
+        thread.start();
+        return () -> {
+            consumer.running = false;
+            if (Thread.currentThread() != thread) {
+                try {
+                    thread.join(5000);
+                } catch (InterruptedException e) {
+                    logger.warn("interrupted when stop queue consumer.");
+                }
+            }
+        };
+    }
+
+    synchronized void close() {
+        for (QueueAppender appender : this.appenders.values()) {
+            try {
+                appender.close();
+            } catch (IOException e) {
+                logger.warn("close queue appender failed.", e);
+            }
+        }
+        this.appenders.clear();
+    }
+
+    class QueueConsumer {
+
+        final Messaging.Topic topic;
+        final String groupId;
+        final int maxPollRecords;
+        final Consumer<List<String>> handler;
+        final QueueOffset offset;
+        final QueueTailer tailer;
+
+        volatile boolean running = true;
+
+        QueueConsumer(Messaging.Topic topic, String groupId, int maxPollRecords, Consumer<List<String>> handler,
+                QueueOffset offset, QueueTailer tailer) {
+            this.topic = topic;
+            this.groupId = groupId;
+            this.maxPollRecords = maxPollRecords;
+            this.handler = handler;
+            this.offset = offset;
+            this.tailer = tailer;
+        }
+
+        void run() {
+            final List<String> batch = new ArrayList<>(this.maxPollRecords);
+            int idle = 0;
+            try {
+                while (this.running) {
+                    batch.clear();
+                    if (!poll(batch)) {
+                        break;
+                    }
+                    if (batch.isEmpty()) {
+                        props.getWaitStrategy().idle(idle++);
+                        continue;
+                    }
+                    idle = 0;
+                    if (!process(batch)) {
+                        break;
+                    }
+                    this.offset.commit(this.tailer.getIndex());
+                }
+            } finally {
+                this.tailer.close();
+                try {
+                    this.offset.close();
+                } catch (IOException e) {
+                    logger.warn("close queue offset failed.", e);
+                }
+                logger.info("queue consumer for {} (group {}) stopped.", this.topic, this.groupId);
+            }
+        }
+
+        /**
+         * 读取下一批消息，失败时重新定位并重试，返回false表示已停止或重试仍失败
+         */
+        private boolean poll(List<String> batch) {
+            for (int retry = 1; ; retry++) {
+                try {
+                    this.tailer.poll(batch, this.maxPollRecords);
+                    return true;
+                } catch (IOException e) {
+                    logger.error("read queue " + this.topic + " failed at index " + this.tailer.getIndex() + ".", e);
+                    // 下次从getIndex()重新定位，已读取的消息先处理:
+                    this.tailer.close();
+                    if (!batch.isEmpty()) {
+                        return true;
+                    }
+                    if (!backoff(retry)) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 处理一批消息，失败时重试同一批消息，返回false表示已停止或重试仍失败
+         */
+        private boolean process(List<String> batch) {
+            for (int retry = 1; ; retry++) {
+                try {
+                    this.handler.accept(batch);
+                    return true;
+                } catch (RuntimeException e) {
+                    logger.error("process " + batch.size() + " messages from queue " + this.topic + " failed.", e);
+                    if (!backoff(retry)) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        private boolean backoff(int retry) {
+            if (retry > MAX_RETRIES) {
+                logger.error("queue consumer for {} (group {}) failed after {} retries, exit now...", this.topic,
+                        this.groupId, MAX_RETRIES);
+                this.running = false;
+                fatalErrorHandler.run();
+                return false;
+            }
+            try {
+                Thread.sleep(retryBackoffMillis * retry);
+            } catch (InterruptedException e) {
+                this.running = false;
+            }
+            return this.running;
+        }
+    }
+}
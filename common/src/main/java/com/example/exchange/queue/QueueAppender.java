@@ -0,0 +1,192 @@
+package com.example.exchange.queue;
+
+import com.example.exchange.segment.SegmentFiles;
+import com.example.exchange.support.LoggerSupport;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写入消息队列，同一主机上的多个进程可以同时写入同一队列。
+ * <p>
+ * 每次append()在队列目录的append.lock上加文件锁，先跳过其他进程已写入的记录定位到末尾，再写入本批消息，
+ * 因此同一批消息在队列中是连续的。同一进程内应共享一个QueueAppender(文件锁不可在同一进程内重入)。
+ * 写入内存映射即对其他进程的读取方可见，进程崩溃不丢失消息；force为true时每批刷到磁盘，主机掉电也不丢失。
+ */
+public class QueueAppender extends LoggerSupport implements AutoCloseable {
+
+    final Path dir;
+    final int segmentSize;
+    final boolean force;
+    // 保留的段文件数，<=0表示不删除:
+    final int retainedSegments;
+
+    private final CRC32 crc = new CRC32();
+
+    private final FileChannel lockChannel;
+
+    private MappedByteBuffer segment;
+    private int position;
+    // position处下一条消息的index:
+    private long nextIndex;
+
+    public QueueAppender(Path dir, int segmentSize, boolean force, int retainedSegments) throws IOException {
+        if (segmentSize < SegmentFiles.HEADER_BYTES + 1024) {
+            throw new IllegalArgumentException("segment size too small: " + segmentSize);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.force = force;
+        this.retainedSegments = retainedSegments;
+        Files.createDirectories(dir);
+        this.lockChannel = FileChannel.open(dir.resolve(QueueFiles.LOCK_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * 下一条写入消息的index(仅反映本进程最后一次写入时看到的末尾)
+     */
+    public synchronized long getNextIndex() {
+        return this.nextIndex;
+    }
+
+    public void append(String data) throws IOException {
+        append(List.of(data));
+    }
+
+    /**
+     * 按顺序写入一批消息，返回时已对所有读取方可见
+     */
+    public synchronized void append(List<String> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try (FileLock lock = this.lockChannel.lock()) {
+            if (this.segment == null) {
+                open();
+            } else {
+                catchUp();
+            }
+            int dirtyFrom = this.position;
+            for (String message : messages) {
+                byte[] data = message.getBytes(StandardCharsets.UTF_8);
+                int recordSize = SegmentFiles.RECORD_OVERHEAD + data.length;
+                // 末尾保留4字节写入END_OF_SEGMENT:
+                if (data.length == 0 || SegmentFiles.HEADER_BYTES + recordSize + 4 > this.segmentSize) {
+                    throw new IllegalArgumentException("invalid message size: " + data.length + " bytes");
+                }
+                if (this.position + recordSize + 4 > this.segment.limit()) {
+                    if (this.force) {
+                        this.segment.force(dirtyFrom, this.position - dirtyFrom);
+                    }
+                    roll();
+                    dirtyFrom = this.position;
+                }
+                MappedByteBuffer buffer = this.segment;
+                int start = this.position;
+                buffer.position(start);
+                buffer.putInt(data.length);
+                buffer.put(data);
+                this.crc.reset();
+                this.crc.update(buffer.slice(start, 4 + data.length));
+                buffer.putInt((int) this.crc.getValue());
+                this.position = buffer.position();
+                this.nextIndex++;
+            }
+            if (this.force) {
+                this.segment.force(dirtyFrom, this.position - dirtyFrom);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.segment = null;
+        this.lockChannel.close();
+    }
+
+    /**
+     * 跳过其他进程写入的记录，定位到队列末尾，需持有文件锁
+     */
+    private void catchUp() throws IOException {
+        for (;;) {
+            int size = QueueFiles.SEGMENTS.checkRecord(this.segment, this.position, this.crc);
+            if (size == SegmentFiles.END_OF_SEGMENT) {
+                openSegment(this.nextIndex);
+            } else if (size > 0) {
+                this.position += size;
+                this.nextIndex++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 首次写入时打开最后一个段文件，清除崩溃的写入方留下的未写完的记录，需持有文件锁
+     */
+    private void open() throws IOException {
+        List<Path> files = QueueFiles.SEGMENTS.listSegments(this.dir);
+        openSegment(files.isEmpty() ? 0 : QueueFiles.SEGMENTS.firstOf(files.get(files.size() - 1)));
+        catchUp();
+        if (SegmentFiles.clearTail(this.segment, this.position)) {
+            logger.warn("discard incomplete record at position {} in queue {}.", this.position, this.dir);
+        }
+        logger.info("queue appender opened at {}: next index = {}.", this.dir, this.nextIndex);
+    }
+
+    /**
+     * 在当前段末尾写入END_OF_SEGMENT并切换到新的段文件，需持有文件锁
+     */
+    private void roll() throws IOException {
+        MappedByteBuffer last = this.segment;
+        int lastPosition = this.position;
+        openSegment(this.nextIndex);
+        // 新段文件已存在后再标记旧段结束，读取方遇到END_OF_SEGMENT时总能打开下一个段文件:
+        last.putInt(lastPosition, SegmentFiles.END_OF_SEGMENT);
+        if (this.force) {
+            last.force(lastPosition, 4);
+        }
+        deleteExpiredSegments();
+    }
+
+    private void deleteExpiredSegments() throws IOException {
+        if (this.retainedSegments <= 0) {
+            return;
+        }
+        List<Path> files = QueueFiles.SEGMENTS.listSegments(this.dir);
+        for (int i = 0; i < files.size() - this.retainedSegments; i++) {
+            // 已映射该文件的读取方仍可继续读取:
+            Files.deleteIfExists(files.get(i));
+            logger.info("deleted expired queue segment {}.", files.get(i));
+        }
+    }
+
+    /**
+     * 打开firstIndex对应的段文件，不存在时创建
+     */
+    private void openSegment(long firstIndex) throws IOException {
+        Path file = QueueFiles.SEGMENTS.segmentPath(this.dir, firstIndex);
+        MappedByteBuffer buffer;
+        if (Files.exists(file)) {
+            buffer = QueueFiles.SEGMENTS.open(file, FileChannel.MapMode.READ_WRITE);
+            if (buffer == null) {
+                throw new IOException("invalid queue segment: " + file);
+            }
+        } else {
+            buffer = QueueFiles.SEGMENTS.create(this.dir, firstIndex, this.segmentSize);
+            logger.info("queue rolled to new segment {}.", file);
+        }
+        this.segment = buffer;
+        this.position = SegmentFiles.HEADER_BYTES;
+        this.nextIndex = firstIndex;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.exchange.queue;
+
+import com.example.exchange.segment.SegmentFiles;
+
+import java.nio.file.Path;
+
+/**
+ * 消息队列的文件格式。
+ * <p>
+ * 每个队列一个目录，由多个段文件组成(见SegmentFiles)，文件名为queue-{该段第一条消息的index}.seg，
+ * 每条记录的内容为消息的UTF-8编码。index为消息在队列中的序号，从0开始连续递增。
+ * <p>
+ * 消费组的offset保存在offsets/{groupId}.offset中，内容为下一条待消费消息的index。
+ */
+final class QueueFiles {
+
+    static final int MAGIC = 0x45515545; // "EQUE"
+    static final int VERSION = 1;
+
+    // 消息不能为空:
+    static final SegmentFiles SEGMENTS = new SegmentFiles("queue-", MAGIC, VERSION, 1);
+
+    static final String LOCK_FILE = "append.lock";
+    static final String OFFSETS_DIR = "offsets";
+    static final String OFFSET_SUFFIX = ".offset";
+
+    // int magic, long index:
+    static final int OFFSET_FILE_BYTES = 4 + 8;
+
+    static Path offsetPath(Path dir, String groupId) {
+        return dir.resolve(OFFSETS_DIR).resolve(groupId + OFFSET_SUFFIX);
+    }
+
+    private QueueFiles() {
+    }
+}
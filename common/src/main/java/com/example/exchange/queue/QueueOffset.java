@@ -0,0 +1,62 @@
+package com.example.exchange.queue;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 消费组在队列中的offset，保存下一条待消费消息的index。
+ * <p>
+ * 打开时对offset文件加锁，同一消费组同时只能有一个消费者，其他进程再打开时抛出IllegalStateException。
+ */
+public class QueueOffset implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+
+    public QueueOffset(Path queueDir, String groupId) throws IOException {
+        Path file = QueueFiles.offsetPath(queueDir, groupId);
+        Files.createDirectories(file.getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileLock lock = null;
+        try {
+            lock = this.channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // 同一进程内已打开:
+        } finally {
+            if (lock == null) {
+                this.channel.close();
+            }
+        }
+        if (lock == null) {
+            throw new IllegalStateException("consumer group " + groupId + " is already consuming queue " + queueDir);
+        }
+        this.lock = lock;
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, QueueFiles.OFFSET_FILE_BYTES);
+    }
+
+    /**
+     * 已提交的offset，从未提交时返回-1
+     */
+    public long get() {
+        return this.buffer.getInt(0) == QueueFiles.MAGIC ? this.buffer.getLong(4) : -1;
+    }
+
+    public void commit(long index) {
+        this.buffer.putLong(4, index);
+        this.buffer.putInt(0, QueueFiles.MAGIC);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.release();
+        this.channel.close();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.exchange.queue;
+
+import com.example.exchange.segment.SegmentFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 从指定index开始顺序读取消息队列，可与写入方(同一进程或其他进程)并发读取。非线程安全。
+ */
+public class QueueTailer implements AutoCloseable {
+
+    final Path dir;
+
+    private final CRC32 crc = new CRC32();
+
+    private ByteBuffer segment;
+    private int position;
+    // position处下一条消息的index:
+    private long index;
+
+    /**
+     * 定位到index处，index早于最早的段文件时从最早的消息开始，晚于队列末尾时从末尾开始，实际位置见getIndex()
+     */
+    public QueueTailer(Path dir, long index) throws IOException {
+        this.dir = dir;
+        this.index = index;
+        seek(index);
+    }
+
+    /**
+     * 当前队列末尾，即下一条写入消息的index
+     */
+    public static long endIndex(Path dir) throws IOException {
+        try (QueueTailer tailer = new QueueTailer(dir, Long.MAX_VALUE)) {
+            return tailer.getIndex();
+        }
+    }
+
+    /**
+     * 下一条读取消息的index
+     */
+    public long getIndex() {
+        return this.index;
+    }
+
+    /**
+     * 读取最多max条消息追加到messages，返回读取的消息数，没有新消息时返回0
+     */
+    public int poll(List<String> messages, int max) throws IOException {
+        if (this.segment == null && !seek(this.index)) {
+            return 0;
+        }
+        int n = 0;
+        while (n < max) {
+            int size = QueueFiles.SEGMENTS.checkRecord(this.segment, this.position, this.crc);
+            if (size == SegmentFiles.END_OF_SEGMENT) {
+                if (!open(QueueFiles.SEGMENTS.segmentPath(this.dir, this.index))) {
+                    break;
+                }
+                continue;
+            }
+            if (size == 0) {
+                break;
+            }
+            int length = size - SegmentFiles.RECORD_OVERHEAD;
+            byte[] data = new byte[length];
+            this.segment.get(this.position + 4, data);
+            messages.add(new String(data, StandardCharsets.UTF_8));
+            this.position += size;
+            this.index++;
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public void close() {
+        this.segment = null;
+    }
+
+    private boolean seek(long index) throws IOException {
+        List<Path> files = QueueFiles.SEGMENTS.listSegments(this.dir);
+        if (files.isEmpty()) {
+            // 队列尚未写入，末尾为0:
+            this.index = 0;
+            return false;
+        }
+        Path file = files.get(0);
+        for (Path f : files) {
+            if (QueueFiles.SEGMENTS.firstOf(f) <= index) {
+                file = f;
+            } else {
+                break;
+            }
+        }
+        if (!open(file)) {
+            return false;
+        }
+        for (;;) {
+            if (this.index >= index) {
+                break;
+            }
+            int size = QueueFiles.SEGMENTS.checkRecord(this.segment, this.position, this.crc);
+            if (size == SegmentFiles.END_OF_SEGMENT) {
+                if (!open(QueueFiles.SEGMENTS.segmentPath(this.dir, this.index))) {
+                    break;
+                }
+                continue;
+            }
+            if (size == 0) {
+                break;
+            }
+            this.position += size;
+            this.index++;
+        }
+        return true;
+    }
+
+    private boolean open(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        ByteBuffer buffer = QueueFiles.SEGMENTS.open(file, FileChannel.MapMode.READ_ONLY);
+        if (buffer == null) {
+            return false;
+        }
+        this.segment = buffer;
+        this.position = SegmentFiles.HEADER_BYTES;
+        this.index = SegmentFiles.firstOf(buffer);
+        return true;
+    }
+}
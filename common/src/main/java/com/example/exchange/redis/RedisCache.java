@@ -15,6 +15,8 @@ public interface RedisCache {
 
         String RECENT_TICKS = "_ticks_";
 
+        String TICKER = "_ticker_";
+
         String DAY_BARS = "_day_bars_";
 
         String HOUR_BARS = "_hour_bars_";
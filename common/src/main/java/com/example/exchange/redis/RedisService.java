@@ -2,11 +2,15 @@ package com.example.exchange.redis;
 
 import com.example.exchange.support.LoggerSupport;
 import com.example.exchange.util.ClassPathUtil;
+import io.lettuce.core.LettuceFutures;
 import io.lettuce.core.Range;
 import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisFuture;
 import io.lettuce.core.RedisURI;
 import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
 import io.lettuce.core.api.sync.RedisCommands;
 import io.lettuce.core.pubsub.RedisPubSubAdapter;
 import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
@@ -20,12 +24,16 @@ import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.List;
 import java.util.function.Consumer;
 
 @Component
 @Slf4j
 public class RedisService extends LoggerSupport {
+    // 批量命令等待结果的超时:
+    static final Duration BATCH_TIMEOUT = Duration.ofSeconds(5);
+
     final RedisClient redisClient;
 
     final GenericObjectPool<StatefulRedisConnection<String, String>> redisConnectionPool;
@@ -98,6 +106,12 @@ public class RedisService extends LoggerSupport {
         });
     }
 
+    public Long executeScriptReturnLong(String sha, String[] keys, String[] values) {
+        return executeSync(commands -> {
+            return commands.evalsha(sha, ScriptOutputType.INTEGER, keys, values);
+        });
+    }
+
     public String executeScriptReturnString(String sha, String[] keys, String[] values) {
         return executeSync(commands -> {
             return commands.evalsha(sha, ScriptOutputType.VALUE, keys, values);
@@ -116,6 +130,38 @@ public class RedisService extends LoggerSupport {
         });
     }
 
+    /**
+     * 批量发布：关闭自动flush，通过异步命令写入全部PUBLISH后一次flush，再统一等待结果，
+     * N条消息只需一次网络往返。
+     *
+     * @param topic    频道
+     * @param messages 消息列表
+     */
+    public void publishBatch(String topic, List<String> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try (StatefulRedisConnection<String, String> connection = redisConnectionPool.borrowObject()) {
+            connection.setAutoFlushCommands(false);
+            try {
+                RedisAsyncCommands<String, String> commands = connection.async();
+                RedisFuture<?>[] futures = new RedisFuture<?>[messages.size()];
+                for (int i = 0; i < futures.length; i++) {
+                    futures[i] = commands.publish(topic, messages.get(i));
+                }
+                connection.flushCommands();
+                if (!LettuceFutures.awaitAll(BATCH_TIMEOUT, futures)) {
+                    throw new RedisCommandTimeoutException("publish " + futures.length + " messages timeout.");
+                }
+            } finally {
+                connection.setAutoFlushCommands(true);
+            }
+        } catch (Exception e) {
+            logger.warn("publishBatch redis failed.", e);
+            throw new RuntimeException(e);
+        }
+    }
+
     public List<String> lrange(String key, long start, long end) {
         return executeSync((commands) -> {
             return commands.lrange(key, start, end);
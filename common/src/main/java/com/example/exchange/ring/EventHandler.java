@@ -0,0 +1,14 @@
+package com.example.exchange.ring;
+
+@FunctionalInterface
+public interface EventHandler<E> {
+
+    /**
+     * 处理一个事件
+     *
+     * @param event      RingBuffer中的事件，处理返回后可能被生产者复用，不可保留引用
+     * @param sequence   事件序号
+     * @param endOfBatch 是否为本批可用事件的最后一个，可在此时批量输出
+     */
+    void onEvent(E event, long sequence, boolean endOfBatch) throws Exception;
+}
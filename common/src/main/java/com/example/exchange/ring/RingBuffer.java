@@ -0,0 +1,276 @@
+package com.example.exchange.ring;
+
+import com.example.exchange.support.LoggerSupport;
+import org.slf4j.Logger;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 单生产者、多消费者的环形缓冲区。
+ * <p>
+ * 所有事件对象在创建时预分配并循环复用，入队不产生垃圾。每个消费者在自己的线程中按顺序处理全部事件，
+ * 并维护各自的消费序号；生产者只在最慢的消费者落后一整圈时等待。
+ * <p>
+ * 生产者(单线程)用法：
+ * <pre>
+ * E event = ring.claim();
+ * // 填充event...
+ * ring.publish();
+ * </pre>
+ * 消费者需在生产者开始写入前通过addConsumer()注册，并在独立线程中运行。
+ */
+public class RingBuffer<E> extends LoggerSupport {
+
+    final Object[] entries;
+    final int mask;
+    final WaitStrategy waitStrategy;
+
+    // 已发布的最大序号:
+    final Sequence cursor = new Sequence();
+
+    private volatile Consumer<?>[] consumers = new Consumer<?>[0];
+
+    // BLOCKING策略使用:
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+
+    // 仅生产者线程访问:
+    private long nextSequence = 0;
+    private long cachedMinSequence = -1;
+
+    // 生产者因缓冲区满而等待的次数:
+    private volatile long producerStalls = 0;
+
+    /**
+     * @param bufferSize   容量，必须是2的幂
+     * @param factory      预分配事件对象
+     * @param waitStrategy 等待策略
+     */
+    public RingBuffer(int bufferSize, Supplier<E> factory, WaitStrategy waitStrategy) {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("bufferSize must be a power of 2: " + bufferSize);
+        }
+        this.entries = new Object[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            this.entries[i] = factory.get();
+        }
+        this.mask = bufferSize - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public synchronized Consumer<E> addConsumer(String name, EventHandler<? super E> handler) {
+        Consumer<E> consumer = new Consumer<>(this, name, handler);
+        consumer.sequence.value = this.cursor.value;
+        Consumer<?>[] array = Arrays.copyOf(this.consumers, this.consumers.length + 1);
+        array[array.length - 1] = consumer;
+        this.consumers = array;
+        return consumer;
+    }
+
+    /**
+     * 获取下一个可写入的事件对象，缓冲区满时按等待策略等待最慢的消费者。
+     * 写入后必须调用publish()。
+     */
+    @SuppressWarnings("unchecked")
+    public E claim() {
+        long wrapPoint = this.nextSequence - this.entries.length;
+        if (wrapPoint > this.cachedMinSequence) {
+            long min = getMinimumSequence();
+            if (wrapPoint > min) {
+                this.producerStalls++;
+                for (int n = 0; wrapPoint > (min = getMinimumSequence()); n++) {
+                    this.waitStrategy.idle(n);
+                }
+            }
+            this.cachedMinSequence = min;
+        }
+        return (E) this.entries[(int) this.nextSequence & this.mask];
+    }
+
+    /**
+     * 发布claim()获取的事件
+     */
+    public void publish() {
+        this.cursor.value = this.nextSequence++;
+        if (this.waitStrategy == WaitStrategy.BLOCKING) {
+            this.lock.lock();
+            try {
+                this.published.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    public int getBufferSize() {
+        return this.entries.length;
+    }
+
+    /**
+     * 已发布但尚未被所有消费者处理的事件数
+     */
+    public long getDepth() {
+        return this.cursor.value - getMinimumSequence();
+    }
+
+    /**
+     * 已发布的最大序号，尚未发布任何事件时为-1
+     */
+    public long getCursor() {
+        return this.cursor.value;
+    }
+
+    public long getProducerStalls() {
+        return this.producerStalls;
+    }
+
+    public List<Consumer<?>> getConsumers() {
+        return List.of(this.consumers);
+    }
+
+    /**
+     * 队列深度、各消费者延迟等指标
+     */
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("bufferSize", (long) getBufferSize());
+        metrics.put("published", this.cursor.value + 1);
+        metrics.put("depth", getDepth());
+        metrics.put("producerStalls", this.producerStalls);
+        for (Consumer<?> consumer : this.consumers) {
+            metrics.put(consumer.name + ".lag", consumer.getLag());
+            metrics.put(consumer.name + ".errors", consumer.errors);
+        }
+        return metrics;
+    }
+
+    /**
+     * 所有消费者都已处理完的最大序号
+     */
+    public long getMinimumSequence() {
+        long min = this.cursor.value;
+        for (Consumer<?> consumer : this.consumers) {
+            min = Math.min(min, consumer.sequence.value);
+        }
+        return min;
+    }
+
+    @SuppressWarnings("unchecked")
+    E get(long sequence) {
+        return (E) this.entries[(int) sequence & this.mask];
+    }
+
+    /**
+     * 等待直到next可用，返回当前已发布的最大序号；线程被中断时返回-1
+     */
+    long waitFor(long next) {
+        long available;
+        for (int n = 0; (available = this.cursor.value) < next; n++) {
+            if (Thread.currentThread().isInterrupted()) {
+                return -1;
+            }
+            if (this.waitStrategy == WaitStrategy.BLOCKING) {
+                this.lock.lock();
+                try {
+                    if (this.cursor.value < next) {
+                        this.published.await();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                } finally {
+                    this.lock.unlock();
+                }
+            } else {
+                this.waitStrategy.idle(n);
+            }
+        }
+        return available;
+    }
+
+    /**
+     * 消费者，在独立线程中运行，按批处理所有可用事件
+     */
+    public static final class Consumer<E> implements Runnable {
+
+        final RingBuffer<E> ring;
+        final String name;
+        final EventHandler<? super E> handler;
+
+        // 已处理的最大序号:
+        final Sequence sequence = new Sequence();
+
+        // 处理失败的事件数:
+        volatile long errors = 0;
+
+        Consumer(RingBuffer<E> ring, String name, EventHandler<? super E> handler) {
+            this.ring = ring;
+            this.name = name;
+            this.handler = handler;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * 处理失败(handler抛出异常)的事件数，失败的事件同样计入已处理序号
+         */
+        public long getErrors() {
+            return this.errors;
+        }
+
+        /**
+         * 已处理的最大序号，尚未处理任何事件时为-1
+         */
+        public long getSequence() {
+            return this.sequence.value;
+        }
+
+        /**
+         * 已发布但该消费者尚未处理的事件数
+         */
+        public long getLag() {
+            return this.ring.cursor.value - this.sequence.value;
+        }
+
+        @Override
+        public void run() {
+            Logger logger = this.ring.logger;
+            logger.info("start ring buffer consumer {}...", this.name);
+            long next = this.sequence.value + 1;
+            for (;;) {
+                long available = this.ring.waitFor(next);
+                if (available < 0) {
+                    logger.warn("{} was interrupted.", Thread.currentThread().getName());
+                    break;
+                }
+                for (long seq = next; seq <= available; seq++) {
+                    try {
+                        this.handler.onEvent(this.ring.get(seq), seq, seq == available);
+                    } catch (Exception e) {
+                        this.errors++;
+                        logger.error("consumer " + this.name + " failed to process event " + seq, e);
+                    }
+                }
+                this.sequence.value = available;
+                next = available + 1;
+            }
+        }
+    }
+
+    /**
+     * 前后填充的序号，避免生产者和各消费者的序号落在同一缓存行
+     */
+    static final class Sequence {
+        long p1, p2, p3, p4, p5, p6, p7;
+        volatile long value = -1;
+        long p9, p10, p11, p12, p13, p14, p15;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.exchange.ring;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RingBuffer消费者等待新事件(以及生产者等待空位)的策略，延迟从低到高、CPU占用从高到低：
+ * BUSY_SPIN占满一个CPU核(需为每个线程保留独立的CPU核)；YIELD自旋后让出CPU；PARK自旋后短暂休眠；BLOCKING在锁上等待生产者唤醒。
+ */
+public enum WaitStrategy {
+
+    BUSY_SPIN,
+
+    YIELD,
+
+    PARK,
+
+    BLOCKING;
+
+    static final int SPIN_TRIES = 100;
+
+    static final long PARK_NANOS = 50_000;
+
+    /**
+     * 第n次(从0开始)未等到条件时调用，BLOCKING由RingBuffer在锁上等待，此处仅作为生产者等待时的退避
+     */
+    public void idle(int n) {
+        if (this == BUSY_SPIN || n < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (this == YIELD) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
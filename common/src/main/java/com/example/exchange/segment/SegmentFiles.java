@@ -0,0 +1,164 @@
+package com.example.exchange.segment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 事件日志和消息队列共用的段文件格式。
+ * <p>
+ * 数据由多个固定大小的段文件组成，文件名为{prefix}{该段第一条记录的序号}.seg，通过内存映射读写。段文件格式(大端序):
+ * <pre>
+ * int magic, int version, long first
+ * [int length, byte[length], int crc32] ...
+ * </pre>
+ * crc32覆盖length及其后的length个字节，读取方遇到未写完(校验失败)的记录即视为当前末尾。
+ * length为0表示尚未写入，为-1表示本段结束、后续记录在下一个段文件中。
+ */
+public final class SegmentFiles {
+
+    public static final int HEADER_BYTES = 4 + 4 + 8;
+
+    // length和crc32:
+    public static final int RECORD_OVERHEAD = 4 + 4;
+
+    public static final int END_OF_SEGMENT = -1;
+
+    public static final String FILE_SUFFIX = ".seg";
+    public static final String TMP_SUFFIX = ".tmp";
+
+    final String prefix;
+    final int magic;
+    final int version;
+    // 记录的最小length:
+    final int minRecordLength;
+
+    public SegmentFiles(String prefix, int magic, int version, int minRecordLength) {
+        this.prefix = prefix;
+        this.magic = magic;
+        this.version = version;
+        this.minRecordLength = minRecordLength;
+    }
+
+    public Path segmentPath(Path dir, long first) {
+        return dir.resolve(String.format("%s%020d%s", this.prefix, first, FILE_SUFFIX));
+    }
+
+    public long firstOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(this.prefix.length(), name.length() - FILE_SUFFIX.length()));
+    }
+
+    /**
+     * 从文件头读取该段第一条记录的序号
+     */
+    public static long firstOf(ByteBuffer segment) {
+        return segment.getLong(8);
+    }
+
+    /**
+     * 按第一条记录的序号从小到大排列的段文件
+     */
+    public List<Path> listSegments(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(this.prefix) && name.endsWith(FILE_SUFFIX);
+            }).sorted().forEach(files::add);
+        }
+        return files;
+    }
+
+    public static MappedByteBuffer map(Path file, FileChannel.MapMode mode, long size) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[] { StandardOpenOption.READ }
+                : new StandardOpenOption[] { StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE };
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            return channel.map(mode, 0, size < 0 ? channel.size() : size);
+        }
+    }
+
+    public boolean isValidHeader(ByteBuffer buffer) {
+        return buffer.limit() >= HEADER_BYTES && buffer.getInt(0) == this.magic && buffer.getInt(4) == this.version;
+    }
+
+    /**
+     * 映射已有的段文件，文件头无效时返回null
+     */
+    public MappedByteBuffer open(Path file, FileChannel.MapMode mode) throws IOException {
+        MappedByteBuffer buffer = map(file, mode, -1);
+        return isValidHeader(buffer) ? buffer : null;
+    }
+
+    /**
+     * 创建first对应的段文件并映射，已存在时覆盖。
+     * <p>
+     * 先在临时文件中写好文件头并刷到磁盘，再原子改名，崩溃时不会留下文件头不完整的段文件，读取方也不会看到不完整的文件头。
+     */
+    public MappedByteBuffer create(Path dir, long first, int segmentSize) throws IOException {
+        Path file = segmentPath(dir, first);
+        Path tmp = file.resolveSibling(file.getFileName() + TMP_SUFFIX);
+        MappedByteBuffer header = map(tmp, FileChannel.MapMode.READ_WRITE, segmentSize);
+        header.putInt(0, this.magic);
+        header.putInt(4, this.version);
+        header.putLong(8, first);
+        header.force(0, HEADER_BYTES);
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return map(file, FileChannel.MapMode.READ_WRITE, -1);
+    }
+
+    /**
+     * 检查position处是否为完整且校验通过的记录，返回记录长度(含length和crc32)，
+     * 返回0表示无记录，返回END_OF_SEGMENT表示本段结束。
+     */
+    public int checkRecord(ByteBuffer buffer, int position, CRC32 crc) {
+        if (position + 4 > buffer.limit()) {
+            return 0;
+        }
+        int length = buffer.getInt(position);
+        if (length == END_OF_SEGMENT) {
+            return END_OF_SEGMENT;
+        }
+        if (length < this.minRecordLength || position + 4 + length + 4 > buffer.limit()) {
+            return 0;
+        }
+        crc.reset();
+        crc.update(buffer.slice(position, 4 + length));
+        if ((int) crc.getValue() != buffer.getInt(position + 4 + length)) {
+            return 0;
+        }
+        return RECORD_OVERHEAD + length;
+    }
+
+    /**
+     * 清除position之后的内容(崩溃的写入方留下的未写完的记录)并刷到磁盘，返回是否清除了非0字节
+     */
+    public static boolean clearTail(MappedByteBuffer buffer, int position) {
+        int lastDirty = -1;
+        for (int n = position; n < buffer.limit(); n++) {
+            if (buffer.get(n) != 0) {
+                buffer.put(n, (byte) 0);
+                lastDirty = n;
+            }
+        }
+        if (lastDirty < position) {
+            return false;
+        }
+        buffer.force(position, lastDirty + 1 - position);
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.exchange.util;
+
+import com.example.exchange.enums.AssetEnum;
+import com.example.exchange.model.support.EntitySupport;
+
+import java.math.BigDecimal;
+
+/**
+ * 定点数工具：交易引擎内部用放大后的long表示价格、数量和资产余额，
+ * 只在事件解码、实体持久化和JSON输出时与BigDecimal互相转换。
+ */
+public class FixedPointUtil {
+
+    /**
+     * 价格、数量的小数位数。
+     */
+    public static final int SCALE = AssetEnum.SCALE;
+
+    /**
+     * 金额(价格 x 数量)及资产余额的小数位数。
+     */
+    public static final int AMOUNT_SCALE = SCALE * 2;
+
+    /**
+     * 数量放大到金额精度的倍数。
+     */
+    static final long QUANTITY_TO_AMOUNT = pow10(AMOUNT_SCALE - SCALE);
+
+    static {
+        // long最多18位有效数字，必须能无损写入DECIMAL(PRECISION, SCALE):
+        if (AMOUNT_SCALE > EntitySupport.SCALE || EntitySupport.PRECISION - EntitySupport.SCALE < 18) {
+            throw new ExceptionInInitializerError("Fixed-point scale does not fit database DECIMAL("
+                    + EntitySupport.PRECISION + ", " + EntitySupport.SCALE + ").");
+        }
+    }
+
+    /**
+     * 价格或数量转为定点数。精度超出SCALE或溢出时抛出ArithmeticException。
+     */
+    public static long toFixed(BigDecimal value) {
+        return value.movePointRight(SCALE).longValueExact();
+    }
+
+    /**
+     * 金额转为定点数。精度超出AMOUNT_SCALE或溢出时抛出ArithmeticException。
+     */
+    public static long toFixedAmount(BigDecimal value) {
+        return value.movePointRight(AMOUNT_SCALE).longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long value) {
+        return BigDecimal.valueOf(value, SCALE);
+    }
+
+    public static BigDecimal amountToBigDecimal(long value) {
+        return BigDecimal.valueOf(value, AMOUNT_SCALE);
+    }
+
+    /**
+     * 金额 = 价格 x 数量，结果精度为AMOUNT_SCALE。溢出时抛出ArithmeticException。
+     */
+    public static long amount(long price, long quantity) {
+        return Math.multiplyExact(price, quantity);
+    }
+
+    /**
+     * 数量转为金额精度，用于以数量计价的资产(BTC)。溢出时抛出ArithmeticException。
+     */
+    public static long quantityToAmount(long quantity) {
+        return Math.multiplyExact(quantity, QUANTITY_TO_AMOUNT);
+    }
+
+    private static long pow10(int n) {
+        long r = 1;
+        for (int i = 0; i < n; i++) {
+            r *= 10;
+        }
+        return r;
+    }
+}
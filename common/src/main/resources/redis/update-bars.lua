@@ -0,0 +1,57 @@
+--[[
+  根据sequenceId批量写入已在内存中合并好的Bar数据
+
+  参数：
+  KEYS:
+    1. sec-bar的key
+    2. min-bar的key
+    3. hour-bar的key
+    4. day-bar的key
+  ARGV:
+    1. sequenceId
+    2. sec-bar的数量
+    3. min-bar的数量
+    4. hour-bar的数量
+    5. day-bar的数量
+    6... 依次为各类型的bar: timestamp, bar数据, timestamp, bar数据, ...
+         每种类型按timestamp递增，最后一个为当前未完成的bar
+
+  Redis存储的Bar数据结构：[timestamp, open, high, low, close, quantity]
+  ZScoredSet:
+    key: '_day_bars_'
+    key: '_hour_bars_'
+    key: '_min_bars_'
+    key: '_sec_bars_'
+  Key: _BarSeq_ 存储上次更新的SequenceId
+--]]
+
+local seqId = ARGV[1]
+local KEY_BAR_SEQ = '_BarSeq_'
+local topic = 'notification'
+
+-- 检查sequence:
+local seq = redis.call('GET', KEY_BAR_SEQ)
+if seq and tonumber(seqId) <= tonumber(seq) then
+    redis.log(redis.LOG_WARNING, 'sequence ignored: exist seq => ' .. seq .. ' >= ' .. seqId .. ' <= new seq')
+    return false
+end
+
+local names = { 'SEC', 'MIN', 'HOUR', 'DAY' }
+local pos = 6
+local i, j, n, score, bar
+for i = 1, 4 do
+    n = tonumber(ARGV[i + 1])
+    for j = 1, n do
+        score = ARGV[pos]
+        bar = ARGV[pos + 1]
+        -- 替换相同timestamp的bar:
+        redis.call('ZREMRANGEBYSCORE', KEYS[i], score, score)
+        redis.call('ZADD', KEYS[i], score, bar)
+        if j == n then
+            redis.call('PUBLISH', topic, '{"type":"bar","resolution":"' .. names[i] .. '","sequenceId":' .. seqId .. ',"data":' .. bar .. '}')
+        end
+        pos = pos + 2
+    end
+end
+redis.call('SET', KEY_BAR_SEQ, seqId)
+return true
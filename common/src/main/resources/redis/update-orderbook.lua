@@ -1,5 +1,5 @@
 --[[
-刷新OrderBook快照:
+刷新OrderBook快照并推送增量:
 
 KEYS:
   1: key: OrderBook快照的key
@@ -7,6 +7,8 @@ KEYS:
 ARGV:
   1: seqId: 本次的SequenceId
   2: data: OrderBook快照的JSON数据
+  3: delta: 自上次更新以来的增量JSON数据
+  4: publishSnapshot: 为1时同时推送完整快照
 
 ]]--
 
@@ -14,6 +16,8 @@ local KEY_LAST_SEQ = '_OBLastSeqId_'
 local key = KEYS[1]
 local seqId = ARGV[1]
 local data = ARGV[2]
+local delta = ARGV[3]
+local publishSnapshot = ARGV[4]
 
 -- 获取上次更新的sequenceId:
 local lastSeqId = redis.call('GET', KEY_LAST_SEQ)
@@ -22,10 +26,13 @@ local lastSeqId = redis.call('GET', KEY_LAST_SEQ)
 if not lastSeqId or tonumber(seqId) > tonumber(lastSeqId) then
     -- 保存新的sequenceId:
     redis.call('SET', KEY_LAST_SEQ, seqId)
-    -- 保存OrderBook的JSON:
+    -- 保存OrderBook的JSON，客户端发现增量不连续时从这里重新加载:
     redis.call('SET', key, data)
-    -- 发送通知:
-    redis.call('PUBLISH', 'notification', '{"type":"orderbook","data":' .. data .. '}')
+    -- 先推送快照，客户端据此丢弃已包含在快照中的增量:
+    if publishSnapshot == '1' then
+        redis.call('PUBLISH', 'notification', '{"type":"orderbook","data":' .. data .. '}')
+    end
+    redis.call('PUBLISH', 'notification', '{"type":"orderbook_delta","data":' .. delta .. '}')
     return true
 end
 
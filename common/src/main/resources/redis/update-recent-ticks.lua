@@ -1,41 +1,65 @@
 --[[
 
-根据sequenceId判断是否需要发送tick通知
+根据每条Tick消息的sequenceId判断是否需要发送tick通知，一次处理一批消息
 
 KEYS:
   1: 最新Ticks的Key
 
 ARGV:
-  1: sequenceId
-  2: JSON字符串表示的tick数组："[{...},{...},...]"
-  3: JSON字符串表示的tick数组："["{...}","{...}",...]"
+  1: 消息数量n
+  2 ~ n+1: 各消息的sequenceId(递增)
+  n+2 ~ 2n+1: 各消息JSON字符串表示的tick数组："[{...},{...},...]"
+  2n+2 ~ 3n+1: 各消息JSON字符串表示的tick数组："["{...}","{...}",...]"
+
+返回: sequenceId大于上次更新的sequenceId、已处理的消息数量(总是这批消息的最后若干条)
 --]]
 
 local KEY_LAST_SEQ = '_TickSeq_' -- 上次更新的SequenceID
 local LIST_RECENT_TICKS = KEYS[1] -- 最新Ticks的Key
 
-local seqId = ARGV[1] -- 输入的SequenceID
-local jsonData = ARGV[2] -- 输入的JSON字符串表示的tick数组："[{...},{...},...]"
-local strData = ARGV[3] -- 输入的JSON字符串表示的tick数组："["{...}","{...}",...]"
+local n = tonumber(ARGV[1])
 
 -- 获取上次更新的sequenceId:
 local lastSeqId = redis.call('GET', KEY_LAST_SEQ)
-local ticks, len;
-
-if not lastSeqId or tonumber(seqId) > tonumber(lastSeqId) then
-    -- 广播:
-    redis.call('PUBLISH', 'notification', '{"type":"tick","sequenceId":' .. seqId .. ',"data":' .. jsonData .. '}')
-    -- 保存当前sequence id:
-    redis.call('SET', KEY_LAST_SEQ, seqId)
-    -- 更新最新tick列表:
-    ticks = cjson.decode(strData)
-    len = redis.call('RPUSH', LIST_RECENT_TICKS, unpack(ticks))
-    if len > 100 then
-        -- 裁剪LIST以保存最新的100个Tick:
-        redis.call('LTRIM', LIST_RECENT_TICKS, len-100, len-1)
+local first = 1
+if lastSeqId then
+    first = n + 1
+    for i = 1, n do
+        if tonumber(ARGV[1 + i]) > tonumber(lastSeqId) then
+            first = i
+            break
+        end
     end
-    return true
 end
 
--- 无更新返回false
-return false
+if first > n then
+    -- 无更新:
+    return 0
+end
+
+local seqId = ARGV[1 + n] -- 最后一条消息的SequenceID
+local parts = {}
+local i, data, ticks, len
+for i = first, n do
+    -- 去掉"["和"]"后合并:
+    data = string.sub(ARGV[1 + n + i], 2, -2)
+    if #data > 0 then
+        parts[#parts + 1] = data
+    end
+end
+-- 广播:
+redis.call('PUBLISH', 'notification', '{"type":"tick","sequenceId":' .. seqId .. ',"data":[' .. table.concat(parts, ',') .. ']}')
+-- 保存当前sequence id:
+redis.call('SET', KEY_LAST_SEQ, seqId)
+-- 更新最新tick列表:
+for i = first, n do
+    ticks = cjson.decode(ARGV[1 + 2 * n + i])
+    if #ticks > 0 then
+        len = redis.call('RPUSH', LIST_RECENT_TICKS, unpack(ticks))
+    end
+end
+if len and len > 100 then
+    -- 裁剪LIST以保存最新的100个Tick:
+    redis.call('LTRIM', LIST_RECENT_TICKS, len-100, len-1)
+end
+return n - first + 1
@@ -0,0 +1,32 @@
+--[[
+刷新24小时行情统计:
+
+KEYS:
+  1: key: 行情统计的key
+
+ARGV:
+  1: seqId: 本次的SequenceId
+  2: data: 行情统计的JSON数据
+
+]]--
+
+local KEY_LAST_SEQ = '_TickerSeq_'
+local key = KEYS[1]
+local seqId = ARGV[1]
+local data = ARGV[2]
+
+-- 获取上次更新的sequenceId:
+local lastSeqId = redis.call('GET', KEY_LAST_SEQ)
+
+-- 如果sequenceId不旧(窗口定时前移时以相同的sequenceId重新发布):
+if not lastSeqId or tonumber(seqId) >= tonumber(lastSeqId) then
+    -- 保存新的sequenceId:
+    redis.call('SET', KEY_LAST_SEQ, seqId)
+    -- 保存行情统计的JSON:
+    redis.call('SET', key, data)
+    -- 发送通知:
+    redis.call('PUBLISH', 'notification', '{"type":"ticker","sequenceId":' .. seqId .. ',"data":' .. data .. '}')
+    return true
+end
+
+return false
@@ -0,0 +1,208 @@
+package com.example.exchange.db;
+
+import com.example.exchange.enums.Direction;
+import com.example.exchange.enums.OrderStatus;
+import com.example.exchange.model.trade.EventEntity;
+import com.example.exchange.model.trade.OrderEntity;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 比较Mapper读取ResultSet的吞吐量(rows/sec)：
+ * reflection为原实现(每行按列名查找属性、Field反射写入)，mapper为当前实现(每次查询按列序号绑定、FieldAccessor写入)。
+ * 另外单独比较逐个属性读取bean的吞吐量，排除内存中ResultSet的开销。
+ * <p>
+ * 使用内存中的ResultSet，不依赖数据库，直接运行main()即可：
+ * <pre>
+ * java -cp ... com.example.exchange.db.MapperBenchmark [rows] [rounds]
+ * </pre>
+ */
+public class MapperBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        benchmark(OrderEntity.class, orderRows(rows), rounds);
+        benchmark(EventEntity.class, eventRows(rows), rounds);
+    }
+
+    static <T> void benchmark(Class<T> clazz, Table table, int rounds) throws Exception {
+        Mapper<T> mapper = new Mapper<>(clazz);
+        // 预热:
+        for (int i = 0; i < rounds; i++) {
+            reflection(mapper, table.resultSet());
+            mapper.resultSetExtractor.extractData(table.resultSet());
+        }
+        long reflectionNanos = 0;
+        long mapperNanos = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            reflection(mapper, table.resultSet());
+            reflectionNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            mapper.resultSetExtractor.extractData(table.resultSet());
+            mapperNanos += System.nanoTime() - start;
+        }
+        long total = (long) table.rows.size() * rounds;
+        System.out.printf("%-12s reflection: %,12d rows/sec%n", clazz.getSimpleName(), total * 1_000_000_000L / reflectionNanos);
+        System.out.printf("%-12s mapper:     %,12d rows/sec%n", clazz.getSimpleName(), total * 1_000_000_000L / mapperNanos);
+        benchmarkGet(mapper, mapper.resultSetExtractor.extractData(table.resultSet()), rounds);
+    }
+
+    /**
+     * 读取每个bean的全部属性，比较Field.get()和AccessibleProperty.get()
+     */
+    static <T> void benchmarkGet(Mapper<T> mapper, List<T> beans, int rounds) throws Exception {
+        Field[] fields = new Field[mapper.allProperties.size()];
+        AccessibleProperty[] props = mapper.allProperties.toArray(new AccessibleProperty[0]);
+        for (int i = 0; i < props.length; i++) {
+            fields[i] = mapper.entityClass.getField(props[i].propertyName);
+        }
+        long reflectionNanos = 0;
+        long accessorNanos = 0;
+        int hash = 0;
+        for (int round = 0; round < rounds * 2; round++) {
+            long start = System.nanoTime();
+            for (T bean : beans) {
+                for (Field f : fields) {
+                    hash += f.get(bean) == null ? 0 : 1;
+                }
+            }
+            long reflection = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (T bean : beans) {
+                for (AccessibleProperty p : props) {
+                    hash += p.get(bean) == null ? 0 : 1;
+                }
+            }
+            long accessor = System.nanoTime() - start;
+            // 前一半为预热:
+            if (round >= rounds) {
+                reflectionNanos += reflection;
+                accessorNanos += accessor;
+            }
+        }
+        long total = (long) beans.size() * rounds;
+        System.out.printf("%-12s get by reflection: %,12d rows/sec%n", mapper.entityClass.getSimpleName(), total * 1_000_000_000L / reflectionNanos);
+        System.out.printf("%-12s get by accessor:   %,12d rows/sec%s%n", mapper.entityClass.getSimpleName(), total * 1_000_000_000L / accessorNanos, hash == 0 ? " " : "");
+    }
+
+    /**
+     * 原实现：每行按列名查找属性，通过getObject()读取并用Field.set()写入
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static <T> List<T> reflection(Mapper<T> mapper, ResultSet rs) throws Exception {
+        Map<String, Field> fields = new HashMap<>();
+        for (AccessibleProperty p : mapper.allProperties) {
+            fields.put(p.propertyName, mapper.entityClass.getField(p.propertyName));
+        }
+        List<T> results = new ArrayList<>();
+        ResultSetMetaData m = rs.getMetaData();
+        int cols = m.getColumnCount();
+        String[] names = new String[cols];
+        for (int i = 0; i < cols; i++) {
+            names[i] = m.getColumnLabel(i + 1);
+        }
+        while (rs.next()) {
+            T bean = mapper.constructor.newInstance();
+            for (int i = 0; i < cols; i++) {
+                AccessibleProperty p = mapper.allPropertiesMap.get(names[i]);
+                if (p != null) {
+                    Object value = rs.getObject(i + 1);
+                    if (p.propertyType.isEnum()) {
+                        value = Enum.valueOf((Class<? extends Enum>) p.propertyType, (String) value);
+                    }
+                    fields.get(names[i]).set(bean, value);
+                }
+            }
+            results.add(bean);
+        }
+        return results;
+    }
+
+    static Table orderRows(int n) {
+        Table table = new Table("id", "sequenceId", "direction", "userId", "status", "price", "createdAt", "updatedAt",
+                "quantity", "unfilledQuantity");
+        for (int i = 0; i < n; i++) {
+            long ts = 1_700_000_000_000L + i;
+            table.rows.add(new Object[] { (long) i, (long) i, Direction.values()[i % 2].name(), (long) (i % 1000),
+                    OrderStatus.PENDING.name(), new BigDecimal("12345.67"), ts, ts, new BigDecimal("1.5"),
+                    new BigDecimal("1.5") });
+        }
+        return table;
+    }
+
+    static Table eventRows(int n) {
+        Table table = new Table("sequenceId", "previousId", "data", "createdAt");
+        for (int i = 0; i < n; i++) {
+            table.rows.add(new Object[] { (long) i + 1, (long) i,
+                    "{\"type\":\"OrderRequestMessage\",\"data\":{\"sequenceId\":" + (i + 1) + "}}",
+                    1_700_000_000_000L + i });
+        }
+        return table;
+    }
+
+    /**
+     * 内存中的表，每次resultSet()返回新的只读游标
+     */
+    static class Table {
+
+        final String[] columns;
+        final List<Object[]> rows = new ArrayList<>();
+
+        Table(String... columns) {
+            this.columns = columns;
+        }
+
+        ResultSet resultSet() {
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < columns.length; i++) {
+                index.put(columns[i], i + 1);
+            }
+            ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { ResultSetMetaData.class }, (proxy, method, args) -> switch (method.getName()) {
+                        case "getColumnCount" -> columns.length;
+                        case "getColumnLabel", "getColumnName" -> columns[(Integer) args[0] - 1];
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+            int[] cursor = { -1 };
+            Object[] lastValue = { null };
+            return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSet.class },
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        switch (name) {
+                            case "next":
+                                return ++cursor[0] < rows.size();
+                            case "getMetaData":
+                                return meta;
+                            case "wasNull":
+                                return lastValue[0] == null;
+                            default:
+                        }
+                        if (!name.startsWith("get") || args == null || args.length != 1) {
+                            throw new UnsupportedOperationException(name);
+                        }
+                        int column = args[0] instanceof Integer c ? c : index.get((String) args[0]);
+                        Object value = rows.get(cursor[0])[column - 1];
+                        lastValue[0] = value;
+                        return switch (name) {
+                            case "getLong" -> value == null ? 0L : ((Number) value).longValue();
+                            case "getInt" -> value == null ? 0 : ((Number) value).intValue();
+                            case "getBoolean" -> value != null && (Boolean) value;
+                            case "getString" -> value == null ? null : value.toString();
+                            case "getBigDecimal", "getObject" -> value;
+                            default -> throw new SQLException("Unsupported: " + name);
+                        };
+                    });
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.exchange.journal;
+
+import com.example.exchange.model.trade.EventEntity;
+import com.example.exchange.segment.SegmentFiles;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+
+    // 每个段文件只能容纳少量事件:
+    static final int SEGMENT_SIZE = SegmentFiles.HEADER_BYTES + 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendAndReadAcrossSegments() throws IOException {
+        List<EventEntity> expected = events(1, 100);
+        try (JournalWriter writer = new JournalWriter(this.dir, SEGMENT_SIZE)) {
+            assertEquals(0, writer.getLastSequenceId());
+            writer.append(expected);
+            assertEquals(100, writer.getLastSequenceId());
+            // 尚未flush:
+            assertEquals(0, writer.getFlushedSequenceId());
+            writer.flush();
+            assertEquals(100, writer.getFlushedSequenceId());
+            assertEquals(expected.get(99).createdAt, writer.getLastCreatedAt());
+        }
+        assertTrue(JournalFiles.SEGMENTS.listSegments(this.dir).size() > 1);
+        assertEvents(expected, readAll(0, 100));
+        // 从中间的sequenceId开始读取:
+        assertEvents(expected.subList(57, 100), readAll(57, 100));
+        // 不超过toSequenceId:
+        assertEvents(expected.subList(10, 20), readAll(10, 20));
+
+        try (JournalReader reader = new JournalReader(this.dir)) {
+            // 按页顺序读取:
+            assertEvents(expected.subList(0, 30), reader.read(0, 100, 30));
+            assertEvents(expected.subList(30, 60), reader.read(30, 100, 30));
+            // 重新定位:
+            assertEvents(expected.subList(5, 8), reader.read(5, 100, 3));
+            assertEquals(List.of(), reader.read(100, 100, 10));
+        }
+    }
+
+    @Test
+    void reopenAndAppend() throws IOException {
+        List<EventEntity> expected = events(1, 30);
+        try (JournalWriter writer = new JournalWriter(this.dir, SEGMENT_SIZE)) {
+            writer.append(expected);
+        }
+        List<EventEntity> more = events(31, 60);
+        try (JournalWriter writer = new JournalWriter(this.dir, SEGMENT_SIZE)) {
+            assertEquals(30, writer.getLastSequenceId());
+            assertEquals(30, writer.getFlushedSequenceId());
+            assertEquals(expected.get(29).createdAt, writer.getLastCreatedAt());
+            writer.append(more);
+            writer.flush();
+        }
+        expected.addAll(more);
+        assertEvents(expected, readAll(0, 60));
+    }
+
+    @Test
+    void sequenceIdMustIncrease() throws IOException {
+        try (JournalWriter writer = new JournalWriter(this.dir, SEGMENT_SIZE)) {
+            writer.append(events(1, 3));
+            assertThrows(IllegalArgumentException.class, () -> writer.append(event(3)));
+            EventEntity large = event(4);
+            large.data = "x".repeat(SEGMENT_SIZE);
+            assertThrows(IllegalArgumentException.class, () -> writer.append(large));
+            writer.append(event(4));
+            assertEquals(4, writer.getLastSequenceId());
+        }
+    }
+
+    @Test
+    void readBeforeFirstSegment() throws IOException {
+        try (JournalReader reader = new JournalReader(this.dir)) {
+            // 目录不存在:
+            assertNull(reader.read(0, 100, 10));
+        }
+        try (JournalWriter writer = new JournalWriter(this.dir, SEGMENT_SIZE)) {
+            try (JournalReader reader = new JournalReader(this.dir)) {
+                // 尚无段文件:
+                assertNull(reader.read(0, 100, 10));
+            }
+            // 日志从sequenceId=101开始，之前的事件已归档后删除:
+            writer.append(events(101, 110));
+            writer.flush();
+        }
+        try (JournalReader reader = new JournalReader(this.dir)) {
+            assertNull(reader.read(0, 110, 10));
+            assertNull(reader.read(99, 110, 10));
+            assertEvents(events(101, 110), reader.read(100, 110, 10));
+        }
+    }
+
+    @Test
+    void discardTornRecord() throws IOException {
+        List<EventEntity> expected = events(1, 50);
+        try (JournalWriter writer = new JournalWriter(this.dir, SEGMENT_SIZE)) {
+            writer.append(expected);
+            writer.flush();
+        }
+        // 模拟写入一半时崩溃：末尾有length和部分数据，没有crc32:
+        Path last = lastSegment();
+        MappedByteBuffer buffer = SegmentFiles.map(last, FileChannel.MapMode.READ_WRITE, -1);
+        int end = endOfRecords(buffer);
+        buffer.putInt(end, JournalFiles.RECORD_FIXED_BYTES + 100);
+        for (int n = end + 4; n < Math.min(end + 60, buffer.limit()); n++) {
+            buffer.put(n, (byte) 'x');
+        }
+        buffer.force();
+
+        // 读取方视为末尾:
+        assertEvents(expected, readAll(0, 51));
+
+        List<EventEntity> more = events(51, 60);
+        try (JournalWriter writer = new JournalWriter(this.dir, SEGMENT_SIZE)) {
+            assertEquals(50, writer.getLastSequenceId());
+            writer.append(more);
+            writer.flush();
+        }
+        expected.addAll(more);
+        assertEvents(expected, readAll(0, 60));
+    }
+
+    @Test
+    void discardRecordWithBadChecksum() throws IOException {
+        List<EventEntity> expected = events(1, 10);
+        try (JournalWriter writer = new JournalWriter(this.dir, SEGMENT_SIZE)) {
+            writer.append(expected);
+            writer.flush();
+        }
+        // 破坏最后一条记录的数据:
+        MappedByteBuffer buffer = SegmentFiles.map(lastSegment(), FileChannel.MapMode.READ_WRITE, -1);
+        int end = endOfRecords(buffer);
+        buffer.put(end - 5, (byte) (buffer.get(end - 5) + 1));
+        buffer.force();
+
+        try (JournalWriter writer = new JournalWriter(this.dir, SEGMENT_SIZE)) {
+            assertEquals(9, writer.getLastSequenceId());
+            writer.append(event(10));
+            writer.flush();
+        }
+        assertEvents(expected, readAll(0, 10));
+    }
+
+    @Test
+    void ignoreUnfinishedSegment() throws IOException {
+        List<EventEntity> expected = events(1, 10);
+        try (JournalWriter writer = new JournalWriter(this.dir, SEGMENT_SIZE)) {
+            writer.append(expected);
+            writer.flush();
+        }
+        // 模拟创建新段文件时崩溃，留下未改名的临时文件:
+        Path file = JournalFiles.SEGMENTS.segmentPath(this.dir, 11);
+        Path tmp = file.resolveSibling(file.getFileName() + SegmentFiles.TMP_SUFFIX);
+        Files.write(tmp, new byte[SEGMENT_SIZE]);
+
+        List<EventEntity> more = events(11, 40);
+        try (JournalWriter writer = new JournalWriter(this.dir, SEGMENT_SIZE)) {
+            assertEquals(10, writer.getLastSequenceId());
+            writer.append(more);
+            writer.flush();
+        }
+        expected.addAll(more);
+        assertEvents(expected, readAll(0, 40));
+    }
+
+    @Test
+    void readWhileWriting() throws IOException {
+        try (JournalWriter writer = new JournalWriter(this.dir, SEGMENT_SIZE);
+                JournalReader reader = new JournalReader(this.dir)) {
+            long after = 0;
+            List<EventEntity> received = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                writer.append(events(i * 5 + 1, i * 5 + 5));
+                writer.flush();
+                List<EventEntity> events = reader.read(after, writer.getFlushedSequenceId(), 3);
+                assertNotNull(events);
+                received.addAll(events);
+                after = received.get(received.size() - 1).sequenceId;
+            }
+            for (;;) {
+                List<EventEntity> events = reader.read(after, writer.getFlushedSequenceId(), 3);
+                if (events.isEmpty()) {
+                    break;
+                }
+                received.addAll(events);
+                after = received.get(received.size() - 1).sequenceId;
+            }
+            assertEvents(events(1, 100), received);
+        }
+    }
+
+    List<EventEntity> readAll(long afterSequenceId, long toSequenceId) throws IOException {
+        List<EventEntity> result = new ArrayList<>();
+        try (JournalReader reader = new JournalReader(this.dir)) {
+            for (;;) {
+                List<EventEntity> events = reader.read(afterSequenceId, toSequenceId, 7);
+                assertNotNull(events);
+                if (events.isEmpty()) {
+                    return result;
+                }
+                result.addAll(events);
+                afterSequenceId = events.get(events.size() - 1).sequenceId;
+            }
+        }
+    }
+
+    Path lastSegment() throws IOException {
+        List<Path> files = JournalFiles.SEGMENTS.listSegments(this.dir);
+        return files.get(files.size() - 1);
+    }
+
+    /**
+     * 最后一条完整记录之后的位置
+     */
+    static int endOfRecords(MappedByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        int position = SegmentFiles.HEADER_BYTES;
+        for (;;) {
+            int size = JournalFiles.SEGMENTS.checkRecord(buffer, position, crc);
+            if (size <= 0) {
+                return position;
+            }
+            position += size;
+        }
+    }
+
+    static List<EventEntity> events(long from, long to) {
+        List<EventEntity> events = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            events.add(event(id));
+        }
+        return events;
+    }
+
+    static EventEntity event(long sequenceId) {
+        EventEntity event = new EventEntity();
+        event.sequenceId = sequenceId;
+        event.previousId = sequenceId - 1;
+        event.createdAt = 1_700_000_000_000L + sequenceId;
+        event.data = "事件-" + sequenceId + "-" + "x".repeat((int) (sequenceId % 40));
+        return event;
+    }
+
+    static void assertEvents(List<EventEntity> expected, List<EventEntity> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.exchange.messageing;
+
+import com.example.exchange.enums.AssetEnum;
+import com.example.exchange.enums.Direction;
+import com.example.exchange.message.AbstractMessage;
+import com.example.exchange.message.TickMessage;
+import com.example.exchange.message.event.OrderCancelEvent;
+import com.example.exchange.message.event.OrderRequestEvent;
+import com.example.exchange.message.event.TransferEvent;
+import com.example.exchange.model.quotation.TickEntity;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 比较文本格式(className#json)和二进制格式的消息大小及编解码吞吐量(messages/sec)。
+ * <p>
+ * 不依赖Spring和Kafka，直接运行main()即可：
+ * <pre>
+ * java -cp ... com.example.exchange.messageing.MessageCodecBenchmark [messages] [rounds]
+ * </pre>
+ */
+public class MessageCodecBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        MessageTypes messageTypes = new MessageTypes();
+        for (Class<? extends AbstractMessage> clazz : List.of(OrderRequestEvent.class, OrderCancelEvent.class,
+                TransferEvent.class, TickMessage.class)) {
+            messageTypes.messageTypes.put(clazz.getName(), clazz);
+        }
+        benchmark(messageTypes, "OrderRequestEvent", createOrderRequests(count), rounds);
+        benchmark(messageTypes, "OrderCancelEvent", createOrderCancels(count), rounds);
+        benchmark(messageTypes, "TransferEvent", createTransfers(count), rounds);
+        benchmark(messageTypes, "TickMessage", createTicks(count / 10), rounds);
+    }
+
+    static void benchmark(MessageTypes messageTypes, String name, List<AbstractMessage> messages, int rounds) {
+        for (MessageFormat format : MessageFormat.values()) {
+            List<String> encoded = new ArrayList<>(messages.size());
+            long bytes = 0;
+            for (AbstractMessage message : messages) {
+                String data = messageTypes.serialize(message, format);
+                encoded.add(data);
+                bytes += data.length();
+            }
+            // 预热:
+            for (int i = 0; i < rounds; i++) {
+                encode(messageTypes, messages, format);
+                decode(messageTypes, encoded);
+            }
+            long encodeNanos = 0;
+            long decodeNanos = 0;
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                encode(messageTypes, messages, format);
+                encodeNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                decode(messageTypes, encoded);
+                decodeNanos += System.nanoTime() - start;
+            }
+            long total = (long) messages.size() * rounds;
+            System.out.printf("%-18s %-6s avg size: %5d chars, encode: %,12d msg/sec, decode: %,12d msg/sec%n", name,
+                    format, bytes / messages.size(), total * 1_000_000_000L / encodeNanos,
+                    total * 1_000_000_000L / decodeNanos);
+        }
+    }
+
+    static void encode(MessageTypes messageTypes, List<AbstractMessage> messages, MessageFormat format) {
+        for (AbstractMessage message : messages) {
+            messageTypes.serialize(message, format);
+        }
+    }
+
+    static void decode(MessageTypes messageTypes, List<String> encoded) {
+        for (String data : encoded) {
+            messageTypes.deserialize(data);
+        }
+    }
+
+    static List<AbstractMessage> createOrderRequests(int n) {
+        List<AbstractMessage> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            OrderRequestEvent e = new OrderRequestEvent();
+            e.sequenceId = 10_000_000L + i;
+            e.previousId = e.sequenceId - 1;
+            e.createdAt = 1_700_000_000_000L + i;
+            e.refId = "1b2e2a0c9d8f4e7a" + i;
+            e.userId = 100_000L + i % 1000;
+            e.direction = i % 2 == 0 ? Direction.BUY : Direction.SELL;
+            e.price = new BigDecimal("20513.25").add(BigDecimal.valueOf(i % 100, 2));
+            e.quantity = new BigDecimal("0.0125");
+            list.add(e);
+        }
+        return list;
+    }
+
+    static List<AbstractMessage> createOrderCancels(int n) {
+        List<AbstractMessage> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            OrderCancelEvent e = new OrderCancelEvent();
+            e.sequenceId = 10_000_000L + i;
+            e.previousId = e.sequenceId - 1;
+            e.createdAt = 1_700_000_000_000L + i;
+            e.refId = "1b2e2a0c9d8f4e7a" + i;
+            e.userId = 100_000L + i % 1000;
+            e.refOrderId = 9_000_000L + i;
+            list.add(e);
+        }
+        return list;
+    }
+
+    static List<AbstractMessage> createTransfers(int n) {
+        List<AbstractMessage> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            TransferEvent e = new TransferEvent();
+            e.sequenceId = 10_000_000L + i;
+            e.previousId = e.sequenceId - 1;
+            e.createdAt = 1_700_000_000_000L + i;
+            e.uniqueId = "deposit-" + i;
+            e.fromUserId = 1L;
+            e.toUserId = 100_000L + i % 1000;
+            e.asset = AssetEnum.USD;
+            e.amount = new BigDecimal("10000");
+            e.sufficient = false;
+            list.add(e);
+        }
+        return list;
+    }
+
+    static List<AbstractMessage> createTicks(int n) {
+        List<AbstractMessage> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            TickMessage m = new TickMessage();
+            m.sequenceId = 10_000_000L + i;
+            m.createdAt = 1_700_000_000_000L + i;
+            m.ticks = new ArrayList<>();
+            for (int j = 0; j < 5; j++) {
+                TickEntity t = new TickEntity();
+                t.sequenceId = m.sequenceId;
+                t.takerOrderId = 9_000_000L + i;
+                t.makerOrderId = 8_000_000L + i * 5L + j;
+                t.takerDirection = j % 2 == 0;
+                t.price = new BigDecimal("20513.25");
+                t.quantity = new BigDecimal("0.0125");
+                t.createdAt = m.createdAt;
+                m.ticks.add(t);
+            }
+            list.add(m);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.exchange.messageing;
+
+import com.example.exchange.enums.AssetEnum;
+import com.example.exchange.enums.Direction;
+import com.example.exchange.message.AbstractMessage;
+import com.example.exchange.message.NotificationMessage;
+import com.example.exchange.message.TickMessage;
+import com.example.exchange.message.event.AbstractEvent;
+import com.example.exchange.message.event.OrderCancelEvent;
+import com.example.exchange.message.event.OrderRequestEvent;
+import com.example.exchange.message.event.TransferEvent;
+import com.example.exchange.model.quotation.TickEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageTypesTest {
+
+    MessageTypes messageTypes;
+
+    @BeforeEach
+    void setUp() {
+        // 不启动Spring，直接注册消息类型:
+        this.messageTypes = new MessageTypes();
+        for (Class<? extends AbstractMessage> clazz : List.of(OrderRequestEvent.class, OrderCancelEvent.class,
+                TransferEvent.class, TickMessage.class, NotificationMessage.class)) {
+            this.messageTypes.messageTypes.put(clazz.getName(), clazz);
+        }
+    }
+
+    @Test
+    void orderRequestEvent() {
+        OrderRequestEvent e = orderRequest(10001, Direction.SELL, "20513.25", "0.0125");
+        e.uniqueId = "订单-7f3a";
+        assertEvent(e, roundTrip(e));
+
+        // 空字段、负数和超过64位的BigDecimal:
+        OrderRequestEvent empty = new OrderRequestEvent();
+        empty.previousId = -1;
+        empty.createdAt = -1_000L;
+        empty.price = new BigDecimal("-123456789012345678901234567890.123456789");
+        assertEvent(empty, roundTrip(empty));
+    }
+
+    @Test
+    void orderCancelEvent() {
+        OrderCancelEvent e = new OrderCancelEvent();
+        event(e, 10002);
+        e.userId = 100_001L;
+        e.refOrderId = 9_000_000L;
+        assertEvent(e, roundTrip(e));
+        e.refOrderId = null;
+        assertEvent(e, roundTrip(e));
+    }
+
+    @Test
+    void transferEvent() {
+        TransferEvent e = transfer(10003, AssetEnum.values()[AssetEnum.values().length - 1], "1000000.000000000001");
+        assertEvent(e, roundTrip(e));
+        e.sufficient = false;
+        e.asset = null;
+        e.toUserId = null;
+        assertEvent(e, roundTrip(e));
+    }
+
+    @Test
+    void tickMessage() {
+        TickMessage m = tick(10004, 3);
+        TickMessage decoded = (TickMessage) roundTrip(m);
+        assertTick(m, decoded);
+
+        m.ticks = null;
+        assertNull(((TickMessage) roundTrip(m)).ticks);
+        m.ticks = List.of();
+        assertEquals(List.of(), ((TickMessage) roundTrip(m)).ticks);
+    }
+
+    @Test
+    void unsupportedTypeUsesText() {
+        NotificationMessage m = new NotificationMessage();
+        m.type = "orderbook";
+        m.userId = 100_001L;
+        m.createdAt = 1_700_000_000_000L;
+        String data = this.messageTypes.serialize(m, MessageFormat.BINARY);
+        assertFalse(BinaryMessageCodec.isBinary(data));
+        assertEquals(this.messageTypes.serialize(m), data);
+        NotificationMessage decoded = (NotificationMessage) this.messageTypes.deserialize(data);
+        assertEquals("orderbook", decoded.type);
+        assertEquals(Long.valueOf(100_001L), decoded.userId);
+        assertEquals(m.createdAt, decoded.createdAt);
+    }
+
+    @Test
+    void replayTextAndBinary() {
+        // 切换到二进制格式前写入的文本事件与之后的二进制事件混在同一个事件日志中重放:
+        List<AbstractMessage> messages = new ArrayList<>();
+        List<String> dataList = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            AbstractMessage message = switch (i % 4) {
+                case 0 -> orderRequest(20000 + i, i % 8 == 0 ? Direction.BUY : Direction.SELL, "20513.25", "0.5");
+                case 1 -> {
+                    OrderCancelEvent e = new OrderCancelEvent();
+                    event(e, 20000 + i);
+                    e.userId = 100_000L + i;
+                    e.refOrderId = 20000L + i - 1;
+                    yield e;
+                }
+                case 2 -> transfer(20000 + i, AssetEnum.values()[0], "12.5");
+                default -> tick(20000 + i, 2);
+            };
+            messages.add(message);
+            dataList.add(this.messageTypes.serialize(message, i < 10 ? MessageFormat.TEXT : MessageFormat.BINARY));
+        }
+        for (int i = 0; i < dataList.size(); i++) {
+            assertEquals(i >= 10, BinaryMessageCodec.isBinary(dataList.get(i)));
+        }
+        List<AbstractMessage> decoded = this.messageTypes.deserialize(dataList);
+        assertEquals(messages.size(), decoded.size());
+        for (int i = 0; i < messages.size(); i++) {
+            AbstractMessage expected = messages.get(i);
+            AbstractMessage actual = decoded.get(i);
+            assertSame(expected.getClass(), actual.getClass());
+            if (expected instanceof TickMessage) {
+                assertTick((TickMessage) expected, (TickMessage) actual);
+            } else {
+                assertEvent(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    void invalidData() {
+        assertThrows(RuntimeException.class, () -> this.messageTypes.deserialize("no separator"));
+        assertThrows(RuntimeException.class, () -> this.messageTypes.deserialize("com.example.Unknown#{}"));
+        // 未知版本:
+        assertThrows(RuntimeException.class, () -> this.messageTypes.deserialize("@AgI"));
+    }
+
+    /**
+     * 分别按文本和二进制格式编解码，两者结果一致
+     */
+    AbstractMessage roundTrip(AbstractMessage message) {
+        String binary = this.messageTypes.serialize(message, MessageFormat.BINARY);
+        String text = this.messageTypes.serialize(message, MessageFormat.TEXT);
+        assertTrue(BinaryMessageCodec.isBinary(binary));
+        assertFalse(BinaryMessageCodec.isBinary(text));
+        assertTrue(binary.length() < text.length());
+        AbstractMessage fromBinary = this.messageTypes.deserialize(binary);
+        AbstractMessage fromText = this.messageTypes.deserialize(text);
+        assertSame(message.getClass(), fromBinary.getClass());
+        assertSame(message.getClass(), fromText.getClass());
+        if (message instanceof TickMessage) {
+            assertTick((TickMessage) fromText, (TickMessage) fromBinary);
+        } else {
+            assertEvent(fromText, fromBinary);
+        }
+        return fromBinary;
+    }
+
+    static void assertEvent(AbstractMessage expected, AbstractMessage actual) {
+        // 事件的toString()包含全部字段:
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    static void assertTick(TickMessage expected, TickMessage actual) {
+        assertEquals(expected.refId, actual.refId);
+        assertEquals(expected.createdAt, actual.createdAt);
+        assertEquals(expected.sequenceId, actual.sequenceId);
+        if (expected.ticks == null) {
+            assertNull(actual.ticks);
+            return;
+        }
+        assertEquals(expected.ticks.size(), actual.ticks.size());
+        for (int i = 0; i < expected.ticks.size(); i++) {
+            TickEntity t1 = expected.ticks.get(i);
+            TickEntity t2 = actual.ticks.get(i);
+            assertEquals(t1.id, t2.id);
+            assertEquals(t1.sequenceId, t2.sequenceId);
+            assertEquals(t1.takerOrderId, t2.takerOrderId);
+            assertEquals(t1.makerOrderId, t2.makerOrderId);
+            assertEquals(t1.takerDirection, t2.takerDirection);
+            assertEquals(t1.price, t2.price);
+            assertEquals(t1.quantity, t2.quantity);
+            assertEquals(t1.createdAt, t2.createdAt);
+        }
+    }
+
+    static void event(AbstractEvent e, long sequenceId) {
+        e.sequenceId = sequenceId;
+        e.previousId = sequenceId - 1;
+        e.createdAt = 1_700_000_000_000L + sequenceId;
+        e.refId = "1b2e2a0c9d8f4e7a" + sequenceId;
+    }
+
+    static OrderRequestEvent orderRequest(long sequenceId, Direction direction, String price, String quantity) {
+        OrderRequestEvent e = new OrderRequestEvent();
+        event(e, sequenceId);
+        e.userId = 100_000L + sequenceId % 1000;
+        e.direction = direction;
+        e.price = new BigDecimal(price);
+        e.quantity = new BigDecimal(quantity);
+        return e;
+    }
+
+    static TransferEvent transfer(long sequenceId, AssetEnum asset, String amount) {
+        TransferEvent e = new TransferEvent();
+        event(e, sequenceId);
+        e.fromUserId = 1L;
+        e.toUserId = 100_000L + sequenceId % 1000;
+        e.asset = asset;
+        e.amount = new BigDecimal(amount);
+        e.sufficient = true;
+        return e;
+    }
+
+    static TickMessage tick(long sequenceId, int n) {
+        TickMessage m = new TickMessage();
+        m.sequenceId = sequenceId;
+        m.createdAt = 1_700_000_000_000L + sequenceId;
+        m.ticks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            TickEntity t = new TickEntity();
+            t.id = sequenceId * 10 + i;
+            t.sequenceId = sequenceId;
+            t.takerOrderId = sequenceId;
+            t.makerOrderId = sequenceId - i - 1;
+            t.takerDirection = i % 2 == 0;
+            t.price = new BigDecimal("20513.25").subtract(BigDecimal.valueOf(i));
+            t.quantity = new BigDecimal("0.0125");
+            // 成交时间可能早于消息时间:
+            t.createdAt = m.createdAt - i;
+            m.ticks.add(t);
+        }
+        return m;
+    }
+}
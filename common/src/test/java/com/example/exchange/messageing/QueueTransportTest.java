@@ -0,0 +1,110 @@
+package com.example.exchange.messageing;
+
+import com.example.exchange.ring.WaitStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueTransportTest {
+
+    @TempDir
+    Path dir;
+
+    QueueTransport transport;
+
+    @BeforeEach
+    void setUp() {
+        MessagingProperties.Queue props = new MessagingProperties.Queue();
+        props.setDir(this.dir.toString());
+        props.setSegmentSize(64 * 1024);
+        props.setWaitStrategy(WaitStrategy.PARK);
+        this.transport = new QueueTransport(props);
+        this.transport.retryBackoffMillis = 1;
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.transport.close();
+    }
+
+    @Test
+    void resumeFromCommittedOffset() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        MessageConsumer consumer = this.transport.subscribe(Messaging.Topic.TICK, "test", 10, received::addAll);
+        this.transport.append(Messaging.Topic.TICK, List.of("a", "b", "c"));
+        assertEquals(List.of("a", "b", "c"), take(received, 3));
+        consumer.stop();
+
+        // 停止期间写入的消息在重新订阅后收到:
+        this.transport.append(Messaging.Topic.TICK, List.of("d", "e"));
+        consumer = this.transport.subscribe(Messaging.Topic.TICK, "test", 10, received::addAll);
+        assertEquals(List.of("d", "e"), take(received, 2));
+        consumer.stop();
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void retryFailedBatch() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        AtomicInteger failures = new AtomicInteger(3);
+        MessageConsumer consumer = this.transport.subscribe(Messaging.Topic.TICK, "test", 10, messages -> {
+            if (messages.contains("bad") && failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("failed to process");
+            }
+            received.addAll(messages);
+        });
+        this.transport.append(Messaging.Topic.TICK, List.of("a"));
+        assertEquals(List.of("a"), take(received, 1));
+        this.transport.append(Messaging.Topic.TICK, List.of("bad", "b"));
+        // 失败的批次重试后处理，不会被跳过:
+        assertEquals(List.of("bad", "b"), take(received, 2));
+        assertEquals(-1, failures.get());
+        consumer.stop();
+    }
+
+    @Test
+    void failProcessAfterRetries() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger fatal = new AtomicInteger();
+        this.transport.fatalErrorHandler = fatal::incrementAndGet;
+        MessageConsumer consumer = this.transport.subscribe(Messaging.Topic.TICK, "test", 10, messages -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("failed to process");
+        });
+        this.transport.append(Messaging.Topic.TICK, List.of("bad"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (fatal.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, fatal.get());
+        assertEquals(QueueTransport.MAX_RETRIES + 1, attempts.get());
+        consumer.stop();
+
+        // 未提交offset，重新订阅后从失败的消息开始:
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        consumer = this.transport.subscribe(Messaging.Topic.TICK, "test", 10, received::addAll);
+        assertEquals(List.of("bad"), take(received, 1));
+        consumer.stop();
+    }
+
+    private static List<String> take(BlockingQueue<String> queue, int n) throws InterruptedException {
+        List<String> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String s = queue.poll(5, TimeUnit.SECONDS);
+            assertNotNull(s, "timeout waiting for message " + i);
+            list.add(s);
+        }
+        return list;
+    }
+}
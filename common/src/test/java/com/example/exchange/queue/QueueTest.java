@@ -0,0 +1,190 @@
+package com.example.exchange.queue;
+
+import com.example.exchange.segment.SegmentFiles;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueTest {
+
+    // 每个段文件只能容纳少量消息:
+    static final int SEGMENT_SIZE = SegmentFiles.HEADER_BYTES + 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendAndPoll() throws IOException {
+        try (QueueAppender appender = new QueueAppender(this.dir, SEGMENT_SIZE, false, 0)) {
+            appender.append(List.of("a", "b", "c"));
+            assertEquals(3, appender.getNextIndex());
+        }
+        try (QueueTailer tailer = new QueueTailer(this.dir, 0)) {
+            List<String> messages = new ArrayList<>();
+            assertEquals(2, tailer.poll(messages, 2));
+            assertEquals(1, tailer.poll(messages, 2));
+            assertEquals(0, tailer.poll(messages, 2));
+            assertEquals(List.of("a", "b", "c"), messages);
+            assertEquals(3, tailer.getIndex());
+        }
+        assertEquals(3, QueueTailer.endIndex(this.dir));
+    }
+
+    @Test
+    void emptyQueue() throws IOException {
+        assertEquals(0, QueueTailer.endIndex(this.dir));
+        try (QueueTailer tailer = new QueueTailer(this.dir, Long.MAX_VALUE)) {
+            assertEquals(0, tailer.getIndex());
+            try (QueueAppender appender = new QueueAppender(this.dir, SEGMENT_SIZE, false, 0)) {
+                appender.append("a");
+            }
+            List<String> messages = new ArrayList<>();
+            assertEquals(1, tailer.poll(messages, 10));
+            assertEquals(List.of("a"), messages);
+        }
+    }
+
+    @Test
+    void rollSegments() throws IOException {
+        List<String> expected = new ArrayList<>();
+        try (QueueAppender appender = new QueueAppender(this.dir, SEGMENT_SIZE, false, 0)) {
+            for (int i = 0; i < 100; i++) {
+                String message = "message-" + i + "-" + "x".repeat(i % 50);
+                expected.add(message);
+                appender.append(message);
+            }
+        }
+        assertTrue(QueueFiles.SEGMENTS.listSegments(this.dir).size() > 1);
+        assertEquals(expected, pollAll(0));
+        // 从中间的index开始读取:
+        assertEquals(expected.subList(57, 100), pollAll(57));
+    }
+
+    @Test
+    void multipleWriters() throws Exception {
+        // 两个写入方交替写入同一队列，相当于两个进程，各自跳过对方写入的记录:
+        try (QueueAppender first = new QueueAppender(this.dir, SEGMENT_SIZE, false, 0);
+                QueueAppender second = new QueueAppender(this.dir, SEGMENT_SIZE, false, 0)) {
+            for (int i = 0; i < 40; i++) {
+                first.append("first-" + i);
+                second.append(List.of("second-" + i, "second-" + i + "-b"));
+            }
+            assertEquals(118, first.getNextIndex());
+            assertEquals(120, second.getNextIndex());
+        }
+        List<String> messages = pollAll(0);
+        assertEquals(120, messages.size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals("first-" + i, messages.get(i * 3));
+            assertEquals("second-" + i, messages.get(i * 3 + 1));
+            assertEquals("second-" + i + "-b", messages.get(i * 3 + 2));
+        }
+    }
+
+    @Test
+    void concurrentWriters() throws Exception {
+        int threads = 4;
+        int count = 500;
+        try (QueueAppender appender = new QueueAppender(this.dir, SEGMENT_SIZE, false, 0)) {
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int id = t;
+                writers.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < count; i++) {
+                            appender.append(id + ":" + i);
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }));
+            }
+            writers.forEach(Thread::start);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+        List<String> messages = pollAll(0);
+        assertEquals(threads * count, messages.size());
+        assertEquals(threads * count, new HashSet<>(messages).size());
+        // 每个写入方的消息保持顺序:
+        int[] next = new int[threads];
+        for (String message : messages) {
+            int pos = message.indexOf(':');
+            int id = Integer.parseInt(message.substring(0, pos));
+            assertEquals(next[id]++, Integer.parseInt(message.substring(pos + 1)));
+        }
+    }
+
+    @Test
+    void resumeFromOffset() throws IOException {
+        try (QueueAppender appender = new QueueAppender(this.dir, SEGMENT_SIZE, false, 0)) {
+            for (int i = 0; i < 50; i++) {
+                appender.append("m" + i);
+            }
+            long committed;
+            try (QueueOffset offset = new QueueOffset(this.dir, "test");
+                    QueueTailer tailer = new QueueTailer(this.dir, 0)) {
+                assertEquals(-1, offset.get());
+                List<String> messages = new ArrayList<>();
+                tailer.poll(messages, 30);
+                offset.commit(tailer.getIndex());
+                committed = offset.get();
+                assertEquals(30, committed);
+                // 同一消费组不能同时打开:
+                assertThrows(IllegalStateException.class, () -> new QueueOffset(this.dir, "test"));
+            }
+            for (int i = 50; i < 60; i++) {
+                appender.append("m" + i);
+            }
+            try (QueueOffset offset = new QueueOffset(this.dir, "test")) {
+                assertEquals(committed, offset.get());
+                List<String> messages = pollAll(offset.get());
+                assertEquals(30, messages.size());
+                assertEquals("m30", messages.get(0));
+                assertEquals("m59", messages.get(29));
+            }
+            // 其他消费组没有offset:
+            try (QueueOffset offset = new QueueOffset(this.dir, "other")) {
+                assertEquals(-1, offset.get());
+            }
+        }
+    }
+
+    @Test
+    void deleteRetainedSegments() throws IOException {
+        try (QueueAppender appender = new QueueAppender(this.dir, SEGMENT_SIZE, false, 2)) {
+            for (int i = 0; i < 200; i++) {
+                appender.append("message-" + i + "-" + "x".repeat(40));
+            }
+        }
+        assertTrue(QueueFiles.SEGMENTS.listSegments(this.dir).size() <= 3);
+        // 已删除的index定位到最早的段文件:
+        try (QueueTailer tailer = new QueueTailer(this.dir, 0)) {
+            long start = tailer.getIndex();
+            assertTrue(start > 0);
+            List<String> messages = new ArrayList<>();
+            while (tailer.poll(messages, 100) > 0) {
+            }
+            assertEquals(200, tailer.getIndex());
+            assertEquals(200 - start, messages.size());
+            assertEquals("message-" + start + "-" + "x".repeat(40), messages.get(0));
+        }
+    }
+
+    private List<String> pollAll(long index) throws IOException {
+        List<String> messages = new ArrayList<>();
+        try (QueueTailer tailer = new QueueTailer(this.dir, index)) {
+            while (tailer.poll(messages, 7) > 0) {
+            }
+        }
+        return messages;
+    }
+}
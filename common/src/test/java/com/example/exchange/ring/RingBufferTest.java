@@ -0,0 +1,176 @@
+package com.example.exchange.ring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferTest {
+
+    static class Event {
+        long value;
+    }
+
+    List<Thread> threads = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (Thread thread : this.threads) {
+            thread.interrupt();
+            thread.join(5000);
+        }
+    }
+
+    @Test
+    void invalidBufferSize() {
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<>(0, Event::new, WaitStrategy.PARK));
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<>(100, Event::new, WaitStrategy.PARK));
+    }
+
+    @Test
+    void emptyRing() {
+        RingBuffer<Event> ring = new RingBuffer<>(8, Event::new, WaitStrategy.PARK);
+        RingBuffer.Consumer<Event> consumer = ring.addConsumer("c", (event, seq, end) -> {
+        });
+        assertEquals(-1, ring.getCursor());
+        assertEquals(-1, ring.getMinimumSequence());
+        assertEquals(-1, consumer.getSequence());
+        assertEquals(0, ring.getDepth());
+        assertEquals(0, consumer.getLag());
+    }
+
+    @Test
+    void multipleConsumersWithBusySpin() throws Exception {
+        publishAndConsume(WaitStrategy.BUSY_SPIN, 1024, 3, 100_000);
+    }
+
+    @Test
+    void wrapAroundWithYield() throws Exception {
+        // 缓冲区远小于事件数，生产者需多次等待消费者:
+        publishAndConsume(WaitStrategy.YIELD, 4, 2, 10_000);
+    }
+
+    @Test
+    void wrapAroundWithPark() throws Exception {
+        publishAndConsume(WaitStrategy.PARK, 8, 2, 10_000);
+    }
+
+    @Test
+    void wrapAroundWithBlocking() throws Exception {
+        publishAndConsume(WaitStrategy.BLOCKING, 8, 3, 10_000);
+    }
+
+    @Test
+    void handlerFailure() throws Exception {
+        RingBuffer<Event> ring = new RingBuffer<>(8, Event::new, WaitStrategy.PARK);
+        List<Long> received = new ArrayList<>();
+        RingBuffer.Consumer<Event> consumer = ring.addConsumer("c", (event, seq, end) -> {
+            if (event.value % 10 == 3) {
+                throw new IllegalStateException("bad event: " + event.value);
+            }
+            received.add(event.value);
+        });
+        start(consumer);
+        int n = 100;
+        for (int i = 0; i < n; i++) {
+            ring.claim().value = i;
+            ring.publish();
+        }
+        awaitSequence(consumer, n - 1);
+        // 失败的事件计入错误数并跳过，不阻塞后续事件:
+        assertEquals(10, consumer.getErrors());
+        assertEquals(Long.valueOf(10), ring.getMetrics().get("c.errors"));
+        assertEquals(n - 10, received.size());
+        for (long value : received) {
+            assertNotEquals(3, value % 10);
+        }
+        assertEquals(0, ring.getDepth());
+        assertEquals(0, consumer.getLag());
+    }
+
+    @Test
+    void endOfBatch() throws Exception {
+        RingBuffer<Event> ring = new RingBuffer<>(16, Event::new, WaitStrategy.PARK);
+        List<Long> ends = new ArrayList<>();
+        RingBuffer.Consumer<Event> consumer = ring.addConsumer("c", (event, seq, end) -> {
+            if (end) {
+                ends.add(seq);
+            }
+        });
+        // 消费者启动前发布的事件作为一批处理:
+        for (int i = 0; i < 5; i++) {
+            ring.claim().value = i;
+            ring.publish();
+        }
+        assertEquals(4, ring.getCursor());
+        assertEquals(-1, ring.getMinimumSequence());
+        assertEquals(5, ring.getDepth());
+        assertEquals(5, consumer.getLag());
+        start(consumer);
+        awaitSequence(consumer, 4);
+        assertEquals(List.of(4L), ends);
+        assertEquals(4, ring.getMinimumSequence());
+    }
+
+    void publishAndConsume(WaitStrategy waitStrategy, int bufferSize, int consumerCount, int n) throws Exception {
+        RingBuffer<Event> ring = new RingBuffer<>(bufferSize, Event::new, waitStrategy);
+        List<RingBuffer.Consumer<Event>> consumers = new ArrayList<>();
+        long[] sums = new long[consumerCount];
+        long[] failures = new long[consumerCount];
+        for (int i = 0; i < consumerCount; i++) {
+            int index = i;
+            long[] expected = { 0 };
+            consumers.add(ring.addConsumer("c" + i, (event, seq, end) -> {
+                // 每个消费者按顺序收到全部事件:
+                if (event.value != expected[0] || seq != expected[0]) {
+                    failures[index]++;
+                }
+                expected[0]++;
+                sums[index] += event.value;
+            }));
+        }
+        for (RingBuffer.Consumer<Event> consumer : consumers) {
+            start(consumer);
+        }
+        for (int i = 0; i < n; i++) {
+            ring.claim().value = i;
+            ring.publish();
+            // 生产者不能超过最慢的消费者一整圈:
+            assertTrue(ring.getDepth() <= bufferSize);
+        }
+        for (RingBuffer.Consumer<Event> consumer : consumers) {
+            awaitSequence(consumer, n - 1);
+        }
+        long expectedSum = (long) n * (n - 1) / 2;
+        for (int i = 0; i < consumerCount; i++) {
+            assertEquals(0, failures[i]);
+            assertEquals(expectedSum, sums[i]);
+            assertEquals(0, consumers.get(i).getErrors());
+        }
+        assertEquals(n - 1, ring.getCursor());
+        assertEquals(n - 1, ring.getMinimumSequence());
+        assertEquals(0, ring.getDepth());
+        assertEquals(Long.valueOf(n), ring.getMetrics().get("published"));
+    }
+
+    void start(RingBuffer.Consumer<Event> consumer) {
+        Thread thread = new Thread(consumer, "ring-test-" + consumer.getName());
+        thread.setDaemon(true);
+        thread.start();
+        this.threads.add(thread);
+    }
+
+    static void awaitSequence(RingBuffer.Consumer<Event> consumer, long sequence) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (consumer.getSequence() < sequence) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("timeout waiting for " + consumer.getName() + " to reach " + sequence + ", current: "
+                        + consumer.getSequence());
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.exchange.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedPointUtilTest {
+
+    @Test
+    void scale() {
+        assertEquals(2, FixedPointUtil.SCALE);
+        assertEquals(4, FixedPointUtil.AMOUNT_SCALE);
+        assertEquals(100, FixedPointUtil.QUANTITY_TO_AMOUNT);
+    }
+
+    @Test
+    void toFixed() {
+        assertEquals(12345, FixedPointUtil.toFixed(new BigDecimal("123.45")));
+        assertEquals(12340, FixedPointUtil.toFixed(new BigDecimal("123.4")));
+        assertEquals(12300, FixedPointUtil.toFixed(new BigDecimal("123")));
+        // 末尾的0不影响精度:
+        assertEquals(12345, FixedPointUtil.toFixed(new BigDecimal("123.4500")));
+        assertEquals(-1, FixedPointUtil.toFixed(new BigDecimal("-0.01")));
+        assertEquals(0, FixedPointUtil.toFixed(BigDecimal.ZERO));
+    }
+
+    @Test
+    void toFixedRejectsExtraScale() {
+        assertThrows(ArithmeticException.class, () -> FixedPointUtil.toFixed(new BigDecimal("123.456")));
+        assertThrows(ArithmeticException.class, () -> FixedPointUtil.toFixedAmount(new BigDecimal("0.00001")));
+    }
+
+    @Test
+    void toFixedRejectsOverflow() {
+        BigDecimal max = FixedPointUtil.toBigDecimal(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, FixedPointUtil.toFixed(max));
+        assertThrows(ArithmeticException.class, () -> FixedPointUtil.toFixed(max.add(new BigDecimal("0.01"))));
+        assertThrows(ArithmeticException.class, () -> FixedPointUtil.toFixed(new BigDecimal("1e20")));
+        assertThrows(ArithmeticException.class, () -> FixedPointUtil.toFixedAmount(new BigDecimal("1e16")));
+    }
+
+    @Test
+    void toBigDecimal() {
+        assertEquals(new BigDecimal("123.45"), FixedPointUtil.toBigDecimal(12345));
+        assertEquals(new BigDecimal("0.00"), FixedPointUtil.toBigDecimal(0));
+        assertEquals(new BigDecimal("1.2345"), FixedPointUtil.amountToBigDecimal(12345));
+    }
+
+    @Test
+    void roundTrip() {
+        for (String s : new String[] { "0.01", "1", "20513.25", "99999999.99", "-5.5" }) {
+            BigDecimal value = new BigDecimal(s);
+            assertEquals(0, value.compareTo(FixedPointUtil.toBigDecimal(FixedPointUtil.toFixed(value))), s);
+            assertEquals(0, value.compareTo(FixedPointUtil.amountToBigDecimal(FixedPointUtil.toFixedAmount(value))), s);
+        }
+    }
+
+    @Test
+    void amount() {
+        // 123.45 x 2.00 = 246.9000:
+        long amount = FixedPointUtil.amount(12345, 200);
+        assertEquals(2469000, amount);
+        assertEquals(new BigDecimal("246.9000"), FixedPointUtil.amountToBigDecimal(amount));
+        assertEquals(0, new BigDecimal("123.45").multiply(new BigDecimal("2.00"))
+                .compareTo(FixedPointUtil.amountToBigDecimal(amount)));
+    }
+
+    @Test
+    void amountOverflow() {
+        assertThrows(ArithmeticException.class, () -> FixedPointUtil.amount(Long.MAX_VALUE / 2, 3));
+        assertThrows(ArithmeticException.class, () -> FixedPointUtil.amount(1L << 32, 1L << 32));
+    }
+
+    @Test
+    void quantityToAmount() {
+        assertEquals(15000, FixedPointUtil.quantityToAmount(150));
+        assertEquals(new BigDecimal("1.5000"), FixedPointUtil.amountToBigDecimal(FixedPointUtil.quantityToAmount(150)));
+        assertThrows(ArithmeticException.class, () -> FixedPointUtil.quantityToAmount(Long.MAX_VALUE / 10));
+    }
+}
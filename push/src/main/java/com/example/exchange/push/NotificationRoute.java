@@ -0,0 +1,166 @@
+package com.example.exchange.push;
+
+/**
+ * 推送消息的路由信息(type, userId, resolution)。
+ * <p>
+ * 只扫描JSON最外层的key，跳过data等嵌套值而不解析，避免每条消息都完整反序列化为NotificationMessage。
+ */
+final class NotificationRoute {
+
+    String type;
+
+    Long userId;
+
+    String resolution;
+
+    /**
+     * 公共消息的频道，bar消息按周期区分，订单簿快照和增量都属于orderbook频道
+     */
+    String channel() {
+        if ("bar".equals(this.type)) {
+            return "bar." + this.resolution;
+        }
+        return "orderbook_delta".equals(this.type) ? "orderbook" : this.type;
+    }
+
+    /**
+     * 解析路由信息，格式错误返回null
+     */
+    static NotificationRoute parse(String s) {
+        int n = s.length();
+        int i = skipWhitespace(s, 0);
+        if (i >= n || s.charAt(i) != '{') {
+            return null;
+        }
+        NotificationRoute route = new NotificationRoute();
+        i = skipWhitespace(s, i + 1);
+        if (i < n && s.charAt(i) == '}') {
+            return route;
+        }
+        for (;;) {
+            if (i >= n || s.charAt(i) != '"') {
+                return null;
+            }
+            int keyEnd = endOfString(s, i);
+            if (keyEnd < 0) {
+                return null;
+            }
+            int keyStart = i + 1;
+            int keyLength = keyEnd - 1 - keyStart;
+            i = skipWhitespace(s, keyEnd);
+            if (i >= n || s.charAt(i) != ':') {
+                return null;
+            }
+            int valueStart = skipWhitespace(s, i + 1);
+            int valueEnd = endOfValue(s, valueStart);
+            if (valueEnd < 0) {
+                return null;
+            }
+            if (isKey(s, keyStart, keyLength, "type")) {
+                route.type = stringValue(s, valueStart, valueEnd);
+            } else if (isKey(s, keyStart, keyLength, "userId")) {
+                if (s.charAt(valueStart) != 'n') {
+                    try {
+                        route.userId = Long.parseLong(s, valueStart, valueEnd, 10);
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                }
+            } else if (isKey(s, keyStart, keyLength, "resolution")) {
+                route.resolution = stringValue(s, valueStart, valueEnd);
+            }
+            i = skipWhitespace(s, valueEnd);
+            if (i >= n) {
+                return null;
+            }
+            char ch = s.charAt(i);
+            if (ch == '}') {
+                return route;
+            }
+            if (ch != ',') {
+                return null;
+            }
+            i = skipWhitespace(s, i + 1);
+        }
+    }
+
+    private static boolean isKey(String s, int start, int length, String key) {
+        return length == key.length() && s.regionMatches(start, key, 0, length);
+    }
+
+    private static String stringValue(String s, int start, int end) {
+        return s.charAt(start) == '"' ? s.substring(start + 1, end - 1) : null;
+    }
+
+    private static int skipWhitespace(String s, int i) {
+        int n = s.length();
+        while (i < n) {
+            char ch = s.charAt(i);
+            if (ch != ' ' && ch != '\t' && ch != '\r' && ch != '\n') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 返回字符串结束引号之后的位置，s.charAt(start)必须是'"'
+     */
+    private static int endOfString(String s, int start) {
+        int n = s.length();
+        for (int i = start + 1; i < n; i++) {
+            char ch = s.charAt(i);
+            if (ch == '\\') {
+                i++;
+            } else if (ch == '"') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 返回值结束之后的位置，对象和数组按括号深度跳过
+     */
+    private static int endOfValue(String s, int start) {
+        int n = s.length();
+        if (start >= n) {
+            return -1;
+        }
+        char first = s.charAt(start);
+        if (first == '"') {
+            return endOfString(s, start);
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            for (int i = start; i < n; i++) {
+                char ch = s.charAt(i);
+                if (ch == '"') {
+                    i = endOfString(s, i);
+                    if (i < 0) {
+                        return -1;
+                    }
+                    i--;
+                } else if (ch == '{' || ch == '[') {
+                    depth++;
+                } else if (ch == '}' || ch == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return i + 1;
+                    }
+                }
+            }
+            return -1;
+        }
+        int i = start;
+        while (i < n) {
+            char ch = s.charAt(i);
+            if (ch == ',' || ch == '}' || ch == ']' || ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n') {
+                break;
+            }
+            i++;
+        }
+        return i == start ? -1 : i;
+    }
+}
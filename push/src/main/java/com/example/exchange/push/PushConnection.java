@@ -0,0 +1,137 @@
+package com.example.exchange.push;
+
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.WebSocketFrameType;
+import io.vertx.core.http.impl.ws.WebSocketFrameImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一个WebSocket连接及其待发送消息。
+ * <p>
+ * 写缓冲区(writeQueueMaxSize)未满时直接写入；满了以后按频道处理：
+ * orderbook快照和ticker只保留最新值，其他公共消息直接丢弃(丢弃orderbook增量后，客户端发现sequenceId不连续会重新加载快照)，用户消息排队，
+ * 排队超过maxQueuedMessages时断开连接。写缓冲区清空(drainHandler)后依次发送排队的用户消息和保留的最新值。
+ * <p>
+ * 除构造外所有方法必须在连接所属的event loop上调用。
+ */
+final class PushConnection {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushConnection.class);
+
+    final String id;
+
+    final ServerWebSocket websocket;
+
+    final Context context;
+
+    private final PushStats stats;
+
+    private final int maxQueuedMessages;
+
+    private final ArrayDeque<Buffer> queuedMessages = new ArrayDeque<>();
+
+    // channel -> latest payload:
+    private final Map<String, Buffer> conflatedMessages = new LinkedHashMap<>();
+
+    private boolean closed = false;
+
+    PushConnection(String id, ServerWebSocket websocket, Context context, PushStats stats, int writeQueueMaxSize,
+            int maxQueuedMessages) {
+        this.id = id;
+        this.websocket = websocket;
+        this.context = context;
+        this.stats = stats;
+        this.maxQueuedMessages = maxQueuedMessages;
+        websocket.setWriteQueueMaxSize(writeQueueMaxSize);
+        websocket.drainHandler(v -> flush());
+    }
+
+    /**
+     * 该类型的消息是否只需要保留最新值
+     */
+    static boolean isConflated(String type) {
+        return "orderbook".equals(type) || "ticker".equals(type);
+    }
+
+    void sendPublic(String channel, boolean conflated, Buffer payload) {
+        if (this.closed) {
+            return;
+        }
+        if (isWritable()) {
+            write(payload);
+        } else if (conflated) {
+            if (this.conflatedMessages.put(channel, payload) != null) {
+                this.stats.conflated.increment();
+            }
+        } else {
+            this.stats.dropped.increment();
+        }
+    }
+
+    void sendUser(Buffer payload) {
+        if (this.closed) {
+            return;
+        }
+        if (isWritable()) {
+            write(payload);
+        } else if (this.queuedMessages.size() < this.maxQueuedMessages) {
+            this.queuedMessages.add(payload);
+            this.stats.queued.increment();
+        } else {
+            // 客户端长时间无法接收，断开后由客户端重连并重新加载:
+            logger.warn("disconnect slow consumer {}: {} messages queued.", this.id, this.queuedMessages.size());
+            this.closed = true;
+            this.stats.disconnected.increment();
+            this.stats.dropped.add(this.queuedMessages.size() + this.conflatedMessages.size() + 1);
+            this.queuedMessages.clear();
+            this.conflatedMessages.clear();
+            this.websocket.close((short) 1008, "slow consumer");
+        }
+    }
+
+    /**
+     * 先发送积压的消息，积压全部发送且写缓冲区未满时才可以直接写入
+     */
+    private boolean isWritable() {
+        if (!this.queuedMessages.isEmpty() || !this.conflatedMessages.isEmpty()) {
+            flush();
+            if (!this.queuedMessages.isEmpty() || !this.conflatedMessages.isEmpty()) {
+                return false;
+            }
+        }
+        return !this.websocket.writeQueueFull();
+    }
+
+    private void flush() {
+        if (this.closed) {
+            return;
+        }
+        while (!this.queuedMessages.isEmpty() && !this.websocket.writeQueueFull()) {
+            write(this.queuedMessages.poll());
+        }
+        if (!this.queuedMessages.isEmpty()) {
+            return;
+        }
+        Iterator<Buffer> it = this.conflatedMessages.values().iterator();
+        while (it.hasNext() && !this.websocket.writeQueueFull()) {
+            write(it.next());
+            it.remove();
+        }
+    }
+
+    /**
+     * 直接写入websocket，Buffer.getByteBuf()返回共享底层数据的duplicate，可以写入多个连接
+     */
+    private void write(Buffer payload) {
+        this.websocket.writeFrame(new WebSocketFrameImpl(WebSocketFrameType.TEXT, payload.getByteBuf(), true));
+        this.stats.delivered.increment();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.exchange.push;
+
+import io.vertx.core.buffer.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 所有PushVerticle实例共享的连接注册表。
+ * <p>
+ * 每个PushVerticle实例运行在自己的event loop上，是一个分区，只管理自己接受的连接及其频道订阅。
+ * 公共消息分发到每个分区，由各自的event loop写入；用户消息通过userId直接找到该用户的连接，
+ * 与连接总数无关。
+ */
+public class PushRegistry {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    final PushStats stats = new PushStats();
+
+    // 每个连接的写缓冲区上限(字节):
+    final int writeQueueMaxSize;
+
+    // 写缓冲区满时每个连接最多排队的用户消息数:
+    final int maxQueuedMessages;
+
+    private final List<PushVerticle> partitions = new CopyOnWriteArrayList<>();
+
+    /**
+     * userId -> set of connections
+     */
+    private final Map<Long, Set<PushConnection>> userToConnectionsMap = new ConcurrentHashMap<>(1000);
+
+    public PushRegistry(int writeQueueMaxSize, int maxQueuedMessages) {
+        this.writeQueueMaxSize = writeQueueMaxSize;
+        this.maxQueuedMessages = maxQueuedMessages;
+    }
+
+    void register(PushVerticle partition) {
+        this.partitions.add(partition);
+    }
+
+    void unregister(PushVerticle partition) {
+        this.partitions.remove(partition);
+    }
+
+    void subscribeUser(Long userId, PushConnection connection) {
+        this.userToConnectionsMap.compute(userId, (k, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            set.add(connection);
+            return set;
+        });
+    }
+
+    /**
+     * 取消用户连接，返回该用户是否还有其他连接
+     */
+    boolean unsubscribeUser(Long userId, PushConnection connection) {
+        Set<PushConnection> remains = this.userToConnectionsMap.computeIfPresent(userId, (k, set) -> {
+            set.remove(connection);
+            return set.isEmpty() ? null : set;
+        });
+        return remains != null;
+    }
+
+    public void broadcast(String text) {
+        NotificationRoute route = NotificationRoute.parse(text);
+        if (route == null) {
+            logger.error("invalid message format: {}", text);
+            return;
+        }
+        // 只编码一次，所有连接共享同一个Buffer:
+        Buffer payload = Buffer.buffer(text);
+        // broadcast to subscribers
+        if (route.userId == null) {
+            String channel = route.channel();
+            boolean conflated = PushConnection.isConflated(route.type);
+            if (logger.isDebugEnabled()) {
+                logger.debug("try broadcast message to channel {}: {}", channel, text);
+            }
+            for (PushVerticle partition : this.partitions) {
+                partition.deliver(channel, conflated, payload);
+            }
+        } else {
+            if (logger.isDebugEnabled()) {
+                logger.debug("try broadcast message to user {}: {}", route.userId, text);
+            }
+            // broadcast to single user:
+            Set<PushConnection> connections = this.userToConnectionsMap.get(route.userId);
+            if (connections != null) {
+                for (PushConnection connection : connections) {
+                    connection.context.runOnContext(v -> connection.sendUser(payload));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.exchange.push;
+
+import java.util.List;
+
+/**
+ * 客户端通过WebSocket发送的订阅请求
+ */
+public class PushRequest {
+
+    /**
+     * subscribe或unsubscribe
+     */
+    public String action;
+
+    public List<String> channels;
+}
@@ -2,6 +2,7 @@ package com.example.exchange.push;
 
 import com.example.exchange.redis.RedisCache;
 import com.example.exchange.support.LoggerSupport;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import io.vertx.redis.client.Command;
 import io.vertx.redis.client.Redis;
@@ -33,6 +34,18 @@ public class PushService extends LoggerSupport {
     @Value("${spring.redis.standalone.database:0}")
     private int redisDatabase = 0;
 
+    // PushVerticle实例数，每个实例运行在一个event loop上，0表示CPU核数:
+    @Value("${exchange.push.instances:0}")
+    private int instances;
+
+    // 每个连接的写缓冲区上限(字节):
+    @Value("${exchange.push.write-queue-max-size:65536}")
+    private int writeQueueMaxSize;
+
+    // 写缓冲区满时每个连接最多排队的用户消息数，超过后断开连接:
+    @Value("${exchange.push.max-queued-messages:1000}")
+    private int maxQueuedMessages;
+
     private Vertx vertx;
 
     @PostConstruct
@@ -40,9 +53,12 @@ public class PushService extends LoggerSupport {
         logger.info("start vertx...");
         // 启动Vert.x:
         this.vertx = Vertx.vertx();
-        // 创建一个Vert.x Verticle组件:
-        var push = new PushVerticle(this.hmacKey, this.serverPort);
-        vertx.deployVerticle(push);
+        // 部署多个Vert.x Verticle组件，共享同一个端口和连接注册表:
+        var registry = new PushRegistry(this.writeQueueMaxSize, this.maxQueuedMessages);
+        int instances = this.instances > 0 ? this.instances : Runtime.getRuntime().availableProcessors();
+        logger.info("deploy {} push verticle instances...", instances);
+        vertx.deployVerticle(() -> new PushVerticle(this.hmacKey, this.serverPort, registry),
+                new DeploymentOptions().setInstances(instances));
 
         // 连接到Redis:
         String url = "redis://" + (this.redisPassword.isEmpty() ? "" : ":" + this.redisPassword + "@") + this.redisHost
@@ -64,8 +80,8 @@ public class PushService extends LoggerSupport {
                         if (logger.isDebugEnabled()) {
                             logger.debug("receive push message: {}", msg);
                         }
-                        // 由push verticle组件处理
-                        push.broadcast(msg);
+                        // 分发到各push verticle组件处理
+                        registry.broadcast(msg);
                     }
                 }
             });
@@ -0,0 +1,31 @@
+package com.example.exchange.push;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 推送统计，所有PushVerticle实例共享：
+ * conflated(写缓冲区满时被同频道更新值覆盖的消息)、dropped(写缓冲区满时丢弃的消息)、
+ * disconnected(用户消息积压超过上限被断开的连接)。
+ */
+public class PushStats {
+
+    final LongAdder connections = new LongAdder();
+    final LongAdder delivered = new LongAdder();
+    final LongAdder conflated = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+    final LongAdder queued = new LongAdder();
+    final LongAdder disconnected = new LongAdder();
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("connections", this.connections.sum());
+        metrics.put("delivered", this.delivered.sum());
+        metrics.put("conflated", this.conflated.sum());
+        metrics.put("dropped", this.dropped.sum());
+        metrics.put("queued", this.queued.sum());
+        metrics.put("disconnected", this.disconnected.sum());
+        return metrics;
+    }
+}
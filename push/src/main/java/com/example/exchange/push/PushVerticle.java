@@ -1,10 +1,9 @@
 package com.example.exchange.push;
 
 import com.example.exchange.bean.AuthToken;
-import com.example.exchange.message.NotificationMessage;
 import com.example.exchange.util.JsonUtil;
 import io.vertx.core.AbstractVerticle;
-import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.ServerWebSocket;
@@ -12,10 +11,11 @@ import io.vertx.ext.web.Router;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 public class PushVerticle extends AbstractVerticle {
@@ -26,28 +26,45 @@ public class PushVerticle extends AbstractVerticle {
 
     private final int serverPort;
 
-    public PushVerticle(String hmacKey, int serverPort) {
+    private final PushRegistry registry;
+
+    public PushVerticle(String hmacKey, int serverPort, PushRegistry registry) {
         this.hmacKey = hmacKey;
         this.serverPort = serverPort;
+        this.registry = registry;
     }
 
     /**
-     * All handlers.
+     * 公共频道：订单簿、成交、24小时行情和各周期K线。
+     */
+    static final Set<String> CHANNELS = Set.of("orderbook", "tick", "ticker", "bar.SEC", "bar.MIN", "bar.HOUR",
+            "bar.DAY");
+
+    private static final AtomicLong HANDLER_SEQUENCE = new AtomicLong();
+
+    /**
+     * handler -> connection
+     */
+    private final Map<String, PushConnection> handlerToConnectionMap = new ConcurrentHashMap<>(1000);
+
+    /**
+     * 尚未发送过subscribe/unsubscribe的handler，兼容旧客户端，接收所有公共消息。
      */
     private final Map<String, Boolean> handlersSet = new ConcurrentHashMap<>(1000);
 
     /**
-     * userId -> set of handlers
+     * channel -> set of handlers
      */
-    private final Map<Long, Set<String>> userToHandlersMap = new ConcurrentHashMap<>(1000);
+    private final Map<String, Set<String>> channelToHandlersMap = new ConcurrentHashMap<>();
 
     /**
-     * handler -> userId
+     * handler -> set of channels
      */
-    private final Map<String, Long> handlerToUserMap = new ConcurrentHashMap<>(1000);
+    private final Map<String, Set<String>> handlerToChannelsMap = new ConcurrentHashMap<>(1000);
 
     @Override
     public void start() throws Exception {
+        this.registry.register(this);
         //create Vertx HttpServer
         HttpServer server = vertx.createHttpServer();
 
@@ -80,6 +97,10 @@ public class PushVerticle extends AbstractVerticle {
         // 处理请求 GET /actuator/health:
         router.get("/actuator/health").respond(ctx -> ctx.response().putHeader("Content-Type", "application/json").end("{\"status\":\"UP\"}"));
 
+        // 处理请求 GET /internal/metrics/push:
+        router.get("/internal/metrics/push").respond(ctx -> ctx.response().putHeader("Content-Type", "application/json")
+                .end(JsonUtil.writeJson(this.registry.stats.getMetrics())));
+
         // 处理其他请求:
         router.get().respond(ctx -> ctx.response().setStatusCode(404).setStatusMessage("No Route Found").end());
 
@@ -94,24 +115,40 @@ public class PushVerticle extends AbstractVerticle {
         });
     }
 
+    @Override
+    public void stop() throws Exception {
+        this.registry.unregister(this);
+    }
+
     private void initWebSocket(ServerWebSocket websocket, Long userId) {
-        String handlerId = websocket.textHandlerID();
+        // 消息直接写入websocket，不再需要通过EventBus注册的textHandlerID:
+        String handlerId = "ws-" + HANDLER_SEQUENCE.incrementAndGet();
         logger.info("websocket accept userId: " + userId + ", handlerId: " + handlerId);
+        PushConnection connection = new PushConnection(handlerId, websocket, this.context, this.registry.stats,
+                this.registry.writeQueueMaxSize, this.registry.maxQueuedMessages);
         // handle text message:
         websocket.textMessageHandler(str -> {
-            logger.info("text message: " + str);
+            if (logger.isDebugEnabled()) {
+                logger.debug("text message: " + str);
+            }
+            handleRequest(websocket, handlerId, str);
         });
         websocket.exceptionHandler(t -> {
             logger.error("websocket error: " + t.getMessage(), t);
         });
         // on close:
         websocket.closeHandler(e -> {
+            this.handlerToConnectionMap.remove(handlerId);
+            this.registry.stats.connections.decrement();
             unsubscribeClient(handlerId);
-            unsubscribeUser(handlerId, userId);
+            unsubscribeChannels(handlerId, null);
+            unsubscribeUser(handlerId, userId, connection);
             logger.info("websocket closed: " + handlerId);
         });
+        this.handlerToConnectionMap.put(handlerId, connection);
+        this.registry.stats.connections.increment();
         subscribeClient(handlerId);
-        subscribeUser(handlerId, userId);
+        subscribeUser(handlerId, userId, connection);
         // send welcome message:
         if (userId == null) {
             websocket.writeTextMessage("{\"type\":\"status\",\"status\":\"connected\",\"message\":\"connected as anonymous user\"}");
@@ -120,37 +157,95 @@ public class PushVerticle extends AbstractVerticle {
         }
     }
 
-    public void broadcast(String text) {
-        NotificationMessage message = null;
+    /**
+     * 在本实例的event loop上把公共消息写入订阅了channel的连接
+     */
+    void deliver(String channel, boolean conflated, Buffer payload) {
+        this.context.runOnContext(v -> {
+            Set<String> handlers = this.channelToHandlersMap.get(channel);
+            if (handlers != null) {
+                for (String handler : handlers) {
+                    send(handler, channel, conflated, payload);
+                }
+            }
+            for (String handler : this.handlersSet.keySet()) {
+                send(handler, channel, conflated, payload);
+            }
+        });
+    }
+
+    void send(String handlerId, String channel, boolean conflated, Buffer payload) {
+        PushConnection connection = this.handlerToConnectionMap.get(handlerId);
+        if (connection != null) {
+            connection.sendPublic(channel, conflated, payload);
+        }
+    }
+
+    /**
+     * 处理客户端请求：
+     * <pre>
+     * {"action":"subscribe","channels":["orderbook","tick","bar.MIN"]}
+     * {"action":"unsubscribe","channels":["orderbook"]}
+     * </pre>
+     * 首次subscribe/unsubscribe后只接收已订阅频道的公共消息，用户私有消息总是发送。
+     */
+    void handleRequest(ServerWebSocket websocket, String handlerId, String text) {
+        PushRequest request;
         try {
-            message = JsonUtil.readJson(text, NotificationMessage.class);
+            request = JsonUtil.readJson(text, PushRequest.class);
         } catch (Exception e) {
-            logger.error("invalid message format: {}", text);
+            request = null;
+        }
+        if (request == null || request.channels == null
+                || !("subscribe".equals(request.action) || "unsubscribe".equals(request.action))) {
+            websocket.writeTextMessage("{\"type\":\"status\",\"status\":\"error\",\"message\":\"invalid request\"}");
             return;
         }
-        // broadcast to all
-        if (message.userId == null) {
-            if (logger.isInfoEnabled()) {
-                logger.info("try broadcast message to all: {}", text);
-            }
-            EventBus eb = vertx.eventBus();
-            for (String handler : this.handlersSet.keySet()) {
-                eb.send(handler, text);
+        for (String channel : request.channels) {
+            if (!CHANNELS.contains(channel)) {
+                websocket.writeTextMessage("{\"type\":\"status\",\"status\":\"error\",\"message\":\"invalid channel\"}");
+                return;
             }
+        }
+        // 不再接收所有公共消息:
+        unsubscribeClient(handlerId);
+        if ("subscribe".equals(request.action)) {
+            subscribeChannels(handlerId, request.channels);
         } else {
-            if (logger.isInfoEnabled()) {
-                logger.info("try broadcast message to user {}: {}", message.userId, text);
-            }
-            // broadcast to single user:
-            Set<String> handlers = this.userToHandlersMap.get(message.userId);
+            unsubscribeChannels(handlerId, request.channels);
+        }
+        Set<String> channels = this.handlerToChannelsMap.getOrDefault(handlerId, Set.of());
+        websocket.writeTextMessage("{\"type\":\"status\",\"status\":\"subscribed\",\"channels\":"
+                + JsonUtil.writeJson(channels) + "}");
+    }
+
+    void subscribeChannels(String handlerId, List<String> channels) {
+        Set<String> subscribed = this.handlerToChannelsMap.computeIfAbsent(handlerId,
+                k -> ConcurrentHashMap.newKeySet());
+        for (String channel : channels) {
+            subscribed.add(channel);
+            this.channelToHandlersMap.computeIfAbsent(channel, k -> ConcurrentHashMap.newKeySet()).add(handlerId);
+        }
+    }
+
+    /**
+     * 取消订阅，channels为null时取消所有频道
+     */
+    void unsubscribeChannels(String handlerId, List<String> channels) {
+        Set<String> subscribed = this.handlerToChannelsMap.get(handlerId);
+        if (subscribed == null) {
+            return;
+        }
+        for (String channel : channels == null ? List.copyOf(subscribed) : channels) {
+            subscribed.remove(channel);
+            Set<String> handlers = this.channelToHandlersMap.get(channel);
             if (handlers != null) {
-                EventBus eb = vertx.eventBus();
-                ;
-                for (String handler : handlers) {
-                    eb.send(handler, text);
-                }
+                handlers.remove(handlerId);
             }
         }
+        if (channels == null) {
+            this.handlerToChannelsMap.remove(handlerId);
+        }
     }
 
     void subscribeClient(String handlerId) {
@@ -161,34 +256,22 @@ public class PushVerticle extends AbstractVerticle {
         this.handlersSet.remove(handlerId);
     }
 
-    void subscribeUser(String handlerId, Long userId) {
+    void subscribeUser(String handlerId, Long userId, PushConnection connection) {
         if (userId == null) {
             return;
         }
-        handlerToUserMap.put(handlerId, userId);
-        Set<String> set = userToHandlersMap.get(userId);
-        if (set == null) {
-            set = new HashSet<>();
-            userToHandlersMap.put(userId, set);
-        }
-        set.add(handlerId);
+        this.registry.subscribeUser(userId, connection);
         logger.info("subscribe user {} {} ok.", userId, handlerId);
     }
 
-    void unsubscribeUser(String handlerId, Long userId) {
+    void unsubscribeUser(String handlerId, Long userId, PushConnection connection) {
         if (userId == null) {
             return;
         }
-        handlerToUserMap.remove(handlerId);
-        Set<String> set = userToHandlersMap.get(userId);
-        if (set != null) {
-            set.remove(handlerId);
-            if (set.isEmpty()) {
-                userToHandlersMap.remove(userId);
-                logger.info("unsubscribe user {} {} ok: cleared.", userId, handlerId);
-            } else {
-                logger.info("unsubscribe user {} {} ok: but still others online.", userId, handlerId);
-            }
+        if (this.registry.unsubscribeUser(userId, connection)) {
+            logger.info("unsubscribe user {} {} ok: but still others online.", userId, handlerId);
+        } else {
+            logger.info("unsubscribe user {} {} ok: cleared.", userId, handlerId);
         }
     }
 }
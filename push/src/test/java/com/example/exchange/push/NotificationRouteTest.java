@@ -0,0 +1,99 @@
+package com.example.exchange.push;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationRouteTest {
+
+    @Test
+    void privateMessage() {
+        NotificationRoute route = NotificationRoute.parse(
+                "{\"type\":\"order_matched\",\"userId\":100001,\"createdAt\":1700000000000,\"data\":{\"id\":1}}");
+        assertNotNull(route);
+        assertEquals("order_matched", route.type);
+        assertEquals(Long.valueOf(100001L), route.userId);
+        assertNull(route.resolution);
+        assertEquals("order_matched", route.channel());
+    }
+
+    @Test
+    void nullUserId() {
+        NotificationRoute route = NotificationRoute.parse("{\"type\":\"ticker\",\"userId\":null,\"data\":{}}");
+        assertNotNull(route);
+        assertEquals("ticker", route.type);
+        assertNull(route.userId);
+        assertEquals("ticker", route.channel());
+        // 没有userId:
+        route = NotificationRoute.parse("{\"type\":\"ticker\"}");
+        assertNotNull(route);
+        assertNull(route.userId);
+    }
+
+    @Test
+    void skipNestedData() {
+        // data中的字符串包含括号、转义的引号和同名key，均不影响最外层的解析:
+        String s = "{\"data\":{\"type\":\"x\",\"note\":\"}{][\\\"userId\\\":1\\\\\",\"items\":[{\"userId\":2},[3,{}]]},"
+                + "\"type\":\"order_canceled\",\"userId\":-42}";
+        NotificationRoute route = NotificationRoute.parse(s);
+        assertNotNull(route);
+        assertEquals("order_canceled", route.type);
+        assertEquals(Long.valueOf(-42L), route.userId);
+        // 数组和字符串类型的data:
+        route = NotificationRoute.parse("{\"data\":[\"a\\\"]\",[{}]],\"type\":\"t\",\"data2\":\"{\\\"\"}");
+        assertNotNull(route);
+        assertEquals("t", route.type);
+    }
+
+    @Test
+    void whitespace() {
+        NotificationRoute route = NotificationRoute
+                .parse(" {\n\t\"type\" : \"bar\" ,\r\n \"resolution\" : \"MIN\" , \"userId\" : 7 , \"data\" : { } }");
+        assertNotNull(route);
+        assertEquals("bar", route.type);
+        assertEquals("MIN", route.resolution);
+        assertEquals(Long.valueOf(7L), route.userId);
+        assertNotNull(NotificationRoute.parse("{ }"));
+    }
+
+    @Test
+    void channel() {
+        assertEquals("bar.SEC",
+                NotificationRoute.parse("{\"type\":\"bar\",\"resolution\":\"SEC\",\"data\":{}}").channel());
+        assertEquals("bar.DAY", NotificationRoute.parse("{\"resolution\":\"DAY\",\"type\":\"bar\"}").channel());
+        // 订单簿快照和增量属于同一频道:
+        assertEquals("orderbook", NotificationRoute.parse("{\"type\":\"orderbook\",\"data\":{}}").channel());
+        assertEquals("orderbook", NotificationRoute.parse("{\"type\":\"orderbook_delta\",\"data\":{}}").channel());
+        assertEquals("ticker", NotificationRoute.parse("{\"type\":\"ticker\",\"data\":{}}").channel());
+        // type不是字符串:
+        assertNull(NotificationRoute.parse("{\"type\":null}").type);
+    }
+
+    @Test
+    void malformed() {
+        String[] inputs = {
+                "",
+                "   ",
+                "null",
+                "[]",
+                "{",
+                "{\"type\"",
+                "{\"type\":}",
+                "{\"type\":\"bar\"",
+                "{\"type\":\"bar\",}",
+                "{\"type\":\"bar\" \"userId\":1}",
+                "{\"type\":\"unterminated}",
+                "{type:\"bar\"}",
+                "{\"userId\":abc}",
+                "{\"userId\":1.5}",
+                "{\"userId\":\"100001\"}",
+                "{\"userId\":99999999999999999999}",
+                "{\"data\":{\"a\":1}",
+                "{\"data\":[1,2}",
+                "{\"data\":\"}\\\"}",
+        };
+        for (String s : inputs) {
+            assertNull(NotificationRoute.parse(s), s);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.exchange.push;
+
+import com.example.exchange.message.NotificationMessage;
+import com.example.exchange.util.JsonUtil;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 推送服务压测：在同一进程内启动PushVerticle并建立大量WebSocket连接，
+ * 以最快速度广播orderbook消息，输出每秒投递的消息数和GC情况。
+ * <p>
+ * 不依赖Spring和Redis，直接运行main()即可(需要足够的文件句柄，例如ulimit -n 200000)：
+ * <pre>
+ * java -Xmx4g -cp ... com.example.exchange.push.PushLoadTest [connections] [seconds] [port] [instances]
+ * </pre>
+ * 单个源地址的本地端口有限，连接按127.0.0.1~127.0.0.4轮流绑定源地址。
+ * 客户端与服务端在同一进程，GC统计包含客户端接收消息的开销，对比改动前后时应使用相同参数。
+ */
+public class PushLoadTest {
+
+    static final String[] LOCAL_ADDRESSES = { "127.0.0.1", "127.0.0.2", "127.0.0.3", "127.0.0.4" };
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 18006;
+        int instances = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        String message = createOrderBookMessage();
+
+        benchmarkRouting(message);
+
+        Vertx vertx = Vertx.vertx();
+        PushRegistry push = new PushRegistry(65536, 1000);
+        CountDownLatch deployed = new CountDownLatch(1);
+        vertx.deployVerticle(() -> new PushVerticle("load-test", port, push), new DeploymentOptions().setInstances(instances))
+                .onComplete(ar -> deployed.countDown());
+        deployed.await();
+        // 等待端口监听:
+        Thread.sleep(1000);
+
+        LongAdder received = new LongAdder();
+        connect(vertx, port, connections, received);
+        Thread.sleep(2000);
+        received.reset();
+
+        System.out.printf("connections: %d, instances: %d, message size: %d chars%n", connections, instances,
+                message.length());
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long broadcasts = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long lastReport = start;
+        long lastReceived = 0;
+        while (System.nanoTime() < end) {
+            push.broadcast(message);
+            broadcasts++;
+            // 控制在途消息数量，避免发送缓冲区无限增长:
+            while (broadcasts * connections - received.sum() - push.stats.conflated.sum()
+                    - push.stats.dropped.sum() > 10L * connections) {
+                Thread.onSpinWait();
+                if (System.nanoTime() >= end) {
+                    break;
+                }
+            }
+            long now = System.nanoTime();
+            if (now - lastReport >= 1_000_000_000L) {
+                long total = received.sum();
+                System.out.printf("  delivered: %,12d msg/sec%n", (total - lastReceived) * 1_000_000_000L / (now - lastReport));
+                lastReport = now;
+                lastReceived = total;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long total = received.sum();
+        System.out.printf("broadcasts: %,d msg/sec, delivered: %,d msg/sec, gc: %.2f collections/sec, %d ms total pause%n",
+                broadcasts * 1_000_000_000L / nanos, total * 1_000_000_000L / nanos,
+                (gcCount() - gcCount) * 1e9 / nanos, gcMillis() - gcMillis);
+        System.out.println("push metrics: " + push.stats.getMetrics());
+        vertx.close();
+    }
+
+    /**
+     * 比较完整反序列化和NotificationRoute提取路由信息的吞吐量
+     */
+    static void benchmarkRouting(String message) {
+        int n = 200_000;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                JsonUtil.readJson(message, NotificationMessage.class);
+            }
+            long fullNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                NotificationRoute.parse(message);
+            }
+            long routeNanos = System.nanoTime() - start;
+            System.out.printf("routing: readJson %,12d msg/sec, NotificationRoute %,12d msg/sec%n",
+                    n * 1_000_000_000L / fullNanos, n * 1_000_000_000L / routeNanos);
+        }
+    }
+
+    static void connect(Vertx vertx, int port, int connections, LongAdder received) throws InterruptedException {
+        List<HttpClient> clients = new ArrayList<>();
+        for (String address : LOCAL_ADDRESSES) {
+            clients.add(vertx.createHttpClient(
+                    new HttpClientOptions().setLocalAddress(address).setMaxWebSockets(connections)));
+        }
+        // 限制同时握手的连接数:
+        Semaphore pending = new Semaphore(1000);
+        CountDownLatch latch = new CountDownLatch(connections);
+        LongAdder failed = new LongAdder();
+        for (int i = 0; i < connections; i++) {
+            pending.acquire();
+            clients.get(i % clients.size()).webSocket(port, "127.0.0.1", "/notification").onComplete(ar -> {
+                pending.release();
+                if (ar.succeeded()) {
+                    ar.result().textMessageHandler(text -> received.increment());
+                    ar.result().writeTextMessage("{\"action\":\"subscribe\",\"channels\":[\"orderbook\"]}");
+                } else {
+                    failed.increment();
+                }
+                latch.countDown();
+            });
+        }
+        latch.await();
+        if (failed.sum() > 0) {
+            System.out.printf("failed to connect: %d%n", failed.sum());
+        }
+    }
+
+    static String createOrderBookMessage() {
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append("{\"type\":\"orderbook\",\"data\":{\"sequenceId\":12345678,\"price\":20513.25,\"buy\":[");
+        for (int i = 0; i < 20; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"price\":").append(20513 - i).append(".25,\"quantity\":0.").append(125 + i).append('}');
+        }
+        sb.append("],\"sell\":[");
+        for (int i = 0; i < 20; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"price\":").append(20514 + i).append(".25,\"quantity\":0.").append(125 + i).append('}');
+        }
+        return sb.append("]}}").toString();
+    }
+
+    static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+}
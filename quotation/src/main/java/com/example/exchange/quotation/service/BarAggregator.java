@@ -0,0 +1,178 @@
+package com.example.exchange.quotation.service;
+
+import com.example.exchange.enums.BarType;
+import com.example.exchange.model.quotation.DayBarEntity;
+import com.example.exchange.model.quotation.HourBarEntity;
+import com.example.exchange.model.quotation.MinBarEntity;
+import com.example.exchange.model.quotation.SecBarEntity;
+import com.example.exchange.model.quotation.TickEntity;
+import com.example.exchange.model.support.AbstractBarEntity;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 在内存中合并各周期(SEC, MIN, HOUR, DAY)当前未完成的K线，非线程安全，tick消费线程锁定后访问。
+ * <p>
+ * merge()合并一组tick的OHLCV，周期切换时旧K线完成并放入closedBars；
+ * 自上次drain以来有变化的K线(含已完成的)记录在updatedBars中，由调用方合并写入Redis。
+ */
+class BarAggregator {
+
+    static final BarType[] TYPES = BarType.values();
+
+    @SuppressWarnings("unchecked")
+    private static final Supplier<AbstractBarEntity>[] FACTORIES = new Supplier[] { SecBarEntity::new,
+            MinBarEntity::new, HourBarEntity::new, DayBarEntity::new };
+
+    final ZoneId zoneId;
+
+    // 各周期当前未完成的K线，按BarType.ordinal()索引:
+    private final AbstractBarEntity[] openBars = new AbstractBarEntity[TYPES.length];
+
+    // 已完成、等待写入数据库的K线:
+    private final List<AbstractBarEntity> closedBars = new ArrayList<>();
+
+    // 自上次drain以来变化的K线，按startTime递增，最后一个为当前未完成的K线:
+    @SuppressWarnings("unchecked")
+    private final List<AbstractBarEntity>[] updatedBars = new List[TYPES.length];
+
+    BarAggregator(ZoneId zoneId) {
+        this.zoneId = zoneId;
+        for (int i = 0; i < TYPES.length; i++) {
+            this.updatedBars[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * 计算createdAt所属的各周期K线的开始时间，按BarType.ordinal()索引
+     */
+    long[] startTimes(long createdAt) {
+        long sec = createdAt / 1000;
+        long min = sec / 60;
+        long hour = min / 60;
+        long secStartTime = sec * 1000; // 秒K的开始时间
+        long minStartTime = min * 60 * 1000; // 分钟K的开始时间
+        long hourStartTime = hour * 3600 * 1000; // 小时K的开始时间
+        long dayStartTime = Instant.ofEpochMilli(hourStartTime).atZone(zoneId).withHour(0).toEpochSecond() * 1000; // 日K的开始时间，与TimeZone相关
+        return new long[] { secStartTime, minStartTime, hourStartTime, dayStartTime };
+    }
+
+    AbstractBarEntity getOpenBar(BarType type) {
+        return this.openBars[type.ordinal()];
+    }
+
+    /**
+     * 合并一组属于同一秒的tick
+     */
+    void merge(long createdAt, BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close,
+            BigDecimal quantity) {
+        long[] startTimes = startTimes(createdAt);
+        for (int i = 0; i < TYPES.length; i++) {
+            merge(i, startTimes[i], open, high, low, close, quantity, true);
+        }
+    }
+
+    /**
+     * 查询[from, to)内已完成的某一周期的K线，按startTime递增
+     */
+    @FunctionalInterface
+    interface BarLoader {
+        List<? extends AbstractBarEntity> load(BarType type, long from, long to);
+    }
+
+    /**
+     * 根据最后一个tick所在的各周期，合并已持久化的下级K线和当前秒的tick，重建未完成的K线，不记录变化:
+     * DAY = 当日已完成的HOUR + 当前小时已完成的MIN + 当前分钟已完成的SEC + 当前秒的ticks，其余周期类推。
+     *
+     * @param startTimes 最后一个tick所属各周期K线的开始时间(见startTimes())
+     * @param ticks      当前秒的tick
+     */
+    void restore(long[] startTimes, BarLoader loader, List<TickEntity> ticks) {
+        // 按时间顺序合并当日已完成的HOUR、当前小时已完成的MIN、当前分钟已完成的SEC，保证open和close正确:
+        for (int lower = BarType.HOUR.ordinal(); lower >= BarType.SEC.ordinal(); lower--) {
+            for (AbstractBarEntity bar : loader.load(TYPES[lower], startTimes[lower + 1], startTimes[lower])) {
+                for (int i = lower + 1; i < TYPES.length; i++) {
+                    merge(i, startTimes[i], bar.openPrice, bar.highPrice, bar.lowPrice, bar.closePrice, bar.quantity,
+                            false);
+                }
+            }
+        }
+        for (TickEntity tick : ticks) {
+            for (int i = 0; i < TYPES.length; i++) {
+                merge(i, startTimes[i], tick.price, tick.price, tick.price, tick.price, tick.quantity, false);
+            }
+        }
+    }
+
+    private void merge(int index, long startTime, BigDecimal open, BigDecimal high, BigDecimal low,
+            BigDecimal close, BigDecimal quantity, boolean track) {
+        AbstractBarEntity bar = this.openBars[index];
+        if (bar != null && startTime < bar.startTime) {
+            // 晚到的tick，所属K线已完成:
+            return;
+        }
+        if (bar != null && startTime == bar.startTime) {
+            bar.highPrice = bar.highPrice.max(high);
+            bar.lowPrice = bar.lowPrice.min(low);
+            bar.closePrice = close;
+            bar.quantity = bar.quantity.add(quantity);
+        } else {
+            if (bar != null && track) {
+                this.closedBars.add(bar);
+            }
+            bar = FACTORIES[index].get();
+            bar.startTime = startTime;
+            bar.openPrice = open;
+            bar.highPrice = high;
+            bar.lowPrice = low;
+            bar.closePrice = close;
+            bar.quantity = quantity;
+            this.openBars[index] = bar;
+        }
+        if (track) {
+            List<AbstractBarEntity> updated = this.updatedBars[index];
+            if (updated.isEmpty() || updated.get(updated.size() - 1) != bar) {
+                updated.add(bar);
+            }
+        }
+    }
+
+    /**
+     * 取出并清空已完成的K线
+     */
+    List<AbstractBarEntity> drainClosedBars() {
+        if (this.closedBars.isEmpty()) {
+            return List.of();
+        }
+        List<AbstractBarEntity> bars = new ArrayList<>(this.closedBars);
+        this.closedBars.clear();
+        return bars;
+    }
+
+    /**
+     * 自上次调用以来有变化的K线，按BarType.ordinal()索引，并清空记录
+     */
+    List<AbstractBarEntity>[] drainUpdatedBars() {
+        @SuppressWarnings("unchecked")
+        List<AbstractBarEntity>[] result = new List[TYPES.length];
+        for (int i = 0; i < TYPES.length; i++) {
+            result[i] = new ArrayList<>(this.updatedBars[i]);
+            this.updatedBars[i].clear();
+        }
+        return result;
+    }
+
+    /**
+     * Redis中K线的JSON格式: [startTime, O, H, L, C, V]
+     */
+    static String toJson(AbstractBarEntity bar) {
+        return "[" + bar.startTime + "," + bar.openPrice.toPlainString() + "," + bar.highPrice.toPlainString() + ","
+                + bar.lowPrice.toPlainString() + "," + bar.closePrice.toPlainString() + ","
+                + bar.quantity.toPlainString() + "]";
+    }
+}
@@ -1,27 +1,29 @@
 package com.example.exchange.quotation.service;
 
 import com.example.exchange.model.quotation.*;
+import com.example.exchange.model.support.AbstractBarEntity;
 import com.example.exchange.support.AbstractDbService;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Component
 @Transactional
 public class QuotationDbService extends AbstractDbService {
-    public void saveBars(SecBarEntity sec, MinBarEntity min, HourBarEntity hour, DayBarEntity day) {
-        if (sec != null) {
-            this.db.insertIgnore(sec);
+    /**
+     * 按类型批量写入已完成的K线
+     */
+    public void saveBars(List<AbstractBarEntity> bars) {
+        Map<Class<?>, List<AbstractBarEntity>> groups = new LinkedHashMap<>();
+        for (AbstractBarEntity bar : bars) {
+            groups.computeIfAbsent(bar.getClass(), k -> new ArrayList<>()).add(bar);
         }
-        if (min != null) {
-            this.db.insertIgnore(min);
-        }
-        if (hour != null) {
-            this.db.insertIgnore(hour);
-        }
-        if (day != null) {
-            this.db.insertIgnore(day);
+        for (List<AbstractBarEntity> group : groups.values()) {
+            this.db.insertIgnore(group);
         }
     }
 
@@ -29,5 +31,32 @@ public class QuotationDbService extends AbstractDbService {
         this.db.insertIgnore(ticks);
     }
 
+    /**
+     * 在同一个事务中写入一批tick和已完成的K线
+     */
+    public void save(List<TickEntity> ticks, List<AbstractBarEntity> bars) {
+        if (!ticks.isEmpty()) {
+            saveTicks(ticks);
+        }
+        if (!bars.isEmpty()) {
+            saveBars(bars);
+        }
+    }
+
+    public TickEntity getLastTick() {
+        return this.db.from(TickEntity.class).orderBy("id").desc().first();
+    }
+
+    public List<TickEntity> getTicks(long fromCreatedAt) {
+        return this.db.from(TickEntity.class).where("createdAt >= ?", fromCreatedAt).orderBy("id").list();
+    }
+
+    /**
+     * 查询startTime在[from, to)之间的K线，按startTime排序
+     */
+    public <T extends AbstractBarEntity> List<T> getBars(Class<T> clazz, long from, long to) {
+        return this.db.from(clazz).where("startTime >= ? AND startTime < ?", from, to).orderBy("startTime").list();
+    }
+
 
 }
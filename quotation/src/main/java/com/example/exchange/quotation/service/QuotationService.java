@@ -13,22 +13,25 @@ import com.example.exchange.redis.RedisService;
 import com.example.exchange.support.LoggerSupport;
 import com.example.exchange.util.IpUtil;
 import com.example.exchange.util.JsonUtil;
-import com.fasterxml.jackson.core.type.TypeReference;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
-import java.time.Instant;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.StringJoiner;
-import java.util.function.Supplier;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class QuotationService extends LoggerSupport {
+
+    // 写入数据库失败后重试的最大间隔:
+    static final long DB_MAX_RETRY_DELAY = 30_000;
+
     @Autowired
     ZoneId zoneId;
     @Autowired
@@ -42,64 +45,270 @@ public class QuotationService extends LoggerSupport {
 
     private String shaUpdateRecentTicksLua = null;
 
-    private String shaUpdateBarLua = null;
+    private String shaUpdateBarsLua = null;
+
+    private String shaUpdateTickerLua = null;
+
+    // 内存中合并的各周期K线，各分区的tick消费线程处理消息时锁定barAggregator:
+    private BarAggregator barAggregator;
+
+    // 最近24小时的行情统计，由tick消费线程更新，async-ticker线程定时移除过期的桶，访问时锁定ticker:
+    private RollingTicker ticker;
+
+    // 窗口已前移但尚未发布到Redis:
+    private boolean tickerExpired = false;
+
+    private Thread tickerThread;
+
+    // 数据库中已持久化的最后一个sequenceId，作为各分区的初始值:
+    private volatile long restoredSequenceId;
 
-    // track last processed sequence id:
-    private long sequenceId;
+    // 各分区已处理的最后一个sequenceId:
+    private final Map<Integer, Long> sequenceIds = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
 
     @PostConstruct
     public void init() {
         //init redis
         this.shaUpdateRecentTicksLua = this.redisService.loadScriptFromClassPath("/redis/update-recent-ticks.lua");
-        this.shaUpdateBarLua = this.redisService.loadScriptFromClassPath("/redis/update-bar.lua");
+        this.shaUpdateBarsLua = this.redisService.loadScriptFromClassPath("/redis/update-bars.lua");
+        this.shaUpdateTickerLua = this.redisService.loadScriptFromClassPath("/redis/update-ticker.lua");
+
+        //从数据库重建当前未完成的K线
+        this.barAggregator = new BarAggregator(this.zoneId);
+        this.ticker = new RollingTicker();
+        restoreBars();
 
         //init mq
+        this.running = true;
         String groupId = Messaging.Topic.TICK.name() + "_" + IpUtil.getHostId();
-        this.tickConsumer = messagingFactory.createBatchMessageListener(Messaging.Topic.TICK, groupId,
+        this.tickConsumer = messagingFactory.createPartitionedBatchMessageListener(Messaging.Topic.TICK, groupId,
                 this::processMessages);
+        this.tickerThread = new Thread(this::runTickerThread, "async-ticker");
+        this.tickerThread.start();
     }
 
     @PreDestroy
     public void shutdown() {
+        // 中止正在重试的数据库写入:
+        this.running = false;
+        if (this.tickerThread != null) {
+            this.tickerThread.interrupt();
+            try {
+                this.tickerThread.join(5000);
+            } catch (InterruptedException e) {
+                logger.warn("interrupted when stop ticker thread.");
+            }
+            this.tickerThread = null;
+        }
         if (this.tickConsumer != null) {
             this.tickConsumer.stop();
             this.tickConsumer = null;
         }
     }
 
-    //处理接受的消息
-    private void processMessages(List<AbstractMessage> messages) {
-        for (AbstractMessage message : messages) {
-            processMessages((TickMessage) message);
+    /**
+     * 每分钟开始时前移24小时行情的窗口，没有新成交时过期的桶也会移出统计，统计变化后重新发布
+     */
+    private void runTickerThread() {
+        logger.info("start ticker thread...");
+        while (this.running) {
+            try {
+                Thread.sleep(RollingTicker.MINUTE - System.currentTimeMillis() % RollingTicker.MINUTE);
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                synchronized (this.ticker) {
+                    if (this.ticker.advance(System.currentTimeMillis())) {
+                        this.tickerExpired = true;
+                    }
+                    if (this.tickerExpired) {
+                        publishTicker(lastSequenceId());
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.warn("publish expired ticker failed, retry later.", e);
+            }
+        }
+        logger.info("ticker thread stopped.");
+    }
+
+    /**
+     * 发布当前的行情统计，需锁定ticker。
+     * <p>
+     * 定时发布时sequenceId可能未变，因此Redis脚本接受相同的sequenceId。
+     */
+    private void publishTicker(long sequenceId) {
+        Boolean tickerOk = redisService.executeScriptReturnBoolean(this.shaUpdateTickerLua,
+                new String[]{RedisCache.Key.TICKER},
+                new String[]{String.valueOf(sequenceId), JsonUtil.writeJson(this.ticker.toBean())});
+        if (!tickerOk.booleanValue()) {
+            logger.warn("ticker is ignored by Redis.");
+        }
+        this.tickerExpired = false;
+    }
+
+    // 各分区中最大的sequenceId:
+    private long lastSequenceId() {
+        long max = this.restoredSequenceId;
+        for (Long sequenceId : this.sequenceIds.values()) {
+            max = Math.max(max, sequenceId.longValue());
+        }
+        return max;
+    }
+
+    /**
+     * 在一个事务中写入一批tick和已完成的K线，失败时一直重试直到成功。
+     * <p>
+     * 写入成功后才更新Redis并返回，消息的offset也在此之后提交，因此数据库中最后一个tick之前的数据都已持久化，
+     * 重启后从该tick的sequenceId继续即可。ticks和bars均为insertIgnore，重复写入不影响结果。
+     */
+    private void saveToDb(List<TickEntity> ticks, List<AbstractBarEntity> bars) {
+        for (int retry = 0; ; retry++) {
+            try {
+                this.quotationDbService.save(ticks, bars);
+                return;
+            } catch (RuntimeException e) {
+                if (!this.running) {
+                    throw e;
+                }
+                logger.warn("save quotation data failed, retry later...", e);
+                try {
+                    Thread.sleep(Math.min(DB_MAX_RETRY_DELAY, 1000L << Math.min(retry, 5)));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 根据数据库中最后一个tick重建未完成的K线(见BarAggregator.restore())和24小时行情统计
+     */
+    private void restoreBars() {
+        TickEntity lastTick = this.quotationDbService.getLastTick();
+        if (lastTick == null) {
+            return;
+        }
+        BarAggregator aggregator = this.barAggregator;
+        long[] startTimes = aggregator.startTimes(lastTick.createdAt);
+        aggregator.restore(startTimes,
+                (type, from, to) -> this.quotationDbService.getBars(BAR_CLASSES.get(type.ordinal()), from, to),
+                this.quotationDbService.getTicks(startTimes[BarType.SEC.ordinal()]));
+        // 数据库中已持久化的最后一个sequenceId，之后的消息即使Redis已处理过也要合并并写入数据库:
+        this.restoredSequenceId = lastTick.sequenceId;
+        for (BarType type : BarAggregator.TYPES) {
+            AbstractBarEntity bar = aggregator.getOpenBar(type);
+            logger.info("restored open bar: {}", bar == null ? type : bar.toString(this.zoneId));
+        }
+        // 24小时行情统计: 窗口内已完成的MIN和当前未完成的MIN:
+        long minStartTime = startTimes[BarType.MIN.ordinal()];
+        for (MinBarEntity bar : this.quotationDbService.getBars(MinBarEntity.class,
+                minStartTime - (RollingTicker.BUCKETS - 1) * RollingTicker.MINUTE, minStartTime)) {
+            this.ticker.add(bar.startTime, bar.openPrice, bar.highPrice, bar.lowPrice, bar.closePrice, bar.quantity);
+        }
+        AbstractBarEntity minBar = aggregator.getOpenBar(BarType.MIN);
+        if (minBar != null) {
+            this.ticker.add(lastTick.createdAt, minBar.openPrice, minBar.highPrice, minBar.lowPrice, minBar.closePrice,
+                    minBar.quantity);
         }
     }
 
-    //处理一个Tick消息
-    private void processMessages(TickMessage message) {
-        //忽略重复信息
-        if (message.sequenceId < this.sequenceId) {
+    /**
+     * 按顺序处理同一分区的一批Tick消息。
+     * <p>
+     * sequenceId大于该分区已处理sequenceId的tick在内存中合并到各周期的K线，tick和已完成的K线在一个事务中批量写入数据库，
+     * 写入成功后才更新Redis：整批消息只执行一次更新最近Ticks的Redis脚本(脚本按每条消息的sequenceId去重)，
+     * 最后把有变化的K线一次写入Redis。Redis中的sequenceId因此不会领先于数据库。
+     * <p>
+     * K线、最近Ticks和24小时行情只有一份，各分区的处理在barAggregator上串行。只有一个交易对时所有tick在同一分区，
+     * 实际只有一个消费线程处理消息。全部写入成功后才更新该分区的sequenceId，失败重新投递的消息不会被当作重复消息跳过。
+     */
+    private void processMessages(int partition, List<AbstractMessage> messages) {
+        long sequenceId = this.sequenceIds.getOrDefault(partition, this.restoredSequenceId);
+        List<TickMessage> batch = new ArrayList<>(messages.size());
+        for (AbstractMessage m : messages) {
+            TickMessage message = (TickMessage) m;
+            //忽略重复信息
+            if (message.sequenceId <= sequenceId) {
+                continue;
+            }
+            sequenceId = message.sequenceId;
+            batch.add(message);
+        }
+        if (batch.isEmpty()) {
             return;
         }
         if (logger.isDebugEnabled()) {
-            logger.debug("process ticks: sequenceId = {}, {} ticks...", message.sequenceId, message.ticks.size());
-        }
-
-        // 生成[tick, tick...]列表以及合并为一个Bar:
-        this.sequenceId = message.sequenceId;
-        final long createdAt = message.createdAt;
-        StringJoiner ticksStrJoiner = new StringJoiner(",", "[", "]");
-        StringJoiner ticksJoiner = new StringJoiner(",", "[", "]");
-        BigDecimal openPrice = BigDecimal.ZERO;
-        BigDecimal closePrice = BigDecimal.ZERO;
-        BigDecimal highPrice = BigDecimal.ZERO;
-        BigDecimal lowPrice = BigDecimal.ZERO;
-        BigDecimal quantity = BigDecimal.ZERO;
+            logger.debug("process ticks: partition = {}, sequenceId = {}, {} messages...", partition, sequenceId,
+                    batch.size());
+        }
+        synchronized (this.barAggregator) {
+            processBatch(batch, sequenceId);
+        }
+        this.sequenceIds.put(partition, sequenceId);
+    }
 
+    private void processBatch(List<TickMessage> batch, long sequenceId) {
+        // 是否处理由本地恢复的sequenceId决定，而不是Redis是否接受:
+        List<TickEntity> ticks = new ArrayList<>();
+        synchronized (this.ticker) {
+            for (TickMessage message : batch) {
+                if (message.ticks.isEmpty()) {
+                    continue;
+                }
+                ticks.addAll(message.ticks);
+                mergeBar(message);
+            }
+        }
+        //先保存tick和已完成的K线至数据库
+        List<AbstractBarEntity> closedBars = this.barAggregator.drainClosedBars();
+        if (!ticks.isEmpty() || !closedBars.isEmpty()) {
+            saveToDb(ticks, closedBars);
+        }
+
+        //更新redis最近的Ticks缓存
+        final int n = batch.size();
+        String[] args = new String[1 + 3 * n];
+        args[0] = String.valueOf(n);
+        for (int i = 0; i < n; i++) {
+            TickMessage message = batch.get(i);
+            StringJoiner ticksStrJoiner = new StringJoiner(",", "[", "]");
+            StringJoiner ticksJoiner = new StringJoiner(",", "[", "]");
+            for (TickEntity tick : message.ticks) {
+                String json = tick.toJson();
+                ticksStrJoiner.add("\"" + json + "\"");
+                ticksJoiner.add(json);
+            }
+            args[1 + i] = String.valueOf(message.sequenceId);
+            args[1 + n + i] = ticksJoiner.toString();
+            args[1 + 2 * n + i] = ticksStrJoiner.toString();
+        }
+        long accepted = redisService.executeScriptReturnLong(this.shaUpdateRecentTicksLua,
+                new String[]{RedisCache.Key.RECENT_TICKS}, args).longValue();
+        if (accepted < n) {
+            // Redis已处理过的消息(例如重启前已写入Redis但offset尚未提交):
+            logger.warn("{} of {} tick messages are already in Redis.", n - accepted, n);
+        }
+        flushBars(sequenceId);
+        //更新24小时行情统计
+        synchronized (this.ticker) {
+            publishTicker(sequenceId);
+        }
+    }
+
+    //将一个Tick消息合并到内存中的K线
+    private void mergeBar(TickMessage message) {
+        BigDecimal openPrice = null;
+        BigDecimal closePrice = null;
+        BigDecimal highPrice = null;
+        BigDecimal lowPrice = null;
+        BigDecimal quantity = BigDecimal.ZERO;
         for (TickEntity tick : message.ticks) {
-            String json = tick.toJson();
-            ticksStrJoiner.add("\"" + json + "\"");
-            ticksJoiner.add(json);
-            if (openPrice.signum() == 0) {
+            if (openPrice == null) {
                 openPrice = tick.price;
                 closePrice = tick.price;
                 highPrice = tick.price;
@@ -112,75 +321,41 @@ public class QuotationService extends LoggerSupport {
             }
             quantity = quantity.add(tick.quantity);
         }
-        // 计算应该合并的每种类型的Bar的开始时间:
-        long sec = createdAt / 1000;
-        long min = sec / 60;
-        long hour = min / 60;
-        long secStartTime = sec * 1000; // 秒K的开始时间
-        long minStartTime = min * 60 * 1000; // 分钟K的开始时间
-        long hourStartTime = hour * 3600 * 1000; // 小时K的开始时间
-        long dayStartTime = Instant.ofEpochMilli(hourStartTime).atZone(zoneId).withHour(0).toEpochSecond() * 1000; // 日K的开始时间，与TimeZone相关
+        this.barAggregator.merge(message.createdAt, openPrice, highPrice, lowPrice, closePrice, quantity);
+        this.ticker.add(message.createdAt, openPrice, highPrice, lowPrice, closePrice, quantity);
+    }
 
-        //更新redis最近的Ticks缓存
-        String ticksData = ticksJoiner.toString();
-        if (logger.isDebugEnabled()) {
-            logger.debug("generated ticks data: {}", ticksData);
+    /**
+     * 把自上次写入以来有变化的K线一次写入Redis
+     */
+    private void flushBars(long sequenceId) {
+        List<AbstractBarEntity>[] updatedBars = this.barAggregator.drainUpdatedBars();
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(sequenceId));
+        int total = 0;
+        for (List<AbstractBarEntity> bars : updatedBars) {
+            args.add(String.valueOf(bars.size()));
+            total += bars.size();
         }
-        Boolean tickOk = redisService.executeScriptReturnBoolean(this.shaUpdateRecentTicksLua,
-                new String[]{RedisCache.Key.RECENT_TICKS},
-                new String[]{String.valueOf(this.sequenceId), ticksData, ticksStrJoiner.toString()});
-        if (!tickOk.booleanValue()) {
-            logger.warn("ticks are ignored by Redis.");
+        if (total == 0) {
             return;
         }
-        //保存tick至数据库
-        this.quotationDbService.saveTicks(message.ticks);
-
-        // 更新各种类型的K线:
-        String strCreatedBars = redisService.executeScriptReturnString(this.shaUpdateBarLua,
+        for (List<AbstractBarEntity> bars : updatedBars) {
+            for (AbstractBarEntity bar : bars) {
+                args.add(String.valueOf(bar.startTime));
+                args.add(BarAggregator.toJson(bar));
+            }
+        }
+        Boolean barOk = redisService.executeScriptReturnBoolean(this.shaUpdateBarsLua,
                 new String[]{RedisCache.Key.SEC_BARS, RedisCache.Key.MIN_BARS, RedisCache.Key.HOUR_BARS, RedisCache.Key.DAY_BARS},
-                new String[]{
-                        String.valueOf(this.sequenceId), // sequence id
-                        String.valueOf(secStartTime), // sec-start-time
-                        String.valueOf(minStartTime), // min-start-time
-                        String.valueOf(hourStartTime), // hour-start-time
-                        String.valueOf(dayStartTime), // day-start-time
-                        String.valueOf(openPrice), // open
-                        String.valueOf(highPrice), // high
-                        String.valueOf(lowPrice), // low
-                        String.valueOf(closePrice), // close
-                        String.valueOf(quantity) // quantity
-                });
-        logger.info("returned created bars: " + strCreatedBars);
-
-        //将Redis返回的K线保存至数据库
-        Map<BarType, BigDecimal[]> barMap = JsonUtil.readJson(strCreatedBars, TYPE_BARS);
-        if (!barMap.isEmpty()) {
-            //创建Bar
-            SecBarEntity secBar = createBar(SecBarEntity::new, barMap.get(BarType.SEC));
-            MinBarEntity minBar = createBar(MinBarEntity::new, barMap.get(BarType.MIN));
-            HourBarEntity hourBar = createBar(HourBarEntity::new, barMap.get(BarType.HOUR));
-            DayBarEntity dayBar = createBar(DayBarEntity::new, barMap.get(BarType.DAY));
-            this.quotationDbService.saveBars(secBar, minBar, hourBar, dayBar);
+                args.toArray(String[]::new));
+        if (!barOk.booleanValue()) {
+            logger.warn("bars are ignored by Redis.");
         }
-
-    }
-
-    private <T extends AbstractBarEntity> T createBar(Supplier<T> fn, BigDecimal[] data) {
-        if (data == null) {
-            return null;
-        }
-        T t = fn.get();
-        t.startTime = data[0].longValue();
-        t.openPrice = data[1];
-        t.highPrice = data[2];
-        t.lowPrice = data[3];
-        t.closePrice = data[4];
-        t.quantity = data[5];
-        return t;
     }
 
-    private static final TypeReference<Map<BarType, BigDecimal[]>> TYPE_BARS = new TypeReference<>() {
-    };
+    // 按BarType.ordinal()索引:
+    private static final List<Class<? extends AbstractBarEntity>> BAR_CLASSES = List.of(SecBarEntity.class,
+            MinBarEntity.class, HourBarEntity.class, DayBarEntity.class);
 
 }
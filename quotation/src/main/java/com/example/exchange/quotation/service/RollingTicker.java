@@ -0,0 +1,151 @@
+package com.example.exchange.quotation.service;
+
+import com.example.exchange.bean.TickerBean;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * 最近24小时的滚动行情统计，非线程安全，由调用方同步。
+ * <p>
+ * 使用固定的1440个分钟桶组成环形数组，窗口为当前分钟(最后一笔成交或最后一次advance()所在分钟)及之前的1439分钟。
+ * 没有成交时由定时调用advance()使过期的桶移出窗口。
+ * 新增成交只更新所在的桶和汇总值；窗口前移时扣除过期桶的成交量，
+ * 仅当过期桶包含当前最高价或最低价时才遍历1440个桶重新计算，开销与成交笔数无关。
+ */
+class RollingTicker {
+
+    static final int BUCKETS = 1440;
+
+    static final long MINUTE = 60_000;
+
+    // 各桶对应的分钟(毫秒时间 / MINUTE)，-1表示空桶:
+    private final long[] minutes = new long[BUCKETS];
+    private final BigDecimal[] opens = new BigDecimal[BUCKETS];
+    private final BigDecimal[] highs = new BigDecimal[BUCKETS];
+    private final BigDecimal[] lows = new BigDecimal[BUCKETS];
+    private final BigDecimal[] volumes = new BigDecimal[BUCKETS];
+
+    // 窗口内最早和最后一个非空桶的分钟，-1表示窗口为空:
+    private long oldestMinute = -1;
+    private long lastMinute = -1;
+
+    private long lastTime;
+    private BigDecimal high;
+    private BigDecimal low;
+    private BigDecimal close;
+    private BigDecimal volume = BigDecimal.ZERO;
+
+    RollingTicker() {
+        Arrays.fill(this.minutes, -1);
+    }
+
+    /**
+     * 合并一组成交的OHLCV，time早于最后一笔成交时计入最后一分钟
+     */
+    void add(long time, BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close, BigDecimal quantity) {
+        long minute = Math.max(time / MINUTE, this.lastMinute);
+        advanceTo(minute);
+        int i = index(minute);
+        if (this.minutes[i] != minute) {
+            this.minutes[i] = minute;
+            this.opens[i] = open;
+            this.highs[i] = high;
+            this.lows[i] = low;
+            this.volumes[i] = quantity;
+        } else {
+            this.highs[i] = this.highs[i].max(high);
+            this.lows[i] = this.lows[i].min(low);
+            this.volumes[i] = this.volumes[i].add(quantity);
+        }
+        if (this.oldestMinute < 0) {
+            this.oldestMinute = minute;
+        }
+        this.lastMinute = minute;
+        this.lastTime = Math.max(this.lastTime, time);
+        this.high = this.high == null ? high : this.high.max(high);
+        this.low = this.low == null ? low : this.low.min(low);
+        this.close = close;
+        this.volume = this.volume.add(quantity);
+    }
+
+    /**
+     * 窗口前移到time所在分钟，返回统计是否变化
+     */
+    boolean advance(long time) {
+        return advanceTo(time / MINUTE);
+    }
+
+    TickerBean toBean() {
+        TickerBean bean = new TickerBean();
+        if (this.oldestMinute < 0) {
+            return bean;
+        }
+        int oldest = index(this.oldestMinute);
+        bean.startTime = this.oldestMinute * MINUTE;
+        bean.endTime = this.lastTime;
+        bean.open = this.opens[oldest];
+        bean.high = this.high;
+        bean.low = this.low;
+        bean.close = this.close;
+        bean.volume = this.volume;
+        bean.change = this.close.subtract(bean.open);
+        return bean;
+    }
+
+    /**
+     * 窗口前移到以minute结束，移除过期的桶，返回是否有桶被移除
+     */
+    private boolean advanceTo(long minute) {
+        if (this.oldestMinute < 0) {
+            return false;
+        }
+        // 窗口内最早的分钟:
+        long first = minute - BUCKETS + 1;
+        if (first <= this.oldestMinute) {
+            return false;
+        }
+        if (first > this.lastMinute) {
+            // 全部过期:
+            Arrays.fill(this.minutes, -1);
+            this.oldestMinute = -1;
+            this.high = null;
+            this.low = null;
+            this.close = null;
+            this.volume = BigDecimal.ZERO;
+            return true;
+        }
+        boolean recalculate = false;
+        for (long m = this.oldestMinute; m < first; m++) {
+            int i = index(m);
+            if (this.minutes[i] == m) {
+                this.minutes[i] = -1;
+                this.volume = this.volume.subtract(this.volumes[i]);
+                if (this.highs[i].compareTo(this.high) == 0 || this.lows[i].compareTo(this.low) == 0) {
+                    recalculate = true;
+                }
+            }
+        }
+        // 最早的非空桶，lastMinute所在的桶一定非空:
+        long m = first;
+        while (this.minutes[index(m)] != m) {
+            m++;
+        }
+        this.oldestMinute = m;
+        if (recalculate) {
+            this.high = null;
+            this.low = null;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (this.minutes[i] >= 0) {
+                    this.high = this.high == null ? this.highs[i] : this.high.max(this.highs[i]);
+                    this.low = this.low == null ? this.lows[i] : this.low.min(this.lows[i]);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int index(long minute) {
+        return (int) (minute % BUCKETS);
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.exchange.quotation.service;
+
+import com.example.exchange.enums.BarType;
+import com.example.exchange.model.quotation.DayBarEntity;
+import com.example.exchange.model.quotation.HourBarEntity;
+import com.example.exchange.model.quotation.MinBarEntity;
+import com.example.exchange.model.quotation.SecBarEntity;
+import com.example.exchange.model.quotation.TickEntity;
+import com.example.exchange.model.support.AbstractBarEntity;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BarAggregatorTest {
+
+    static final ZoneId UTC = ZoneId.of("UTC");
+
+    static final long SEC = 1000;
+    static final long MIN = 60 * SEC;
+    static final long HOUR = 60 * MIN;
+    static final long DAY = 24 * HOUR;
+
+    // 2024-01-01T00:00:00Z:
+    static final long T0 = 1_704_067_200_000L;
+
+    @Test
+    void startTimes() {
+        BarAggregator aggregator = new BarAggregator(UTC);
+        long t = T0 + 5 * HOUR + 6 * MIN + 7 * SEC + 890;
+        assertArrayEquals(new long[] { T0 + 5 * HOUR + 6 * MIN + 7 * SEC, T0 + 5 * HOUR + 6 * MIN, T0 + 5 * HOUR, T0 },
+                aggregator.startTimes(t));
+        // 日K按时区计算，UTC+8的一天从前一日16:00Z开始:
+        ZoneId shanghai = ZoneId.of("Asia/Shanghai");
+        long[] startTimes = new BarAggregator(shanghai).startTimes(t);
+        assertEquals(ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, shanghai).toInstant().toEpochMilli(), startTimes[3]);
+        assertEquals(T0 - 8 * HOUR, startTimes[3]);
+    }
+
+    @Test
+    void mergeWithinSecond() {
+        BarAggregator aggregator = new BarAggregator(UTC);
+        aggregator.merge(T0 + 100, price(10), price(12), price(9), price(11), price(1));
+        aggregator.merge(T0 + 900, price(11), price(15), price(11), price(13), price(2));
+        assertEquals(List.of(), aggregator.drainClosedBars());
+        for (BarType type : BarAggregator.TYPES) {
+            assertBar(type, T0, 10, 15, 9, 13, 3, aggregator.getOpenBar(type));
+        }
+    }
+
+    @Test
+    void rollover() {
+        BarAggregator aggregator = new BarAggregator(UTC);
+        aggregator.merge(T0, price(10), price(10), price(10), price(10), price(1));
+
+        // 下一秒，SEC完成:
+        aggregator.merge(T0 + SEC, price(11), price(11), price(11), price(11), price(1));
+        List<AbstractBarEntity> closed = aggregator.drainClosedBars();
+        assertEquals(1, closed.size());
+        assertBar(BarType.SEC, T0, 10, 10, 10, 10, 1, closed.get(0));
+        assertEquals(List.of(), aggregator.drainClosedBars());
+
+        // 下一分钟，SEC和MIN完成:
+        aggregator.merge(T0 + MIN, price(12), price(12), price(12), price(12), price(1));
+        closed = aggregator.drainClosedBars();
+        assertEquals(2, closed.size());
+        assertBar(BarType.SEC, T0 + SEC, 11, 11, 11, 11, 1, closed.get(0));
+        assertBar(BarType.MIN, T0, 10, 11, 10, 11, 2, closed.get(1));
+
+        // 下一小时:
+        aggregator.merge(T0 + HOUR + 30 * SEC, price(8), price(8), price(8), price(8), price(1));
+        closed = aggregator.drainClosedBars();
+        assertEquals(3, closed.size());
+        assertBar(BarType.SEC, T0 + MIN, 12, 12, 12, 12, 1, closed.get(0));
+        assertBar(BarType.MIN, T0 + MIN, 12, 12, 12, 12, 1, closed.get(1));
+        assertBar(BarType.HOUR, T0, 10, 12, 10, 12, 3, closed.get(2));
+
+        // 下一天，全部周期完成:
+        aggregator.merge(T0 + DAY + 1, price(9), price(9), price(9), price(9), price(1));
+        closed = aggregator.drainClosedBars();
+        assertEquals(4, closed.size());
+        assertBar(BarType.SEC, T0 + HOUR + 30 * SEC, 8, 8, 8, 8, 1, closed.get(0));
+        assertBar(BarType.MIN, T0 + HOUR, 8, 8, 8, 8, 1, closed.get(1));
+        assertBar(BarType.HOUR, T0 + HOUR, 8, 8, 8, 8, 1, closed.get(2));
+        assertBar(BarType.DAY, T0, 10, 12, 8, 8, 4, closed.get(3));
+        for (BarType type : BarAggregator.TYPES) {
+            assertBar(type, T0 + DAY, 9, 9, 9, 9, 1, aggregator.getOpenBar(type));
+        }
+    }
+
+    @Test
+    void ignoreLateTick() {
+        BarAggregator aggregator = new BarAggregator(UTC);
+        aggregator.merge(T0 + MIN, price(10), price(10), price(10), price(10), price(1));
+        aggregator.drainUpdatedBars();
+        // 所属的SEC和MIN已完成，HOUR和DAY仍合并:
+        aggregator.merge(T0 + 59 * SEC, price(20), price(20), price(20), price(20), price(1));
+        assertEquals(List.of(), aggregator.drainClosedBars());
+        assertBar(BarType.SEC, T0 + MIN, 10, 10, 10, 10, 1, aggregator.getOpenBar(BarType.SEC));
+        assertBar(BarType.MIN, T0 + MIN, 10, 10, 10, 10, 1, aggregator.getOpenBar(BarType.MIN));
+        assertBar(BarType.HOUR, T0, 10, 20, 10, 20, 2, aggregator.getOpenBar(BarType.HOUR));
+        assertBar(BarType.DAY, T0, 10, 20, 10, 20, 2, aggregator.getOpenBar(BarType.DAY));
+    }
+
+    @Test
+    void drainUpdatedBars() {
+        BarAggregator aggregator = new BarAggregator(UTC);
+        aggregator.merge(T0, price(10), price(10), price(10), price(10), price(1));
+        aggregator.merge(T0 + 500, price(11), price(11), price(11), price(11), price(1));
+        aggregator.merge(T0 + SEC, price(12), price(12), price(12), price(12), price(1));
+        List<AbstractBarEntity>[] updated = aggregator.drainUpdatedBars();
+        // 已完成的SEC和当前的SEC，其余周期只有当前的K线:
+        assertEquals(2, updated[BarType.SEC.ordinal()].size());
+        assertBar(BarType.SEC, T0, 10, 11, 10, 11, 2, updated[BarType.SEC.ordinal()].get(0));
+        assertBar(BarType.SEC, T0 + SEC, 12, 12, 12, 12, 1, updated[BarType.SEC.ordinal()].get(1));
+        for (BarType type : List.of(BarType.MIN, BarType.HOUR, BarType.DAY)) {
+            assertEquals(1, updated[type.ordinal()].size());
+            assertSame(aggregator.getOpenBar(type), updated[type.ordinal()].get(0));
+        }
+        for (List<AbstractBarEntity> bars : aggregator.drainUpdatedBars()) {
+            assertEquals(List.of(), bars);
+        }
+        assertEquals("[" + (T0 + SEC) + ",12,12,12,12,1]", BarAggregator.toJson(aggregator.getOpenBar(BarType.SEC)));
+    }
+
+    /**
+     * 随机tick逐笔合并，已完成的K线和tick视为已写入数据库，在每个tick之后按数据库重建，未完成的K线与逐笔合并的结果一致
+     */
+    @Test
+    void restoreEqualsLiveAggregation() {
+        for (ZoneId zoneId : List.of(UTC, ZoneId.of("Asia/Shanghai"), ZoneId.of("America/New_York"))) {
+            Random random = new Random(20240101);
+            BarAggregator live = new BarAggregator(zoneId);
+            List<TickEntity> ticks = new ArrayList<>();
+            List<AbstractBarEntity> closedBars = new ArrayList<>();
+            long time = T0 + random.nextInt(1000);
+            for (int i = 0; i < 5000; i++) {
+                int r = random.nextInt(100);
+                if (r < 1) {
+                    time += random.nextInt(30) * HOUR;
+                } else if (r < 5) {
+                    time += random.nextInt(90) * MIN;
+                } else if (r < 40) {
+                    time += random.nextInt(90) * SEC;
+                } else {
+                    time += random.nextInt(800);
+                }
+                TickEntity tick = new TickEntity();
+                tick.createdAt = time;
+                tick.price = price(50 + random.nextInt(100));
+                tick.quantity = new BigDecimal(1 + random.nextInt(1000)).movePointLeft(3);
+                ticks.add(tick);
+                live.merge(tick.createdAt, tick.price, tick.price, tick.price, tick.price, tick.quantity);
+                closedBars.addAll(live.drainClosedBars());
+
+                if (i % 7 == 0 || r < 5) {
+                    BarAggregator restored = new BarAggregator(zoneId);
+                    long[] startTimes = restored.startTimes(tick.createdAt);
+                    restored.restore(startTimes, (type, from, to) -> closedBars.stream()
+                            .filter(bar -> barType(bar) == type && bar.startTime >= from && bar.startTime < to)
+                            .toList(),
+                            ticks.stream().filter(t -> t.createdAt >= startTimes[BarType.SEC.ordinal()]).toList());
+                    for (BarType type : BarAggregator.TYPES) {
+                        assertEquals(BarAggregator.toJson(live.getOpenBar(type)),
+                                BarAggregator.toJson(restored.getOpenBar(type)), zoneId + " " + type + " at " + i);
+                    }
+                    // 重建不记录变化:
+                    assertEquals(List.of(), restored.drainClosedBars());
+                    for (List<AbstractBarEntity> bars : restored.drainUpdatedBars()) {
+                        assertEquals(List.of(), bars);
+                    }
+                }
+            }
+        }
+    }
+
+    static BarType barType(AbstractBarEntity bar) {
+        if (bar instanceof SecBarEntity) {
+            return BarType.SEC;
+        }
+        if (bar instanceof MinBarEntity) {
+            return BarType.MIN;
+        }
+        if (bar instanceof HourBarEntity) {
+            return BarType.HOUR;
+        }
+        assertInstanceOf(DayBarEntity.class, bar);
+        return BarType.DAY;
+    }
+
+    static void assertBar(BarType type, long startTime, int open, int high, int low, int close, int quantity,
+            AbstractBarEntity bar) {
+        assertNotNull(bar);
+        assertEquals(type, barType(bar));
+        assertEquals(startTime, bar.startTime);
+        assertEquals(price(open), bar.openPrice);
+        assertEquals(price(high), bar.highPrice);
+        assertEquals(price(low), bar.lowPrice);
+        assertEquals(price(close), bar.closePrice);
+        assertEquals(price(quantity), bar.quantity);
+    }
+
+    static BigDecimal price(int n) {
+        return BigDecimal.valueOf(n);
+    }
+}
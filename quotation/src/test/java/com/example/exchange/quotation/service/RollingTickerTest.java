@@ -0,0 +1,141 @@
+package com.example.exchange.quotation.service;
+
+import com.example.exchange.bean.TickerBean;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingTickerTest {
+
+    static final long MINUTE = RollingTicker.MINUTE;
+
+    record Trade(long time, BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close, BigDecimal quantity) {
+    }
+
+    @Test
+    void emptyTicker() {
+        RollingTicker ticker = new RollingTicker();
+        assertFalse(ticker.advance(100 * MINUTE));
+        assertTicker(new TickerBean(), ticker.toBean());
+    }
+
+    @Test
+    void expireWithoutTrades() {
+        RollingTicker ticker = new RollingTicker();
+        long start = 1_000_000 * MINUTE;
+        ticker.add(start, price(10), price(12), price(9), price(11), price(1));
+        ticker.add(start + 60 * MINUTE, price(11), price(11), price(10), price(10), price(2));
+        assertFalse(ticker.advance(start + 1439 * MINUTE));
+        assertEquals(price(3), ticker.toBean().volume);
+
+        // 第一分钟过期，最高价和最低价重新计算:
+        assertTrue(ticker.advance(start + 1440 * MINUTE));
+        TickerBean bean = ticker.toBean();
+        assertEquals(start + 60 * MINUTE, bean.startTime);
+        assertEquals(price(11), bean.open);
+        assertEquals(price(11), bean.high);
+        assertEquals(price(10), bean.low);
+        assertEquals(price(2), bean.volume);
+        assertFalse(ticker.advance(start + 1440 * MINUTE + 59_999));
+
+        // 全部过期:
+        assertTrue(ticker.advance(start + 1500 * MINUTE));
+        assertTicker(new TickerBean(), ticker.toBean());
+        assertFalse(ticker.advance(start + 3000 * MINUTE));
+    }
+
+    /**
+     * 随机成交和定时前移，与按定义逐笔计算的结果比较
+     */
+    @Test
+    void compareWithBruteForce() {
+        Random random = new Random(20240101);
+        for (int round = 0; round < 20; round++) {
+            RollingTicker ticker = new RollingTicker();
+            List<Trade> trades = new ArrayList<>();
+            long time = (1_000_000 + random.nextInt(1000)) * MINUTE;
+            // 窗口结束的分钟:
+            long endMinute = -1;
+            for (int i = 0; i < 3000; i++) {
+                int r = random.nextInt(100);
+                if (r < 2) {
+                    time += random.nextInt(2000) * MINUTE;
+                } else if (r < 30) {
+                    time += random.nextInt(120) * MINUTE;
+                } else {
+                    time += random.nextInt(30_000);
+                }
+                if (random.nextInt(4) == 0) {
+                    // 没有成交，定时前移:
+                    boolean changed = ticker.advance(time);
+                    TickerBean before = expected(trades, endMinute);
+                    endMinute = Math.max(endMinute, time / MINUTE);
+                    TickerBean after = expected(trades, endMinute);
+                    if (!changed) {
+                        assertTicker(before, after);
+                    }
+                } else {
+                    BigDecimal low = price(50 + random.nextInt(100));
+                    BigDecimal high = low.add(price(random.nextInt(20)));
+                    BigDecimal open = low.add(price(random.nextInt(high.subtract(low).intValue() + 1)));
+                    BigDecimal close = low.add(price(random.nextInt(high.subtract(low).intValue() + 1)));
+                    Trade trade = new Trade(time, open, high, low, close, price(1 + random.nextInt(10)));
+                    trades.add(trade);
+                    ticker.add(trade.time, trade.open, trade.high, trade.low, trade.close, trade.quantity);
+                    endMinute = Math.max(endMinute, time / MINUTE);
+                }
+                assertTicker(expected(trades, endMinute), ticker.toBean());
+            }
+        }
+    }
+
+    static TickerBean expected(List<Trade> trades, long endMinute) {
+        TickerBean bean = new TickerBean();
+        long first = endMinute - RollingTicker.BUCKETS + 1;
+        Trade oldest = null;
+        Trade last = null;
+        for (Trade trade : trades) {
+            if (trade.time / MINUTE < first) {
+                continue;
+            }
+            if (oldest == null) {
+                oldest = trade;
+                bean.high = trade.high;
+                bean.low = trade.low;
+            }
+            last = trade;
+            bean.high = bean.high.max(trade.high);
+            bean.low = bean.low.min(trade.low);
+            bean.volume = bean.volume.add(trade.quantity);
+        }
+        if (oldest == null) {
+            return new TickerBean();
+        }
+        bean.startTime = oldest.time / MINUTE * MINUTE;
+        bean.endTime = last.time;
+        bean.open = oldest.open;
+        bean.close = last.close;
+        bean.change = bean.close.subtract(bean.open);
+        return bean;
+    }
+
+    static void assertTicker(TickerBean expected, TickerBean actual) {
+        assertEquals(expected.startTime, actual.startTime);
+        assertEquals(expected.endTime, actual.endTime);
+        assertEquals(expected.open, actual.open);
+        assertEquals(expected.high, actual.high);
+        assertEquals(expected.low, actual.low);
+        assertEquals(expected.close, actual.close);
+        assertEquals(expected.volume, actual.volume);
+        assertEquals(expected.change, actual.change);
+    }
+
+    static BigDecimal price(int n) {
+        return BigDecimal.valueOf(n);
+    }
+}
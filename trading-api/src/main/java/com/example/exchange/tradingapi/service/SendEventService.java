@@ -1,6 +1,9 @@
 package com.example.exchange.tradingapi.service;
 
 import com.example.exchange.message.event.AbstractEvent;
+import com.example.exchange.message.event.OrderCancelEvent;
+import com.example.exchange.message.event.OrderRequestEvent;
+import com.example.exchange.message.event.TransferEvent;
 import com.example.exchange.messageing.MessageProducer;
 import com.example.exchange.messageing.Messaging;
 import com.example.exchange.messageing.MessagingFactory;
@@ -16,7 +19,23 @@ public class SendEventService {
 
     @PostConstruct
     public void init() {
-        this.messageProducer = messagingFactory.createMessageProducer(Messaging.Topic.SEQUENCE, AbstractEvent.class);
+        this.messageProducer = messagingFactory.createMessageProducer(Messaging.Topic.SEQUENCE, AbstractEvent.class,
+                SendEventService::userKey);
+    }
+
+    /**
+     * 按用户设置key：SEQUENCE增加分区后，同一用户的下单、撤单和转账仍按发送顺序到达定序服务
+     */
+    static String userKey(AbstractEvent event) {
+        Long userId = null;
+        if (event instanceof OrderRequestEvent e) {
+            userId = e.userId;
+        } else if (event instanceof OrderCancelEvent e) {
+            userId = e.userId;
+        } else if (event instanceof TransferEvent e) {
+            userId = e.fromUserId;
+        }
+        return userId == null ? null : userId.toString();
     }
 
     public void sendMessage(AbstractEvent message) {
@@ -7,6 +7,7 @@ import com.example.exchange.UserContext;
 import com.example.exchange.bean.OrderBookBean;
 import com.example.exchange.bean.OrderRequestBean;
 import com.example.exchange.bean.SimpleMatchDetailRecord;
+import com.example.exchange.bean.TickerBean;
 import com.example.exchange.message.ApiResultMessage;
 import com.example.exchange.message.event.OrderCancelEvent;
 import com.example.exchange.message.event.OrderRequestEvent;
@@ -117,6 +118,13 @@ public class TradingApiController extends AbstractApiController {
         return sj.toString();
     }
 
+    @ResponseBody
+    @GetMapping(value = "/ticker", produces = "application/json")
+    public String getTicker() {
+        String data = redisService.get(RedisCache.Key.TICKER);
+        return data == null ? TickerBean.EMPTY : data;
+    }
+
     @ResponseBody
     @GetMapping(value = "/bars/day", produces = "application/json")
     public String getDayBars() {
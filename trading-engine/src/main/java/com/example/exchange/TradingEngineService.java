@@ -5,6 +5,7 @@ import com.example.exchange.assets.AssetService;
 import com.example.exchange.assets.Transfer;
 import com.example.exchange.clearing.ClearingService;
 import com.example.exchange.bean.OrderBookBean;
+import com.example.exchange.bean.OrderBookDeltaBean;
 import com.example.exchange.enums.AssetEnum;
 import com.example.exchange.enums.Direction;
 import com.example.exchange.enums.MatchType;
@@ -23,15 +24,27 @@ import com.example.exchange.messageing.MessagingFactory;
 import com.example.exchange.model.quotation.TickEntity;
 import com.example.exchange.model.trade.MatchDetailEntity;
 import com.example.exchange.model.trade.OrderEntity;
+import com.example.exchange.output.OrderBookAggregator;
+import com.example.exchange.output.OutputEvent;
 import com.example.exchange.redis.RedisCache;
 import com.example.exchange.redis.RedisService;
+import com.example.exchange.ring.EventHandler;
+import com.example.exchange.ring.RingBuffer;
+import com.example.exchange.ring.WaitStrategy;
 import com.example.exchange.support.LoggerSupport;
 import com.example.exchange.util.IpUtil;
+import com.example.exchange.util.FixedPointUtil;
 import com.example.exchange.util.JsonUtil;
 import com.example.exchange.match.MatchDetailRecord;
 import com.example.exchange.match.MatchEngine;
 import com.example.exchange.match.MatchResult;
+import com.example.exchange.match.OrderBook;
+import com.example.exchange.match.OrderBookView;
+import com.example.exchange.match.PriceLevel;
+import com.example.exchange.order.Order;
 import com.example.exchange.order.OrderService;
+import com.example.exchange.snapshot.SnapshotService;
+import com.example.exchange.store.EventReplay;
 import com.example.exchange.store.StoreService;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -39,13 +52,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class TradingEngineService extends LoggerSupport {
@@ -56,9 +71,34 @@ public class TradingEngineService extends LoggerSupport {
     @Value("#{exchangeConfiguration.orderBookDepth}")
     int orderBookDepth = 100;
 
+    @Value("#{exchangeConfiguration.symbol}")
+    String symbol = "BTC_USD";
+
     @Value("#{exchangeConfiguration.debugMode}")
     boolean debugMode = false;
 
+    // 解码线程数，0表示在Kafka监听线程中解码并撮合:
+    @Value("${exchange.input.decoder-threads:2}")
+    int inputDecoderThreads = 2;
+
+    // 输入RingBuffer容量，必须是2的幂:
+    @Value("${exchange.input.buffer-size:8192}")
+    int inputBufferSize = 8192;
+
+    @Value("${exchange.input.wait-strategy:PARK}")
+    WaitStrategy inputWaitStrategy = WaitStrategy.PARK;
+
+    // 输出RingBuffer容量，必须是2的幂:
+    @Value("${exchange.output.buffer-size:65536}")
+    int outputBufferSize = 65536;
+
+    @Value("${exchange.output.wait-strategy:PARK}")
+    WaitStrategy outputWaitStrategy = WaitStrategy.PARK;
+
+    // 推送完整订单簿快照的间隔(毫秒)，其余时间只推送增量:
+    @Value("${exchange.output.orderbook-snapshot-interval:5000}")
+    long orderBookSnapshotInterval = 5000;
+
     boolean fatalError = false;
 
     @Autowired
@@ -82,6 +122,9 @@ public class TradingEngineService extends LoggerSupport {
     @Autowired
     RedisService redisService;
 
+    @Autowired
+    SnapshotService snapshotService;
+
     private MessageConsumer consumer;
 
     private MessageProducer<TickMessage> producer;
@@ -90,203 +133,251 @@ public class TradingEngineService extends LoggerSupport {
 
     private boolean orderBookChanged = false;
 
-    private String shaUpdateOrderBookLua;
+    // 上次输出的订单簿，仅撮合线程访问:
+    private OrderBookView orderBookView;
 
-    private Thread tickThread;
-    private Thread notifyThread;
-    private Thread apiResultThread;
-    private Thread orderBookThread;
-    private Thread dbThread;
+    // 正在从数据库补齐丢失的事件:
+    private boolean recovering = false;
 
-    private OrderBookBean latestOrderBook = null;
-    private Queue<List<OrderEntity>> orderQueue = new ConcurrentLinkedQueue<>();
-    private Queue<List<MatchDetailEntity>> matchQueue = new ConcurrentLinkedQueue<>();
-    private Queue<TickMessage> tickQueue = new ConcurrentLinkedQueue<>();
-    private Queue<ApiResultMessage> apiResultQueue = new ConcurrentLinkedQueue<>();
-    private Queue<NotificationMessage> notificationQueue = new ConcurrentLinkedQueue<>();
+    private String shaUpdateOrderBookLua;
+
+    // 撮合线程 -> 各输出线程:
+    private RingBuffer<OutputEvent> outputRing;
+    private final List<Thread> outputThreads = new ArrayList<>();
+
+    // 当前事件的输出，仅撮合线程访问:
+    private OutputEvent output;
+
+    // 以下仅由对应的输出线程访问:
+    private final List<TickMessage> tickBuffer = new ArrayList<>();
+    private CompletableFuture<Void> lastTickSend = CompletableFuture.completedFuture(null);
+    // 之前的Tick消息都已确认发送的输出序号，发送失败后不再前进:
+    private final AtomicLong tickSentSequence = new AtomicLong(-1);
+    private final List<String> notifyBuffer = new ArrayList<>();
+    private final List<String> apiResultBuffer = new ArrayList<>();
+    private final OrderBookAggregator orderBookAggregator = new OrderBookAggregator();
+    private long lastOrderBookSnapshotAt = 0;
+    // 启动后Redis接受第一个增量前一直推送快照，重启后的增量与客户端已有的订单簿不接续:
+    private boolean orderBookSnapshotRequired = true;
+    private final List<MatchDetailEntity> matchBuffer = new ArrayList<>();
+    private final List<OrderEntity> orderBuffer = new ArrayList<>();
 
     @PostConstruct
-    public void init() {
+    public void init() throws IOException {
         this.shaUpdateOrderBookLua = this.redisService.loadScriptFromClassPath("/redis/update-orderbook.lua");
-        this.consumer = this.messagingFactory.createBatchMessageListener(Messaging.Topic.TRADE, IpUtil.getHostId(),
-                this::processMessages);
-
-        this.producer = this.messagingFactory.createMessageProducer(Messaging.Topic.TICK, TickMessage.class);
-
-        this.tickThread = new Thread(this::runTickThread, "async-tick");
-        this.tickThread.start();
-
-        this.notifyThread = new Thread(this::runNotifyThread, "async-notify");
-        this.notifyThread.start();
-
-        this.orderBookThread = new Thread(this::runOrderBookThread, "async-orderbook");
-        this.orderBookThread.start();
+        this.orderBookView = new OrderBookView(this.orderBookDepth);
+
+        // 每个交易引擎只撮合一个交易对，以交易对作为key，同一交易对的tick进入TICK的同一分区:
+        final String key = this.symbol;
+        this.producer = this.messagingFactory.createMessageProducer(Messaging.Topic.TICK, TickMessage.class,
+                message -> key);
+
+        logger.info("create output ring buffer: size = {}, wait strategy = {}", this.outputBufferSize,
+                this.outputWaitStrategy);
+        this.outputRing = new RingBuffer<>(this.outputBufferSize, OutputEvent::new, this.outputWaitStrategy);
+        startOutputThread("async-tick", this::onTickEvent);
+        startOutputThread("async-notify", this::onNotifyEvent);
+        startOutputThread("async-orderbook", this::onOrderBookEvent);
+        startOutputThread("async-api-result", this::onApiResultEvent);
+        startOutputThread("async-db", this::onDbEvent);
+        // 快照只在之前的输出全部完成后写入:
+        this.snapshotService.setCompletedOutputSequence(this::getCompletedOutputSequence);
+
+        // 先加载快照并回放之后的事件，再开始接收消息:
+        this.lastSequenceId = this.snapshotService.restore();
+        replayEvents();
+        if (this.inputDecoderThreads > 0) {
+            // 解码线程并行反序列化，撮合线程只处理已解码的事件:
+            this.consumer = this.messagingFactory.createPipelinedBatchMessageListener(Messaging.Topic.TRADE,
+                    IpUtil.getHostId(), this::processMessages, this.inputDecoderThreads, this.inputBufferSize,
+                    this.inputWaitStrategy);
+        } else {
+            this.consumer = this.messagingFactory.createBatchMessageListener(Messaging.Topic.TRADE,
+                    IpUtil.getHostId(), this::processMessages);
+        }
+    }
 
-        this.apiResultThread = new Thread(this::runApiResultThread, "async-api-result");
-        this.apiResultThread.start();
+    /**
+     * 启动时从数据库流式回放lastSequenceId之后的事件
+     */
+    void replayEvents() {
+        long start = System.currentTimeMillis();
+        long startSequenceId = this.lastSequenceId;
+        try (EventReplay replay = this.storeService.replayEvents(this.lastSequenceId)) {
+            for (List<AbstractEvent> events = replay.next(); !events.isEmpty() && !this.fatalError; events = replay.next()) {
+                processMessages(events);
+            }
+        }
+        logger.info("replayed events {} -> {} in {} ms.", startSequenceId, this.lastSequenceId,
+                System.currentTimeMillis() - start);
+    }
 
-        this.dbThread = new Thread(this::runDbThread, "async-db");
-        this.dbThread.start();
+    /**
+     * 消息丢失时从数据库补齐lastSequenceId之后的事件，逐个处理而非递归
+     */
+    private void recoverLostEvents() {
+        this.recovering = true;
+        try (EventReplay replay = this.storeService.replayEvents(this.lastSequenceId)) {
+            for (List<AbstractEvent> events = replay.next(); !events.isEmpty() && !this.fatalError; events = replay.next()) {
+                for (AbstractEvent e : events) {
+                    processEvent(e);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("cannot load lost event from db.", e);
+            panic();
+        } finally {
+            this.recovering = false;
+        }
     }
 
     @PreDestroy
     public void destroy() {
         this.consumer.stop();
-        this.orderBookThread.interrupt();
-        this.dbThread.interrupt();
+        for (Thread thread : this.outputThreads) {
+            thread.interrupt();
+        }
     }
 
-    private void runTickThread() {
-        logger.info("start tick thread...");
-        for (;;) {
-            List<TickMessage> msgs = new ArrayList<>();
-            for (;;) {
-                TickMessage msg = tickQueue.poll();
-                if (msg != null) {
-                    msgs.add(msg);
-                    if (msgs.size() >= 1000) {
-                        break;
-                    }
-                } else {
-                    break;
-                }
-            }
-            if (!msgs.isEmpty()) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("send {} tick messages...", msgs.size());
-                }
-                this.producer.sendMessages(msgs);
-            } else {
-                // 无TickMessage时，暂停1ms:
-                try {
-                    Thread.sleep(1);
-                } catch (InterruptedException e) {
-                    logger.warn("{} was interrupted.", Thread.currentThread().getName());
-                    break;
-                }
+    private void startOutputThread(String name, EventHandler<OutputEvent> handler) {
+        Thread thread = new Thread(this.outputRing.addConsumer(name, handler), name);
+        thread.start();
+        this.outputThreads.add(thread);
+    }
+
+    /**
+     * 所有输出线程都已完成(Tick已确认发送)的输出序号。任一输出线程处理失败后返回-1，此后不再写入快照，
+     * 重启时从上一个快照回放，重新输出失败的事件。
+     */
+    long getCompletedOutputSequence() {
+        for (RingBuffer.Consumer<?> consumer : this.outputRing.getConsumers()) {
+            if (consumer.getErrors() > 0) {
+                return -1;
             }
         }
+        return Math.min(this.outputRing.getMinimumSequence(), this.tickSentSequence.get());
     }
 
-    private void runNotifyThread() {
-        logger.info("start publish notify to redis...");
-        for (;;) {
-            NotificationMessage msg = this.notificationQueue.poll();
-            if (msg != null) {
-                redisService.publish(RedisCache.Topic.NOTIFICATION, JsonUtil.writeJson(msg));
-            } else {
-                // 无推送时，暂停1ms:
-                try {
-                    Thread.sleep(1);
-                } catch (InterruptedException e) {
-                    logger.warn("{} was interrupted.", Thread.currentThread().getName());
-                    break;
-                }
+    /**
+     * 输出队列深度及各输出线程的延迟
+     */
+    public Map<String, Long> getOutputMetrics() {
+        return this.outputRing.getMetrics();
+    }
+
+    // called by async-tick thread only:
+    private void onTickEvent(OutputEvent event, long sequence, boolean endOfBatch) {
+        if (event.tick != null) {
+            this.tickBuffer.add(event.tick);
+        }
+        if (!this.tickBuffer.isEmpty() && (endOfBatch || this.tickBuffer.size() >= 1000)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("send {} tick messages...", this.tickBuffer.size());
             }
+            final int size = this.tickBuffer.size();
+            CompletableFuture<Void> f = this.producer.sendBatch(this.tickBuffer).whenComplete((r, e) -> {
+                if (e != null) {
+                    logger.error("failed to send " + size + " tick messages", e);
+                }
+            });
+            this.tickBuffer.clear();
+            this.lastTickSend = CompletableFuture.allOf(this.lastTickSend, f);
+        }
+        if (endOfBatch) {
+            // 之前的发送全部成功后，sequence之前的Tick都已确认:
+            this.lastTickSend.thenRun(() -> this.tickSentSequence.accumulateAndGet(sequence, Math::max));
         }
     }
 
-    private void runApiResultThread() {
-        logger.info("start publish api result to redis...");
-        for (;;) {
-            ApiResultMessage result = this.apiResultQueue.poll();
-            if (result != null) {
-                redisService.publish(RedisCache.Topic.TRADING_API_RESULT, JsonUtil.writeJson(result));
-            } else {
-                // 无推送时，暂停1ms:
-                try {
-                    Thread.sleep(1);
-                } catch (InterruptedException e) {
-                    logger.warn("{} was interrupted.", Thread.currentThread().getName());
-                    break;
-                }
-            }
+    // called by async-notify thread only:
+    private void onNotifyEvent(OutputEvent event, long sequence, boolean endOfBatch) {
+        for (NotificationMessage msg : event.notifications) {
+            this.notifyBuffer.add(JsonUtil.writeJson(msg));
+        }
+        if (endOfBatch || this.notifyBuffer.size() >= 1000) {
+            publishBatch(RedisCache.Topic.NOTIFICATION, this.notifyBuffer);
         }
     }
 
-    private void runOrderBookThread() {
-        logger.info("start update orderbook snapshot to redis...");
-        long lastSequenceId = 0;
-        for (;;) {
-            // 获取OrderBookBean的引用，确保后续操作针对局部变量而非成员变量:
-            final OrderBookBean orderBook = this.latestOrderBook;
-            // 仅在OrderBookBean更新后刷新Redis:
-            if (orderBook != null && orderBook.sequenceId > lastSequenceId) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("update orderbook snapshot at sequence id {}...", orderBook.sequenceId);
-                }
-                redisService.executeScriptReturnBoolean(this.shaUpdateOrderBookLua,
-                        // keys: [cache-key]
-                        new String[] { RedisCache.Key.ORDER_BOOK },
-                        // args: [sequenceId, json-data]
-                        new String[] { String.valueOf(orderBook.sequenceId), JsonUtil.writeJson(orderBook) });
-                lastSequenceId = orderBook.sequenceId;
-            } else {
-                // 无更新时，暂停1ms:
-                try {
-                    Thread.sleep(1);
-                } catch (InterruptedException e) {
-                    logger.warn("{} was interrupted.", Thread.currentThread().getName());
-                    break;
-                }
-            }
+    // called by async-api-result thread only:
+    private void onApiResultEvent(OutputEvent event, long sequence, boolean endOfBatch) {
+        if (event.apiResult != null) {
+            this.apiResultBuffer.add(JsonUtil.writeJson(event.apiResult));
+        }
+        if (endOfBatch || this.apiResultBuffer.size() >= 1000) {
+            publishBatch(RedisCache.Topic.TRADING_API_RESULT, this.apiResultBuffer);
         }
     }
 
-    private void runDbThread() {
-        logger.info("start batch insert to db...");
-        for (;;) {
-            try {
-                saveToDb();
-            } catch (InterruptedException e) {
-                logger.warn("{} was interrupted.", Thread.currentThread().getName());
-                break;
-            }
+    private void publishBatch(String topic, List<String> buffer) {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("publish {} messages to {}...", buffer.size(), topic);
+        }
+        try {
+            this.redisService.publishBatch(topic, buffer);
+        } finally {
+            buffer.clear();
         }
     }
 
-    // called by dbExecutor thread only:
-    private void saveToDb() throws InterruptedException {
-        if (!matchQueue.isEmpty()) {
-            List<MatchDetailEntity> batch = new ArrayList<>(1000);
-            for (;;) {
-                List<MatchDetailEntity> matches = matchQueue.poll();
-                if (matches != null) {
-                    batch.addAll(matches);
-                    if (batch.size() >= 1000) {
-                        break;
-                    }
-                } else {
-                    break;
-                }
-            }
-            batch.sort(MatchDetailEntity::compareTo);
+    // called by async-orderbook thread only:
+    private void onOrderBookEvent(OutputEvent event, long sequence, boolean endOfBatch) {
+        if (event.orderBookDelta != null) {
+            this.orderBookAggregator.apply(event.orderBookDelta);
+        }
+        // 一批中的增量合并为一个增量推送，快照只保存到Redis，间隔一段时间才推送:
+        if (endOfBatch && this.orderBookAggregator.hasPending()) {
+            long now = System.currentTimeMillis();
+            boolean publishSnapshot = this.orderBookSnapshotRequired || this.orderBookAggregator.isReset()
+                    || now - this.lastOrderBookSnapshotAt >= this.orderBookSnapshotInterval;
+            OrderBookDeltaBean delta = this.orderBookAggregator.drainDelta();
+            OrderBookBean snapshot = this.orderBookAggregator.getSnapshot();
             if (logger.isDebugEnabled()) {
-                logger.debug("batch insert {} match details...", batch.size());
+                logger.debug("update orderbook at sequence id {} (previous id {})...", delta.sequenceId,
+                        delta.previousId);
             }
-            this.storeService.insertIgnore(batch);
-        }
-        if (!orderQueue.isEmpty()) {
-            List<OrderEntity> batch = new ArrayList<>(1000);
-            for (;;) {
-                List<OrderEntity> orders = orderQueue.poll();
-                if (orders != null) {
-                    batch.addAll(orders);
-                    if (batch.size() >= 1000) {
-                        break;
-                    }
-                } else {
-                    break;
-                }
+            Boolean accepted = redisService.executeScriptReturnBoolean(this.shaUpdateOrderBookLua,
+                    // keys: [cache-key]
+                    new String[] { RedisCache.Key.ORDER_BOOK },
+                    // args: [sequenceId, snapshot-json, delta-json, publish-snapshot]
+                    new String[] { String.valueOf(delta.sequenceId), JsonUtil.writeJson(snapshot),
+                            JsonUtil.writeJson(delta), publishSnapshot ? "1" : "0" });
+            // 重启后回放的增量会被Redis忽略，直到被接受时才推送出快照:
+            if (publishSnapshot && accepted.booleanValue()) {
+                this.lastOrderBookSnapshotAt = now;
+                this.orderBookSnapshotRequired = false;
             }
-            batch.sort(OrderEntity::compareTo);
+        }
+    }
+
+    // called by async-db thread only:
+    private void onDbEvent(OutputEvent event, long sequence, boolean endOfBatch) {
+        this.matchBuffer.addAll(event.matchDetails);
+        this.orderBuffer.addAll(event.closedOrders);
+        if (endOfBatch || this.matchBuffer.size() >= 1000 || this.orderBuffer.size() >= 1000) {
+            saveToDb();
+        }
+    }
+
+    private void saveToDb() {
+        if (!this.matchBuffer.isEmpty()) {
+            this.matchBuffer.sort(MatchDetailEntity::compareTo);
             if (logger.isDebugEnabled()) {
-                logger.debug("batch insert {} orders...", batch.size());
+                logger.debug("batch insert {} match details...", this.matchBuffer.size());
             }
-            this.storeService.insertIgnore(batch);
+            this.storeService.insertIgnore(this.matchBuffer);
+            this.matchBuffer.clear();
         }
-        if (matchQueue.isEmpty()) {
-            Thread.sleep(1);
+        if (!this.orderBuffer.isEmpty()) {
+            this.orderBuffer.sort(OrderEntity::compareTo);
+            if (logger.isDebugEnabled()) {
+                logger.debug("batch insert {} orders...", this.orderBuffer.size());
+            }
+            this.storeService.insertIgnore(this.orderBuffer);
+            this.orderBuffer.clear();
         }
     }
 
@@ -296,8 +387,16 @@ public class TradingEngineService extends LoggerSupport {
             processEvent(message);
         }
         if (this.orderBookChanged) {
-            // 获取最新的OrderBook快照:
-            this.latestOrderBook = this.matchEngine.getOrderBook(this.orderBookDepth);
+            // 只输出前N档中变化的档位:
+            OrderBookDeltaBean delta = this.orderBookView.diff(this.matchEngine, this.lastSequenceId);
+            if (delta != null) {
+                OutputEvent out = this.outputRing.claim().reset(this.lastSequenceId);
+                out.orderBookDelta = delta;
+                this.outputRing.publish();
+            }
+        }
+        if (!this.fatalError) {
+            this.snapshotService.trySnapshot(this.lastSequenceId, this.outputRing.getCursor());
         }
     }
 
@@ -313,17 +412,17 @@ public class TradingEngineService extends LoggerSupport {
         if (event.previousId > this.lastSequenceId) {
             logger.warn("event lost: expected previous id {} but actual {} for event {}", this.lastSequenceId,
                     event.previousId, event);
-            //重新取lastSequenceId的消息
-            List<AbstractEvent> events = this.storeService.loadEventsFromDb(this.lastSequenceId);
-            if (events.isEmpty()) {
+            if (this.recovering) {
+                // 数据库中的事件也不连续:
                 logger.error("cannot load lost event from db.");
                 panic();
                 return;
             }
-            for (AbstractEvent e : events) {
-                this.processEvent(e);
+            //重新取lastSequenceId之后的消息
+            recoverLostEvents();
+            if (this.fatalError || event.sequenceId <= this.lastSequenceId) {
+                return;
             }
-            return;
         }
         // previousId > lastSequenceId
         // 判断当前消息是否指向上一条消息:
@@ -336,6 +435,7 @@ public class TradingEngineService extends LoggerSupport {
         if (logger.isDebugEnabled()) {
             logger.debug("process event {} -> {}: {}...", this.lastSequenceId, event.sequenceId, event);
         }
+        this.output = this.outputRing.claim().reset(event.sequenceId);
         try {
             if (event instanceof OrderRequestEvent) {
                 createOrder((OrderRequestEvent) event);
@@ -352,6 +452,8 @@ public class TradingEngineService extends LoggerSupport {
             logger.error("process event error.", e);
             panic();
             return;
+        } finally {
+            this.outputRing.publish();
         }
         this.lastSequenceId = event.sequenceId;
         if (logger.isDebugEnabled()) {
@@ -374,8 +476,21 @@ public class TradingEngineService extends LoggerSupport {
     }
 
     boolean transfer(TransferEvent event) {
-        boolean ok = this.assetService.tryTransfer(Transfer.AVAILABLE_TO_AVAILABLE, event.fromUserId, event.toUserId,
-                event.asset, event.amount, event.sufficient);
+        long amount;
+        try {
+            amount = FixedPointUtil.toFixedAmount(event.amount);
+        } catch (ArithmeticException e) {
+            logger.warn("transfer failed: invalid amount {} for event {}", event.amount, event);
+            return false;
+        }
+        boolean ok;
+        try {
+            ok = this.assetService.tryTransfer(Transfer.AVAILABLE_TO_AVAILABLE, event.fromUserId, event.toUserId,
+                    event.asset, amount, event.sufficient);
+        } catch (ArithmeticException e) {
+            logger.warn("transfer failed: balance overflow for event {}", event);
+            return false;
+        }
         return ok;
     }
 
@@ -385,13 +500,19 @@ public class TradingEngineService extends LoggerSupport {
         int month = zdt.getMonth().getValue();
         // orderId根据sequenceId生成
         long orderId = event.sequenceId * 10000 + (year * 100 + month);
-        //创建订单实例
-        OrderEntity order = this.orderService.createOrder(event.sequenceId, event.createdAt, orderId, event.userId,
-                event.direction, event.price, event.quantity);
+        //创建订单实例，价格和数量只在此处由BigDecimal转换为定点数:
+        Order order;
+        try {
+            order = this.orderService.createOrder(event.sequenceId, event.createdAt, orderId, event.userId,
+                    event.direction, FixedPointUtil.toFixed(event.price), FixedPointUtil.toFixed(event.quantity));
+        } catch (ArithmeticException e) {
+            logger.warn("create order failed: price {} or quantity {} overflow.", event.price, event.quantity);
+            order = null;
+        }
         if (order == null) {
             logger.warn("create order failed.");
             // 推送失败结果:
-            this.apiResultQueue.add(ApiResultMessage.createOrderFailed(event.refId, event.createdAt));
+            this.output.apiResult = ApiResultMessage.createOrderFailed(event.refId, event.createdAt);
             return;
         }
         //撮合
@@ -401,25 +522,26 @@ public class TradingEngineService extends LoggerSupport {
         /**
          * 收集撮合结果、已完成订单、准备发送的通知，通过消息系统或Redis向外输出交易信息
          */
-        // 推送成功结果,注意必须复制一份OrderEntity,因为将异步序列化:
-        this.apiResultQueue.add(ApiResultMessage.orderSuccess(event.refId, order.copy(), event.createdAt));
+        // 推送成功结果,注意必须转换为新的OrderEntity,因为将异步序列化:
+        this.output.apiResult = ApiResultMessage.orderSuccess(event.refId, order.toEntity(), event.createdAt);
         this.orderBookChanged = true;
         // 收集Notification:
-        List<NotificationMessage> notifications = new ArrayList<>();
-        notifications.add(createNotification(event.createdAt, "order_matched", order.userId, order.copy()));
+        List<NotificationMessage> notifications = this.output.notifications;
+        notifications.add(createNotification(event.createdAt, "order_matched", order.userId, order.toEntity()));
         // 收集已完成的OrderEntity并生成MatchDetailEntity, TickEntity:
         if (!result.matchDetails.isEmpty()) {
-            List<OrderEntity> closedOrders = new ArrayList<>();
-            List<MatchDetailEntity> matchDetails = new ArrayList<>();
+            List<OrderEntity> closedOrders = this.output.closedOrders;
+            List<MatchDetailEntity> matchDetails = this.output.matchDetails;
             List<TickEntity> ticks = new ArrayList<>();
             if (result.takerOrder.status.isFinalStatus) {
-                closedOrders.add(result.takerOrder);
+                closedOrders.add(result.takerOrder.toEntity());
             }
             for (MatchDetailRecord detail : result.matchDetails) {
-                OrderEntity maker = detail.makerOrder();
-                notifications.add(createNotification(event.createdAt, "order_matched", maker.userId, maker.copy()));
+                Order maker = detail.makerOrder();
+                OrderEntity makerEntity = maker.toEntity();
+                notifications.add(createNotification(event.createdAt, "order_matched", maker.userId, makerEntity));
                 if (maker.status.isFinalStatus) {
-                    closedOrders.add(maker);
+                    closedOrders.add(makerEntity);
                 }
                 MatchDetailEntity takerDetail = generateMatchDetailEntity(event.sequenceId, event.createdAt, detail,
                         true);
@@ -429,25 +551,23 @@ public class TradingEngineService extends LoggerSupport {
                 matchDetails.add(makerDetail);
                 TickEntity tick = new TickEntity();
                 tick.sequenceId = event.sequenceId;
-                tick.takerOrderId = detail.takerOrder().getId();
-                tick.makerOrderId = detail.makerOrder().getId();
-                tick.price = detail.price();
-                tick.quantity = detail.quantity();
+                tick.takerOrderId = detail.takerOrder().id;
+                tick.makerOrderId = detail.makerOrder().id;
+                tick.price = FixedPointUtil.toBigDecimal(detail.price());
+                tick.quantity = FixedPointUtil.toBigDecimal(detail.quantity());
                 tick.takerDirection = detail.takerOrder().direction == Direction.BUY;
                 tick.createdAt = event.createdAt;
                 ticks.add(tick);
             }
-            // 异步写入数据库:
-            this.orderQueue.add(closedOrders);
-            this.matchQueue.add(matchDetails);
             // 异步发送Tick消息:
             TickMessage msg = new TickMessage();
             msg.sequenceId = event.sequenceId;
             msg.createdAt = event.createdAt;
             msg.ticks = ticks;
-            this.tickQueue.add(msg);
-            // 异步通知OrderMatch:
-            this.notificationQueue.addAll(notifications);
+            this.output.tick = msg;
+        } else {
+            // 未成交时不通知OrderMatch:
+            notifications.clear();
         }
     }
 
@@ -464,11 +584,11 @@ public class TradingEngineService extends LoggerSupport {
                                                 boolean forTaker) {
         MatchDetailEntity d = new MatchDetailEntity();
         d.sequenceId = sequenceId;
-        d.orderId = forTaker ? detail.takerOrder().getId() : detail.makerOrder().getId();
-        d.counterOrderId = forTaker ? detail.makerOrder().getId() : detail.takerOrder().getId();
+        d.orderId = forTaker ? detail.takerOrder().id : detail.makerOrder().id;
+        d.counterOrderId = forTaker ? detail.makerOrder().id : detail.takerOrder().id;
         d.direction = forTaker ? detail.takerOrder().direction : detail.makerOrder().direction;
-        d.price = detail.price();
-        d.quantity = detail.quantity();
+        d.price = FixedPointUtil.toBigDecimal(detail.price());
+        d.quantity = FixedPointUtil.toBigDecimal(detail.quantity());
         d.type = forTaker ? MatchType.TAKER : MatchType.MAKER;
         d.userId = forTaker ? detail.takerOrder().userId : detail.makerOrder().userId;
         d.counterUserId = forTaker ? detail.makerOrder().userId : detail.takerOrder().userId;
@@ -477,19 +597,20 @@ public class TradingEngineService extends LoggerSupport {
     }
 
     void cancelOrder(OrderCancelEvent event) {
-        OrderEntity order = this.orderService.getOrder(event.refOrderId);
+        Order order = this.orderService.getOrder(event.refOrderId);
         // 未找到活动订单或订单不属于该用户:
         if (order == null || order.userId.longValue() != event.userId.longValue()) {
             // 发送失败消息:
-            this.apiResultQueue.add(ApiResultMessage.cancelOrderFailed(event.refId, event.createdAt));
+            this.output.apiResult = ApiResultMessage.cancelOrderFailed(event.refId, event.createdAt);
             return;
         }
         this.matchEngine.cancel(event.createdAt, order);
         this.clearingService.clearCancelOrder(order);
         this.orderBookChanged = true;
         // 发送成功消息:
-        this.apiResultQueue.add(ApiResultMessage.orderSuccess(event.refId, order, event.createdAt));
-        this.notificationQueue.add(createNotification(event.createdAt, "order_canceled", order.userId, order));
+        OrderEntity entity = order.toEntity();
+        this.output.apiResult = ApiResultMessage.orderSuccess(event.refId, entity, event.createdAt);
+        this.output.notifications.add(createNotification(event.createdAt, "order_canceled", order.userId, entity));
     }
 
     public void debug() {
@@ -546,30 +667,26 @@ public class TradingEngineService extends LoggerSupport {
 
     void validateOrders() {
         // 验证订单:
-        Map<Long, Map<AssetEnum, BigDecimal>> userOrderFrozen = new HashMap<>();
-        for (Map.Entry<Long, OrderEntity> entry : this.orderService.getActiveOrders().entrySet()) {
-            OrderEntity order = entry.getValue();
-            require(order.unfilledQuantity.signum() > 0, "Active order must have positive unfilled amount: " + order);
+        Map<Long, Map<AssetEnum, Long>> userOrderFrozen = new HashMap<>();
+        for (Map.Entry<Long, Order> entry : this.orderService.getActiveOrders().entrySet()) {
+            Order order = entry.getValue();
+            require(order.unfilledQuantity > 0, "Active order must have positive unfilled amount: " + order);
             switch (order.direction) {
                 case BUY -> {
                     // 订单必须在MatchEngine中:
                     require(this.matchEngine.buyBook.exist(order), "order not found in buy book: " + order);
                     // 累计冻结的USD:
                     userOrderFrozen.putIfAbsent(order.userId, new HashMap<>());
-                    Map<AssetEnum, BigDecimal> frozenAssets = userOrderFrozen.get(order.userId);
-                    frozenAssets.putIfAbsent(AssetEnum.USD, BigDecimal.ZERO);
-                    BigDecimal frozen = frozenAssets.get(AssetEnum.USD);
-                    frozenAssets.put(AssetEnum.USD, frozen.add(order.price.multiply(order.unfilledQuantity)));
+                    Map<AssetEnum, Long> frozenAssets = userOrderFrozen.get(order.userId);
+                    frozenAssets.merge(AssetEnum.USD, FixedPointUtil.amount(order.price, order.unfilledQuantity), Long::sum);
                 }
                 case SELL -> {
                     // 订单必须在MatchEngine中:
                     require(this.matchEngine.sellBook.exist(order), "order not found in sell book: " + order);
                     // 累计冻结的BTC:
                     userOrderFrozen.putIfAbsent(order.userId, new HashMap<>());
-                    Map<AssetEnum, BigDecimal> frozenAssets = userOrderFrozen.get(order.userId);
-                    frozenAssets.putIfAbsent(AssetEnum.BTC, BigDecimal.ZERO);
-                    BigDecimal frozen = frozenAssets.get(AssetEnum.BTC);
-                    frozenAssets.put(AssetEnum.BTC, frozen.add(order.unfilledQuantity));
+                    Map<AssetEnum, Long> frozenAssets = userOrderFrozen.get(order.userId);
+                    frozenAssets.merge(AssetEnum.BTC, FixedPointUtil.quantityToAmount(order.unfilledQuantity), Long::sum);
                 }
                 default -> require(false, "Unexpected order direction: " + order.direction);
             }
@@ -581,41 +698,51 @@ public class TradingEngineService extends LoggerSupport {
             for (Map.Entry<AssetEnum, Asset> entry : assets.entrySet()) {
                 AssetEnum assetId = entry.getKey();
                 Asset asset = entry.getValue();
-                if (asset.getFrozen().signum() > 0) {
-                    Map<AssetEnum, BigDecimal> orderFrozen = userOrderFrozen.get(userId);
+                if (asset.getFixedFrozen() > 0) {
+                    Map<AssetEnum, Long> orderFrozen = userOrderFrozen.get(userId);
                     require(orderFrozen != null, "No order frozen found for user: " + userId + ", asset: " + asset);
-                    BigDecimal frozen = orderFrozen.get(assetId);
+                    Long frozen = orderFrozen.get(assetId);
                     require(frozen != null, "No order frozen found for asset: " + asset);
-                    require(frozen.compareTo(asset.getFrozen()) == 0,
-                            "Order frozen " + frozen + " is not equals to asset frozen: " + asset);
+                    require(frozen.longValue() == asset.getFixedFrozen(), "Order frozen "
+                            + FixedPointUtil.amountToBigDecimal(frozen) + " is not equals to asset frozen: " + asset);
                     // 从userOrderFrozen中删除已验证的Asset数据:
                     orderFrozen.remove(assetId);
                 }
             }
         }
         // userOrderFrozen不存在未验证的Asset数据:
-        for (Map.Entry<Long, Map<AssetEnum, BigDecimal>> userEntry : userOrderFrozen.entrySet()) {
+        for (Map.Entry<Long, Map<AssetEnum, Long>> userEntry : userOrderFrozen.entrySet()) {
             Long userId = userEntry.getKey();
-            Map<AssetEnum, BigDecimal> frozenAssets = userEntry.getValue();
+            Map<AssetEnum, Long> frozenAssets = userEntry.getValue();
             require(frozenAssets.isEmpty(), "User " + userId + " has unexpected frozen for order: " + frozenAssets);
         }
     }
 
     void validateMatchEngine() {
         // OrderBook的Order必须在ActiveOrders中:
-        Map<Long, OrderEntity> copyOfActiveOrders = new HashMap<>(this.orderService.getActiveOrders());
-        for (OrderEntity order : this.matchEngine.buyBook.book.values()) {
-            require(copyOfActiveOrders.remove(order.getId()) == order,
-                    "Order in buy book is not in active orders: " + order);
-        }
-        for (OrderEntity order : this.matchEngine.sellBook.book.values()) {
-            require(copyOfActiveOrders.remove(order.getId()) == order,
-                    "Order in sell book is not in active orders: " + order);
-        }
+        Map<Long, Order> copyOfActiveOrders = new HashMap<>(this.orderService.getActiveOrders());
+        validateOrderBook(this.matchEngine.buyBook, copyOfActiveOrders);
+        validateOrderBook(this.matchEngine.sellBook, copyOfActiveOrders);
         // activeOrders的所有Order必须在Order Book中:
         require(copyOfActiveOrders.isEmpty(), "Not all active orders are in order book.");
     }
 
+    void validateOrderBook(OrderBook book, Map<Long, Order> copyOfActiveOrders) {
+        for (PriceLevel level : book.levels.values()) {
+            require(!level.isEmpty(), "Empty price level in " + book.direction + " book: " + level);
+            long quantity = 0;
+            for (Order order : level.getOrders()) {
+                require(copyOfActiveOrders.remove(order.id) == order,
+                        "Order in " + book.direction + " book is not in active orders: " + order);
+                require(order.price == level.getPrice() && order.level == level, "Order price mismatch with level " + level + ": " + order);
+                quantity += order.unfilledQuantity;
+            }
+            // 档位合计数量必须等于档位内订单未成交数量之和:
+            require(quantity == level.getQuantity(), "Level quantity " + FixedPointUtil.toBigDecimal(level.getQuantity())
+                    + " is not equals to orders unfilled quantity: " + FixedPointUtil.toBigDecimal(quantity));
+        }
+    }
+
     void require(boolean condition, String errorMessage) {
         if (!condition) {
             logger.error("validate failed: {}", errorMessage);
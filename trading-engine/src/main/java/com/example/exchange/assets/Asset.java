@@ -1,37 +1,57 @@
 package com.example.exchange.assets;
 
+import com.example.exchange.util.FixedPointUtil;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import lombok.Data;
 
 import java.math.BigDecimal;
 
-@Data
+/**
+ * 资产余额，内部以定点数(FixedPointUtil.AMOUNT_SCALE)保存，输出JSON时转换为BigDecimal
+ */
 public class Asset {
     /**
      *  可用余额
      */
-    BigDecimal available;
+    long available;
     /**
      *冻结余额
      */
-    BigDecimal frozen;
+    long frozen;
 
     public Asset() {
-        this(BigDecimal.ZERO, BigDecimal.ZERO);
+        this(0, 0);
     }
 
-    public Asset(BigDecimal available, BigDecimal frozen) {
+    public Asset(long available, long frozen) {
         this.available = available;
         this.frozen = frozen;
     }
 
+    public BigDecimal getAvailable() {
+        return FixedPointUtil.amountToBigDecimal(available);
+    }
+
+    public BigDecimal getFrozen() {
+        return FixedPointUtil.amountToBigDecimal(frozen);
+    }
+
+    @JsonIgnore
+    public long getFixedAvailable() {
+        return available;
+    }
+
+    @JsonIgnore
+    public long getFixedFrozen() {
+        return frozen;
+    }
+
     @JsonIgnore
     public BigDecimal getTotal() {
-        return available.add(frozen);
+        return FixedPointUtil.amountToBigDecimal(available + frozen);
     }
 
     @Override
     public String toString() {
-        return String.format("[available=%04.2f, frozen=%02.2f]", available, frozen);
+        return "[available=" + getAvailable() + ", frozen=" + getFrozen() + "]";
     }
 }
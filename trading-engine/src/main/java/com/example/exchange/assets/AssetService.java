@@ -2,9 +2,9 @@ package com.example.exchange.assets;
 
 import com.example.exchange.enums.AssetEnum;
 import com.example.exchange.support.LoggerSupport;
+import com.example.exchange.util.FixedPointUtil;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -12,6 +12,13 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+/**
+ * 用户资产。
+ * <p>
+ * 资产只能通过DEBT用户转入(不检查余额)，DEBT用户的可用余额为负的发行总量，其余用户的余额之和等于发行总量。
+ * 转账时要求转出方的可用余额大于Long.MIN_VALUE，因此每种资产的发行总量不超过Long.MAX_VALUE，
+ * 任意用户的available、frozen及两者之和都不会溢出，清算中的转账和解冻也就不会溢出。
+ */
 @Component
 public class AssetService extends LoggerSupport {
 
@@ -40,16 +47,17 @@ public class AssetService extends LoggerSupport {
      * @param fromUser
      * @param toUser
      * @param assetId
-     * @param amount
+     * @param amount       定点数金额(FixedPointUtil.AMOUNT_SCALE)
      * @param checkBalance
      * @return
+     * @throws ArithmeticException 余额溢出或发行总量超过Long.MAX_VALUE，此时双方资产均未变动
      */
-    public boolean tryTransfer(Transfer type, Long fromUser, Long toUser, AssetEnum assetId, BigDecimal amount, boolean checkBalance) {
+    public boolean tryTransfer(Transfer type, Long fromUser, Long toUser, AssetEnum assetId, long amount, boolean checkBalance) {
 
-        if (amount.signum() == 0) {
+        if (amount == 0) {
             return true;
         }
-        if (amount.signum() < 0) {
+        if (amount < 0) {
             throw new IllegalArgumentException("Negative amount");
         }
         // 获取来源用户资产
@@ -65,32 +73,43 @@ public class AssetService extends LoggerSupport {
         return switch (type) {
             case AVAILABLE_TO_AVAILABLE -> {
                 //需要检查余额且余额不足
-                if (checkBalance && fromAsset.available.compareTo(amount) < 0) {
+                if (checkBalance && fromAsset.available < amount) {
                     yield false;
                 }
+                //先检查溢出，溢出时不修改余额:
+                long fromAvailable = Math.subtractExact(fromAsset.available, amount);
+                if (fromAvailable == Long.MIN_VALUE) {
+                    // 发行总量不能超过Long.MAX_VALUE:
+                    throw new ArithmeticException("long overflow");
+                }
+                Math.addExact(toAsset.available, amount);
                 //交易
-                fromAsset.available = fromAsset.getAvailable().subtract(amount);
-                toAsset.available = toAsset.getAvailable().add(amount);
+                fromAsset.available = fromAvailable;
+                toAsset.available += amount;
                 yield true;
             }
             case AVAILABLE_TO_FROZEN -> {
                 // 需要检查余额且余额不足:
-                if (checkBalance && fromAsset.available.compareTo(amount) < 0) {
+                if (checkBalance && fromAsset.available < amount) {
                     yield false;
                 }
+                long fromAvailable = Math.subtractExact(fromAsset.available, amount);
+                long toFrozen = Math.addExact(toAsset.frozen, amount);
                 //交易
-                fromAsset.available = fromAsset.available.subtract(amount);
-                toAsset.frozen = toAsset.frozen.add(amount);
+                fromAsset.available = fromAvailable;
+                toAsset.frozen = toFrozen;
                 yield true;
             }
             case FROZEN_TO_AVAILABLE -> {
                 // 需要检查余额且余额不足:
-                if (checkBalance && fromAsset.frozen.compareTo(amount) < 0) {
+                if (checkBalance && fromAsset.frozen < amount) {
                     yield false;
                 }
+                long fromFrozen = Math.subtractExact(fromAsset.frozen, amount);
+                long toAvailable = Math.addExact(toAsset.available, amount);
                 //交易
-                fromAsset.frozen = fromAsset.frozen.subtract(amount);
-                toAsset.available = toAsset.available.add(amount);
+                fromAsset.frozen = fromFrozen;
+                toAsset.available = toAvailable;
                 yield true;
             }
             default -> throw new IllegalArgumentException("invalid type: " + type);
@@ -111,6 +130,15 @@ public class AssetService extends LoggerSupport {
         return zeroAsset;
     }
 
+    /**
+     * 从快照恢复用户资产
+     */
+    public void restoreAsset(Long userId, AssetEnum assetId, long available, long frozen) {
+        Asset asset = initAssets(userId, assetId);
+        asset.available = available;
+        asset.frozen = frozen;
+    }
+
     /**
      * 获取目标用户资产
      */
@@ -125,27 +153,28 @@ public class AssetService extends LoggerSupport {
     /**
      * 常规转账操作（需检验余额）
      */
-    public void transfer(Transfer type, Long fromUser, Long toUser, AssetEnum assetId, BigDecimal amount) {
+    public void transfer(Transfer type, Long fromUser, Long toUser, AssetEnum assetId, long amount) {
         if (!tryTransfer(type, fromUser, toUser, assetId, amount, true)) {
             throw new RuntimeException("Trans failed for " + type + ",from user " + fromUser + " to user " + toUser
-                    + ", asset = " + assetId + ", amount = " + amount);
+                    + ", asset = " + assetId + ", amount = " + FixedPointUtil.amountToBigDecimal(amount));
         }
         if (logger.isDebugEnabled()) {
-            logger.debug("transfer asset {}, from {} => {}, amount {}", assetId, fromUser, toUser, amount);
+            logger.debug("transfer asset {}, from {} => {}, amount {}", assetId, fromUser, toUser,
+                    FixedPointUtil.amountToBigDecimal(amount));
         }
     }
 
     /**
      * 冻结资产
      */
-    public boolean tryfreeze(Long userId, AssetEnum assetId, BigDecimal amount) {
+    public boolean tryfreeze(Long userId, AssetEnum assetId, long amount) {
         return tryTransfer(Transfer.AVAILABLE_TO_FROZEN, userId, userId, assetId, amount, true);
     }
 
     /**
      * 解冻资产
      */
-    public boolean unfreeze(Long userId, AssetEnum assetId, BigDecimal amount) {
+    public boolean unfreeze(Long userId, AssetEnum assetId, long amount) {
         return tryTransfer(Transfer.FROZEN_TO_AVAILABLE, userId, userId, assetId, amount, true);
     }
 
@@ -3,15 +3,14 @@ package com.example.exchange.clearing;
 import com.example.exchange.assets.AssetService;
 import com.example.exchange.assets.Transfer;
 import com.example.exchange.enums.AssetEnum;
-import com.example.exchange.model.trade.OrderEntity;
 import com.example.exchange.match.MatchDetailRecord;
 import com.example.exchange.match.MatchResult;
+import com.example.exchange.order.Order;
 import com.example.exchange.order.OrderService;
+import com.example.exchange.util.FixedPointUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
-
 @Component
 @Slf4j
 public class  ClearingService {
@@ -26,40 +25,49 @@ public class  ClearingService {
         this.orderService = orderService;
     }
 
+    /**
+     * 清算撮合结果。
+     * <p>
+     * 转账金额都不超过下单时已冻结的金额，收款方余额受发行总量限制(见AssetService)，因此清算不会抛出ArithmeticException；
+     * 撮合已修改订单簿，此处若失败将无法回滚。
+     */
     public void clearMatchResult(MatchResult result) {
-        OrderEntity taker = result.takerOrder;
+        Order taker = result.takerOrder;
 
-        switch (taker.getDirection()) {
+        switch (taker.direction) {
             case BUY -> {
                 // 买入时，按Maker的价格成交：
                 for (MatchDetailRecord detail : result.matchDetails) {
                     if (log.isDebugEnabled()) {
                         log.debug("clear buy matched detail: price = {}, quantity = {}, takerOrderId = {}, makerOrderId = {}, takerUserId = {}, makerUserId = {}",
-                                detail.price(), detail.quantity(), detail.takerOrder().getId(), detail.makerOrder().getId(),
+                                FixedPointUtil.toBigDecimal(detail.price()), FixedPointUtil.toBigDecimal(detail.quantity()), detail.takerOrder().id, detail.makerOrder().id,
                                 detail.takerOrder().userId, detail.makerOrder().userId);
                     }
-                    OrderEntity maker = detail.makerOrder(); // 挂单
-                    BigDecimal matched = detail.quantity(); //成交数量
+                    Order maker = detail.makerOrder(); // 挂单
+                    long matched = detail.quantity(); //成交数量
 
-                    if (taker.price.compareTo(maker.price) > 0) {
+                    if (taker.price > maker.price) {
                         // 实际买入价比报价低，部分USD退回账户:
-                        BigDecimal unfreezeQuote = taker.price.subtract(maker.price).multiply(matched);
-                        log.debug("unfree extra unused quote {} back to taker user {}", unfreezeQuote, taker.userId);
+                        long unfreezeQuote = FixedPointUtil.amount(taker.price - maker.price, matched);
+                        if (log.isDebugEnabled()) {
+                            log.debug("unfree extra unused quote {} back to taker user {}",
+                                    FixedPointUtil.amountToBigDecimal(unfreezeQuote), taker.userId);
+                        }
                         assetService.unfreeze(taker.userId, AssetEnum.USD, unfreezeQuote);
                     }
 
                     // 买方USD转入卖方账户:
-                    assetService.transfer(Transfer.FROZEN_TO_AVAILABLE, taker.userId, maker.userId, AssetEnum.USD, maker.price.multiply(matched));
+                    assetService.transfer(Transfer.FROZEN_TO_AVAILABLE, taker.userId, maker.userId, AssetEnum.USD, FixedPointUtil.amount(maker.price, matched));
                     // 卖方BTC转入买方账户:
-                    assetService.transfer(Transfer.FROZEN_TO_AVAILABLE, maker.userId, taker.userId, AssetEnum.BTC, matched);
+                    assetService.transfer(Transfer.FROZEN_TO_AVAILABLE, maker.userId, taker.userId, AssetEnum.BTC, FixedPointUtil.quantityToAmount(matched));
                     // 删除完全成交的Maker:
-                    if (maker.unfilledQuantity.signum() == 0) {
-                        orderService.removeOrder(maker.getId());
+                    if (maker.unfilledQuantity == 0) {
+                        orderService.removeOrder(maker.id);
                     }
                 }
                 // 删除完全成交的Taker:
-                if (taker.unfilledQuantity.signum() == 0) {
-                    orderService.removeOrder(taker.getId());
+                if (taker.unfilledQuantity == 0) {
+                    orderService.removeOrder(taker.id);
                 }
             }
             case SELL -> {
@@ -67,23 +75,23 @@ public class  ClearingService {
                     if (log.isDebugEnabled()) {
                         log.debug(
                                 "clear sell matched detail: price = {}, quantity = {}, takerOrderId = {}, makerOrderId = {}, takerUserId = {}, makerUserId = {}",
-                                detail.price(), detail.quantity(), detail.takerOrder().getId(), detail.makerOrder().getId(),
+                                FixedPointUtil.toBigDecimal(detail.price()), FixedPointUtil.toBigDecimal(detail.quantity()), detail.takerOrder().id, detail.makerOrder().id,
                                 detail.takerOrder().userId, detail.makerOrder().userId);
                     }
-                    OrderEntity maker = detail.makerOrder();
-                    BigDecimal matched = detail.quantity();
+                    Order maker = detail.makerOrder();
+                    long matched = detail.quantity();
                     // 卖方BTC转入买方账户:
-                    assetService.transfer(Transfer.FROZEN_TO_AVAILABLE, taker.userId, maker.userId, AssetEnum.BTC, matched);
+                    assetService.transfer(Transfer.FROZEN_TO_AVAILABLE, taker.userId, maker.userId, AssetEnum.BTC, FixedPointUtil.quantityToAmount(matched));
                     // 买方USD转入卖方账户:
-                    assetService.transfer(Transfer.FROZEN_TO_AVAILABLE, maker.userId, taker.userId, AssetEnum.USD, maker.price.multiply(matched));
+                    assetService.transfer(Transfer.FROZEN_TO_AVAILABLE, maker.userId, taker.userId, AssetEnum.USD, FixedPointUtil.amount(maker.price, matched));
                     // 删除完全成交的Maker:
-                    if (maker.unfilledQuantity.signum() == 0) {
-                        orderService.removeOrder(maker.getId());
+                    if (maker.unfilledQuantity == 0) {
+                        orderService.removeOrder(maker.id);
                     }
                 }
                 // 删除完全成交的Taker:
-                if (taker.unfilledQuantity.signum() == 0) {
-                    orderService.removeOrder(taker.getId());
+                if (taker.unfilledQuantity == 0) {
+                    orderService.removeOrder(taker.id);
                 }
             }
             default -> throw new IllegalArgumentException("InValid direction.");
@@ -94,19 +102,19 @@ public class  ClearingService {
      * 用户取消订单，则取消清算，解冻资产
      * @param order
      */
-    public void clearCancelOrder(OrderEntity order) {
+    public void clearCancelOrder(Order order) {
         switch (order.direction) {
             case BUY -> {
                 // 解冻USD = 价格 x 未成交数量
-                assetService.unfreeze(order.userId, AssetEnum.USD, order.price.multiply(order.unfilledQuantity));
+                assetService.unfreeze(order.userId, AssetEnum.USD, FixedPointUtil.amount(order.price, order.unfilledQuantity));
             }
             case SELL -> {
                 // 解冻BTC = 未成交数量
-                assetService.unfreeze(order.userId, AssetEnum.BTC, order.unfilledQuantity);
+                assetService.unfreeze(order.userId, AssetEnum.BTC, FixedPointUtil.quantityToAmount(order.unfilledQuantity));
             }
             default -> throw new IllegalArgumentException("Invalid direction.");
         }
         // 从OrderService中删除订单:
-        orderService.removeOrder(order.getId());
+        orderService.removeOrder(order.id);
     }
 }
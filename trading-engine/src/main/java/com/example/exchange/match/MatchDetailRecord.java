@@ -1,15 +1,13 @@
 package com.example.exchange.match;
 
-import com.example.exchange.model.trade.OrderEntity;
-
-import java.math.BigDecimal;
+import com.example.exchange.order.Order;
 
 /**
  *
- * @param price
- * @param quantity
+ * @param price      定点数成交价格
+ * @param quantity   定点数成交数量
  * @param takerOrder 吃单：正在处理的订单
  * @param makerOrder 挂单：挂在买卖盘的订单
  */
-public record MatchDetailRecord(BigDecimal price,BigDecimal quantity, OrderEntity takerOrder, OrderEntity makerOrder) {
+public record MatchDetailRecord(long price, long quantity, Order takerOrder, Order makerOrder) {
 }
@@ -3,21 +3,20 @@ package com.example.exchange.match;
 import com.example.exchange.bean.OrderBookBean;
 import com.example.exchange.enums.Direction;
 import com.example.exchange.enums.OrderStatus;
-import com.example.exchange.model.trade.OrderEntity;
+import com.example.exchange.order.Order;
+import com.example.exchange.util.FixedPointUtil;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
-
 @Component
 public class MatchEngine {
 
     public final OrderBook buyBook = new OrderBook(Direction.BUY);
     public final OrderBook sellBook = new OrderBook(Direction.SELL);
-    public BigDecimal marketPrice = BigDecimal.ZERO;
+    public long marketPrice = 0; // 定点数最新成交价
     private long sequenceId; //上次处理的Sequence ID
 
-    public MatchResult processOrder(long sequenceId, OrderEntity order) {
-        return switch (order.getDirection()) {
+    public MatchResult processOrder(long sequenceId, Order order) {
+        return switch (order.direction) {
             case BUY -> {
                 // 买单与sellBook匹配，最后放入buyBook:
                 yield processOrder(sequenceId, order, this.sellBook, this.buyBook);
@@ -37,53 +36,56 @@ public class MatchEngine {
      * @param anotherBook 未能完全成交后挂单的OrderBook
      * @return 匹配结果
      */
-    private MatchResult processOrder(long sequenceId, OrderEntity takerOrder, OrderBook makerBook, OrderBook anotherBook) {
+    private MatchResult processOrder(long sequenceId, Order takerOrder, OrderBook makerBook, OrderBook anotherBook) {
         this.sequenceId = sequenceId;
         long ts = takerOrder.createdAt;
         MatchResult matchResult = new MatchResult(takerOrder);
-        BigDecimal takerUnfilledQuantity = takerOrder.quantity;
+        long takerUnfilledQuantity = takerOrder.quantity;
 
         for (; ; ) {
-            OrderEntity makerOrder = makerBook.getFirst();
-            if (makerOrder == null) {
+            PriceLevel makerLevel = makerBook.getFirstLevel();
+            if (makerLevel == null) {
                 //对手盘不存在
                 break;
             }
-            if (takerOrder.direction == Direction.BUY && takerOrder.price.compareTo(makerOrder.price) < 0) {
+            if (takerOrder.direction == Direction.BUY && takerOrder.price < makerLevel.price) {
                 // 买入订单价格比卖盘第一档价格低
                 break;
-            } else if (takerOrder.direction == Direction.SELL && takerOrder.price.compareTo(makerOrder.price) > 0) {
+            } else if (takerOrder.direction == Direction.SELL && takerOrder.price > makerLevel.price) {
                 // 卖出订单价格比买盘第一档价格高
                 break;
             }
+            // 同一档位内按时间先后成交:
+            Order makerOrder = makerLevel.getFirst();
             // 以Maker价格成交:
             this.marketPrice = makerOrder.price;
             // 待成交数量为两者较小值:
-            BigDecimal matchedQuantity = takerUnfilledQuantity.min(makerOrder.unfilledQuantity);
+            long matchedQuantity = Math.min(takerUnfilledQuantity, makerOrder.unfilledQuantity);
             // 成交记录:
             matchResult.add(makerOrder.price, matchedQuantity, makerOrder);
             // 更新成交后的订单数量:
-            takerUnfilledQuantity = takerUnfilledQuantity.subtract(matchedQuantity);
-            BigDecimal makerUnfilledQuantity = makerOrder.unfilledQuantity.subtract(matchedQuantity);
+            takerUnfilledQuantity -= matchedQuantity;
+            long makerUnfilledQuantity = makerOrder.unfilledQuantity - matchedQuantity;
 
-            // 对手盘完全成交后，从订单簿中删除:
-            if (makerUnfilledQuantity.signum() == 0) {
+            if (makerUnfilledQuantity == 0) {
+                // 对手盘完全成交:
                 makerOrder.updateOrder(makerUnfilledQuantity, OrderStatus.FULLY_FILLED, ts);
-                makerBook.remove(makerOrder);
             } else {
                 // 对手盘部分成交:
                 makerOrder.updateOrder(makerUnfilledQuantity, OrderStatus.PARTIAL_FILLED, ts);
             }
+            // 更新档位数量，完全成交的对手盘从订单簿中删除:
+            makerBook.reduceFirst(makerLevel, matchedQuantity);
             // Taker订单完全成交后，退出循环:
-            if (takerUnfilledQuantity.signum() == 0) {
+            if (takerUnfilledQuantity == 0) {
                 takerOrder.updateOrder(takerUnfilledQuantity, OrderStatus.FULLY_FILLED, ts);
                 break;
             }
         }
         // Taker订单未完全成交时，放入订单簿:
-        if (takerUnfilledQuantity.signum() > 0) {
+        if (takerUnfilledQuantity > 0) {
             takerOrder.updateOrder(takerUnfilledQuantity,
-                    takerUnfilledQuantity.compareTo(takerOrder.quantity) == 0 ? OrderStatus.PENDING
+                    takerUnfilledQuantity == takerOrder.quantity ? OrderStatus.PENDING
                             : OrderStatus.PARTIAL_FILLED,
                     ts);
             anotherBook.add(takerOrder);
@@ -97,25 +99,36 @@ public class MatchEngine {
      * @param ts    时间戳
      * @param order 订单
      */
-    public void cancel(long ts, OrderEntity order) {
+    public void cancel(long ts, Order order) {
         OrderBook book = order.direction == Direction.BUY ? this.buyBook : this.sellBook;
         if (!book.remove(order)) {
             throw new IllegalArgumentException("Order not found in order book");
         }
-        OrderStatus status = order.unfilledQuantity.compareTo(order.quantity) == 0 ?
+        OrderStatus status = order.unfilledQuantity == order.quantity ?
                 OrderStatus.FULLY_CANCELLED : OrderStatus.PARTIAL_CANCELLED;
         order.updateOrder(order.unfilledQuantity, status, ts);
     }
 
+    /**
+     * 从快照恢复，订单已按顺序加入buyBook和sellBook
+     *
+     * @param sequenceId  快照的Sequence ID
+     * @param marketPrice 定点数最新成交价
+     */
+    public void restore(long sequenceId, long marketPrice) {
+        this.sequenceId = sequenceId;
+        this.marketPrice = marketPrice;
+    }
+
     public OrderBookBean getOrderBook(int maxDepth) {
-        return new OrderBookBean(this.sequenceId, this.marketPrice, this.buyBook.getOrderBook(maxDepth), this.sellBook.getOrderBook(maxDepth));
+        return new OrderBookBean(this.sequenceId, FixedPointUtil.toBigDecimal(this.marketPrice), this.buyBook.getOrderBook(maxDepth), this.sellBook.getOrderBook(maxDepth));
     }
 
     public void debug() {
         System.out.println("---------- match engine ----------");
         System.out.println(this.sellBook);
         System.out.println("  ----------");
-        System.out.println("  " + this.marketPrice);
+        System.out.println("  " + FixedPointUtil.toBigDecimal(this.marketPrice));
         System.out.println("  ----------");
         System.out.println(this.buyBook);
         System.out.println("---------- // match engine ----------");
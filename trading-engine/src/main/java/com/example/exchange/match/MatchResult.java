@@ -1,21 +1,20 @@
 package com.example.exchange.match;
 
-import com.example.exchange.model.trade.OrderEntity;
+import com.example.exchange.order.Order;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
 public class MatchResult {
-    public final OrderEntity takerOrder;
+    public final Order takerOrder;
     public final List<MatchDetailRecord> matchDetails = new ArrayList<>();
 
-    public MatchResult(OrderEntity takerOrder) {
+    public MatchResult(Order takerOrder) {
         this.takerOrder = takerOrder;
     }
 
 
-    public void add(BigDecimal price, BigDecimal matchedQuantity, OrderEntity makerOrder) {
+    public void add(long price, long matchedQuantity, Order makerOrder) {
         matchDetails.add(new MatchDetailRecord(price, matchedQuantity, this.takerOrder, makerOrder));
     }
 
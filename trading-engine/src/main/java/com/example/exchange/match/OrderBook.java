@@ -2,63 +2,120 @@ package com.example.exchange.match;
 
 import com.example.exchange.bean.OrderBookItemBean;
 import com.example.exchange.enums.Direction;
-import com.example.exchange.model.trade.OrderEntity;
+import com.example.exchange.order.Order;
+import com.example.exchange.util.FixedPointUtil;
 
 import java.util.*;
 
 public class OrderBook {
     public final Direction direction; //方向
-    public final TreeMap<OrderKey, OrderEntity> book; // 排序树
+    public final TreeMap<Long, PriceLevel> levels; // 价格档位排序树
 
+    private int size = 0; // 订单总数
+
+    // 回收的空档位，避免价格档位反复创建和GC:
+    private final ArrayDeque<PriceLevel> freeLevels = new ArrayDeque<>();
+    private static final int MAX_FREE_LEVELS = 1024;
 
     public OrderBook(Direction direction) {
         this.direction = direction;
-        this.book = new TreeMap<>(direction == Direction.BUY ? SORT_BUY : SORT_SELL);
+        this.levels = new TreeMap<>(direction == Direction.BUY ? SORT_BUY : SORT_SELL);
     }
 
-    public OrderEntity getFirst() {
-        return this.book.isEmpty() ? null : this.book.firstEntry().getValue();
+    /**
+     * 最优价格档位，订单簿为空时返回null
+     */
+    public PriceLevel getFirstLevel() {
+        Map.Entry<Long, PriceLevel> entry = this.levels.firstEntry();
+        return entry == null ? null : entry.getValue();
     }
 
-    public boolean remove(OrderEntity order) {
-        return this.book.remove(new OrderKey(order.getSequenceId(), order.getPrice())) != null;
+    public Order getFirst() {
+        PriceLevel level = getFirstLevel();
+        return level == null ? null : level.getFirst();
     }
 
-    public boolean add(OrderEntity order) {
-        return this.book.put(new OrderKey(order.getSequenceId(), order.getPrice()), order) != null;
+    /**
+     * 通过订单持有的档位引用直接摘除，O(1)；仅档位变空时删除排序树节点
+     */
+    public boolean remove(Order order) {
+        PriceLevel level = order.level;
+        if (level == null || level.book != this || !level.remove(order)) {
+            return false;
+        }
+        this.size--;
+        if (level.isEmpty()) {
+            this.levels.remove(level.price);
+            recycle(level);
+        }
+        return true;
     }
 
-    public boolean exist(OrderEntity order) {
-        return this.book.containsKey(new OrderKey(order.getSequenceId(), order.getPrice()));
+    public boolean add(Order order) {
+        PriceLevel level = this.levels.get(order.price);
+        if (level == null) {
+            level = this.freeLevels.pollFirst();
+            if (level == null) {
+                level = new PriceLevel(this);
+            }
+            level.reset(order.price);
+            this.levels.put(level.price, level);
+        }
+        level.add(order);
+        this.size++;
+        return true;
+    }
+
+    /**
+     * 档位第一个订单成交后更新档位合计数量，该订单完全成交时出队，档位为空时删除档位。
+     * 部分成交不会改动排序树。
+     *
+     * @param level   最优价格档位
+     * @param matched 成交数量
+     */
+    public void reduceFirst(PriceLevel level, long matched) {
+        level.subtractQuantity(matched);
+        Order first = level.getFirst();
+        if (first.unfilledQuantity == 0) {
+            level.unlink(first);
+            this.size--;
+            if (level.isEmpty()) {
+                // level必定是第一个档位:
+                this.levels.pollFirstEntry();
+                recycle(level);
+            }
+        }
+    }
+
+    public boolean exist(Order order) {
+        return order.level != null && order.level.book == this;
+    }
+
+    private void recycle(PriceLevel level) {
+        if (this.freeLevels.size() < MAX_FREE_LEVELS) {
+            level.reset(0);
+            this.freeLevels.addFirst(level);
+        }
     }
 
     public int size() {
-        return this.book.size();
+        return this.size;
     }
 
     /**
-     * @param maxDepth
-     * @return
+     * 按档位输出买卖盘，只遍历前maxDepth个档位
+     *
+     * @param maxDepth 最大档位数
+     * @return 档位列表
      */
     public List<OrderBookItemBean> getOrderBook(int maxDepth) {
         List<OrderBookItemBean> items = new ArrayList<>(maxDepth);
-        OrderBookItemBean prevItem = null;
-        for (OrderKey key : this.book.keySet()) {
-            OrderEntity order = this.book.get(key);
-            if (prevItem == null) {
-                prevItem = new OrderBookItemBean(order.getPrice(), order.getUnfilledQuantity());
-                items.add(prevItem);
-            } else {
-                if (order.getPrice().compareTo(prevItem.getPrice()) == 0) {
-                    prevItem.addQuantity(order.getUnfilledQuantity());
-                } else {
-                    if (items.size() >= maxDepth) {
-                        break;
-                    }
-                    prevItem = new OrderBookItemBean(order.getPrice(), order.getUnfilledQuantity());
-                    items.add(prevItem);
-                }
+        for (PriceLevel level : this.levels.values()) {
+            if (items.size() >= maxDepth) {
+                break;
             }
+            items.add(new OrderBookItemBean(FixedPointUtil.toBigDecimal(level.price),
+                    FixedPointUtil.toBigDecimal(level.quantity)));
         }
         return items;
     }
@@ -66,13 +123,15 @@ public class OrderBook {
 
     @Override
     public String toString() {
-        if (this.book.isEmpty()) {
+        if (this.levels.isEmpty()) {
             return "(empty)";
         }
         List<String> orders = new ArrayList<>(10);
-        for (Map.Entry<OrderKey, OrderEntity> entry : this.book.entrySet()) {
-            OrderEntity order = entry.getValue();
-            orders.add("  " + order.price + " " + order.unfilledQuantity + " " + order.toString());
+        for (PriceLevel level : this.levels.values()) {
+            for (Order order : level) {
+                orders.add("  " + FixedPointUtil.toBigDecimal(order.price) + " "
+                        + FixedPointUtil.toBigDecimal(order.unfilledQuantity) + " " + order.toString());
+            }
         }
         if (direction == Direction.SELL) {
             Collections.reverse(orders);
@@ -80,20 +139,9 @@ public class OrderBook {
         return String.join("\n", orders);
     }
 
-    private static final Comparator<OrderKey> SORT_SELL = new Comparator<OrderKey>() {
-        @Override
-        public int compare(OrderKey o1, OrderKey o2) {
-            // 价格低在前:
-            int cmp = o1.price().compareTo(o2.price());
-            // 时间早在前:
-            return cmp == 0 ? Long.compare(o1.sequenceId(), o2.sequenceId()) : cmp;
-        }
-    };
-
-    private static final Comparator<OrderKey> SORT_BUY = (o1, o2) -> {
-        // 价格高在前:
-        int cmp = o2.price().compareTo(o1.price());
-        // 时间早在前:
-        return cmp == 0 ? Long.compare(o1.sequenceId(), o2.sequenceId()) : cmp;
-    };
+    // 价格低在前:
+    private static final Comparator<Long> SORT_SELL = Comparator.naturalOrder();
+
+    // 价格高在前:
+    private static final Comparator<Long> SORT_BUY = Comparator.reverseOrder();
 }
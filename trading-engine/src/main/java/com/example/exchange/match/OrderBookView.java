@@ -0,0 +1,125 @@
+package com.example.exchange.match;
+
+import com.example.exchange.bean.OrderBookDeltaBean;
+import com.example.exchange.bean.OrderBookItemBean;
+import com.example.exchange.enums.Direction;
+import com.example.exchange.util.FixedPointUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 上一次输出的买卖盘前maxDepth个档位，用于计算订单簿增量：只比较前maxDepth个档位的定点数价格和数量，
+ * 仅为变化的档位创建OrderBookItemBean。
+ * <p>
+ * 仅由撮合线程访问。
+ */
+public class OrderBookView {
+
+    private final int maxDepth;
+
+    private final Levels buy;
+
+    private final Levels sell;
+
+    // 上次输出的sequenceId，0表示尚未输出:
+    private long sequenceId = 0;
+
+    private long price = 0;
+
+    public OrderBookView(int maxDepth) {
+        this.maxDepth = maxDepth;
+        this.buy = new Levels(Direction.BUY, maxDepth);
+        this.sell = new Levels(Direction.SELL, maxDepth);
+    }
+
+    /**
+     * 计算自上次输出以来的增量，前maxDepth个档位和最新成交价都没有变化时返回null
+     */
+    public OrderBookDeltaBean diff(MatchEngine engine, long sequenceId) {
+        List<OrderBookItemBean> buyChanges = this.buy.diff(engine.buyBook, this.maxDepth);
+        List<OrderBookItemBean> sellChanges = this.sell.diff(engine.sellBook, this.maxDepth);
+        if (buyChanges.isEmpty() && sellChanges.isEmpty() && engine.marketPrice == this.price) {
+            return null;
+        }
+        OrderBookDeltaBean delta = new OrderBookDeltaBean(sequenceId, this.sequenceId,
+                FixedPointUtil.toBigDecimal(engine.marketPrice), buyChanges, sellChanges);
+        this.sequenceId = sequenceId;
+        this.price = engine.marketPrice;
+        return delta;
+    }
+
+    static final class Levels {
+
+        private final boolean descending;
+
+        private long[] prices;
+        private long[] quantities;
+        private int size = 0;
+
+        // 本次的档位，比较后与prices/quantities交换:
+        private long[] nextPrices;
+        private long[] nextQuantities;
+
+        Levels(Direction direction, int maxDepth) {
+            this.descending = direction == Direction.BUY;
+            this.prices = new long[maxDepth];
+            this.quantities = new long[maxDepth];
+            this.nextPrices = new long[maxDepth];
+            this.nextQuantities = new long[maxDepth];
+        }
+
+        List<OrderBookItemBean> diff(OrderBook book, int maxDepth) {
+            int n = 0;
+            for (PriceLevel level : book.levels.values()) {
+                if (n >= maxDepth) {
+                    break;
+                }
+                this.nextPrices[n] = level.price;
+                this.nextQuantities[n] = level.quantity;
+                n++;
+            }
+            // 两组档位按订单簿顺序排列，合并比较:
+            List<OrderBookItemBean> changes = null;
+            int i = 0;
+            int j = 0;
+            while (i < this.size || j < n) {
+                if (i < this.size && j < n && this.prices[i] == this.nextPrices[j]) {
+                    if (this.quantities[i] != this.nextQuantities[j]) {
+                        changes = add(changes, this.nextPrices[j], this.nextQuantities[j]);
+                    }
+                    i++;
+                    j++;
+                } else if (i >= this.size || (j < n && before(this.nextPrices[j], this.prices[i]))) {
+                    // 新增档位:
+                    changes = add(changes, this.nextPrices[j], this.nextQuantities[j]);
+                    j++;
+                } else {
+                    // 删除档位:
+                    changes = add(changes, this.prices[i], 0);
+                    i++;
+                }
+            }
+            long[] tmp = this.prices;
+            this.prices = this.nextPrices;
+            this.nextPrices = tmp;
+            tmp = this.quantities;
+            this.quantities = this.nextQuantities;
+            this.nextQuantities = tmp;
+            this.size = n;
+            return changes == null ? List.of() : changes;
+        }
+
+        private boolean before(long p1, long p2) {
+            return this.descending ? p1 > p2 : p1 < p2;
+        }
+
+        private static List<OrderBookItemBean> add(List<OrderBookItemBean> changes, long price, long quantity) {
+            if (changes == null) {
+                changes = new ArrayList<>();
+            }
+            changes.add(new OrderBookItemBean(FixedPointUtil.toBigDecimal(price), FixedPointUtil.toBigDecimal(quantity)));
+            return changes;
+        }
+    }
+}
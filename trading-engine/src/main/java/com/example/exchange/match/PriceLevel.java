@@ -0,0 +1,145 @@
+package com.example.exchange.match;
+
+import com.example.exchange.order.Order;
+import com.example.exchange.util.FixedPointUtil;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 价格档位：同一价格的挂单按时间先后组成侵入式双向链表，并维护该档位的未成交数量合计。
+ * 订单通过Order.level/prev/next直接定位所在档位，出队和撤单均为O(1)。
+ */
+public class PriceLevel implements Iterable<Order> {
+
+    // 所属订单簿:
+    final OrderBook book;
+
+    // 定点数价格，档位回收复用时重新设置:
+    long price;
+
+    // 同价格订单，按sequenceId先后链接:
+    Order head;
+    Order tail;
+    int size;
+
+    // 档位内所有订单的未成交数量合计:
+    long quantity;
+
+    PriceLevel(OrderBook book) {
+        this.book = book;
+    }
+
+    public long getPrice() {
+        return this.price;
+    }
+
+    public long getQuantity() {
+        return this.quantity;
+    }
+
+    public Order getFirst() {
+        return this.head;
+    }
+
+    public Iterable<Order> getOrders() {
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    void add(Order order) {
+        order.level = this;
+        order.prev = this.tail;
+        order.next = null;
+        if (this.tail == null) {
+            this.head = order;
+        } else {
+            this.tail.next = order;
+        }
+        this.tail = order;
+        this.size++;
+        this.quantity += order.unfilledQuantity;
+    }
+
+    /**
+     * 从链表中摘除订单，不修改合计数量
+     */
+    void unlink(Order order) {
+        Order prev = order.prev;
+        Order next = order.next;
+        if (prev == null) {
+            this.head = next;
+        } else {
+            prev.next = next;
+        }
+        if (next == null) {
+            this.tail = prev;
+        } else {
+            next.prev = prev;
+        }
+        order.prev = order.next = null;
+        order.level = null;
+        this.size--;
+    }
+
+    boolean remove(Order order) {
+        if (order.level != this) {
+            return false;
+        }
+        unlink(order);
+        this.quantity -= order.unfilledQuantity;
+        return true;
+    }
+
+    /**
+     * 档位内订单成交后扣减合计数量
+     */
+    void subtractQuantity(long matched) {
+        this.quantity -= matched;
+    }
+
+    /**
+     * 回收复用前重置状态
+     */
+    void reset(long price) {
+        this.price = price;
+        this.head = this.tail = null;
+        this.size = 0;
+        this.quantity = 0;
+    }
+
+    @Override
+    public Iterator<Order> iterator() {
+        return new Iterator<>() {
+            Order current = head;
+
+            @Override
+            public boolean hasNext() {
+                return current != null;
+            }
+
+            @Override
+            public Order next() {
+                if (current == null) {
+                    throw new NoSuchElementException();
+                }
+                Order order = current;
+                current = order.next;
+                return order;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "PriceLevel [price=" + FixedPointUtil.toBigDecimal(price) + ", quantity="
+                + FixedPointUtil.toBigDecimal(quantity) + ", orders=" + size + "]";
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.exchange.order;
+
+import com.example.exchange.enums.Direction;
+import com.example.exchange.enums.OrderStatus;
+import com.example.exchange.match.PriceLevel;
+import com.example.exchange.model.trade.OrderEntity;
+import com.example.exchange.util.FixedPointUtil;
+import org.springframework.lang.Nullable;
+
+/**
+ * 交易引擎内的活动订单。价格、数量均为定点数(见FixedPointUtil)，
+ * 需要持久化或输出JSON时通过toEntity()转换为OrderEntity。
+ */
+public class Order implements Comparable<Order> {
+
+    public final Long id;
+
+    /**
+     * event id (a.k.a sequenceId) that create this order.
+     */
+    public final long sequenceId;
+
+    public final Direction direction;
+
+    public final Long userId;
+
+    /**
+     * 定点数价格
+     */
+    public final long price;
+
+    /**
+     * 定点数数量
+     */
+    public final long quantity;
+
+    /**
+     * 定点数未成交数量
+     */
+    public long unfilledQuantity;
+
+    public OrderStatus status;
+
+    public final long createdAt;
+
+    public long updatedAt;
+
+    private int version;
+
+    /**
+     * 订单在OrderBook中的位置：所在价格档位及同档位前后订单，不在订单簿中时level为null。
+     * 仅由OrderBook/PriceLevel维护，撤单时据此O(1)摘除。
+     */
+    public PriceLevel level;
+    public Order prev;
+    public Order next;
+
+    public Order(Long id, long sequenceId, Long userId, Direction direction, long price, long quantity, long ts) {
+        this.id = id;
+        this.sequenceId = sequenceId;
+        this.userId = userId;
+        this.direction = direction;
+        this.price = price;
+        this.quantity = quantity;
+        this.unfilledQuantity = quantity;
+        this.createdAt = this.updatedAt = ts;
+    }
+
+    public void updateOrder(long unfilledQuantity, OrderStatus status, long updatedAt) {
+        this.version++;
+        this.unfilledQuantity = unfilledQuantity;
+        this.status = status;
+        this.updatedAt = updatedAt;
+        this.version++;
+    }
+
+    /**
+     * 转换为OrderEntity。其他线程读取时若订单正在被更新则返回null，调用方需重试。
+     */
+    @Nullable
+    public OrderEntity toEntity() {
+        OrderEntity entity = new OrderEntity();
+        int ver = this.version;
+        entity.status = this.status;
+        long unfilled = this.unfilledQuantity;
+        entity.updatedAt = this.updatedAt;
+        if (ver != this.version) {
+            return null;
+        }
+        entity.unfilledQuantity = FixedPointUtil.toBigDecimal(unfilled);
+        entity.createdAt = this.createdAt;
+        entity.direction = this.direction;
+        entity.id = this.id;
+        entity.price = FixedPointUtil.toBigDecimal(this.price);
+        entity.quantity = FixedPointUtil.toBigDecimal(this.quantity);
+        entity.sequenceId = this.sequenceId;
+        entity.userId = this.userId;
+        return entity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof Order) {
+            Order e = (Order) o;
+            return this.id.longValue() == e.id.longValue();
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Order [id=" + id + ", sequenceId=" + sequenceId + ", direction=" + direction + ", userId=" + userId
+                + ", status=" + status + ", price=" + FixedPointUtil.toBigDecimal(price) + ", createdAt=" + createdAt
+                + ", updatedAt=" + updatedAt + ", version=" + version + ", quantity="
+                + FixedPointUtil.toBigDecimal(quantity) + ", unfilledQuantity="
+                + FixedPointUtil.toBigDecimal(unfilledQuantity) + "]";
+    }
+
+    /**
+     * 按OrderID排序
+     */
+    @Override
+    public int compareTo(Order o) {
+        return Long.compare(this.id.longValue(), o.id.longValue());
+    }
+}
@@ -3,10 +3,9 @@ package com.example.exchange.order;
 import com.example.exchange.assets.AssetService;
 import com.example.exchange.enums.AssetEnum;
 import com.example.exchange.enums.Direction;
-import com.example.exchange.model.trade.OrderEntity;
+import com.example.exchange.util.FixedPointUtil;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -24,11 +23,11 @@ public class OrderService {
     }
 
     //所有活动订单
-    // Order ID => OrderEntity
-    final ConcurrentMap<Long, OrderEntity> activeOrders = new ConcurrentHashMap<>();
+    // Order ID => Order
+    final ConcurrentMap<Long, Order> activeOrders = new ConcurrentHashMap<>();
     //用户活动订单
-    //User ID => Map(Order ID => OrderEntity)
-    final ConcurrentMap<Long, ConcurrentMap<Long, OrderEntity>> userOrders = new ConcurrentHashMap<>();
+    //User ID => Map(Order ID => Order)
+    final ConcurrentMap<Long, ConcurrentMap<Long, Order>> userOrders = new ConcurrentHashMap<>();
 
     /**
      * 创建订单
@@ -38,58 +37,61 @@ public class OrderService {
      * @param orderId
      * @param userId
      * @param direction
-     * @param price
-     * @param quantity
-     * @return
+     * @param price      定点数价格
+     * @param quantity   定点数数量
+     * @return 冻结资产失败时返回null
+     * @throws ArithmeticException 冻结金额溢出
      */
-    public OrderEntity createOrder(long sequenceId, long ts, Long orderId, Long userId, Direction direction, BigDecimal price, BigDecimal quantity) {
+    public Order createOrder(long sequenceId, long ts, Long orderId, Long userId, Direction direction, long price, long quantity) {
 
         switch (direction) {
             case BUY -> {
                 //买入，冻结USD
-                if (!assetService.tryfreeze(userId, AssetEnum.USD, price.multiply(quantity))) {
+                if (!assetService.tryfreeze(userId, AssetEnum.USD, FixedPointUtil.amount(price, quantity))) {
                     return null;
                 }
             }
             case SELL -> {
                 // 卖出，冻结BTC
-                if (!assetService.tryfreeze(userId, AssetEnum.BTC, quantity)) {
+                if (!assetService.tryfreeze(userId, AssetEnum.BTC, FixedPointUtil.quantityToAmount(quantity))) {
                     return null;
                 }
             }
             default -> throw new IllegalArgumentException("Invalid direction.");
         }
 
-        OrderEntity order = new OrderEntity();
-        order.setId(orderId);
-        order.setSequenceId(sequenceId);
-        order.userId = userId;
-        order.direction = direction;
-        order.price = price;
-        order.quantity = quantity;
-        order.unfilledQuantity = quantity;
-        order.createdAt = order.updatedAt = ts;
-
-        this.activeOrders.put(order.getId(), order);
+        Order order = new Order(orderId, sequenceId, userId, direction, price, quantity, ts);
+
+        this.activeOrders.put(order.id, order);
         //从用户活动订单中取出某个用户订单
-        ConcurrentMap<Long, OrderEntity> uOrders = this.userOrders.get(order.getUserId());
+        ConcurrentMap<Long, Order> uOrders = this.userOrders.get(order.userId);
         if (uOrders == null) {
             uOrders = new ConcurrentHashMap<>();
         }
-        uOrders.put(order.getId(), order);
-        this.userOrders.put(order.getUserId(), uOrders);
+        uOrders.put(order.id, order);
+        this.userOrders.put(order.userId, uOrders);
         return order;
     }
 
-    public ConcurrentMap<Long, OrderEntity> getActiveOrders() {
+    /**
+     * 从快照恢复活动订单，冻结资产已随资产快照恢复
+     *
+     * @param order
+     */
+    public void restoreOrder(Order order) {
+        this.activeOrders.put(order.id, order);
+        this.userOrders.computeIfAbsent(order.userId, k -> new ConcurrentHashMap<>()).put(order.id, order);
+    }
+
+    public ConcurrentMap<Long, Order> getActiveOrders() {
         return this.activeOrders;
     }
 
-    public OrderEntity getOrder(Long orderId) {
+    public Order getOrder(Long orderId) {
         return this.activeOrders.get(orderId);
     }
 
-    public ConcurrentMap<Long, OrderEntity> getUserOrders(Long userId) {
+    public ConcurrentMap<Long, Order> getUserOrders(Long userId) {
         return this.userOrders.get(userId);
     }
 
@@ -99,13 +101,13 @@ public class OrderService {
      * @param orderId
      */
     public void removeOrder(Long orderId) {
-        OrderEntity removedOrder = this.activeOrders.remove(orderId);
+        Order removedOrder = this.activeOrders.remove(orderId);
         if (removedOrder == null) {
             throw new IllegalArgumentException("Order not found by orderId in activeOrders : " + orderId);
         }
-        ConcurrentMap<Long, OrderEntity> uOrders = userOrders.get(removedOrder.getUserId());
+        ConcurrentMap<Long, Order> uOrders = userOrders.get(removedOrder.userId);
         if (uOrders == null) {
-            throw new IllegalArgumentException("User order not found by userId : " + removedOrder.getUserId());
+            throw new IllegalArgumentException("User order not found by userId : " + removedOrder.userId);
         }
         if (uOrders.remove(orderId) == null) {
             throw new IllegalArgumentException("Order not found by orderId in user orders : " + orderId);
@@ -115,11 +117,13 @@ public class OrderService {
 
     public void debug() {
         System.out.println("---------- orders ----------");
-        List<OrderEntity> orders = new ArrayList<>(this.activeOrders.values());
+        List<Order> orders = new ArrayList<>(this.activeOrders.values());
         Collections.sort(orders);
-        for (OrderEntity order : orders) {
-            System.out.println("  " + order.id + " " + order.direction + " price: " + order.price + " unfilled: "
-                    + order.unfilledQuantity + " quantity: " + order.quantity + " sequenceId: " + order.sequenceId
+        for (Order order : orders) {
+            System.out.println("  " + order.id + " " + order.direction + " price: "
+                    + FixedPointUtil.toBigDecimal(order.price) + " unfilled: "
+                    + FixedPointUtil.toBigDecimal(order.unfilledQuantity) + " quantity: "
+                    + FixedPointUtil.toBigDecimal(order.quantity) + " sequenceId: " + order.sequenceId
                     + " userId: " + order.userId);
         }
         System.out.println("---------- // orders ----------");
@@ -0,0 +1,90 @@
+package com.example.exchange.output;
+
+import com.example.exchange.bean.OrderBookBean;
+import com.example.exchange.bean.OrderBookDeltaBean;
+import com.example.exchange.bean.OrderBookItemBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 由增量维护的前N档订单簿：合并一批增量为一个增量，并生成保存到Redis的完整快照。
+ * <p>
+ * 仅由async-orderbook线程访问。
+ */
+public class OrderBookAggregator {
+
+    private final TreeMap<BigDecimal, BigDecimal> buy = new TreeMap<>(Comparator.reverseOrder());
+    private final TreeMap<BigDecimal, BigDecimal> sell = new TreeMap<>();
+
+    // 本批次尚未输出的增量，数量为0表示删除:
+    private final TreeMap<BigDecimal, BigDecimal> pendingBuy = new TreeMap<>(Comparator.reverseOrder());
+    private final TreeMap<BigDecimal, BigDecimal> pendingSell = new TreeMap<>();
+
+    private long sequenceId = 0;
+    private BigDecimal price = BigDecimal.ZERO;
+
+    // 本批次第一个增量的previousId，-1表示没有增量:
+    private long pendingPreviousId = -1;
+
+    public void apply(OrderBookDeltaBean delta) {
+        if (this.pendingPreviousId < 0) {
+            this.pendingPreviousId = delta.previousId;
+        }
+        apply(this.buy, this.pendingBuy, delta.buy);
+        apply(this.sell, this.pendingSell, delta.sell);
+        this.sequenceId = delta.sequenceId;
+        this.price = delta.price;
+    }
+
+    private static void apply(TreeMap<BigDecimal, BigDecimal> levels, TreeMap<BigDecimal, BigDecimal> pending,
+            List<OrderBookItemBean> items) {
+        for (OrderBookItemBean item : items) {
+            if (item.quantity.signum() == 0) {
+                levels.remove(item.price);
+            } else {
+                levels.put(item.price, item.quantity);
+            }
+            pending.put(item.price, item.quantity);
+        }
+    }
+
+    public boolean hasPending() {
+        return this.pendingPreviousId >= 0;
+    }
+
+    /**
+     * 本批次是否从空订单簿开始(引擎启动后的第一个增量)，此时增量包含全部档位，客户端必须以快照替换本地订单簿
+     */
+    public boolean isReset() {
+        return this.pendingPreviousId == 0;
+    }
+
+    /**
+     * 返回本批次合并后的增量并清空
+     */
+    public OrderBookDeltaBean drainDelta() {
+        OrderBookDeltaBean delta = new OrderBookDeltaBean(this.sequenceId, this.pendingPreviousId, this.price,
+                toList(this.pendingBuy), toList(this.pendingSell));
+        this.pendingBuy.clear();
+        this.pendingSell.clear();
+        this.pendingPreviousId = -1;
+        return delta;
+    }
+
+    public OrderBookBean getSnapshot() {
+        return new OrderBookBean(this.sequenceId, this.price, toList(this.buy), toList(this.sell));
+    }
+
+    private static List<OrderBookItemBean> toList(TreeMap<BigDecimal, BigDecimal> levels) {
+        List<OrderBookItemBean> list = new ArrayList<>(levels.size());
+        for (Map.Entry<BigDecimal, BigDecimal> entry : levels.entrySet()) {
+            list.add(new OrderBookItemBean(entry.getKey(), entry.getValue()));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.exchange.output;
+
+import com.example.exchange.bean.OrderBookDeltaBean;
+import com.example.exchange.message.ApiResultMessage;
+import com.example.exchange.message.NotificationMessage;
+import com.example.exchange.message.TickMessage;
+import com.example.exchange.model.trade.MatchDetailEntity;
+import com.example.exchange.model.trade.OrderEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 撮合线程处理一个事件后的全部输出，作为RingBuffer中预分配的槽位循环复用。
+ * 各输出线程只读取自己关心的字段，不可保留列表的引用。
+ */
+public class OutputEvent {
+
+    public long sequenceId;
+
+    public ApiResultMessage apiResult;
+
+    public TickMessage tick;
+
+    // 仅在订单簿前N档变化的批次末尾设置:
+    public OrderBookDeltaBean orderBookDelta;
+
+    public final List<NotificationMessage> notifications = new ArrayList<>();
+
+    public final List<OrderEntity> closedOrders = new ArrayList<>();
+
+    public final List<MatchDetailEntity> matchDetails = new ArrayList<>();
+
+    /**
+     * 撮合线程写入前重置
+     */
+    public OutputEvent reset(long sequenceId) {
+        this.sequenceId = sequenceId;
+        this.apiResult = null;
+        this.tick = null;
+        this.orderBookDelta = null;
+        this.notifications.clear();
+        this.closedOrders.clear();
+        this.matchDetails.clear();
+        return this;
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.exchange.snapshot;
+
+import com.example.exchange.assets.Asset;
+import com.example.exchange.assets.AssetService;
+import com.example.exchange.enums.AssetEnum;
+import com.example.exchange.enums.Direction;
+import com.example.exchange.enums.OrderStatus;
+import com.example.exchange.match.MatchEngine;
+import com.example.exchange.match.OrderBook;
+import com.example.exchange.match.PriceLevel;
+import com.example.exchange.order.Order;
+import com.example.exchange.order.OrderService;
+import com.example.exchange.support.LoggerSupport;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 交易引擎状态快照。
+ * <p>
+ * 撮合线程每处理snapshotInterval个sequence，把资产、活动订单(按订单簿档位及时间顺序)、marketPrice和
+ * lastSequenceId编码为紧凑的二进制数据，由后台线程通过内存映射写入文件。启动时加载最新快照，
+ * 只需回放快照之后的事件。
+ * <p>
+ * 快照之前的事件的输出(订单/成交入库、Tick、通知等)由各输出线程异步完成，快照采集时可能尚未完成。
+ * 若此时写入快照并在输出完成前崩溃，重启后不会再回放这些事件，其输出将永久丢失。因此后台线程在写入前
+ * 等待所有输出都已完成快照时的输出序号，等待期间最多再排队一个快照，其余被跳过。
+ * <p>
+ * 文件格式(大端序):
+ * <pre>
+ * int magic, int version, long sequenceId, long marketPrice, long createdAt
+ * int assetCount, [long userId, int assetId, long available, long frozen] x assetCount
+ * int orderCount, [long id, long sequenceId, long userId, byte direction, byte status,
+ *                  long price, long quantity, long unfilledQuantity, long createdAt, long updatedAt] x orderCount
+ * long crc32 (之前所有字节)
+ * </pre>
+ */
+@Component
+public class SnapshotService extends LoggerSupport {
+
+    static final int MAGIC = 0x45584348; // "EXCH"
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8;
+    static final int ASSET_BYTES = 8 + 4 + 8 + 8;
+    static final int ORDER_BYTES = 8 + 8 + 8 + 1 + 1 + 8 * 5;
+
+    static final String FILE_PREFIX = "snapshot-";
+    static final String FILE_SUFFIX = ".bin";
+
+    // 保留最近几个快照文件:
+    static final int KEEP_FILES = 2;
+
+    @Value("${exchange.snapshot.dir:./snapshot}")
+    String snapshotDir;
+
+    // 0表示不生成快照:
+    @Value("${exchange.snapshot.interval:100000}")
+    long snapshotInterval;
+
+    @Autowired
+    AssetService assetService;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    MatchEngine matchEngine;
+
+    private Path dir;
+
+    private long lastSnapshotSequenceId = 0;
+
+    // 容量为1：上一个快照尚未写完时跳过本次快照，撮合线程不会阻塞:
+    private final BlockingQueue<Snapshot> writeQueue = new ArrayBlockingQueue<>(1);
+
+    private Thread writeThread;
+
+    // 已全部完成的输出序号，默认没有异步输出:
+    private volatile LongSupplier completedOutputSequence = () -> Long.MAX_VALUE;
+
+    /**
+     * @param sequenceId     快照的sequenceId
+     * @param outputSequence 快照时已发布的最大输出序号，全部完成后才能写入快照
+     */
+    record Snapshot(long sequenceId, long outputSequence, ByteBuffer data) {
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        this.dir = Paths.get(this.snapshotDir).toAbsolutePath();
+        Files.createDirectories(this.dir);
+        logger.info("snapshot dir: {}, interval: {}", this.dir, this.snapshotInterval);
+        this.writeThread = new Thread(this::runWriteThread, "async-snapshot");
+        this.writeThread.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        this.writeThread.interrupt();
+    }
+
+    /**
+     * 设置已全部完成的输出序号，写入快照前等待其不小于快照的outputSequence
+     */
+    public void setCompletedOutputSequence(LongSupplier completedOutputSequence) {
+        this.completedOutputSequence = completedOutputSequence;
+    }
+
+    /**
+     * 由撮合线程调用：距上次快照超过snapshotInterval时采集快照并交给后台线程写入。
+     *
+     * @param sequenceId     已处理的最后一个sequenceId
+     * @param outputSequence 已发布的最大输出序号
+     */
+    public void trySnapshot(long sequenceId, long outputSequence) {
+        if (this.snapshotInterval <= 0 || sequenceId - this.lastSnapshotSequenceId < this.snapshotInterval) {
+            return;
+        }
+        if (this.writeQueue.remainingCapacity() == 0) {
+            // 上一个快照仍在写入:
+            return;
+        }
+        long start = System.currentTimeMillis();
+        ByteBuffer data = encode(sequenceId);
+        this.writeQueue.offer(new Snapshot(sequenceId, outputSequence, data));
+        this.lastSnapshotSequenceId = sequenceId;
+        if (logger.isInfoEnabled()) {
+            logger.info("captured snapshot at sequence id {}: {} bytes in {} ms.", sequenceId, data.limit(),
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 启动时加载最新的有效快照，恢复AssetService、OrderService和MatchEngine。
+     *
+     * @return 快照的sequenceId，无快照时返回0
+     */
+    public long restore() throws IOException {
+        List<Path> files = listSnapshotFiles();
+        for (int i = files.size() - 1; i >= 0; i--) {
+            Path file = files.get(i);
+            long start = System.currentTimeMillis();
+            ByteBuffer data;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (!verify(data)) {
+                logger.warn("skip invalid snapshot file: {}", file);
+                continue;
+            }
+            long sequenceId = decode(data);
+            this.lastSnapshotSequenceId = sequenceId;
+            logger.info("restored snapshot {} at sequence id {} in {} ms.", file, sequenceId,
+                    System.currentTimeMillis() - start);
+            return sequenceId;
+        }
+        logger.info("no snapshot found.");
+        return 0;
+    }
+
+    ByteBuffer encode(long sequenceId) {
+        ConcurrentMap<Long, ConcurrentMap<AssetEnum, Asset>> userAssets = this.assetService.getUserAssets();
+        int assetCount = 0;
+        for (ConcurrentMap<AssetEnum, Asset> assets : userAssets.values()) {
+            assetCount += assets.size();
+        }
+        int orderCount = this.matchEngine.buyBook.size() + this.matchEngine.sellBook.size();
+        int size = HEADER_BYTES + 4 + assetCount * ASSET_BYTES + 4 + orderCount * ORDER_BYTES + 8;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(sequenceId);
+        buffer.putLong(this.matchEngine.marketPrice);
+        buffer.putLong(System.currentTimeMillis());
+        // 资产:
+        buffer.putInt(assetCount);
+        for (Map.Entry<Long, ConcurrentMap<AssetEnum, Asset>> userEntry : userAssets.entrySet()) {
+            long userId = userEntry.getKey();
+            for (Map.Entry<AssetEnum, Asset> entry : userEntry.getValue().entrySet()) {
+                buffer.putLong(userId);
+                buffer.putInt(entry.getKey().ordinal());
+                buffer.putLong(entry.getValue().getFixedAvailable());
+                buffer.putLong(entry.getValue().getFixedFrozen());
+            }
+        }
+        // 订单按订单簿优先级写入，恢复时依次加入即可还原档位内的时间顺序:
+        buffer.putInt(orderCount);
+        encodeOrderBook(buffer, this.matchEngine.buyBook);
+        encodeOrderBook(buffer, this.matchEngine.sellBook);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    void encodeOrderBook(ByteBuffer buffer, OrderBook book) {
+        for (PriceLevel level : book.levels.values()) {
+            for (Order order : level) {
+                buffer.putLong(order.id);
+                buffer.putLong(order.sequenceId);
+                buffer.putLong(order.userId);
+                buffer.put((byte) order.direction.value);
+                buffer.put((byte) order.status.ordinal());
+                buffer.putLong(order.price);
+                buffer.putLong(order.quantity);
+                buffer.putLong(order.unfilledQuantity);
+                buffer.putLong(order.createdAt);
+                buffer.putLong(order.updatedAt);
+            }
+        }
+    }
+
+    boolean verify(ByteBuffer data) {
+        int size = data.limit();
+        if (size < HEADER_BYTES + 4 + 4 + 8 || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data.slice(0, size - 8));
+        return crc.getValue() == data.getLong(size - 8);
+    }
+
+    long decode(ByteBuffer data) {
+        AssetEnum[] assetIds = AssetEnum.values();
+        OrderStatus[] statuses = OrderStatus.values();
+        data.position(8);
+        long sequenceId = data.getLong();
+        long marketPrice = data.getLong();
+        data.getLong(); // createdAt
+        int assetCount = data.getInt();
+        for (int i = 0; i < assetCount; i++) {
+            Long userId = data.getLong();
+            AssetEnum assetId = assetIds[data.getInt()];
+            long available = data.getLong();
+            long frozen = data.getLong();
+            this.assetService.restoreAsset(userId, assetId, available, frozen);
+        }
+        int orderCount = data.getInt();
+        for (int i = 0; i < orderCount; i++) {
+            Long id = data.getLong();
+            long orderSequenceId = data.getLong();
+            Long userId = data.getLong();
+            Direction direction = Direction.of(data.get());
+            OrderStatus status = statuses[data.get()];
+            long price = data.getLong();
+            long quantity = data.getLong();
+            long unfilledQuantity = data.getLong();
+            long createdAt = data.getLong();
+            long updatedAt = data.getLong();
+            Order order = new Order(id, orderSequenceId, userId, direction, price, quantity, createdAt);
+            order.updateOrder(unfilledQuantity, status, updatedAt);
+            this.orderService.restoreOrder(order);
+            (direction == Direction.BUY ? this.matchEngine.buyBook : this.matchEngine.sellBook).add(order);
+        }
+        this.matchEngine.restore(sequenceId, marketPrice);
+        return sequenceId;
+    }
+
+    private void runWriteThread() {
+        logger.info("start snapshot write thread...");
+        for (;;) {
+            Snapshot snapshot;
+            try {
+                snapshot = this.writeQueue.take();
+                awaitOutput(snapshot);
+            } catch (InterruptedException e) {
+                logger.warn("{} was interrupted.", Thread.currentThread().getName());
+                break;
+            }
+            try {
+                write(snapshot);
+            } catch (IOException | UncheckedIOException e) {
+                logger.error("write snapshot failed at sequence id " + snapshot.sequenceId(), e);
+            }
+        }
+    }
+
+    /**
+     * 等待快照之前的输出全部完成
+     */
+    void awaitOutput(Snapshot snapshot) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        long lastWarn = start;
+        while (this.completedOutputSequence.getAsLong() < snapshot.outputSequence()) {
+            Thread.sleep(10);
+            long now = System.currentTimeMillis();
+            if (now - lastWarn >= 10_000) {
+                logger.warn("snapshot at sequence id {} is waiting for output {} for {} ms.", snapshot.sequenceId(),
+                        snapshot.outputSequence(), now - start);
+                lastWarn = now;
+            }
+        }
+    }
+
+    void write(Snapshot snapshot) throws IOException {
+        long start = System.currentTimeMillis();
+        String name = String.format("%s%020d", FILE_PREFIX, snapshot.sequenceId());
+        Path tmp = this.dir.resolve(name + ".tmp");
+        Path target = this.dir.resolve(name + FILE_SUFFIX);
+        ByteBuffer data = snapshot.data();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, data.limit());
+            mapped.put(data);
+            mapped.force();
+        }
+        // 写完后再改名，加载时不会读到写了一半的快照:
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        List<Path> files = listSnapshotFiles();
+        for (int i = 0; i < files.size() - KEEP_FILES; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+        logger.info("snapshot {} written in {} ms.", target, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 按sequenceId从小到大排列的快照文件
+     */
+    List<Path> listSnapshotFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(this.dir)) {
+            stream.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+            }).sorted().forEach(files::add);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.exchange.store;
+
+import com.example.exchange.message.event.AbstractEvent;
+import com.example.exchange.messageing.MessageTypes;
+import com.example.exchange.model.trade.EventEntity;
+import com.example.exchange.support.LoggerSupport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 从数据库流式回放事件。
+ * <p>
+ * 后台线程按sequenceId分页读取events表并反序列化，通过有界队列交给撮合线程，
+ * 内存占用不超过(capacity + 1)页，与需要回放的事件数量无关。
+ */
+public class EventReplay extends LoggerSupport implements AutoCloseable {
+
+    // 读取结束标记:
+    private static final List<AbstractEvent> END = Collections.emptyList();
+
+    private final StoreService storeService;
+    private final MessageTypes messageTypes;
+    private final int pageSize;
+    private final BlockingQueue<List<AbstractEvent>> queue;
+    private final Thread readThread;
+
+    private volatile RuntimeException error = null;
+    private boolean finished = false;
+
+    EventReplay(StoreService storeService, MessageTypes messageTypes, long lastEventId, int pageSize, int capacity) {
+        this.storeService = storeService;
+        this.messageTypes = messageTypes;
+        this.pageSize = pageSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.readThread = new Thread(() -> runReadThread(lastEventId), "async-replay");
+        this.readThread.start();
+    }
+
+    /**
+     * 获取下一批事件，按sequenceId顺序，全部读取完后返回空列表
+     *
+     * @return 事件列表
+     */
+    public List<AbstractEvent> next() {
+        if (this.finished) {
+            return END;
+        }
+        List<AbstractEvent> events;
+        try {
+            events = this.queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while replaying events.", e);
+        }
+        if (events == END) {
+            this.finished = true;
+            if (this.error != null) {
+                throw this.error;
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public void close() {
+        this.readThread.interrupt();
+    }
+
+    private void runReadThread(long lastEventId) {
+        try {
+            for (;;) {
+                List<EventEntity> page = this.storeService.loadEventPage(lastEventId, this.pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                List<AbstractEvent> events = new ArrayList<>(page.size());
+                for (EventEntity entity : page) {
+                    events.add((AbstractEvent) this.messageTypes.deserialize(entity.data));
+                }
+                // 按上一页最后的sequenceId继续读取下一页:
+                lastEventId = page.get(page.size() - 1).sequenceId;
+                this.queue.put(events);
+                if (page.size() < this.pageSize) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn("{} was interrupted.", Thread.currentThread().getName());
+            return;
+        } catch (RuntimeException e) {
+            logger.error("replay events failed after sequence id " + lastEventId, e);
+            this.error = e;
+        }
+        try {
+            this.queue.put(END);
+        } catch (InterruptedException e) {
+            logger.warn("{} was interrupted.", Thread.currentThread().getName());
+        }
+    }
+}
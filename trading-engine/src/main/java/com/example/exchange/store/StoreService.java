@@ -1,31 +1,114 @@
 package com.example.exchange.store;
 
 import com.example.exchange.db.DbTemplate;
-import com.example.exchange.message.event.AbstractEvent;
+import com.example.exchange.journal.JournalReader;
 import com.example.exchange.messageing.MessageTypes;
 import com.example.exchange.model.trade.EventEntity;
 import com.example.exchange.model.support.EntitySupport;
+import com.example.exchange.support.LoggerSupport;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Component
 @Transactional
-public class StoreService {
+public class StoreService extends LoggerSupport {
+
+    // 回放时每页读取的事件数:
+    static final int REPLAY_PAGE_SIZE = 1000;
+
+    // 回放时已反序列化、等待处理的最大页数:
+    static final int REPLAY_BUFFER_PAGES = 16;
+
     @Autowired
     MessageTypes messageTypes;
 
     @Autowired
     DbTemplate dbTemplate;
 
-    public List<AbstractEvent> loadEventsFromDb(long lastEventId){
-        List<EventEntity> events = this.dbTemplate.from(EventEntity.class).where("sequenceId > ?", lastEventId)
-                .orderBy("sequenceId").limit(100000).list();
-        return events.stream().map(event -> (AbstractEvent)messageTypes.deserialize(event.data)).collect(Collectors.toList());
+    // 定序系统启用日志模式且日志目录可访问(同机部署或共享存储)时，优先从日志读取尚未归档的事件:
+    @Value("${exchange.journal.enabled:false}")
+    boolean journalEnabled;
+
+    @Value("${exchange.journal.dir:./journal}")
+    String journalDir;
+
+    private JournalReader journalReader;
+
+    @PostConstruct
+    public void init() {
+        if (this.journalEnabled) {
+            Path dir = Paths.get(this.journalDir).toAbsolutePath();
+            if (Files.isDirectory(dir)) {
+                this.journalReader = new JournalReader(dir);
+                logger.info("load events from journal {}.", dir);
+            } else {
+                logger.warn("journal dir {} not found, load events from database.", dir);
+            }
+        }
     }
+
+    /**
+     * 回放lastEventId之后的全部事件，调用方处理完后需关闭EventReplay
+     *
+     * @param lastEventId 已处理的最后一个sequenceId
+     * @return EventReplay
+     */
+    public EventReplay replayEvents(long lastEventId) {
+        return new EventReplay(this, this.messageTypes, lastEventId, REPLAY_PAGE_SIZE, REPLAY_BUFFER_PAGES);
+    }
+
+    /**
+     * 按sequenceId > lastEventId读取一页事件，日志中不包含这些事件时从数据库读取。
+     */
+    public List<EventEntity> loadEventPage(long lastEventId, int limit) {
+        if (this.journalReader != null) {
+            List<EventEntity> events;
+            synchronized (this.journalReader) {
+                try {
+                    events = this.journalReader.read(lastEventId, Long.MAX_VALUE, limit);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            if (events != null && !events.isEmpty()) {
+                return events;
+            }
+        }
+        return loadEventPageFromDb(lastEventId, limit);
+    }
+
+    /**
+     * 按sequenceId > lastEventId读取一页事件，只查询sequenceId和data。
+     * 设置fetchSize使驱动按页从数据库获取数据(MySQL需启用useCursorFetch)。
+     */
+    List<EventEntity> loadEventPageFromDb(long lastEventId, int limit) {
+        String sql = "SELECT sequenceId, data FROM " + this.dbTemplate.getTable(EventEntity.class)
+                + " WHERE sequenceId > ? ORDER BY sequenceId LIMIT ?";
+        return this.dbTemplate.getJdbcTemplate().query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setLong(1, lastEventId);
+            ps.setInt(2, limit);
+            ps.setFetchSize(limit);
+            return ps;
+        }, (rs, rowNum) -> {
+            EventEntity event = new EventEntity();
+            event.sequenceId = rs.getLong(1);
+            event.data = rs.getString(2);
+            return event;
+        });
+    }
+
     public void insertIgnore(List<? extends EntitySupport> list) {
         dbTemplate.insertIgnore(list);
     }
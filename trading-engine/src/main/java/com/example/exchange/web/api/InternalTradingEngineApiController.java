@@ -5,11 +5,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 
+import com.example.exchange.TradingEngineService;
 import com.example.exchange.assets.Asset;
 import com.example.exchange.assets.AssetService;
 import com.example.exchange.enums.AssetEnum;
 import com.example.exchange.model.trade.OrderEntity;
 import com.example.exchange.support.LoggerSupport;
+import com.example.exchange.order.Order;
 import com.example.exchange.order.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -28,6 +30,14 @@ public class InternalTradingEngineApiController extends LoggerSupport {
     @Autowired
     AssetService assetService;
 
+    @Autowired
+    TradingEngineService tradingEngineService;
+
+    @GetMapping("/metrics/output")
+    public Map<String, Long> getOutputMetrics() {
+        return tradingEngineService.getOutputMetrics();
+    }
+
     @GetMapping("/{userId}/assets")
     public Map<AssetEnum, Asset> getAssets(@PathVariable("userId") Long userId) {
         return assetService.getAssets(userId);
@@ -35,15 +45,15 @@ public class InternalTradingEngineApiController extends LoggerSupport {
 
     @GetMapping("/{userId}/orders")
     public List<OrderEntity> getOrders(@PathVariable("userId") Long userId) {
-        ConcurrentMap<Long, OrderEntity> orders = orderService.getUserOrders(userId);
+        ConcurrentMap<Long, Order> orders = orderService.getUserOrders(userId);
         if (orders == null || orders.isEmpty()) {
             return List.of();
         }
         List<OrderEntity> list = new ArrayList<>(orders.size());
-        for (OrderEntity order : orders.values()) {
+        for (Order order : orders.values()) {
             OrderEntity copy = null;
             while (copy == null) {
-                copy = order.copy();
+                copy = order.toEntity();
             }
             list.add(copy);
         }
@@ -52,11 +62,15 @@ public class InternalTradingEngineApiController extends LoggerSupport {
 
     @GetMapping("/{userId}/orders/{orderId}")
     public OrderEntity getOrders(@PathVariable("userId") Long userId, @PathVariable("orderId") Long orderId) {
-        OrderEntity order = orderService.getOrder(orderId);
+        Order order = orderService.getOrder(orderId);
         if (order == null || order.userId.longValue() != userId.longValue()) {
             return null;
         }
-        return order.copy();
+        OrderEntity copy = null;
+        while (copy == null) {
+            copy = order.toEntity();
+        }
+        return copy;
     }
 }
 
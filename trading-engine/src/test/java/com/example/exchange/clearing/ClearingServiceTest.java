@@ -0,0 +1,116 @@
+package com.example.exchange.clearing;
+
+import com.example.exchange.assets.Asset;
+import com.example.exchange.assets.AssetService;
+import com.example.exchange.assets.Transfer;
+import com.example.exchange.enums.AssetEnum;
+import com.example.exchange.enums.Direction;
+import com.example.exchange.enums.UserType;
+import com.example.exchange.match.MatchEngine;
+import com.example.exchange.match.MatchResult;
+import com.example.exchange.order.Order;
+import com.example.exchange.order.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClearingServiceTest {
+
+    static final Long DEBT = UserType.DEBT.getInternalUserId();
+    static final Long BUYER = 1000L;
+    static final Long SELLER = 2000L;
+
+    AssetService assetService;
+    OrderService orderService;
+    MatchEngine matchEngine;
+    ClearingService clearingService;
+
+    @BeforeEach
+    void setUp() {
+        this.assetService = new AssetService();
+        this.orderService = new OrderService(this.assetService);
+        this.matchEngine = new MatchEngine();
+        this.clearingService = new ClearingService(this.assetService, this.orderService);
+    }
+
+    @Test
+    void rejectDepositOverMaxSupply() {
+        assertTrue(deposit(BUYER, AssetEnum.USD, Long.MAX_VALUE - 1));
+        // 发行总量不能超过Long.MAX_VALUE，余额均不变:
+        assertThrows(ArithmeticException.class, () -> deposit(SELLER, AssetEnum.USD, 2));
+        assertEquals(Long.MAX_VALUE - 1, available(BUYER, AssetEnum.USD));
+        assertEquals(0, available(SELLER, AssetEnum.USD));
+        assertEquals(-(Long.MAX_VALUE - 1), available(DEBT, AssetEnum.USD));
+        // 恰好达到Long.MAX_VALUE:
+        assertTrue(deposit(SELLER, AssetEnum.USD, 1));
+        assertThrows(ArithmeticException.class, () -> deposit(SELLER, AssetEnum.USD, 1));
+    }
+
+    @Test
+    void clearBuyWithMaxSupply() {
+        // 价格100.00，数量1.00:
+        long price = 10000;
+        long quantity = 100;
+        long cost = price * quantity;
+        // 卖方持有几乎全部USD，成交后USD余额恰好为Long.MAX_VALUE:
+        deposit(SELLER, AssetEnum.USD, Long.MAX_VALUE - cost);
+        deposit(SELLER, AssetEnum.BTC, quantity * 100);
+        deposit(BUYER, AssetEnum.USD, cost);
+
+        Order maker = this.orderService.createOrder(1, 1, 1L, SELLER, Direction.SELL, price, quantity);
+        assertTrue(this.matchEngine.processOrder(1, maker).matchDetails.isEmpty());
+        Order taker = this.orderService.createOrder(2, 2, 2L, BUYER, Direction.BUY, price, quantity);
+        MatchResult result = this.matchEngine.processOrder(2, taker);
+        assertEquals(1, result.matchDetails.size());
+
+        assertDoesNotThrow(() -> this.clearingService.clearMatchResult(result));
+        assertEquals(Long.MAX_VALUE, available(SELLER, AssetEnum.USD));
+        assertEquals(0, available(BUYER, AssetEnum.USD));
+        assertEquals(quantity * 100, available(BUYER, AssetEnum.BTC));
+        assertEquals(0, frozen(SELLER, AssetEnum.BTC));
+        assertNull(this.orderService.getOrder(1L));
+        assertNull(this.orderService.getOrder(2L));
+    }
+
+    @Test
+    void clearSellAtMakerPrice() {
+        // 买单价格110.00挂单，卖单以100.00吃单，按Maker价格110.00成交:
+        deposit(BUYER, AssetEnum.USD, 11000 * 200);
+        deposit(SELLER, AssetEnum.BTC, 100 * 100);
+        Order maker = this.orderService.createOrder(1, 1, 1L, BUYER, Direction.BUY, 11000, 200);
+        this.matchEngine.processOrder(1, maker);
+        Order taker = this.orderService.createOrder(2, 2, 2L, SELLER, Direction.SELL, 10000, 100);
+        this.clearingService.clearMatchResult(this.matchEngine.processOrder(2, taker));
+
+        assertEquals(11000 * 100, available(SELLER, AssetEnum.USD));
+        assertEquals(11000 * 100, frozen(BUYER, AssetEnum.USD));
+        assertEquals(100 * 100, available(BUYER, AssetEnum.BTC));
+        assertNotNull(this.orderService.getOrder(1L));
+        assertNull(this.orderService.getOrder(2L));
+        assertEquals(0, total(AssetEnum.USD));
+        assertEquals(0, total(AssetEnum.BTC));
+    }
+
+    boolean deposit(Long userId, AssetEnum assetId, long amount) {
+        return this.assetService.tryTransfer(Transfer.AVAILABLE_TO_AVAILABLE, DEBT, userId, assetId, amount, false);
+    }
+
+    long available(Long userId, AssetEnum assetId) {
+        Asset asset = this.assetService.getAssets(userId).get(assetId);
+        return asset == null ? 0 : asset.getFixedAvailable();
+    }
+
+    long frozen(Long userId, AssetEnum assetId) {
+        Asset asset = this.assetService.getAssets(userId).get(assetId);
+        return asset == null ? 0 : asset.getFixedFrozen();
+    }
+
+    long total(AssetEnum assetId) {
+        long total = 0;
+        for (Long userId : new Long[] { DEBT, BUYER, SELLER }) {
+            total += available(userId, assetId) + frozen(userId, assetId);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.exchange.match;
+
+import com.example.exchange.bean.OrderBookItemBean;
+import com.example.exchange.enums.Direction;
+import com.example.exchange.enums.OrderStatus;
+import com.example.exchange.order.Order;
+import com.example.exchange.util.FixedPointUtil;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBookTest {
+
+    long sequenceId = 0;
+
+    @Test
+    void aggregateByPriceLevel() {
+        OrderBook book = new OrderBook(Direction.SELL);
+        book.add(order(Direction.SELL, "100.5", "1"));
+        book.add(order(Direction.SELL, "100.5", "2.5"));
+        book.add(order(Direction.SELL, "99", "3"));
+        book.add(order(Direction.SELL, "101", "0.1"));
+        assertEquals(4, book.size());
+        assertEquals(3, book.levels.size());
+        PriceLevel level = book.levels.get(fixed("100.5"));
+        assertEquals(2, level.size());
+        assertEquals(fixed("3.5"), level.getQuantity());
+        // 卖盘价格低在前:
+        assertEquals(fixed("99"), book.getFirstLevel().getPrice());
+    }
+
+    @Test
+    void orderBookItems() {
+        OrderBook buy = new OrderBook(Direction.BUY);
+        buy.add(order(Direction.BUY, "10", "1"));
+        buy.add(order(Direction.BUY, "12", "2"));
+        buy.add(order(Direction.BUY, "11", "3"));
+        buy.add(order(Direction.BUY, "12", "4"));
+        // 买盘价格高在前，同价格合并:
+        List<OrderBookItemBean> items = buy.getOrderBook(10);
+        assertEquals(3, items.size());
+        assertItem(items.get(0), "12", "6");
+        assertItem(items.get(1), "11", "3");
+        assertItem(items.get(2), "10", "1");
+        // 只输出前maxDepth个档位:
+        items = buy.getOrderBook(2);
+        assertEquals(2, items.size());
+        assertItem(items.get(1), "11", "3");
+        assertTrue(new OrderBook(Direction.SELL).getOrderBook(10).isEmpty());
+    }
+
+    @Test
+    void matchUpdatesLevelQuantity() {
+        MatchEngine engine = new MatchEngine();
+        Order first = order(Direction.SELL, "100", "1");
+        Order second = order(Direction.SELL, "100", "2");
+        Order third = order(Direction.SELL, "101", "5");
+        engine.processOrder(first.sequenceId, first);
+        engine.processOrder(second.sequenceId, second);
+        engine.processOrder(third.sequenceId, third);
+
+        // 部分成交只扣减档位数量，同档位按时间先后成交:
+        Order taker = order(Direction.BUY, "100", "1.5");
+        MatchResult result = engine.processOrder(taker.sequenceId, taker);
+        assertEquals(2, result.matchDetails.size());
+        assertSame(first, result.matchDetails.get(0).makerOrder());
+        assertSame(second, result.matchDetails.get(1).makerOrder());
+        assertEquals(OrderStatus.FULLY_FILLED, first.status);
+        assertEquals(OrderStatus.PARTIAL_FILLED, second.status);
+        PriceLevel level = engine.sellBook.getFirstLevel();
+        assertEquals(fixed("100"), level.getPrice());
+        assertEquals(fixed("1.5"), level.getQuantity());
+        assertEquals(1, level.size());
+        assertSame(second, level.getFirst());
+        assertNull(first.level);
+
+        // 吃掉整个档位后删除档位，剩余部分挂入买盘:
+        taker = order(Direction.BUY, "101", "8");
+        engine.processOrder(taker.sequenceId, taker);
+        assertEquals(0, engine.sellBook.size());
+        assertTrue(engine.sellBook.levels.isEmpty());
+        assertNull(engine.sellBook.getFirst());
+        assertEquals(fixed("101"), engine.marketPrice);
+        assertEquals(1, engine.buyBook.levels.size());
+        assertEquals(fixed("1.5"), engine.buyBook.getFirstLevel().getQuantity());
+        assertEquals(OrderStatus.PARTIAL_FILLED, taker.status);
+    }
+
+    @Test
+    void levelQuantityMatchesOrders() {
+        MatchEngine engine = new MatchEngine();
+        Random random = new Random(12345);
+        for (int i = 0; i < 2000; i++) {
+            Direction direction = random.nextBoolean() ? Direction.BUY : Direction.SELL;
+            Order order = order(direction, String.valueOf(95 + random.nextInt(10)), String.valueOf(1 + random.nextInt(5)));
+            engine.processOrder(order.sequenceId, order);
+            if (random.nextInt(10) == 0) {
+                // 随机撤销一个挂单:
+                OrderBook book = random.nextBoolean() ? engine.buyBook : engine.sellBook;
+                PriceLevel level = book.getFirstLevel();
+                if (level != null) {
+                    engine.cancel(order.createdAt, level.getFirst());
+                }
+            }
+        }
+        for (OrderBook book : List.of(engine.buyBook, engine.sellBook)) {
+            int size = 0;
+            for (PriceLevel level : book.levels.values()) {
+                long quantity = 0;
+                int n = 0;
+                for (Order order : level) {
+                    assertEquals(level.getPrice(), order.price);
+                    assertSame(level, order.level);
+                    quantity += order.unfilledQuantity;
+                    n++;
+                }
+                assertTrue(n > 0);
+                assertEquals(n, level.size());
+                assertEquals(quantity, level.getQuantity());
+                size += n;
+            }
+            assertEquals(size, book.size());
+        }
+        // 买卖盘不交叉:
+        if (engine.buyBook.size() > 0 && engine.sellBook.size() > 0) {
+            assertTrue(engine.buyBook.getFirstLevel().getPrice() < engine.sellBook.getFirstLevel().getPrice());
+        }
+    }
+
+    Order order(Direction direction, String price, String quantity) {
+        this.sequenceId++;
+        return new Order(this.sequenceId, this.sequenceId, 1000L, direction, fixed(price), fixed(quantity),
+                this.sequenceId * 1000);
+    }
+
+    static long fixed(String value) {
+        return FixedPointUtil.toFixed(new BigDecimal(value));
+    }
+
+    static void assertItem(OrderBookItemBean item, String price, String quantity) {
+        assertEquals(0, new BigDecimal(price).compareTo(item.price));
+        assertEquals(0, new BigDecimal(quantity).compareTo(item.quantity));
+    }
+}
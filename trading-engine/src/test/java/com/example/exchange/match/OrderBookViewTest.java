@@ -0,0 +1,181 @@
+package com.example.exchange.match;
+
+import com.example.exchange.bean.OrderBookDeltaBean;
+import com.example.exchange.bean.OrderBookItemBean;
+import com.example.exchange.enums.Direction;
+import com.example.exchange.order.Order;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static com.example.exchange.match.OrderBookTest.assertItem;
+import static com.example.exchange.match.OrderBookTest.fixed;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBookViewTest {
+
+    MatchEngine engine = new MatchEngine();
+
+    long sequenceId = 0;
+
+    @Test
+    void emptyBook() {
+        OrderBookView view = new OrderBookView(5);
+        assertNull(view.diff(this.engine, 1));
+        assertNull(view.diff(this.engine, 2));
+    }
+
+    @Test
+    void addChangeRemoveLevels() {
+        OrderBookView view = new OrderBookView(5);
+        process(Direction.BUY, "100", "1");
+        process(Direction.BUY, "99", "2");
+        Order sell = process(Direction.SELL, "101", "3");
+
+        // 第一个增量包含全部档位，previousId为0:
+        OrderBookDeltaBean delta = view.diff(this.engine, 3);
+        assertEquals(3, delta.sequenceId);
+        assertEquals(0, delta.previousId);
+        assertEquals(0, BigDecimal.ZERO.compareTo(delta.price));
+        assertEquals(2, delta.buy.size());
+        assertItem(delta.buy.get(0), "100", "1");
+        assertItem(delta.buy.get(1), "99", "2");
+        assertEquals(1, delta.sell.size());
+        assertItem(delta.sell.get(0), "101", "3");
+
+        // 没有变化:
+        assertNull(view.diff(this.engine, 4));
+
+        // 同价格追加订单只输出该档位:
+        process(Direction.BUY, "99", "0.5");
+        delta = view.diff(this.engine, 5);
+        assertEquals(3, delta.previousId);
+        assertEquals(1, delta.buy.size());
+        assertItem(delta.buy.get(0), "99", "2.5");
+        assertTrue(delta.sell.isEmpty());
+
+        // 撤单删除档位，数量为0:
+        this.engine.cancel(6000, sell);
+        delta = view.diff(this.engine, 6);
+        assertEquals(5, delta.previousId);
+        assertTrue(delta.buy.isEmpty());
+        assertEquals(1, delta.sell.size());
+        assertItem(delta.sell.get(0), "101", "0");
+
+        // 成交同时删除买盘档位并更新最新成交价:
+        process(Direction.SELL, "100", "1");
+        delta = view.diff(this.engine, 7);
+        assertEquals(6, delta.previousId);
+        assertEquals(0, new BigDecimal("100").compareTo(delta.price));
+        assertEquals(1, delta.buy.size());
+        assertItem(delta.buy.get(0), "100", "0");
+        assertTrue(delta.sell.isEmpty());
+    }
+
+    @Test
+    void priceChangeOnly() {
+        OrderBookView view = new OrderBookView(5);
+        process(Direction.SELL, "100", "1");
+        process(Direction.SELL, "100", "1");
+        assertNotNull(view.diff(this.engine, 2));
+        // 成交后档位数量变化，价格变化:
+        process(Direction.BUY, "100", "1");
+        OrderBookDeltaBean delta = view.diff(this.engine, 3);
+        assertEquals(0, new BigDecimal("100").compareTo(delta.price));
+        assertItem(delta.sell.get(0), "100", "1");
+        // 价格不变时没有增量:
+        assertNull(view.diff(this.engine, 4));
+    }
+
+    @Test
+    void maxDepth() {
+        OrderBookView view = new OrderBookView(2);
+        process(Direction.SELL, "103", "1");
+        process(Direction.SELL, "102", "1");
+        process(Direction.SELL, "101", "1");
+        OrderBookDeltaBean delta = view.diff(this.engine, 3);
+        // 卖盘价格低在前，只输出前2档:
+        assertEquals(2, delta.sell.size());
+        assertItem(delta.sell.get(0), "101", "1");
+        assertItem(delta.sell.get(1), "102", "1");
+
+        // 前2档之外的变化不输出:
+        process(Direction.SELL, "104", "1");
+        process(Direction.SELL, "103", "1");
+        assertNull(view.diff(this.engine, 5));
+
+        // 新档位进入前2档，原第2档移出前2档，数量为0:
+        process(Direction.SELL, "100", "1");
+        delta = view.diff(this.engine, 6);
+        assertEquals(3, delta.previousId);
+        assertEquals(2, delta.sell.size());
+        assertItem(delta.sell.get(0), "100", "1");
+        assertItem(delta.sell.get(1), "102", "0");
+    }
+
+    @Test
+    void applyDeltas() {
+        // 按顺序应用所有增量后与订单簿前N档一致:
+        int maxDepth = 5;
+        OrderBookView view = new OrderBookView(maxDepth);
+        TreeMap<BigDecimal, BigDecimal> buy = new TreeMap<>(Comparator.reverseOrder());
+        TreeMap<BigDecimal, BigDecimal> sell = new TreeMap<>();
+        long previousId = 0;
+        Random random = new Random(20240101);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Direction direction = random.nextBoolean() ? Direction.BUY : Direction.SELL;
+            orders.add(process(direction, String.valueOf(90 + random.nextInt(20)), String.valueOf(1 + random.nextInt(5))));
+            if (random.nextInt(5) == 0) {
+                Order order = orders.get(random.nextInt(orders.size()));
+                if (this.engine.buyBook.exist(order) || this.engine.sellBook.exist(order)) {
+                    this.engine.cancel(order.createdAt, order);
+                }
+            }
+            if (random.nextInt(3) == 0) {
+                OrderBookDeltaBean delta = view.diff(this.engine, this.sequenceId);
+                if (delta != null) {
+                    assertEquals(previousId, delta.previousId);
+                    previousId = delta.sequenceId;
+                    apply(buy, delta.buy);
+                    apply(sell, delta.sell);
+                }
+                assertLevels(this.engine.buyBook.getOrderBook(maxDepth), buy);
+                assertLevels(this.engine.sellBook.getOrderBook(maxDepth), sell);
+            }
+        }
+    }
+
+    static void apply(TreeMap<BigDecimal, BigDecimal> levels, List<OrderBookItemBean> items) {
+        for (OrderBookItemBean item : items) {
+            if (item.quantity.signum() == 0) {
+                assertNotNull(levels.remove(item.price));
+            } else {
+                levels.put(item.price, item.quantity);
+            }
+        }
+    }
+
+    static void assertLevels(List<OrderBookItemBean> expected, TreeMap<BigDecimal, BigDecimal> levels) {
+        assertEquals(expected.size(), levels.size());
+        int i = 0;
+        for (Map.Entry<BigDecimal, BigDecimal> entry : levels.entrySet()) {
+            assertItem(expected.get(i), entry.getKey().toPlainString(), entry.getValue().toPlainString());
+            i++;
+        }
+    }
+
+    Order process(Direction direction, String price, String quantity) {
+        this.sequenceId++;
+        Order order = new Order(this.sequenceId, this.sequenceId, 1000L, direction, fixed(price), fixed(quantity),
+                this.sequenceId * 1000);
+        this.engine.processOrder(this.sequenceId, order);
+        return order;
+    }
+}
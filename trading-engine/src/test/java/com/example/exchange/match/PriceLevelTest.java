@@ -0,0 +1,137 @@
+package com.example.exchange.match;
+
+import com.example.exchange.enums.Direction;
+import com.example.exchange.order.Order;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceLevelTest {
+
+    OrderBook book = new OrderBook(Direction.BUY);
+
+    long sequenceId = 0;
+
+    @Test
+    void cancelHeadMiddleTail() {
+        Order o1 = add(100, 1);
+        Order o2 = add(100, 2);
+        Order o3 = add(100, 3);
+        Order o4 = add(100, 4);
+        PriceLevel level = o1.level;
+        assertEquals(10, level.getQuantity());
+
+        // 撤销中间的订单:
+        assertTrue(this.book.remove(o2));
+        assertOrders(level, o1, o3, o4);
+        assertEquals(8, level.getQuantity());
+        assertNull(o2.level);
+        assertNull(o2.prev);
+        assertNull(o2.next);
+        assertFalse(this.book.exist(o2));
+
+        // 撤销第一个和最后一个订单:
+        assertTrue(this.book.remove(o1));
+        assertOrders(level, o3, o4);
+        assertTrue(this.book.remove(o4));
+        assertOrders(level, o3);
+        assertEquals(3, level.getQuantity());
+        assertSame(o3, level.getFirst());
+        assertEquals(1, this.book.size());
+
+        // 新订单排在剩余订单之后:
+        Order o5 = add(100, 5);
+        assertOrders(level, o3, o5);
+        assertEquals(8, level.getQuantity());
+    }
+
+    @Test
+    void removeEmptyLevel() {
+        Order o1 = add(100, 1);
+        Order o2 = add(101, 2);
+        assertEquals(2, this.book.levels.size());
+        assertTrue(this.book.remove(o2));
+        assertEquals(1, this.book.levels.size());
+        assertSame(o1.level, this.book.getFirstLevel());
+        assertTrue(this.book.remove(o1));
+        assertTrue(this.book.levels.isEmpty());
+        assertNull(this.book.getFirstLevel());
+        assertEquals(0, this.book.size());
+
+        // 回收的档位复用后状态正确:
+        Order o3 = add(99, 3);
+        PriceLevel level = o3.level;
+        assertEquals(99, level.getPrice());
+        assertEquals(3, level.getQuantity());
+        assertOrders(level, o3);
+    }
+
+    @Test
+    void removeTwice() {
+        Order o1 = add(100, 1);
+        assertTrue(this.book.remove(o1));
+        assertFalse(this.book.remove(o1));
+        // 不在订单簿中的订单:
+        Order other = order(100, 1);
+        assertFalse(this.book.remove(other));
+        // 其他订单簿中的订单:
+        OrderBook sell = new OrderBook(Direction.SELL);
+        Order o2 = order(100, 2);
+        sell.add(o2);
+        assertFalse(this.book.remove(o2));
+        assertTrue(sell.exist(o2));
+        assertFalse(this.book.exist(o2));
+        assertEquals(0, this.book.size());
+        assertEquals(1, sell.size());
+    }
+
+    @Test
+    void cancelManyOrders() {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            orders.add(add(100, 1));
+        }
+        PriceLevel level = orders.get(0).level;
+        // 撤销所有奇数位置的订单:
+        for (int i = 1; i < orders.size(); i += 2) {
+            assertTrue(this.book.remove(orders.get(i)));
+        }
+        assertEquals(500, level.size());
+        assertEquals(500, level.getQuantity());
+        int i = 0;
+        for (Order order : level) {
+            assertSame(orders.get(i), order);
+            i += 2;
+        }
+        assertEquals(1000, i);
+    }
+
+    Order add(long price, long quantity) {
+        Order order = order(price, quantity);
+        this.book.add(order);
+        return order;
+    }
+
+    Order order(long price, long quantity) {
+        this.sequenceId++;
+        return new Order(this.sequenceId, this.sequenceId, 1000L, Direction.BUY, price, quantity, this.sequenceId);
+    }
+
+    static void assertOrders(PriceLevel level, Order... expected) {
+        List<Order> orders = new ArrayList<>();
+        for (Order order : level) {
+            orders.add(order);
+        }
+        assertEquals(List.of(expected), orders);
+        assertEquals(expected.length, level.size());
+        assertSame(expected[0], level.getFirst());
+        // 反向链接一致:
+        for (int i = 0; i < expected.length; i++) {
+            assertSame(i == 0 ? null : expected[i - 1], expected[i].prev);
+            assertSame(level, expected[i].level);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.exchange.output;
+
+import com.example.exchange.bean.OrderBookBean;
+import com.example.exchange.bean.OrderBookDeltaBean;
+import com.example.exchange.bean.OrderBookItemBean;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBookAggregatorTest {
+
+    @Test
+    void noPending() {
+        OrderBookAggregator aggregator = new OrderBookAggregator();
+        assertFalse(aggregator.hasPending());
+        assertFalse(aggregator.isReset());
+        OrderBookBean snapshot = aggregator.getSnapshot();
+        assertEquals(0, snapshot.sequenceId);
+        assertTrue(snapshot.buy.isEmpty());
+        assertTrue(snapshot.sell.isEmpty());
+    }
+
+    @Test
+    void mergeDeltas() {
+        OrderBookAggregator aggregator = new OrderBookAggregator();
+        // 引擎启动后的第一个增量:
+        aggregator.apply(delta(3, 0, "0", items("100", "1", "99", "2"), items("101", "3")));
+        assertTrue(aggregator.hasPending());
+        assertTrue(aggregator.isReset());
+        aggregator.apply(delta(5, 3, "0", items("99", "2.5"), items()));
+        aggregator.apply(delta(6, 5, "101", items("98", "1"), items("101", "0")));
+        assertTrue(aggregator.isReset());
+
+        // 合并后的增量从第一个增量的previousId开始，同一档位只保留最新数量:
+        OrderBookDeltaBean delta = aggregator.drainDelta();
+        assertEquals(6, delta.sequenceId);
+        assertEquals(0, delta.previousId);
+        assertDecimal("101", delta.price);
+        assertItems(delta.buy, "100", "1", "99", "2.5", "98", "1");
+        assertItems(delta.sell, "101", "0");
+        assertFalse(aggregator.hasPending());
+        assertFalse(aggregator.isReset());
+
+        // 下一批次接续上一批次:
+        aggregator.apply(delta(8, 6, "101", items("100", "0"), items("102", "1")));
+        aggregator.apply(delta(9, 8, "102", items("100", "4"), items()));
+        assertTrue(aggregator.hasPending());
+        assertFalse(aggregator.isReset());
+        delta = aggregator.drainDelta();
+        assertEquals(9, delta.sequenceId);
+        assertEquals(6, delta.previousId);
+        assertDecimal("102", delta.price);
+        // 先删除后重新加入的档位输出最新数量:
+        assertItems(delta.buy, "100", "4");
+        assertItems(delta.sell, "102", "1");
+    }
+
+    @Test
+    void snapshot() {
+        OrderBookAggregator aggregator = new OrderBookAggregator();
+        aggregator.apply(delta(1, 0, "0", items("99", "1", "101", "2", "100", "3"), items("103", "1", "102", "2")));
+        aggregator.apply(delta(2, 1, "100.5", items("101", "0"), items("104", "5")));
+        aggregator.drainDelta();
+        aggregator.apply(delta(3, 2, "100.5", items("100", "0.5"), items("102", "0")));
+
+        // 快照包含尚未输出的增量，买盘价格高在前，卖盘价格低在前:
+        OrderBookBean snapshot = aggregator.getSnapshot();
+        assertEquals(3, snapshot.sequenceId);
+        assertDecimal("100.5", snapshot.price);
+        assertItems(snapshot.buy, "100", "0.5", "99", "1");
+        assertItems(snapshot.sell, "103", "1", "104", "5");
+        // 获取快照不影响待输出的增量:
+        assertTrue(aggregator.hasPending());
+        assertEquals(2, aggregator.drainDelta().previousId);
+    }
+
+    @Test
+    void reset() {
+        OrderBookAggregator aggregator = new OrderBookAggregator();
+        aggregator.apply(delta(10, 9, "100", items("100", "1"), items()));
+        assertFalse(aggregator.isReset());
+        aggregator.drainDelta();
+
+        // 引擎重启后previousId为0，增量包含全部档位:
+        aggregator.apply(delta(20, 0, "100", items("100", "2"), items("101", "1")));
+        assertTrue(aggregator.isReset());
+        OrderBookDeltaBean delta = aggregator.drainDelta();
+        assertEquals(0, delta.previousId);
+        assertItems(delta.buy, "100", "2");
+        assertItems(delta.sell, "101", "1");
+    }
+
+    static OrderBookDeltaBean delta(long sequenceId, long previousId, String price, List<OrderBookItemBean> buy,
+            List<OrderBookItemBean> sell) {
+        return new OrderBookDeltaBean(sequenceId, previousId, new BigDecimal(price), buy, sell);
+    }
+
+    static List<OrderBookItemBean> items(String... values) {
+        List<OrderBookItemBean> items = new ArrayList<>();
+        for (int i = 0; i < values.length; i += 2) {
+            items.add(new OrderBookItemBean(new BigDecimal(values[i]), new BigDecimal(values[i + 1])));
+        }
+        return items;
+    }
+
+    static void assertItems(List<OrderBookItemBean> items, String... values) {
+        assertEquals(values.length / 2, items.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertDecimal(values[i * 2], items.get(i).price);
+            assertDecimal(values[i * 2 + 1], items.get(i).quantity);
+        }
+    }
+
+    static void assertDecimal(String expected, BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual), expected + " != " + actual);
+    }
+}
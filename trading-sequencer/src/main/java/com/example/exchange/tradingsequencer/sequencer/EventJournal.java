@@ -0,0 +1,202 @@
+package com.example.exchange.tradingsequencer.sequencer;
+
+import com.example.exchange.journal.JournalReader;
+import com.example.exchange.journal.JournalWriter;
+import com.example.exchange.message.event.AbstractEvent;
+import com.example.exchange.messageing.MessageTypes;
+import com.example.exchange.model.trade.EventEntity;
+import com.example.exchange.model.trade.UniqueEventEntity;
+import com.example.exchange.support.AbstractDbService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 日志模式下定序后的事件先追加到本地内存映射日志，每批刷盘一次，不再在定序事务中写入events表；
+ * 后台线程按顺序把日志中的事件归档到events表。
+ * <p>
+ * 日志记录的data包含事件的uniqueId，日志是事件及其uniqueId的唯一来源：定序时不再写入unique_events，
+ * 由归档线程先写入该批事件的unique_events再写入events，启动时未归档事件的uniqueId从日志重建。
+ */
+@Component
+public class EventJournal extends AbstractDbService {
+
+    // 每次归档的最大事件数:
+    static final int ARCHIVE_BATCH_SIZE = 1000;
+
+    // 已归档到日志末尾时的等待时间:
+    static final long ARCHIVE_IDLE_MILLIS = 100;
+
+    @Value("${exchange.journal.enabled:false}")
+    boolean enabled;
+
+    @Value("${exchange.journal.dir:./journal}")
+    String journalDir;
+
+    @Value("${exchange.journal.segment-size:67108864}")
+    int segmentSize;
+
+    @Autowired
+    MessageTypes messageTypes;
+
+    private Path dir;
+
+    private JournalWriter writer;
+
+    private Thread archiveThread;
+
+    // 已归档到events表的最后一个sequenceId:
+    private volatile long archivedSequenceId;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!this.enabled) {
+            return;
+        }
+        this.dir = Paths.get(this.journalDir).toAbsolutePath();
+        this.writer = new JournalWriter(this.dir, this.segmentSize);
+        this.archiveThread = new Thread(this::runArchiveThread, "async-journal-archive");
+        this.archiveThread.start();
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (this.archiveThread != null) {
+            this.archiveThread.interrupt();
+            this.archiveThread.join(5000);
+            this.archiveThread = null;
+        }
+        if (this.writer != null) {
+            this.writer.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * 日志中最后一个sequenceId，日志为空时返回0
+     */
+    public long getLastSequenceId() {
+        return this.writer.getLastSequenceId();
+    }
+
+    public long getLastCreatedAt() {
+        return this.writer.getLastCreatedAt();
+    }
+
+    /**
+     * 已归档到events和unique_events表的最后一个sequenceId，归档线程启动前返回0
+     */
+    public long getArchivedSequenceId() {
+        return this.archivedSequenceId;
+    }
+
+    /**
+     * 追加一批事件并刷盘
+     */
+    public void append(List<EventEntity> events) throws IOException {
+        this.writer.append(events);
+        this.writer.flush();
+    }
+
+    /**
+     * 读取日志中sequenceId > afterSequenceId的全部已刷盘事件，用于启动时重建尚未归档的数据
+     */
+    public List<EventEntity> readEvents(long afterSequenceId) throws IOException {
+        List<EventEntity> result = new ArrayList<>();
+        long flushed = this.writer.getFlushedSequenceId();
+        try (JournalReader reader = new JournalReader(this.dir)) {
+            while (afterSequenceId < flushed) {
+                List<EventEntity> events = reader.read(afterSequenceId, flushed, ARCHIVE_BATCH_SIZE);
+                if (events == null) {
+                    logger.error("journal does not contain events after sequence id {}.", afterSequenceId);
+                    break;
+                }
+                if (events.isEmpty()) {
+                    break;
+                }
+                result.addAll(events);
+                afterSequenceId = events.get(events.size() - 1).sequenceId;
+            }
+        }
+        return result;
+    }
+
+    private void runArchiveThread() {
+        logger.info("start journal archive thread...");
+        EventEntity last = db.from(EventEntity.class).orderBy("sequenceId").desc().first();
+        this.archivedSequenceId = last == null ? 0 : last.sequenceId;
+        logger.info("archive journal from sequence id {}...", this.archivedSequenceId);
+        try (JournalReader reader = new JournalReader(this.dir)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<EventEntity> events;
+                try {
+                    events = archive(reader);
+                } catch (Exception e) {
+                    // 数据库暂时不可用时稍后重试:
+                    logger.error("archive journal failed after sequence id " + this.archivedSequenceId, e);
+                    events = List.of();
+                }
+                if (events.isEmpty()) {
+                    Thread.sleep(ARCHIVE_IDLE_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn("{} was interrupted.", Thread.currentThread().getName());
+        }
+    }
+
+    /**
+     * 把已刷盘的下一批事件写入events表，返回已归档的事件。
+     * <p>
+     * 先写入unique_events再写入events，两者均为insertIgnore：中途失败时从events表的最后一个sequenceId重新归档即可。
+     */
+    private List<EventEntity> archive(JournalReader reader) throws IOException {
+        long flushed = this.writer.getFlushedSequenceId();
+        List<EventEntity> events = reader.read(this.archivedSequenceId, flushed, ARCHIVE_BATCH_SIZE);
+        if (events == null) {
+            if (flushed > this.archivedSequenceId) {
+                logger.error("journal does not contain events after archived sequence id {}.",
+                        this.archivedSequenceId);
+            }
+            return List.of();
+        }
+        if (!events.isEmpty()) {
+            List<UniqueEventEntity> uniques = toUniqueEvents(events);
+            if (!uniques.isEmpty()) {
+                db.insertIgnore(uniques);
+            }
+            db.insertIgnore(events);
+            this.archivedSequenceId = events.get(events.size() - 1).sequenceId;
+        }
+        return events;
+    }
+
+    /**
+     * 从事件数据中取出uniqueId
+     */
+    List<UniqueEventEntity> toUniqueEvents(List<EventEntity> events) {
+        List<UniqueEventEntity> uniques = new ArrayList<>();
+        for (EventEntity event : events) {
+            AbstractEvent message = (AbstractEvent) this.messageTypes.deserialize(event.data);
+            if (message.uniqueId != null) {
+                UniqueEventEntity unique = new UniqueEventEntity();
+                unique.uniqueId = message.uniqueId;
+                unique.sequenceId = event.sequenceId;
+                unique.createdAt = event.createdAt;
+                uniques.add(unique);
+            }
+        }
+        return uniques;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.exchange.tradingsequencer.sequencer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 最近定序的uniqueId索引，按定序顺序保留最多capacity个，超出后淘汰最早的。
+ * <p>
+ * 若从未淘汰过(启动时加载的unique_events不足capacity条)，索引包含全部已定序的uniqueId，未命中即可确定不重复；
+ * 否则未命中的uniqueId仍需查询数据库。日志模式下尚未归档的uniqueId只在索引中，不会被淘汰：
+ * 归档落后时索引可暂时超过capacity，归档追上后再淘汰超出的部分。
+ * 仅在定序线程中访问。
+ */
+class RecentUniqueIds {
+
+    private final int capacity;
+
+    // 已写入unique_events的最大sequenceId，只淘汰不超过该值的uniqueId:
+    private final LongSupplier archivedSequenceId;
+
+    // uniqueId -> sequenceId，按插入顺序:
+    private final LinkedHashMap<String, Long> index;
+
+    // 索引是否包含数据库中全部uniqueId:
+    private boolean complete = true;
+
+    RecentUniqueIds(int capacity, LongSupplier archivedSequenceId) {
+        this.capacity = capacity;
+        this.archivedSequenceId = archivedSequenceId;
+        this.index = new LinkedHashMap<>(Math.min(capacity, 1 << 16), 0.75f);
+    }
+
+    void add(String uniqueId, long sequenceId) {
+        this.index.put(uniqueId, sequenceId);
+        if (this.index.size() > this.capacity) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        long archived = this.archivedSequenceId.getAsLong();
+        Iterator<Map.Entry<String, Long>> it = this.index.entrySet().iterator();
+        while (this.index.size() > this.capacity && it.hasNext()) {
+            // 按定序顺序淘汰，遇到尚未归档的uniqueId即停止:
+            if (it.next().getValue() > archived) {
+                break;
+            }
+            it.remove();
+            this.complete = false;
+        }
+    }
+
+    boolean contains(String uniqueId) {
+        return this.index.containsKey(uniqueId);
+    }
+
+    /**
+     * 未命中时是否需要查询数据库
+     */
+    boolean isComplete() {
+        return this.complete;
+    }
+
+    /**
+     * 启动时加载了capacity条(可能还有更早的记录未加载)时调用
+     */
+    void markIncomplete() {
+        this.complete = false;
+    }
+
+    int getCapacity() {
+        return this.capacity;
+    }
+
+    int size() {
+        return this.index.size();
+    }
+}
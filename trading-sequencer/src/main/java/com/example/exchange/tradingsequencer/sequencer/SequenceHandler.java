@@ -1,17 +1,26 @@
 package com.example.exchange.tradingsequencer.sequencer;
 
 import com.example.exchange.message.event.AbstractEvent;
+import com.example.exchange.messageing.MessageFormat;
 import com.example.exchange.messageing.MessageTypes;
+import com.example.exchange.messageing.Messaging;
+import com.example.exchange.messageing.MessagingFactory;
 import com.example.exchange.model.trade.EventEntity;
 import com.example.exchange.model.trade.UniqueEventEntity;
 import com.example.exchange.support.AbstractDbService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Component
@@ -20,6 +29,20 @@ public class SequenceHandler extends AbstractDbService {
 
     private long lastTimestamp = 0;
 
+    @Autowired
+    EventJournal eventJournal;
+
+    @Autowired
+    MessagingFactory messagingFactory;
+
+    @Autowired
+    SequenceStats sequenceStats;
+
+    @Value("${exchange.sequencer.unique-id-cache-size:100000}")
+    private int uniqueIdCacheSize;
+
+    // 最近定序的uniqueId，启动时由loadRecentUniqueIds()从unique_events加载:
+    private RecentUniqueIds recentUniqueIds;
 
     /**
      * Set sequence for each message, persist into database as batch.
@@ -36,18 +59,23 @@ public class SequenceHandler extends AbstractDbService {
             this.lastTimestamp = t;
         }
 
-        // 利用UniqueEventEntity去重:
+        // 事件与发送到TRADE的消息使用相同格式:
+        final MessageFormat format = this.messagingFactory.getMessageFormat(Messaging.Topic.TRADE);
+
+        // 利用UniqueEventEntity去重，先查内存索引，未命中的整批查询一次数据库:
+        final Set<String> processedKeys = findProcessedUniqueIds(messages);
         List<UniqueEventEntity> uniques = null;
         Set<String> uniqueKeys = null;
         List<AbstractEvent> sequencedMessages = new ArrayList<>(messages.size());
         List<EventEntity> events = new ArrayList<>(messages.size());
 
+        final long sequenceStart = System.nanoTime();
         for (AbstractEvent message : messages) {
             UniqueEventEntity unique = null;
             final String uniqueId = message.uniqueId;
-            // 在数据库中查找uniqueId检查是否已存在:
+            // 检查uniqueId是否已存在:
             if (uniqueId != null) {
-                if ((uniqueKeys != null && uniqueKeys.contains(uniqueId)) || db.fetch(UniqueEventEntity.class, uniqueId) != null) {
+                if ((uniqueKeys != null && uniqueKeys.contains(uniqueId)) || processedKeys.contains(uniqueId)) {
                     // 忽略已处理的重复消息:
                     logger.warn("ignore processed unique message: {}", message);
                     continue;
@@ -85,7 +113,7 @@ public class SequenceHandler extends AbstractDbService {
             event.previousId = previousId;
             event.sequenceId = currentId;
 
-            event.data = messageTypes.serialize(message);
+            event.data = messageTypes.serialize(message, format);
             event.createdAt = this.lastTimestamp;
             // 添加到结果集:
             events.add(event);
@@ -93,17 +121,116 @@ public class SequenceHandler extends AbstractDbService {
             sequencedMessages.add(message);
         }
 
+        this.sequenceStats.recordSequence(System.nanoTime() - sequenceStart);
+
         // 落库:
+        if (this.eventJournal.isEnabled()) {
+            // 日志模式：事件数据包含uniqueId，刷盘后返回，由后台线程归档events和unique_events:
+            this.eventJournal.append(events);
+        } else {
+            if (uniques != null) {
+                db.insert(uniques);
+            }
+            db.insert(events);
+        }
         if (uniques != null) {
-            db.insert(uniques);
+            // 定序失败时进程退出，此处直接更新索引:
+            for (UniqueEventEntity unique : uniques) {
+                this.recentUniqueIds.add(unique.uniqueId, unique.sequenceId);
+            }
         }
-        db.insert(events);
         // 返回定序后的消息:
         return sequencedMessages;
     }
 
+    /**
+     * 返回本批消息中已定序过的uniqueId：内存索引命中的直接返回，
+     * 索引不完整时对未命中的uniqueId执行一次IN查询。
+     */
+    Set<String> findProcessedUniqueIds(List<AbstractEvent> messages) {
+        Set<String> processed = null;
+        List<String> misses = null;
+        for (AbstractEvent message : messages) {
+            String uniqueId = message.uniqueId;
+            if (uniqueId == null) {
+                continue;
+            }
+            if (this.recentUniqueIds.contains(uniqueId)) {
+                if (processed == null) {
+                    processed = new HashSet<>();
+                }
+                processed.add(uniqueId);
+            } else if (!this.recentUniqueIds.isComplete()) {
+                if (misses == null) {
+                    misses = new ArrayList<>();
+                }
+                misses.add(uniqueId);
+            }
+        }
+        if (misses != null) {
+            String in = misses.stream().map(id -> "?").collect(Collectors.joining(", "));
+            List<UniqueEventEntity> found = db.select("uniqueId").from(UniqueEventEntity.class)
+                    .where("uniqueId IN (" + in + ")", misses.toArray()).list();
+            if (!found.isEmpty()) {
+                if (processed == null) {
+                    processed = new HashSet<>();
+                }
+                for (UniqueEventEntity unique : found) {
+                    processed.add(unique.uniqueId);
+                }
+            }
+        }
+        return processed == null ? Collections.emptySet() : processed;
+    }
+
+    /**
+     * 从unique_events加载最近定序的uniqueId，日志模式下再加入日志中尚未归档的事件的uniqueId
+     */
+    public void loadRecentUniqueIds() {
+        // 非日志模式下uniqueId在定序事务中写入unique_events，均可淘汰:
+        RecentUniqueIds recent = new RecentUniqueIds(this.uniqueIdCacheSize,
+                this.eventJournal.isEnabled() ? this.eventJournal::getArchivedSequenceId : () -> Long.MAX_VALUE);
+        List<UniqueEventEntity> list = db.from(UniqueEventEntity.class).orderBy("sequenceId").desc()
+                .limit(this.uniqueIdCacheSize).list();
+        // 按定序顺序加入，最早的先被淘汰:
+        for (int i = list.size() - 1; i >= 0; i--) {
+            UniqueEventEntity unique = list.get(i);
+            recent.add(unique.uniqueId, unique.sequenceId);
+        }
+        if (list.size() >= this.uniqueIdCacheSize) {
+            recent.markIncomplete();
+        }
+        if (this.eventJournal.isEnabled()) {
+            EventEntity last = db.from(EventEntity.class).orderBy("sequenceId").desc().first();
+            long archived = last == null ? 0 : last.sequenceId;
+            List<EventEntity> events;
+            try {
+                events = this.eventJournal.readEvents(archived);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (UniqueEventEntity unique : this.eventJournal.toUniqueEvents(events)) {
+                recent.add(unique.uniqueId, unique.sequenceId);
+            }
+            logger.info("loaded unique ids of {} unarchived events after sequence id {} from journal.",
+                    events.size(), archived);
+        }
+        this.recentUniqueIds = recent;
+        logger.info("loaded {} recent unique ids, complete = {}.", recent.size(), recent.isComplete());
+    }
+
     public long getMaxSequenceId() {
         EventEntity last = db.from(EventEntity.class).orderBy("sequenceId").desc().first();
+        if (this.eventJournal.isEnabled()) {
+            // 日志中的事件可能尚未归档到数据库，以日志末尾为准:
+            long journalSequenceId = this.eventJournal.getLastSequenceId();
+            if (last == null || journalSequenceId > last.sequenceId) {
+                this.lastTimestamp = Math.max(this.lastTimestamp, this.eventJournal.getLastCreatedAt());
+                logger.info("find max sequenceId = {} from journal, last timestamp = {}", journalSequenceId,
+                        this.lastTimestamp);
+                return journalSequenceId;
+            }
+        }
         if (last == null) {
             logger.info("no max sequenceId found. set max sequenceId = 0.");
             return 0;
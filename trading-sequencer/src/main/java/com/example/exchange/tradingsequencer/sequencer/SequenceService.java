@@ -8,17 +8,26 @@ import jakarta.annotation.PreDestroy;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.listener.CommonErrorHandler;
 import org.springframework.kafka.listener.MessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class SequenceService extends LoggerSupport implements CommonErrorHandler {
     private static final String GROUP_ID = "SequencerGroup";
 
+    // 等待定序后的消息被Kafka确认的最长时间:
+    private static final long SEND_TIMEOUT_SECONDS = 30;
+
     @Autowired
     private SequenceHandler sequenceHandler;
 
@@ -28,6 +37,19 @@ public class SequenceService extends LoggerSupport implements CommonErrorHandler
     @Autowired
     private MessageTypes messageTypes;
 
+    @Autowired
+    private SequenceStats sequenceStats;
+
+    // 已写入数据库、尚未被Kafka确认的最大批次数:
+    @Value("${exchange.sequencer.max-in-flight-batches:4}")
+    private int maxInFlightBatches;
+
+    // 按发送顺序排列的在途批次，仅在定序线程中访问:
+    private final Deque<CompletableFuture<Void>> inFlight = new ArrayDeque<>();
+
+    // 发送失败的异常，由Kafka回调线程设置:
+    private volatile Throwable publishError;
+
     private MessageProducer<AbstractEvent> messageProducer;
 
     private AtomicLong sequence;
@@ -43,10 +65,13 @@ public class SequenceService extends LoggerSupport implements CommonErrorHandler
             logger.info("start sequence job...");
             // TODO: try get global DB lock:
             // while (!hasLock()) { sleep(10000); }
+            // 定序后的事件通过previousId串成全序，TRADE只能有一个分区，不设置key:
             this.messageProducer = this.messagingFactory.createMessageProducer(Messaging.Topic.TRADE,
                     AbstractEvent.class);
             // find max event id:
             this.sequence = new AtomicLong(this.sequenceHandler.getMaxSequenceId());
+            // load recent unique ids for dedupe:
+            this.sequenceHandler.loadRecentUniqueIds();
 
             // init consumer:
             logger.info("create message consumer for {}...", getClass().getName());
@@ -55,6 +80,10 @@ public class SequenceService extends LoggerSupport implements CommonErrorHandler
                     GROUP_ID, this::processMessages, this);
             this.running = true;
             while (running) {
+                if (this.publishError != null) {
+                    logger.error("exception when send sequenced messages", this.publishError);
+                    break;
+                }
                 try {
                     Thread.sleep(1000);
                 } catch (InterruptedException e) {
@@ -90,12 +119,48 @@ public class SequenceService extends LoggerSupport implements CommonErrorHandler
         panic();
     }
 
-    public void sendMessages(List<AbstractEvent> messages) {
-        this.messageProducer.sendMessages(messages);
+    /**
+     * 异步发送已写入数据库的一批消息，不等待Kafka确认即可开始定序下一批。
+     * 在途批次达到maxInFlightBatches时等待最早的批次完成。
+     * Kafka producer按发送顺序写入同一分区，批次之间的顺序不变。
+     */
+    public void sendMessages(List<AbstractEvent> messages) throws Exception {
+        awaitInFlight(Math.max(0, this.maxInFlightBatches - 1));
+        final long start = System.nanoTime();
+        CompletableFuture<Void> future = this.messageProducer.sendBatch(messages).whenComplete((r, e) -> {
+            this.sequenceStats.recordPublish(System.nanoTime() - start);
+            this.sequenceStats.inFlightBatches.decrementAndGet();
+            if (e != null && this.publishError == null) {
+                // 不在Kafka回调线程中退出进程，由定序线程或任务线程处理:
+                this.publishError = e;
+            }
+        });
+        this.sequenceStats.inFlightBatches.incrementAndGet();
+        this.inFlight.addLast(future);
+    }
+
+    /**
+     * 等待直到在途批次不超过max，任意批次发送失败时抛出异常
+     */
+    private void awaitInFlight(int max) throws Exception {
+        while (!this.inFlight.isEmpty() && this.inFlight.peekFirst().isDone()) {
+            this.inFlight.pollFirst().get();
+        }
+        if (this.inFlight.size() > max) {
+            long start = System.nanoTime();
+            while (this.inFlight.size() > max) {
+                this.inFlight.pollFirst().get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            this.sequenceStats.recordBackpressure(System.nanoTime() - start);
+        }
+    }
+
+    public Map<String, Long> getMetrics() {
+        return this.sequenceStats.getMetrics();
     }
 
     private synchronized void processMessages(List<AbstractEvent> messages) {
-        if (!running || crash) {
+        if (!running || crash || this.publishError != null) {
             panic();
             return;
         }
@@ -103,12 +168,14 @@ public class SequenceService extends LoggerSupport implements CommonErrorHandler
             logger.info("do sequence for {} messages...", messages.size());
         }
         long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         // 定序后的事件消息:
         List<AbstractEvent> sequenced = null;
 
         try {
-            //定序
+            //定序，返回时已提交事务:
             sequenced = this.sequenceHandler.sequenceMessages(this.messageTypes, this.sequence, messages);
+            this.sequenceStats.recordBatch(messages.size(), System.nanoTime() - startNanos);
         } catch (Throwable e) {
             // 定序出错时进程退出:
             logger.error("exception when do sequence", e);
@@ -122,7 +189,15 @@ public class SequenceService extends LoggerSupport implements CommonErrorHandler
                     this.sequence.get());
         }
         // 发送定序后的消息:
-        sendMessages(sequenced);
+        try {
+            sendMessages(sequenced);
+        } catch (Exception e) {
+            // 已定序的消息未能发送时进程退出，交易引擎通过sequenceId检测缺失并从数据库读取:
+            logger.error("exception when send sequenced messages", e);
+            shutdown();
+            panic();
+            throw new Error(e);
+        }
     }
 
     private void panic() {
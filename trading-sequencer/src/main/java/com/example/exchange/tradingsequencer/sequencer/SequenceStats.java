@@ -0,0 +1,74 @@
+package com.example.exchange.tradingsequencer.sequencer;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 定序流水线各阶段的累计耗时：
+ * sequence(分配sequenceId并序列化)、persist(去重查询及写入数据库/日志并提交)、
+ * publish(发送到Kafka直至整批被确认)、backpressure(在途批次达到上限时的等待)。
+ */
+@Component
+public class SequenceStats {
+
+    final LongAdder batches = new LongAdder();
+    final LongAdder messages = new LongAdder();
+    final LongAdder sequenceNanos = new LongAdder();
+    final LongAdder persistNanos = new LongAdder();
+    final LongAdder publishedBatches = new LongAdder();
+    final LongAdder publishNanos = new LongAdder();
+    final AtomicLong maxPublishNanos = new AtomicLong();
+    final LongAdder backpressureNanos = new LongAdder();
+    final AtomicLong inFlightBatches = new AtomicLong();
+
+    // 当前批次的sequence耗时，仅在定序线程中访问:
+    private long lastSequenceNanos;
+
+    void recordSequence(long nanos) {
+        this.sequenceNanos.add(nanos);
+        this.lastSequenceNanos = nanos;
+    }
+
+    /**
+     * 记录一批定序完成(已提交)，totalNanos包含sequence耗时，其余计入persist
+     */
+    void recordBatch(int count, long totalNanos) {
+        this.batches.increment();
+        this.messages.add(count);
+        this.persistNanos.add(totalNanos - this.lastSequenceNanos);
+        this.lastSequenceNanos = 0;
+    }
+
+    void recordPublish(long nanos) {
+        this.publishedBatches.increment();
+        this.publishNanos.add(nanos);
+        this.maxPublishNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void recordBackpressure(long nanos) {
+        this.backpressureNanos.add(nanos);
+    }
+
+    public Map<String, Long> getMetrics() {
+        long batches = this.batches.sum();
+        long published = this.publishedBatches.sum();
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("batches", batches);
+        metrics.put("messages", this.messages.sum());
+        metrics.put("inFlightBatches", this.inFlightBatches.get());
+        metrics.put("sequence.avgMicros", average(this.sequenceNanos.sum(), batches));
+        metrics.put("persist.avgMicros", average(this.persistNanos.sum(), batches));
+        metrics.put("publish.avgMicros", average(this.publishNanos.sum(), published));
+        metrics.put("publish.maxMicros", this.maxPublishNanos.get() / 1000);
+        metrics.put("backpressure.totalMillis", this.backpressureNanos.sum() / 1_000_000);
+        return metrics;
+    }
+
+    static long average(long nanos, long count) {
+        return count == 0 ? 0 : nanos / count / 1000;
+    }
+}
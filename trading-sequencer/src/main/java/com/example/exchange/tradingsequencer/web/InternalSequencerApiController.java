@@ -0,0 +1,24 @@
+package com.example.exchange.tradingsequencer.web;
+
+import java.util.Map;
+
+import com.example.exchange.support.LoggerSupport;
+import com.example.exchange.tradingsequencer.sequencer.SequenceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController
+@RequestMapping("/internal")
+public class InternalSequencerApiController extends LoggerSupport {
+
+    @Autowired
+    SequenceService sequenceService;
+
+    @GetMapping("/metrics/sequence")
+    public Map<String, Long> getSequenceMetrics() {
+        return sequenceService.getMetrics();
+    }
+}